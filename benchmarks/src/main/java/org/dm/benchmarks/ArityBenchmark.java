@@ -0,0 +1,39 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Bus#execute(Object)} of <em>CommandHandler</em> with 0..8 <em>ValueProviders</em>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArityBenchmark {
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8"})
+    int arity;
+
+    private Bus bus;
+    private Object command;
+
+    @Setup
+    public void setUp() {
+        bus = new BusBuilder()
+                .registerCommandHandler(new Fixtures.ArityHandlers())
+                .registerValueProvider(new Fixtures.ValueProviders())
+                .build();
+        command = Fixtures.command(arity);
+    }
+
+    @Benchmark
+    public Object execute() {
+        return bus.execute(command);
+    }
+}
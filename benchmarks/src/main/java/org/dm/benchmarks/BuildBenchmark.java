@@ -0,0 +1,41 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BusBuilder#build()} with thousands of <em>CommandHandlers</em>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    int handlers;
+
+    private List<Object> commandHandlers;
+
+    @Setup
+    public void setUp() {
+        commandHandlers = new ArrayList<>();
+        Commands.generate(handlers, commandHandlers);
+        commandHandlers.add(new Fixtures.ArityHandlers());
+    }
+
+    @Benchmark
+    public Bus build() {
+        BusBuilder builder = new BusBuilder()
+                .registerValueProvider(new Fixtures.ValueProviders());
+        commandHandlers.forEach(builder::registerCommandHandler);
+        return builder.build();
+    }
+}
@@ -0,0 +1,52 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Bus#execute(Object)} of <em>Commands</em> of all registered types in turn,
+ * so <em>CommandHandler</em> lookup and dispatch can't be specialized for single type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandTypesBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int types;
+
+    private Bus bus;
+    private Object[] commands;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Object> handlers = new ArrayList<>();
+        List<Class<?>> commandTypes = Commands.generate(types, handlers);
+
+        BusBuilder builder = new BusBuilder();
+        handlers.forEach(builder::registerCommandHandler);
+        bus = builder.build();
+
+        commands = commandTypes.stream()
+                .map(Commands::newInstance)
+                .toArray();
+    }
+
+    @Benchmark
+    public Object execute() {
+        Object command = commands[next];
+        if (++next == commands.length) {
+            next = 0;
+        }
+        return bus.execute(command);
+    }
+}
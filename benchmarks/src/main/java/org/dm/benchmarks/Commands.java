@@ -0,0 +1,67 @@
+package org.dm.benchmarks;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FixedValue;
+import org.dm.core.Handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates distinct <em>Command</em> types and their <em>CommandHandlers</em>,
+ * so benchmarks could register any number of them.
+ *
+ * <p>Classes are injected into benchmark's class loader, so <em>CommandHandlers</em>
+ * are bound the same way as hand written ones.
+ */
+final class Commands {
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private Commands() {
+    }
+
+    /**
+     * @return <em>Command</em> classes, each with its own <em>CommandHandler</em> in handlers
+     */
+    static List<Class<?>> generate(int count, List<Object> handlers) {
+        String prefix = "G" + GENERATION.incrementAndGet();
+        List<Class<?>> commandTypes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Class<?> commandType = new ByteBuddy()
+                    .subclass(Object.class)
+                    .name(String.format("org.dm.benchmarks.generated.%sCommand%d", prefix, i))
+                    .modifiers(Visibility.PUBLIC)
+                    .make()
+                    .load(Commands.class.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
+                    .getLoaded();
+
+            Class<?> handlerType = new ByteBuddy()
+                    .subclass(Object.class)
+                    .name(String.format("org.dm.benchmarks.generated.%sCommandHandler%d", prefix, i))
+                    .modifiers(Visibility.PUBLIC)
+                    .defineMethod("handle", Object.class, Visibility.PUBLIC)
+                    .withParameters(commandType)
+                    .intercept(FixedValue.value(i))
+                    .annotateMethod(AnnotationDescription.Builder.ofType(Handler.class).build())
+                    .make()
+                    .load(Commands.class.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
+                    .getLoaded();
+
+            commandTypes.add(commandType);
+            handlers.add(newInstance(handlerType));
+        }
+        return commandTypes;
+    }
+
+    static Object newInstance(Class<?> type) {
+        try {
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
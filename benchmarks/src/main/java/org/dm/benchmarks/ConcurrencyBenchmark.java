@@ -0,0 +1,58 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Bus#execute(Object)} of single shared {@link Bus} by several threads,
+ * with and without metrics (See {@link BusBuilder#enableMetrics()}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrencyBenchmark {
+
+    @Param({"false", "true"})
+    boolean metrics;
+
+    private Bus bus;
+    private Object command;
+
+    @Setup
+    public void setUp() {
+        BusBuilder builder = new BusBuilder()
+                .registerCommandHandler(new Fixtures.ArityHandlers())
+                .registerValueProvider(new Fixtures.ValueProviders())
+                .registerMiddleware(new Fixtures.PassThroughMiddleware())
+                .registerMiddleware(new Fixtures.PassThroughMiddleware());
+        if (metrics) {
+            builder.enableMetrics();
+        }
+        bus = builder.build();
+        command = Fixtures.command(2);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object thread1() {
+        return bus.execute(command);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads4() {
+        return bus.execute(command);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object threadsMax() {
+        return bus.execute(command);
+    }
+}
@@ -0,0 +1,170 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Handler;
+import org.dm.core.Middleware;
+import org.dm.core.Provider;
+
+import java.util.function.Function;
+
+/**
+ * Hand written <em>Commands</em>, <em>CommandHandlers</em>, <em>ValueProviders</em> and {@link Middleware}
+ * shared by benchmarks.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return <em>Command</em> handled by {@link ArityHandlers} with given number of <em>ValueProviders</em>
+     */
+    static Object command(int arity) {
+        switch (arity) {
+            case 0:
+                return new Command0();
+            case 1:
+                return new Command1();
+            case 2:
+                return new Command2();
+            case 3:
+                return new Command3();
+            case 4:
+                return new Command4();
+            case 5:
+                return new Command5();
+            case 6:
+                return new Command6();
+            case 7:
+                return new Command7();
+            case 8:
+                return new Command8();
+            default:
+                throw new IllegalArgumentException("Arity should be in range [0, 8], but was " + arity);
+        }
+    }
+
+    public static final class Command0 {
+    }
+
+    public static final class Command1 {
+    }
+
+    public static final class Command2 {
+    }
+
+    public static final class Command3 {
+    }
+
+    public static final class Command4 {
+    }
+
+    public static final class Command5 {
+    }
+
+    public static final class Command6 {
+    }
+
+    public static final class Command7 {
+    }
+
+    public static final class Command8 {
+    }
+
+    public static final class ArityHandlers {
+        @Handler
+        public Integer handle(Command0 c) {
+            return 0;
+        }
+
+        @Handler
+        public Integer handle(Command1 c, Integer p1) {
+            return p1;
+        }
+
+        @Handler
+        public Integer handle(Command2 c, Integer p1, Integer p2) {
+            return p1 + p2;
+        }
+
+        @Handler
+        public Integer handle(Command3 c, Integer p1, Integer p2, Integer p3) {
+            return p1 + p2 + p3;
+        }
+
+        @Handler
+        public Integer handle(Command4 c, Integer p1, Integer p2, Integer p3, Integer p4) {
+            return p1 + p2 + p3 + p4;
+        }
+
+        @Handler
+        public Integer handle(Command5 c, Integer p1, Integer p2, Integer p3, Integer p4, Integer p5) {
+            return p1 + p2 + p3 + p4 + p5;
+        }
+
+        @Handler
+        public Integer handle(Command6 c, Integer p1, Integer p2, Integer p3, Integer p4, Integer p5, Integer p6) {
+            return p1 + p2 + p3 + p4 + p5 + p6;
+        }
+
+        @Handler
+        public Integer handle(Command7 c, Integer p1, Integer p2, Integer p3, Integer p4, Integer p5, Integer p6,
+                              Integer p7) {
+            return p1 + p2 + p3 + p4 + p5 + p6 + p7;
+        }
+
+        @Handler
+        public Integer handle(Command8 c, Integer p1, Integer p2, Integer p3, Integer p4, Integer p5, Integer p6,
+                              Integer p7, Integer p8) {
+            return p1 + p2 + p3 + p4 + p5 + p6 + p7 + p8;
+        }
+    }
+
+    public static final class ValueProviders {
+        @Provider
+        public Integer p1() {
+            return 1;
+        }
+
+        @Provider
+        public Integer p2() {
+            return 2;
+        }
+
+        @Provider
+        public Integer p3() {
+            return 3;
+        }
+
+        @Provider
+        public Integer p4() {
+            return 4;
+        }
+
+        @Provider
+        public Integer p5() {
+            return 5;
+        }
+
+        @Provider
+        public Integer p6() {
+            return 6;
+        }
+
+        @Provider
+        public Integer p7() {
+            return 7;
+        }
+
+        @Provider
+        public Integer p8() {
+            return 8;
+        }
+    }
+
+    public static final class PassThroughMiddleware implements Middleware {
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            return next.apply(command);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.dm.core.CommandJournal;
+import org.dm.core.CommandSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link Bus#executeAsync(Object)} with {@link CommandJournal} of each fsync policy,
+ * executed on the calling thread, so only journal overhead is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    @Param({"NEVER", "INTERVAL", "ALWAYS"})
+    CommandJournal.FsyncPolicy fsync;
+
+    private Path directory;
+    private CommandJournal journal;
+    private Bus bus;
+    private Object command;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = CommandJournal.builder(directory)
+                .serializer(new IntSerializer())
+                .fsync(fsync)
+                .build();
+        bus = new BusBuilder()
+                .registerCommandHandler(new Fixtures.ArityHandlers())
+                .registerValueProvider(new Fixtures.ValueProviders())
+                .executor(Runnable::run)
+                .journal(journal)
+                .build();
+        command = Fixtures.command(0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public CompletableFuture<Object> thread1() {
+        return bus.executeAsync(command);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CompletableFuture<Object> threads4() {
+        return bus.executeAsync(command);
+    }
+
+    /**
+     * Writes only identity of the <em>Command</em>, so serialization doesn't dominate.
+     */
+    private final class IntSerializer implements CommandSerializer {
+        @Override
+        public byte[] serialize(Object command) {
+            return ByteBuffer.allocate(4).putInt(System.identityHashCode(command)).array();
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return command;
+        }
+    }
+}
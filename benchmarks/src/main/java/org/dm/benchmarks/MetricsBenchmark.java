@@ -0,0 +1,46 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Bus#execute(Object)} without metrics, with metrics ({@link BusBuilder#enableMetrics()})
+ * and with tracing enabled, but not started ({@link BusBuilder#enableTracing()}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"none", "metrics", "tracing"})
+    String collection;
+
+    private Bus bus;
+    private Object command;
+
+    @Setup
+    public void setUp() {
+        BusBuilder builder = new BusBuilder();
+        if (collection.equals("metrics")) {
+            builder.enableMetrics();
+        } else if (collection.equals("tracing")) {
+            builder.enableTracing();
+        }
+        bus = builder
+                .registerCommandHandler(new Fixtures.ArityHandlers())
+                .registerValueProvider(new Fixtures.ValueProviders())
+                .build();
+        command = Fixtures.command(1);
+    }
+
+    @Benchmark
+    public Object execute() {
+        return bus.execute(command);
+    }
+}
@@ -0,0 +1,42 @@
+package org.dm.benchmarks;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Bus#execute(Object)} through chain of 0..16 pass through {@link org.dm.core.Middleware}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MiddlewareDepthBenchmark {
+
+    @Param({"0", "1", "2", "4", "8", "16"})
+    int depth;
+
+    private Bus bus;
+    private Object command;
+
+    @Setup
+    public void setUp() {
+        BusBuilder builder = new BusBuilder()
+                .registerCommandHandler(new Fixtures.ArityHandlers())
+                .registerValueProvider(new Fixtures.ValueProviders());
+        for (int i = 0; i < depth; i++) {
+            builder.registerMiddleware(new Fixtures.PassThroughMiddleware());
+        }
+        bus = builder.build();
+        command = Fixtures.command(1);
+    }
+
+    @Benchmark
+    public Object execute() {
+        return bus.execute(command);
+    }
+}
@@ -0,0 +1,286 @@
+package org.dm.core;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static java.lang.String.format;
+
+/**
+ * Concurrency limit of <em>Commands</em>, which adapts to their observed latency
+ * (See {@link BusBuilder#registerAdaptiveLimiter(Class, AdaptiveLimiter)}).
+ *
+ * <p>Limit is adjusted with TCP Vegas like algorithm once per round trip, by mean latency of the round trip.
+ * The lowest observed latency is taken as latency without load, so estimated number of queued <em>Commands</em> is
+ * {@code limit * (1 - noLoadLatency / latency)}. While queue is short, limit grows,
+ * when queue is longer than {@code 6 * log10(limit)}, limit shrinks. So limit settles slightly above
+ * concurrency, which handler is able to serve without queueing, and excess <em>Commands</em>
+ * are rejected with {@link BulkheadFullException} before queues build up.
+ * Limit is also decreased, when <em>Command</em> is rejected further down the chain,
+ * i.e. by {@link Bulkhead} of nested <em>Command</em>. From time to time limit is halved
+ * for a moment and latency without load is measured again, so limit follows handler,
+ * which got permanently slower.
+ *
+ * <p>Permit is taken with CAS. Limit is updated by one thread at a time,
+ * samples of executions completed meanwhile are skipped, so updates are not contended.
+ */
+public final class AdaptiveLimiter extends CommandLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final int probeInterval;
+    private final LongSupplier clock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean updating = new AtomicBoolean();
+    private volatile int limit;
+
+    // guarded by updating
+    private double estimatedLimit;
+    private long noLoadLatency;
+    private int samplesSinceProbe;
+    private long windowStartedAt;
+    private long windowLatencySum;
+    private int windowSamples;
+    private int windowConcurrency;
+    private boolean windowDropped;
+    private boolean probing;
+    private long probeStartedAt;
+    private long probeLatency;
+    private int probeSamples;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private AdaptiveLimiter(Builder builder) {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.smoothing = builder.smoothing;
+        this.probeInterval = builder.probeInterval;
+        this.clock = builder.clock;
+        this.estimatedLimit = builder.initialLimit;
+        this.limit = builder.initialLimit;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    long acquire(Class<?> commandClass) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                throw new BulkheadFullException(format("Adaptive limit of command %s is reached, %d executions are in flight",
+                        commandClass.getName(),
+                        current));
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return clock.getAsLong();
+            }
+        }
+    }
+
+    @Override
+    void release(long startedAt, Throwable error) {
+        int concurrency = inFlight.getAndDecrement();
+        if (error == NOT_EXECUTED) {
+            return;
+        }
+
+        if ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            // asynchronous execution wraps rejection of downstream limit
+            error = error.getCause();
+        }
+        boolean dropped = error instanceof CommandRejectedException;
+        if (error != null && !dropped) {
+            // failure says nothing about load, its latency is not representative either
+            return;
+        }
+
+        if (updating.compareAndSet(false, true)) {
+            try {
+                update(startedAt, clock.getAsLong(), concurrency, dropped);
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return current concurrency limit
+     */
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long acceptedCount() {
+        return accepted.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    private void update(long startedAt, long now, int concurrency, boolean dropped) {
+        long latency = Math.max(1, now - startedAt);
+        if (probing) {
+            probe(startedAt, latency);
+            return;
+        }
+        if (++samplesSinceProbe >= probeInterval) {
+            startProbe(now);
+            return;
+        }
+        if (noLoadLatency == 0 || latency < noLoadLatency) {
+            noLoadLatency = latency;
+        }
+
+        windowLatencySum += latency;
+        windowSamples++;
+        windowConcurrency = Math.max(windowConcurrency, concurrency);
+        windowDropped |= dropped;
+        if (startedAt - windowStartedAt < 0) {
+            // window lasts at least one round trip, so changed limit could show up in latency
+            return;
+        }
+
+        adjust(windowLatencySum / windowSamples, windowConcurrency, windowDropped);
+        windowStartedAt = now;
+        windowLatencySum = 0;
+        windowSamples = 0;
+        windowConcurrency = 0;
+        windowDropped = false;
+    }
+
+    private void adjust(long latency, int concurrency, boolean dropped) {
+        double current = estimatedLimit;
+        double step = Math.max(1, Math.log10(current));
+        double next;
+        if (dropped) {
+            next = current - step;
+        } else if (concurrency * 2 < current) {
+            // limit is not what restricts throughput, latency tells nothing about it
+            return;
+        } else {
+            double queue = current * (1 - (double) noLoadLatency / latency);
+            if (queue <= step) {
+                next = current + 6 * step;
+            } else if (queue < 3 * step) {
+                next = current + step;
+            } else if (queue > 6 * step) {
+                next = current - step;
+            } else {
+                return;
+            }
+        }
+
+        next = Math.max(minLimit, Math.min(maxLimit, next));
+        estimatedLimit = (1 - smoothing) * current + smoothing * next;
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Halves the limit for a while, so latency without load could be measured again
+     * on <em>Commands</em> started after that.
+     */
+    private void startProbe(long now) {
+        probing = true;
+        probeStartedAt = now;
+        probeLatency = Long.MAX_VALUE;
+        probeSamples = 0;
+        limit = Math.max(minLimit, (int) (estimatedLimit / 2));
+    }
+
+    private void probe(long startedAt, long latency) {
+        if (startedAt - probeStartedAt < 0) {
+            // started before the limit was lowered
+            return;
+        }
+
+        probeLatency = Math.min(probeLatency, latency);
+        if (++probeSamples >= limit) {
+            noLoadLatency = probeLatency;
+            samplesSinceProbe = 0;
+            probing = false;
+            limit = (int) estimatedLimit;
+            windowStartedAt = startedAt;
+            windowLatencySum = 0;
+            windowSamples = 0;
+            windowConcurrency = 0;
+            windowDropped = false;
+        }
+    }
+
+    public static final class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private double smoothing = 1;
+        private int probeInterval = 1000;
+        private LongSupplier clock = System::nanoTime;
+
+        private Builder() {
+        }
+
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param smoothing weight of new limit, from 0 exclusive (limit never changes) to 1 (limit is replaced)
+         */
+        public Builder smoothing(double smoothing) {
+            if (!(smoothing > 0 && smoothing <= 1)) {
+                throw new IllegalArgumentException(format("Smoothing should be in (0, 1], but was %s", smoothing));
+            }
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * @param probeInterval number of samples, after which limit is halved and latency without load is measured again
+         */
+        public Builder probeInterval(int probeInterval) {
+            if (probeInterval <= 0) {
+                throw new IllegalArgumentException(format("Probe interval should be positive, but was %d", probeInterval));
+            }
+            this.probeInterval = probeInterval;
+            return this;
+        }
+
+        Builder clock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public AdaptiveLimiter build() {
+            if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException(format("Limits should be 0 < min <= initial <= max, but were %d, %d, %d",
+                        minLimit, initialLimit, maxLimit));
+            }
+            return new AdaptiveLimiter(this);
+        }
+    }
+}
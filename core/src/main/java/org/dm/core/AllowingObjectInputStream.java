@@ -0,0 +1,47 @@
+package org.dm.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resolves only allowed classes (See {@link CommandSerializer#java(Class[])}).
+ */
+final class AllowingObjectInputStream extends ObjectInputStream {
+    private static final List<String> ALLOWED_PACKAGES = Arrays.asList("java.lang", "java.math", "java.time", "java.util");
+
+    private final List<Class<?>> allowed;
+
+    AllowingObjectInputStream(InputStream in, List<Class<?>> allowed) throws IOException {
+        super(in);
+        this.allowed = allowed;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        Class<?> type = super.resolveClass(desc);
+        Class<?> component = type;
+        while (component.isArray()) {
+            component = component.getComponentType();
+        }
+        if (isAllowed(component)) {
+            return type;
+        }
+        throw new InvalidClassException(type.getName(), "Class is not allowed to be deserialized");
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+        throw new InvalidClassException(String.join(", ", interfaces), "Proxy is not allowed to be deserialized");
+    }
+
+    private boolean isAllowed(Class<?> type) {
+        return type.isPrimitive()
+                || type.getPackage() != null && ALLOWED_PACKAGES.contains(type.getPackage().getName())
+                || allowed.stream().anyMatch(allowedType -> allowedType.isAssignableFrom(type));
+    }
+}
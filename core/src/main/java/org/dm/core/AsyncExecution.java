@@ -0,0 +1,126 @@
+package org.dm.core;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Building blocks of asynchronous <em>Command</em> execution.
+ *
+ * <p>Synchronous part of execution ({@link Middleware} chain and <em>CommandHandler</em>)
+ * is submitted to executor as one {@link Task}. If <em>CommandHandler</em> returns
+ * {@link CompletionStage} it is not waited for, but result future is completed
+ * when this stage completes.
+ */
+final class AsyncExecution {
+
+    private AsyncExecution() {
+    }
+
+    static Function<Object, CompletableFuture<Object>> chain(List<AsyncMiddleware> middlewareList,
+                                                             Function<Object, CompletableFuture<Object>> last) {
+        return middlewareList.stream()
+                .reduce(last,
+                        (f, m) -> command -> {
+                            try {
+                                return m.executeAsync(command, f);
+                            } catch (Throwable e) {
+                                return failed(e);
+                            }
+                        },
+                        (f1, f2) -> f2);
+    }
+
+    static Function<Object, CompletableFuture<Object>> submitting(Function<Object, Object> commandProcessor, Executor executor) {
+        return command -> {
+            Task task = new Task(command, commandProcessor);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.result.completeExceptionally(e);
+            }
+            return task.result;
+        };
+    }
+
+    static Function<Object, CompletableFuture<Object>> inline(Function<Object, Object> commandProcessor) {
+        return command -> {
+            try {
+                return CompletableFuture.completedFuture(commandProcessor.apply(command));
+            } catch (Throwable e) {
+                return failed(e);
+            }
+        };
+    }
+
+    static Function<Object, Object> blocking(Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        return command -> join(asyncCommandProcessor.apply(command));
+    }
+
+    /**
+     * Waits for the result, rethrowing original exception the same way synchronous execution does.
+     */
+    static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    static final class Task implements Runnable {
+        final Object command;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final Function<Object, Object> commandProcessor;
+        /**
+         * Deadline of the thread submitting task, checked once more when task is started
+         */
+        private final Deadline deadline;
+
+        Task(Object command, Function<Object, Object> commandProcessor) {
+            this.command = command;
+            this.commandProcessor = commandProcessor;
+            this.deadline = Deadline.bound();
+        }
+
+        void reject(Throwable cause) {
+            result.completeExceptionally(cause);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object value = deadline == null ? commandProcessor.apply(command) : deadline.execute(command, commandProcessor);
+                if (value instanceof CompletionStage) {
+                    ((CompletionStage<?>) value).whenComplete((v, e) -> {
+                        if (e != null) {
+                            result.completeExceptionally(e);
+                        } else {
+                            result.complete(v);
+                        }
+                    });
+                } else {
+                    result.complete(value);
+                }
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.dm.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Non-blocking counterpart of {@link Middleware}.
+ *
+ * <p><em>AsyncMiddleware</em> gets <em>Command</em> and next step,
+ * which returns {@link CompletableFuture} of the result instead of the result itself.
+ * So pre/post processing could be done by composing futures,
+ * without blocking any thread while <em>Command</em> is being executed.
+ *
+ * <p><em>AsyncMiddleware</em> are always executed before all {@link Middleware},
+ * in order of registration. Then {@link Middleware} chain and <em>CommandHandler</em>
+ * are executed synchronously as one task of {@link Bus} executor
+ * (See {@link BusBuilder#executor(java.util.concurrent.Executor)}).
+ *
+ * <p> <b>Please, don't forget to call next.apply(command)</b>
+ * otherwise, <em>Command</em> won't be passed further.
+ *
+ * @implSpec <pre> {@code
+ *   Timer timer = Timer.start();
+ *   return next.apply(command)
+ *           .whenComplete((result, error) -> timer.stop());
+ *   }</pre>
+ */
+public interface AsyncMiddleware {
+    <R> CompletableFuture<R> executeAsync(Object command, Function<Object, CompletableFuture<R>> next);
+}
@@ -0,0 +1,108 @@
+package org.dm.core;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static java.lang.String.format;
+
+/**
+ * Executes collection of <em>Commands</em> (See {@link Bus#executeAll(Collection)}).
+ *
+ * <p><em>Commands</em> are grouped by class, groups are executed in order
+ * of the first <em>Command</em> occurrence. Group, for which batch <em>CommandHandler</em>
+ * (See {@link BatchHandler}) is resolved, goes through {@link Middleware} chain once
+ * as <em>List</em> of <em>Commands</em>. Other <em>Commands</em> are executed one by one.
+ */
+final class BatchExecution {
+    private final Function<Object, Object> commandProcessor;
+    private final Supplier<Routing> routing;
+    private final UnaryOperator<Function<Object, Object>> batchProcessing;
+    private volatile RoutedProcessor routedProcessor;
+
+    /**
+     * @param routing         current routing (See {@link BusRegistry})
+     * @param batchProcessing wraps batch {@link Middleware} chains of routing into batch processor
+     */
+    BatchExecution(Function<Object, Object> commandProcessor, Supplier<Routing> routing, UnaryOperator<Function<Object, Object>> batchProcessing) {
+        this.commandProcessor = commandProcessor;
+        this.routing = routing;
+        this.batchProcessing = batchProcessing;
+    }
+
+    List<Object> executeAll(Collection<?> commands) {
+        Object[] commandArray = commands.toArray();
+        Object[] results = new Object[commandArray.length];
+
+        Map<Class, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < commandArray.length; i++) {
+            groups.computeIfAbsent(commandArray[i].getClass(), k -> new ArrayList<>()).add(i);
+        }
+
+        // routing is read once, so batch handler resolution and batch chains can't disagree after re-registration
+        Routing current = routing.get();
+        CommandExecutor executor = current.batchExecutor;
+        Function<Object, Object> batchProcessor = batchProcessor(current);
+        groups.forEach((commandClass, indexes) -> {
+            if (executor.handlerFor(commandClass) == null) {
+                indexes.forEach(i -> results[i] = commandProcessor.apply(commandArray[i]));
+                return;
+            }
+
+            List<Object> batch = new ArrayList<>(indexes.size());
+            indexes.forEach(i -> batch.add(commandArray[i]));
+
+            List<?> batchResults = (List<?>) batchProcessor.apply(Collections.unmodifiableList(batch));
+            if (batchResults == null) {
+                return;
+            }
+            if (batchResults.size() != indexes.size()) {
+                throw new IllegalStateException(format("Batch command handler for command %s returned %d results for %d commands",
+                        commandClass.getName(),
+                        batchResults.size(),
+                        indexes.size()));
+            }
+
+            for (int i = 0; i < indexes.size(); i++) {
+                results[indexes.get(i)] = batchResults.get(i);
+            }
+        });
+
+        return Arrays.asList(results);
+    }
+
+    private Function<Object, Object> batchProcessor(Routing current) {
+        RoutedProcessor processor = routedProcessor;
+        if (processor == null || processor.routing != current) {
+            processor = new RoutedProcessor(current, batchProcessing.apply(batchRouting(current.batchChains)));
+            routedProcessor = processor;
+        }
+        return processor.processor;
+    }
+
+    /**
+     * Passes <em>List</em> of <em>Commands</em> through batch {@link Middleware} chain
+     * composed for class of <em>Commands</em> in it.
+     */
+    static Function<Object, Object> batchRouting(MiddlewareChains batchChains) {
+        return batch -> {
+            List<?> commands = (List<?>) batch;
+            if (commands.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            return batchChains.chainFor(commands.get(0).getClass()).apply(commands);
+        };
+    }
+
+    private static final class RoutedProcessor {
+        final Routing routing;
+        final Function<Object, Object> processor;
+
+        RoutedProcessor(Routing routing, Function<Object, Object> processor) {
+            this.routing = routing;
+            this.processor = processor;
+        }
+    }
+}
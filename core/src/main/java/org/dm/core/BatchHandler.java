@@ -0,0 +1,33 @@
+package org.dm.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+/**
+ * Is used to mark method as batch <em>CommandHandler</em>, which handles
+ * a group of <em>Commands</em> of the same type in one call
+ * (See {@link Bus#executeAll(java.util.Collection)}).
+ * It is registered in BusBuilder with {@link BusBuilder#registerCommandHandler(Object)}
+ * same as {@link Handler}.
+ *
+ * <p> Each method annotated with {@link BatchHandler}
+ * should have at least one parameter, which is <em>List&lt;Command&gt;</em>
+ * that will be handled by this method. Others params
+ * will be supplied by {@link Provider}.
+ *
+ * <p>Method should either return <em>List</em> of results in the same order
+ * as <em>Commands</em> are, or be void.
+ *
+ * <p>There should be <b>at most one</b> batch <em>CommandHandler</em> for each
+ * <em>Command</em>. It is possible to have both {@link Handler}
+ * and {@link BatchHandler} for the same <em>Command</em>.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value = METHOD)
+public @interface BatchHandler {
+}
@@ -0,0 +1,239 @@
+package org.dm.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent cache bounded by total weight of its entries.
+ *
+ * <p>Keys are spread over segments, each is access ordered map guarded by its own lock.
+ * Weight is tracked for the whole cache, so any entry not heavier than max weight is cached
+ * regardless of number of segments. When cache is over max weight, least recently used entries
+ * of the segment of added entry are evicted first, and then ones of other segments.
+ * Expired entries are removed when they are looked up or when segment is evicted.
+ */
+final class BoundedCache {
+
+    private final Segment[] segments;
+    private final int mask;
+    private final long maxWeight;
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    BoundedCache(long maxWeight, int concurrency) {
+        int size = 1;
+        while (size < concurrency) {
+            size <<= 1;
+        }
+        this.segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment();
+        }
+        this.mask = size - 1;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return cached value or null if there is no such or it is expired
+     */
+    Object get(Object key, long now) {
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            Entry entry = segment.entries.get(key);
+            if (entry != null && entry.expiresAt - now <= 0) {
+                segment.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+
+            hits.increment();
+            return entry.value;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    void put(Object key, Object value, Class<?> type, long weight, long now, long ttlNanos) {
+        if (weight > maxWeight) {
+            return;
+        }
+
+        int index = indexFor(key);
+        Segment segment = segments[index];
+        segment.lock();
+        try {
+            segment.remove(key);
+            segment.entries.put(key, new Entry(value, type, weight, now + ttlNanos));
+            this.weight.addAndGet(weight);
+            evict(segment, key, now);
+        } finally {
+            segment.unlock();
+        }
+
+        for (int i = 1; i <= mask && this.weight.get() > maxWeight; i++) {
+            Segment other = segments[(index + i) & mask];
+            other.lock();
+            try {
+                evict(other, null, now);
+            } finally {
+                other.unlock();
+            }
+        }
+    }
+
+    void remove(Object key) {
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            segment.remove(key);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Removes entry only if it still has given value.
+     */
+    void remove(Object key, Object value) {
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            Entry entry = segment.entries.get(key);
+            if (entry != null && entry.value == value) {
+                segment.remove(key);
+            }
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    /**
+     * Removes all entries cached for <em>Commands</em> of given type and its subtypes.
+     */
+    void removeAll(Class<?> type) {
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                Iterator<Entry> iterator = segment.entries.values().iterator();
+                while (iterator.hasNext()) {
+                    Entry entry = iterator.next();
+                    if (type.isAssignableFrom(entry.type)) {
+                        iterator.remove();
+                        weight.addAndGet(-entry.weight);
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.entries.values().forEach(entry -> weight.addAndGet(-entry.weight));
+                segment.entries.clear();
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    long weight() {
+        return weight.get();
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Evicts least recently used entries of segment, while cache is over max weight.
+     *
+     * @param added key of entry just added to the segment, it is kept
+     */
+    private void evict(Segment segment, Object added, long now) {
+        Iterator<Map.Entry<Object, Entry>> iterator = segment.entries.entrySet().iterator();
+        while (weight.get() > maxWeight && iterator.hasNext()) {
+            Map.Entry<Object, Entry> next = iterator.next();
+            if (next.getKey().equals(added)) {
+                return;
+            }
+
+            iterator.remove();
+            weight.addAndGet(-next.getValue().weight);
+            if (next.getValue().expiresAt - now > 0) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private Segment segmentFor(Object key) {
+        return segments[indexFor(key)];
+    }
+
+    private int indexFor(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private final class Segment extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        private void remove(Object key) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                weight.addAndGet(-removed.weight);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final Class<?> type;
+        private final long weight;
+        private final long expiresAt;
+
+        private Entry(Object value, Class<?> type, long weight, long expiresAt) {
+            this.value = value;
+            this.type = type;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.dm.core;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Limits number of concurrent executions of <em>Commands</em>
+ * (See {@link BusBuilder#registerBulkhead(Class, Bulkhead)}), so one slow <em>Command</em> type
+ * can't occupy all caller or executor threads.
+ *
+ * <p>If there is no free permit, <em>Command</em> waits for it at most max wait time
+ * and then is rejected with {@link BulkheadFullException}. Permit is taken with single CAS,
+ * when it is available, waiting is done only when bulkhead is full. Synchronous <em>Command</em>
+ * waits in the caller thread, asynchronous one is queued and is submitted by the thread releasing
+ * a permit, so the caller is never blocked.
+ */
+public final class Bulkhead extends CommandLimit {
+
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private Bulkhead(int maxConcurrent, long maxWaitNanos) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException(format("Max concurrent executions should be positive, but was %d", maxConcurrent));
+        }
+        if (maxWaitNanos < 0) {
+            throw new IllegalArgumentException(format("Max wait should not be negative, but was %d", maxWaitNanos));
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitNanos = maxWaitNanos;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * @return bulkhead, which rejects <em>Command</em> at once, if it is full
+     */
+    public static Bulkhead of(int maxConcurrent) {
+        return new Bulkhead(maxConcurrent, 0);
+    }
+
+    /**
+     * @return bulkhead, which lets <em>Command</em> wait for free permit at most max wait time
+     */
+    public static Bulkhead of(int maxConcurrent, long maxWait, TimeUnit unit) {
+        return new Bulkhead(maxConcurrent, unit.toNanos(maxWait));
+    }
+
+    @Override
+    long acquire(Class<?> commandClass) {
+        if (!permits.tryAcquire() && !await()) {
+            rejected.increment();
+            throw full(commandClass);
+        }
+        accepted.increment();
+        return 0;
+    }
+
+    @Override
+    CompletableFuture<Long> acquireAsync(Class<?> commandClass) {
+        if (permits.tryAcquire()) {
+            accepted.increment();
+            return ACQUIRED;
+        }
+        if (maxWaitNanos == 0) {
+            rejected.increment();
+            return AsyncExecution.failed(full(commandClass));
+        }
+
+        Waiter waiter = new Waiter();
+        waiter.timeout = BusTimer.SCHEDULER.schedule(() -> {
+            if (waiter.claim()) {
+                waiters.remove(waiter);
+                rejected.increment();
+                waiter.completeExceptionally(full(commandClass));
+            }
+        }, maxWaitNanos, TimeUnit.NANOSECONDS);
+        waiters.add(waiter);
+        // permit could be released before waiter was queued
+        handOver();
+        return waiter;
+    }
+
+    @Override
+    void release(long token, Throwable error) {
+        permits.release();
+        handOver();
+    }
+
+    public int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public long acceptedCount() {
+        return accepted.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gives free permits to queued asynchronous <em>Commands</em>.
+     */
+    private void handOver() {
+        while (!waiters.isEmpty() && permits.tryAcquire()) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null || !waiter.claim()) {
+                permits.release();
+                continue;
+            }
+
+            waiter.timeout.cancel(false);
+            accepted.increment();
+            waiter.complete(0L);
+        }
+    }
+
+    private BulkheadFullException full(Class<?> commandClass) {
+        return new BulkheadFullException(format("Bulkhead of command %s is full, %d executions are in flight",
+                commandClass.getName(),
+                maxConcurrent));
+    }
+
+    private boolean await() {
+        if (maxWaitNanos == 0) {
+            return false;
+        }
+
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Asynchronous <em>Command</em> waiting for permit, completed either by {@link #handOver()} or by timeout,
+     * whichever claims it first.
+     */
+    private static final class Waiter extends CompletableFuture<Long> {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private ScheduledFuture<?> timeout;
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
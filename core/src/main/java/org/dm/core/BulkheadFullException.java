@@ -0,0 +1,13 @@
+package org.dm.core;
+
+/**
+ * Thrown when <em>Command</em> is rejected, because its {@link Bulkhead} is full.
+ */
+public class BulkheadFullException extends CommandRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,9 @@
 package org.dm.core;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -7,14 +11,36 @@ import java.util.function.Function;
  * If CommandHandler has additional parameters, it will be populated
  * with value provided by <em>ValueProvider</em>(class methods annotated with {@link Provider})
  *
- * <p>Every Command will first go through chain of {@link Middleware}.
+ * <p>Every Command will first go through chain of {@link AsyncMiddleware}
+ * and {@link Middleware}.
  */
 public class Bus {
 
     private Function<Object, Object> commandProcessor;
+    private Function<Object, CompletableFuture<Object>> asyncCommandProcessor;
+    private PrimitiveExecution primitiveExecution;
+    private BatchExecution batchExecution;
+    private BusRegistry registry;
+    private List<ValueProvider> cachedValueProviders;
+    private BusMetrics metrics;
+    private BusTracer tracer;
 
-    Bus(Function<Object, Object> commandProcessor) {
+    Bus(Function<Object, Object> commandProcessor,
+        Function<Object, CompletableFuture<Object>> asyncCommandProcessor,
+        PrimitiveExecution primitiveExecution,
+        BatchExecution batchExecution,
+        BusRegistry registry,
+        List<ValueProvider> cachedValueProviders,
+        BusMetrics metrics,
+        BusTracer tracer) {
         this.commandProcessor = commandProcessor;
+        this.asyncCommandProcessor = asyncCommandProcessor;
+        this.primitiveExecution = primitiveExecution;
+        this.batchExecution = batchExecution;
+        this.registry = registry;
+        this.cachedValueProviders = cachedValueProviders;
+        this.metrics = metrics;
+        this.tracer = tracer;
     }
 
     /**
@@ -22,10 +48,132 @@ public class Bus {
      * @param command Command to be sent for execution
      * @return R which is the result of CommandHandler method execution (See {@link Handler})
      * @throws IllegalStateException containing original cause
+     * @throws DeadlineExceededException if it is nested command and deadline of outer one is expired (See {@link Deadline})
      */
     public <R> R execute(Object command) {
+        Deadline.checkBound();
         //noinspection unchecked
         return (R) commandProcessor.apply(command);
     }
 
+    /**
+     * Same as {@link #execute(Object)} for CommandHandler returning int.
+     * If CommandHandler method returns int and every {@link Middleware} applicable to the command
+     * is {@link PrimitiveAwareMiddleware}, result is not boxed on its way from CommandHandler.
+     * @throws IllegalStateException if result is not int
+     */
+    public int executeInt(Object command) {
+        Deadline.checkBound();
+        return primitiveExecution.executeInt(command);
+    }
+
+    /**
+     * Same as {@link #executeInt(Object)} for CommandHandler returning long.
+     * @throws IllegalStateException if result is not long
+     */
+    public long executeLong(Object command) {
+        Deadline.checkBound();
+        return primitiveExecution.executeLong(command);
+    }
+
+    /**
+     * Same as {@link #executeInt(Object)} for CommandHandler returning boolean.
+     * @throws IllegalStateException if result is not boolean
+     */
+    public boolean executeBoolean(Object command) {
+        Deadline.checkBound();
+        return primitiveExecution.executeBoolean(command);
+    }
+
+    /**
+     * Asynchronous command execution.
+     * {@link Middleware} chain and CommandHandler are executed on executor
+     * configured with {@link BusBuilder#executor(java.util.concurrent.Executor)}.
+     * If CommandHandler returns {@link java.util.concurrent.CompletionStage},
+     * returned future is completed with its result.
+     * @param command Command to be sent for execution
+     * @return future of R which is the result of CommandHandler method execution (See {@link Handler}),
+     * completed exceptionally with original exception if execution fails
+     */
+    public <R> CompletableFuture<R> executeAsync(Object command) {
+        //noinspection unchecked
+        return (CompletableFuture<R>) (CompletableFuture<?>) asyncCommandProcessor.apply(command);
+    }
+
+    /**
+     * Same as {@link #execute(Object)}, but <em>Command</em> is rejected with {@link DeadlineExceededException},
+     * if deadline is expired before it is started. Deadline is bound to the thread executing
+     * {@link Middleware} chain and CommandHandler (See {@link Deadline#current()}).
+     */
+    public <R> R execute(Object command, Deadline deadline) {
+        //noinspection unchecked
+        return (R) deadline.execute(command, commandProcessor);
+    }
+
+    /**
+     * Same as {@link #executeAsync(Object)}, but <em>Command</em> is rejected with {@link DeadlineExceededException},
+     * if deadline is expired before it is submitted or before it is started by executor.
+     * When deadline is passed, returned future is completed with {@link DeadlineExceededException}
+     * and deadline is cancelled, as it is when returned future is cancelled.
+     */
+    public <R> CompletableFuture<R> executeAsync(Object command, Deadline deadline) {
+        //noinspection unchecked
+        return (CompletableFuture<R>) (CompletableFuture<?>) deadline.executeAsync(command, asyncCommandProcessor);
+    }
+
+    /**
+     * Synchronous execution of several commands.
+     * Commands are grouped by class. If there is batch CommandHandler (See {@link BatchHandler})
+     * for the group - {@link Middleware} chain is executed once for the whole group, with List of commands,
+     * and batch CommandHandler handles them in one call.
+     * Otherwise commands are executed one by one, same as with {@link #execute(Object)}.
+     * @param commands Commands to be sent for execution
+     * @return List of R which are the results of commands, in the same order as commands are
+     * @throws IllegalStateException containing original cause
+     */
+    public <R> List<R> executeAll(Collection<?> commands) {
+        Deadline.checkBound();
+        //noinspection unchecked
+        return (List<R>) batchExecution.executeAll(commands);
+    }
+
+    /**
+     * @return registry to register and unregister <em>CommandHandlers</em> and {@link Middleware}
+     * without building new bus
+     */
+    public BusRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * @return cache statistics of every <em>ValueProvider</em> with caching scope (See {@link Provider#scope()})
+     */
+    public List<ValueProviderStatistics> valueProviderStatistics() {
+        return cachedValueProviders.stream()
+                .map(ValueProvider::statistics)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return metrics of <em>Command</em> executions
+     * @throws IllegalStateException if metrics are not enabled with {@link BusBuilder#enableMetrics()}
+     */
+    public BusMetrics metrics() {
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics are not enabled, see BusBuilder.enableMetrics()");
+        }
+        return metrics;
+    }
+
+    /**
+     * @return tracer of <em>Command</em> executions
+     * @throws IllegalStateException if tracing is not enabled with {@link BusBuilder#enableTracing()}
+     */
+    public BusTracer tracer() {
+        if (tracer == null) {
+            throw new IllegalStateException("Tracing is not enabled, see BusBuilder.enableTracing()");
+        }
+        return tracer;
+    }
+
 }
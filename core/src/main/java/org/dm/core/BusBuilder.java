@@ -1,10 +1,14 @@
 package org.dm.core;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 import static java.lang.String.format;
 /**
@@ -29,44 +33,469 @@ import static java.lang.String.format;
  * BusBuilder.registerMiddleware(m1).registerMiddleware(m2)
  * on <em>Command</em> execution there could be such sequence:
  * m1.pre -> m2.pre -> m2.post -> m1.post
+ * <em>Middleware</em> could be restricted to some <em>Command</em> types
+ * with {@link #registerMiddleware(Middleware, Predicate)}.
  *
+ * <p>{@link AsyncMiddleware} are executed in order as well, but always before
+ * all {@link Middleware}.
  *
+ * <p>Methods of <em>CommandHandler</em>/<em>ValueProvider</em> classes indexed at compile time
+ * (See {@link BusIndex}) are taken from index, other classes are scanned with reflection.
+ *
+ * <p>For asynchronous execution ({@link Bus#executeAsync(Object)}) executor
+ * could be configured with {@link #executor(Executor)} (See {@link BusExecutors}),
+ * by default {@link ForkJoinPool#commonPool()} is used.
  */
 public class BusBuilder {
 
-    private LinkedList<Middleware> middlewareList = new LinkedList<>();
-
-    private List<Object> commandHandlerCandidates = new ArrayList<>();
-    private List<Object> valueProviderCandidates = new ArrayList<>();
+    private LinkedList<MiddlewareChains.Registration> middlewareList = new LinkedList<>();
+    private LinkedList<AsyncMiddleware> asyncMiddlewareList = new LinkedList<>();
+    private Executor executor = ForkJoinPool.commonPool();
+    private Map<Class, Function<Object, Object>> orderingKeys = new HashMap<>();
+    private Map<Class, Function<Object, Object>> coalescingKeys = new HashMap<>();
+    private Map<Class<?>, List<CommandLimit>> limits = new LinkedHashMap<>();
+    private CommandJournal journal;
+    private Map<Class<?>, RemoteRoute> remoteRoutes = new LinkedHashMap<>();
+    private Map<Class<?>, FanOutExecution.FanOut> fanOuts = new LinkedHashMap<>();
+    private ForkJoinPool fanOutPool = ForkJoinPool.commonPool();
+    private Executor providerExecutor;
+    private int metricsSamplingInterval;
+    private int tracingCapacity;
+    private BusIndexes busIndexes;
+
+    private List<Candidate> commandHandlerCandidates = new ArrayList<>();
+    private List<Candidate> valueProviderCandidates = new ArrayList<>();
 
     public BusBuilder registerCommandHandler(Object commandHandler) {
-        commandHandlerCandidates.add(commandHandler);
+        commandHandlerCandidates.add(Candidate.of(commandHandler));
+        return this;
+    }
+
+    /**
+     * Registers <em>CommandHandler</em>, which instance is obtained from supplier only
+     * when any of its methods is executed for the first time.
+     * Methods are resolved from given class on {@link #build()}.
+     */
+    public <T> BusBuilder registerCommandHandler(Class<T> commandHandlerClass, Supplier<? extends T> commandHandler) {
+        commandHandlerCandidates.add(Candidate.lazy(commandHandlerClass, commandHandler));
         return this;
     }
 
 
     public BusBuilder registerValueProvider(Object valueProvider) {
-        valueProviderCandidates.add(valueProvider);
+        valueProviderCandidates.add(Candidate.of(valueProvider));
+        return this;
+    }
+
+    /**
+     * Registers <em>ValueProvider</em>, which instance is obtained from supplier only
+     * when any of its values is provided for the first time.
+     * Methods are resolved from given class on {@link #build()}.
+     */
+    public <T> BusBuilder registerValueProvider(Class<T> valueProviderClass, Supplier<? extends T> valueProvider) {
+        valueProviderCandidates.add(Candidate.lazy(valueProviderClass, valueProvider));
         return this;
     }
 
     public BusBuilder registerMiddleware(Middleware middleware) {
-        middlewareList.addFirst(middleware);
+        return registerMiddleware(middleware, commandType -> true);
+    }
+
+    /**
+     * Registers <em>Middleware</em> executed only for <em>Commands</em> matching predicate
+     * (See {@link CommandTypes}), i.e. transactional <em>Middleware</em> for write <em>Commands</em>:
+     * {@code registerMiddleware(transactional, CommandTypes.annotatedWith(Write.class))}.
+     * Order of execution is the same as for all <em>Middleware</em>.
+     *
+     * @param appliesTo is tested once for each concrete <em>Command</em> class
+     */
+    public BusBuilder registerMiddleware(Middleware middleware, Predicate<Class<?>> appliesTo) {
+        middlewareList.addFirst(new MiddlewareChains.Registration(Objects.requireNonNull(middleware), Objects.requireNonNull(appliesTo)));
+        return this;
+    }
+
+    public BusBuilder registerAsyncMiddleware(AsyncMiddleware middleware) {
+        asyncMiddlewareList.addFirst(middleware);
+        return this;
+    }
+
+    public BusBuilder executor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+        return this;
+    }
+
+    /**
+     * Values of <em>CommandHandler</em> params are provided in parallel on given executor,
+     * if <em>CommandHandler</em> has more than one of them. Each value is computed as soon as
+     * values it depends on (params of {@link Provider} method) are computed, so i.e. three independent
+     * lookups take as long as the slowest one. By default values are provided by the thread executing
+     * <em>CommandHandler</em>, one by one. Executor should not be the one <em>Commands</em> are executed on
+     * (See {@link #executor(Executor)}), otherwise it could be exhausted by <em>CommandHandlers</em> waiting for values.
+     */
+    public BusBuilder providerExecutor(Executor providerExecutor) {
+        this.providerExecutor = Objects.requireNonNull(providerExecutor);
+        return this;
+    }
+
+    /**
+     * Makes asynchronous executions ({@link Bus#executeAsync(Object)}) of <em>Commands</em>
+     * with the same ordering key strictly ordered. <em>Commands</em> with different keys
+     * are still executed in parallel. Key is shared by all <em>Command</em> types, so i.e.
+     * all <em>Commands</em> of the same account could be ordered by account id.
+     * <em>Commands</em> with null key are not ordered.
+     *
+     * @param commandType  <em>Command</em> class, its subclasses are ordered as well
+     * @param keyExtractor extracts ordering key from <em>Command</em>
+     */
+    public <C> BusBuilder registerOrderingKey(Class<C> commandType, Function<? super C, ?> keyExtractor) {
+        if (orderingKeys.containsKey(commandType)) {
+            throw new IllegalStateException(format("Ordering key for command %s is already registered", commandType.getName()));
+        }
+
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> extractor = (Function<Object, Object>) keyExtractor;
+        orderingKeys.put(commandType, extractor);
+        return this;
+    }
+
+    /**
+     * Coalesces identical <em>Commands</em> - equal <em>Commands</em> of given type or its subtypes.
+     * While <em>Command</em> is being executed, identical ones are not executed, but get the same
+     * result or exception. Result is not kept after execution completes.
+     */
+    public BusBuilder registerCoalescing(Class<?> commandType) {
+        return registerCoalescing(commandType, Function.identity());
+    }
+
+    /**
+     * Coalesces <em>Commands</em> of given type or its subtypes with equal keys.
+     * <em>Commands</em> with null key are not coalesced.
+     *
+     * @param commandType  <em>Command</em> class, its subclasses are coalesced as well
+     * @param keyExtractor extracts key from <em>Command</em>, <em>Commands</em> of different classes are never coalesced
+     */
+    public <C> BusBuilder registerCoalescing(Class<C> commandType, Function<? super C, ?> keyExtractor) {
+        if (coalescingKeys.containsKey(commandType)) {
+            throw new IllegalStateException(format("Coalescing key for command %s is already registered", commandType.getName()));
+        }
+
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> extractor = (Function<Object, Object>) keyExtractor;
+        coalescingKeys.put(commandType, extractor);
+        return this;
+    }
+
+    /**
+     * Limits number of concurrent executions of <em>Commands</em> of given type and its subtypes
+     * (they share the same bulkhead). Limit is checked before any middleware, <em>Command</em>
+     * over the limit is rejected with {@link BulkheadFullException}.
+     */
+    public BusBuilder registerBulkhead(Class<?> commandType, Bulkhead bulkhead) {
+        limits.computeIfAbsent(commandType, k -> new ArrayList<>()).add(Objects.requireNonNull(bulkhead));
+        return this;
+    }
+
+    /**
+     * Limits rate of executions of <em>Commands</em> of given type and its subtypes
+     * (they share the same limit). Limit is checked before any middleware, <em>Command</em>
+     * over the limit is rejected with {@link RateLimitExceededException}.
+     */
+    public BusBuilder registerRateLimiter(Class<?> commandType, RateLimiter rateLimiter) {
+        limits.computeIfAbsent(commandType, k -> new ArrayList<>()).add(Objects.requireNonNull(rateLimiter));
+        return this;
+    }
+
+    /**
+     * Limits number of concurrent executions of <em>Commands</em> of given type and its subtypes
+     * with limit, which adapts to their latency. <em>Command</em> over the limit is rejected
+     * with {@link BulkheadFullException}.
+     */
+    public BusBuilder registerAdaptiveLimiter(Class<?> commandType, AdaptiveLimiter adaptiveLimiter) {
+        limits.computeIfAbsent(commandType, k -> new ArrayList<>()).add(Objects.requireNonNull(adaptiveLimiter));
+        return this;
+    }
+
+    /**
+     * Same as {@link #registerFanOut(Class, Function, Collector, int)}, parallelism is limited only by the pool.
+     */
+    public <C> BusBuilder registerFanOut(Class<C> commandType,
+                                         Function<? super C, ? extends List<?>> splitter,
+                                         Collector<Object, ?, ?> reducer) {
+        return registerFanOut(commandType, splitter, reducer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Executes <em>Command</em> of given type or its subtype as sub-commands: they are executed in parallel
+     * on ForkJoin pool (See {@link #fanOutPool(ForkJoinPool)}), the same way as {@link Bus#execute(Object)} does,
+     * and their results are combined with reducer, in order of sub-commands, i.e.
+     * {@code registerFanOut(RecomputePrices.class, RecomputePrices::perProduct, Collectors.toList())}.
+     * When any sub-command fails, sub-commands not started yet are skipped and failure is thrown.
+     *
+     * @param parallelism max number of sub-commands of one <em>Command</em> executed at the same time
+     */
+    @SuppressWarnings("unchecked")
+    public <C> BusBuilder registerFanOut(Class<C> commandType,
+                                         Function<? super C, ? extends List<?>> splitter,
+                                         Collector<Object, ?, ?> reducer,
+                                         int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException(format("Parallelism should be positive, but was %d", parallelism));
+        }
+        if (fanOuts.containsKey(commandType)) {
+            throw new IllegalStateException(format("Fan out for command %s is already registered", commandType.getName()));
+        }
+        fanOuts.put(commandType, new FanOutExecution.FanOut((Function<Object, ? extends List<?>>) splitter, Objects.requireNonNull(reducer), parallelism));
+        return this;
+    }
+
+    /**
+     * Pool of sub-commands (See {@link #registerFanOut(Class, Function, Collector, int)}),
+     * by default {@link ForkJoinPool#commonPool()} is used.
+     */
+    public BusBuilder fanOutPool(ForkJoinPool pool) {
+        this.fanOutPool = Objects.requireNonNull(pool);
+        return this;
+    }
+
+    /**
+     * Sends <em>Commands</em> of given type and its subtypes to another JVM, where they are executed
+     * by {@link RemoteServer}, instead of local middleware and <em>CommandHandler</em>.
+     * Ordered <em>Commands</em> (See {@link #registerOrderingKey(Class, Function)}) are sent
+     * once previous <em>Command</em> of their lane is responded. Route is not closed by the bus.
+     */
+    public BusBuilder registerRemoteRoute(Class<?> commandType, RemoteRoute route) {
+        if (remoteRoutes.containsKey(commandType)) {
+            throw new IllegalStateException(format("Remote route for command %s is already registered", commandType.getName()));
+        }
+        remoteRoutes.put(commandType, Objects.requireNonNull(route));
+        return this;
+    }
+
+    /**
+     * Appends asynchronously executed <em>Commands</em> to journal, so <em>Commands</em> interrupted
+     * by process exit are replayed on {@link #build()} of the next bus with the same journal.
+     * Journal is not closed by the bus.
+     *
+     * @throws IllegalStateException on {@link #build()} if journal is already used by another bus
+     */
+    public BusBuilder journal(CommandJournal journal) {
+        this.journal = Objects.requireNonNull(journal);
+        return this;
+    }
+
+    /**
+     * Enables collecting of execution counters and latencies per <em>Command</em> type,
+     * available with {@link Bus#metrics()}. Latencies are recorded for every 16th <em>Command</em>
+     * executed by each thread.
+     */
+    public BusBuilder enableMetrics() {
+        return enableMetrics(16);
+    }
+
+    /**
+     * Same as {@link #enableMetrics()}, but latencies are recorded for every
+     * samplingInterval-th <em>Command</em>, so 1 means every <em>Command</em> is measured.
+     *
+     * @param samplingInterval positive power of two
+     */
+    public BusBuilder enableMetrics(int samplingInterval) {
+        if (samplingInterval <= 0 || Integer.bitCount(samplingInterval) != 1) {
+            throw new IllegalArgumentException(format("Sampling interval should be positive power of two, but was %d", samplingInterval));
+        }
+        this.metricsSamplingInterval = samplingInterval;
+        return this;
+    }
+
+    /**
+     * Enables tracing of {@link Middleware}, <em>CommandHandler</em> and <em>ValueProvider</em> steps
+     * of <em>Command</em> execution, controlled with {@link Bus#tracer()}. 1024 recent traces are kept.
+     */
+    public BusBuilder enableTracing() {
+        return enableTracing(1024);
+    }
+
+    /**
+     * Same as {@link #enableTracing()}, but given number of recent traces is kept.
+     *
+     * @param capacity positive power of two
+     */
+    public BusBuilder enableTracing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(format("Tracing capacity should be positive power of two, but was %d", capacity));
+        }
+        this.tracingCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * By default {@link BusIndexes#load()} is used.
+     */
+    public BusBuilder busIndexes(BusIndexes busIndexes) {
+        this.busIndexes = Objects.requireNonNull(busIndexes);
         return this;
     }
 
     public Bus build() {
-        return new Bus(middlewareList.stream()
-                .reduce((Function<Object, Object>) new CommandExecutor(buildHandlersMapping(this.commandHandlerCandidates, buildProviderMapping(this.valueProviderCandidates))),
-                        (f, m) -> command -> m.execute(command, f),
-                        (f1, f2) -> f2));
+        BusMetrics metrics = metricsSamplingInterval > 0 ? new BusMetrics(metricsSamplingInterval) : null;
+        BusTracer tracer = tracingCapacity > 0 ? new BusTracer(tracingCapacity, JfrEvents.create()) : null;
+        Executor providerExecutor = this.providerExecutor;
+
+        BusIndexes index = busIndexes != null ? busIndexes : BusIndexes.load();
+        Map<Class, Map<String, ValueProvider>> valueProvidersMapping = buildProviderMapping(this.valueProviderCandidates, index);
+        // Deadline of current Command could be injected into CommandHandlers, unless there is custom provider of it
+        valueProvidersMapping.computeIfAbsent(Deadline.class, type -> Collections.singletonMap("deadline",
+                new ValueProvider((Invoker.Call0) Deadline::current, new TypeDescription(Deadline.class, "deadline"))));
+        ValueProviderFactory.resolveDependencies(valueProvidersMapping);
+        List<ValueProvider> cachedProviders = cachedProviders(valueProvidersMapping);
+        int commandSlots = assignCommandSlots(cachedProviders);
+
+        Map<Class, Map<String, ValueProvider>> measuredProvidersMapping = metrics == null ? null : wrapped(valueProvidersMapping, metrics::measuring);
+        Map<Class, Map<String, ValueProvider>> tracedProvidersMapping = tracer == null ? null : wrapped(valueProvidersMapping, tracer::tracing);
+        BusRegistry registry = new BusRegistry(
+                (handlers, middleware) -> routing(handlers, middleware, valueProvidersMapping, measuredProvidersMapping, tracedProvidersMapping, metrics, tracer, index, providerExecutor),
+                commandHandlerCandidates,
+                middlewareList);
+
+        Function<Object, Object> commandProcessor = scoped(commandSlots, registry::execute);
+        Function<Object, Object> syncCommandProcessor = synchronous(commandProcessor);
+
+        CoalescedExecution coalescing = coalescingKeys.isEmpty() ? null : new CoalescedExecution(new HashMap<>(coalescingKeys));
+        Function<Object, CompletableFuture<Object>> asyncCommandProcessor = AsyncExecution.chain(asyncMiddlewareList,
+                AsyncExecution.submitting(coalescing == null ? commandProcessor : coalescing.executing(commandProcessor), executor));
+        if (!remoteRoutes.isEmpty()) {
+            RemoteExecution remote = new RemoteExecution(remoteRoutes);
+            syncCommandProcessor = remote.synchronous(syncCommandProcessor);
+            asyncCommandProcessor = remote.asynchronous(asyncCommandProcessor);
+        }
+        // lanes are outside of remote hop, so ordered Commands routed to remote server are sent one after another
+        if (!orderingKeys.isEmpty()) {
+            asyncCommandProcessor = new OrderedExecution(new HashMap<>(orderingKeys), asyncCommandProcessor);
+        }
+        Function<Object, CompletableFuture<Object>> replayProcessor = asyncCommandProcessor;
+        if (journal != null) {
+            asyncCommandProcessor = journal.asynchronous(asyncCommandProcessor, executor);
+        }
+        LimitedExecution limited = limits.isEmpty() ? null : new LimitedExecution(limits);
+        if (limited != null) {
+            syncCommandProcessor = limited.synchronous(syncCommandProcessor);
+            asyncCommandProcessor = limited.asynchronous(asyncCommandProcessor);
+        }
+        if (coalescing != null) {
+            syncCommandProcessor = coalescing.synchronous(syncCommandProcessor);
+            asyncCommandProcessor = coalescing.asynchronous(asyncCommandProcessor);
+        }
+        if (!fanOuts.isEmpty()) {
+            FanOutExecution fanOut = new FanOutExecution(fanOuts, fanOutPool);
+            syncCommandProcessor = fanOut.synchronous(syncCommandProcessor);
+            asyncCommandProcessor = fanOut.asynchronous(asyncCommandProcessor);
+        }
+
+        // primitive results are taken unboxed only if Commands don't need anything but Middleware chain
+        boolean primitiveBypass = syncCommandProcessor == commandProcessor && metrics == null && tracer == null;
+        Bus bus = new Bus(syncCommandProcessor,
+                asyncCommandProcessor,
+                new PrimitiveExecution(syncCommandProcessor, primitiveBypass ? registry : null, commandSlots),
+                new BatchExecution(syncCommandProcessor,
+                        registry::routing,
+                        batchRouting -> limited == null
+                                ? synchronous(scoped(commandSlots, batchRouting))
+                                : limited.batch(synchronous(scoped(commandSlots, batchRouting)))),
+                registry,
+                cachedProviders,
+                metrics,
+                tracer);
+        if (journal != null) {
+            journal.replay(replayProcessor);
+        }
+        return bus;
+    }
+
+    private static Function<Object, Object> scoped(int commandSlots, Function<Object, Object> commandProcessor) {
+        return commandSlots == 0 ? commandProcessor : ExecutionContext.scoped(commandSlots, commandProcessor);
+    }
+
+    private static List<ValueProvider> cachedProviders(Map<Class, Map<String, ValueProvider>> valueProvidersMapping) {
+        List<ValueProvider> cachedProviders = new ArrayList<>();
+        valueProvidersMapping.values().forEach(providers -> providers.values().stream()
+                .filter(provider -> provider.scope() != Provider.Scope.NONE)
+                .forEach(cachedProviders::add));
+        return cachedProviders;
+    }
+
+    /**
+     * @return number of {@link Provider.Scope#COMMAND} <em>ValueProviders</em>
+     */
+    private static int assignCommandSlots(List<ValueProvider> cachedProviders) {
+        int slot = 0;
+        for (ValueProvider provider : cachedProviders) {
+            if (provider instanceof ValueProvider.CommandScoped) {
+                ((ValueProvider.CommandScoped) provider).slot = slot++;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Composes routing snapshot of given <em>CommandHandlers</em> and <em>Middleware</em> (See {@link BusRegistry}).
+     */
+    private Routing routing(List<Candidate> handlers,
+                            List<MiddlewareChains.Registration> middleware,
+                            Map<Class, Map<String, ValueProvider>> valueProvidersMapping,
+                            Map<Class, Map<String, ValueProvider>> measuredProvidersMapping,
+                            Map<Class, Map<String, ValueProvider>> tracedProvidersMapping,
+                            BusMetrics metrics,
+                            BusTracer tracer,
+                            BusIndexes index,
+                            Executor providerExecutor) {
+        CommandExecutor commandExecutor = new CommandExecutor(buildHandlersMapping(handlers, valueProvidersMapping, (candidate, mapping) -> CommandHandlerFactory.create(candidate, mapping, index, providerExecutor)));
+        CommandExecutor batchExecutor = new CommandExecutor(buildHandlersMapping(handlers, valueProvidersMapping, (candidate, mapping) -> CommandHandlerFactory.createBatch(candidate, mapping, index, providerExecutor)));
+
+        MiddlewareChains chains;
+        PrimitiveChains primitiveChains = null;
+        if (metrics == null && tracer == null) {
+            chains = new MiddlewareChains(middleware, commandExecutor::handling);
+            primitiveChains = new PrimitiveChains(middleware, commandExecutor);
+        } else {
+            CommandExecutor measuredExecutor = metrics == null ? null : new CommandExecutor(buildHandlersMapping(handlers, measuredProvidersMapping, (candidate, mapping) -> CommandHandlerFactory.create(candidate, mapping, index, providerExecutor)));
+            CommandExecutor tracedExecutor = tracer == null ? null : new CommandExecutor(buildHandlersMapping(handlers, tracedProvidersMapping, (candidate, mapping) -> CommandHandlerFactory.create(candidate, mapping, index, providerExecutor)));
+            chains = new MiddlewareChains(middleware, commandExecutor::handling,
+                    metrics, measuredExecutor == null ? null : measuredExecutor::handling,
+                    tracer, tracedExecutor == null ? null : tracedExecutor::handling);
+        }
+        // chains for registered Command types are composed upfront, for their subtypes - on the first execution
+        commandExecutor.registeredTypes().forEach(chains::chainFor);
+
+        MiddlewareChains batchChains = MiddlewareChains.batch(middleware, batchExecutor::handling);
+        batchExecutor.registeredTypes().forEach(batchChains::chainFor);
+        return new Routing(handlers, middleware, chains, primitiveChains, batchChains, batchExecutor);
+    }
+
+    private static Map<Class, Map<String, ValueProvider>> wrapped(Map<Class, Map<String, ValueProvider>> valueProvidersMapping,
+                                                                 Function<ValueProvider, ValueProvider> wrapper) {
+        Map<Class, Map<String, ValueProvider>> wrapped = new HashMap<>();
+        valueProvidersMapping.forEach((type, providers) -> {
+            Map<String, ValueProvider> wrappedProviders = new HashMap<>();
+            providers.forEach((name, provider) -> wrappedProviders.put(name, wrapper.apply(provider)));
+            wrapped.put(type, wrappedProviders);
+        });
+        return wrapped;
+    }
+
+    private Function<Object, Object> synchronous(Function<Object, Object> commandProcessor) {
+        if (asyncMiddlewareList.isEmpty()) {
+            return commandProcessor;
+        }
+
+        return AsyncExecution.blocking(AsyncExecution.chain(asyncMiddlewareList, AsyncExecution.inline(commandProcessor)));
     }
 
-    private Map<Class, CommandHandler> buildHandlersMapping(List<Object> commandHandlerCandidates, Map<Class, Map<String, ValueProvider>> valueProvidersMapping) {
+    private Map<Class, CommandHandler> buildHandlersMapping(List<Candidate> commandHandlerCandidates,
+                                                            Map<Class, Map<String, ValueProvider>> valueProvidersMapping,
+                                                            BiFunction<Candidate, Map<Class, Map<String, ValueProvider>>, List<CommandHandlerFactory.Tuple<Class, CommandHandler>>> factory) {
         Map<Class, CommandHandler> handlerMap = new HashMap<>();
 
         commandHandlerCandidates.stream()
-                .flatMap(candidate -> CommandHandlerFactory.create(candidate, valueProvidersMapping).stream())
+                .flatMap(candidate -> factory.apply(candidate, valueProvidersMapping).stream())
                 .forEach(handlerTuple -> {
                     Class CommandClass = handlerTuple.getFirst();
                     CommandHandler commandHandler = handlerTuple.getSecond();
@@ -84,11 +513,11 @@ public class BusBuilder {
         return handlerMap;
     }
 
-    private Map<Class, Map<String, ValueProvider>> buildProviderMapping(List<Object> valueProviderCandidates) {
+    private Map<Class, Map<String, ValueProvider>> buildProviderMapping(List<Candidate> valueProviderCandidates, BusIndexes index) {
         Map<Class, Map<String, ValueProvider>> providerMap = new HashMap<>();
 
         valueProviderCandidates.stream()
-                .flatMap(candidate -> ValueProviderFactory.create(candidate).stream())
+                .flatMap(candidate -> ValueProviderFactory.create(candidate, index).stream())
                 .forEach(provider -> {
                     Class valueType = provider.providedValueDescription.type;
                     String valueName = provider.providedValueDescription.name;
@@ -109,55 +538,6 @@ public class BusBuilder {
         return providerMap;
     }
 
-    private static final class CommandExecutor implements Function<Object, Object> {
-        private Map<Class, CommandHandler> commandHandlers;
-
-        CommandExecutor(Map<Class, CommandHandler> commandHandlers) {
-            this.commandHandlers = commandHandlers;
-        }
-
-        @Override
-        public Object apply(Object command) {
-            CommandHandler commandHandler = commandHandlers.get(command.getClass());
-            if (commandHandler == null) {
-                throw new IllegalStateException(format("Command handler for command %s not found.", command.getClass().getName()));
-            }
-
-            return commandHandler.invoke(command);
-        }
-    }
-
-    static final class CommandHandler {
-        private Object target;
-        private Method method;
-        private List<ValueProvider> providers;
-
-        CommandHandler(Object target, Method method, List<ValueProvider> providers) {
-            this.target = target;
-            this.method = method;
-            this.providers = providers;
-        }
-
-        Object invoke(Object cmd) {
-            try {
-                return method.invoke(target, buildParams(cmd));
-            } catch (InvocationTargetException e) {
-                if (e.getCause() instanceof RuntimeException) {
-                    throw (RuntimeException) e.getCause();
-                }
-                throw new IllegalStateException(e);
-            } catch (IllegalAccessException e) {
-                throw new IllegalStateException(e);
-            }
-        }
-
-        private Object[] buildParams(Object cmd) {
-            return Stream.concat(Arrays.stream(new Object[]{cmd}), providers.stream().map(ValueProvider::invoke))
-                    .toArray(Object[]::new);
-        }
-
-    }
-
     static final class TypeDescription {
         Class type;
         String name;
@@ -168,25 +548,4 @@ public class BusBuilder {
         }
     }
 
-    static final class ValueProvider {
-        private Object target;
-        private Method method;
-        private TypeDescription providedValueDescription;
-
-        ValueProvider(Object target, Method method, TypeDescription providedValueDescription) {
-            this.target = target;
-            this.method = method;
-            this.providedValueDescription = providedValueDescription;
-        }
-
-        Object invoke() {
-            try {
-                return method.invoke(target);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new IllegalStateException("Failed to execute value provider", e);
-            }
-        }
-
-    }
-
 }
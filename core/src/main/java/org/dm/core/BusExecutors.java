@@ -0,0 +1,67 @@
+package org.dm.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for executors, which could be used for asynchronous
+ * <em>Command</em> execution (See {@link BusBuilder#executor(java.util.concurrent.Executor)}).
+ *
+ * <p>Executors are not shut down by {@link Bus} - it is up to the caller.
+ */
+public final class BusExecutors {
+
+    private BusExecutors() {
+    }
+
+    /**
+     * @param threads number of threads
+     * @return pool of fixed number of daemon threads
+     */
+    public static ExecutorService fixedThreadPool(int threads) {
+        return Executors.newFixedThreadPool(threads, daemonThreadFactory("commandbus-"));
+    }
+
+    /**
+     * @param parallelism parallelism level of the pool
+     * @return work-stealing pool, which is a good fit for CPU bound <em>CommandHandlers</em>
+     */
+    public static ExecutorService forkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Starts new virtual thread for each <em>Command</em>, which is a good fit
+     * for I/O bound <em>CommandHandlers</em>. Available on JDK 21+.
+     *
+     * @return virtual thread per task executor
+     * @throws UnsupportedOperationException if virtual threads are not supported by current JDK
+     */
+    public static ExecutorService virtualThreadPerCommand() {
+        Method factory;
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by current JDK, JDK 21+ is required", e);
+        }
+
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create virtual thread executor", e);
+        }
+    }
+
+    static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package org.dm.core;
+
+import java.util.List;
+
+/**
+ * Compile time index of {@link Handler}, {@link BatchHandler} and {@link Provider} methods.
+ *
+ * <p>Implementations are generated by {@code commandbus processor} (one per package)
+ * and registered as {@link java.util.ServiceLoader} services. When class of registered
+ * <em>CommandHandler</em>/<em>ValueProvider</em> is indexed, its methods are taken from index
+ * and invoked directly, so there is no classpath scanning or reflection (See {@link BusIndexes}).
+ */
+public interface BusIndex {
+
+    /**
+     * @return indexed methods of all classes of the package
+     */
+    List<IndexedMethod> methods();
+}
@@ -0,0 +1,117 @@
+package org.dm.core;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * All {@link BusIndex}es, found with {@link ServiceLoader}.
+ */
+public final class BusIndexes {
+
+    private static final BusIndexes EMPTY = new BusIndexes(Collections.emptySet(), Collections.emptyMap());
+
+    private final Set<String> indexedPackages;
+    private final Map<Class<?>, List<IndexedMethod>> methodsByOwner;
+
+    private BusIndexes(Set<String> indexedPackages, Map<Class<?>, List<IndexedMethod>> methodsByOwner) {
+        this.indexedPackages = indexedPackages;
+        this.methodsByOwner = methodsByOwner;
+    }
+
+    /**
+     * @return indexes visible from thread context class loader
+     * (or class loader of this class, if there is no context class loader)
+     */
+    public static BusIndexes load() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return load(classLoader != null ? classLoader : BusIndexes.class.getClassLoader());
+    }
+
+    public static BusIndexes load(ClassLoader classLoader) {
+        Set<String> indexedPackages = new TreeSet<>();
+        List<IndexedMethod> methods = new ArrayList<>();
+        for (BusIndex index : ServiceLoader.load(BusIndex.class, classLoader)) {
+            indexedPackages.add(packageOf(index.getClass()));
+            methods.addAll(index.methods());
+        }
+        if (indexedPackages.isEmpty()) {
+            return EMPTY;
+        }
+
+        return new BusIndexes(Collections.unmodifiableSet(indexedPackages), methods.stream()
+                .collect(groupingBy(method -> method.owner, LinkedHashMap::new, toList())));
+    }
+
+    public boolean isEmpty() {
+        return methodsByOwner.isEmpty();
+    }
+
+    /**
+     * @return true if index is generated for the package (not including its subpackages), so the package
+     * was compiled with {@code commandbus processor} and need not be scanned
+     */
+    public boolean isIndexed(String packageName) {
+        return indexedPackages.contains(packageName);
+    }
+
+    /**
+     * @return packages with generated index from base package and its subpackages,
+     * other packages under base package are not indexed and should be scanned
+     */
+    public Set<String> indexedPackages(String basePackage) {
+        return indexedPackages.stream()
+                .filter(indexedPackage -> basePackage.isEmpty() || indexedPackage.equals(basePackage) || indexedPackage.startsWith(basePackage + "."))
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * @return indexed classes from base package (or its subpackages),
+     * having {@link Handler} or {@link BatchHandler} methods
+     */
+    public Set<Class<?>> commandHandlerClasses(String basePackage) {
+        return classes(basePackage, method -> method.kind != IndexedMethod.Kind.PROVIDER);
+    }
+
+    /**
+     * @return indexed classes from base package (or its subpackages), having {@link Provider} methods
+     */
+    public Set<Class<?>> valueProviderClasses(String basePackage) {
+        return classes(basePackage, method -> method.kind == IndexedMethod.Kind.PROVIDER);
+    }
+
+    /**
+     * @return indexed methods of given kind, declared or inherited by class,
+     * or null if class is not indexed and should be scanned
+     */
+    List<IndexedMethod> methodsOf(Class<?> owner, IndexedMethod.Kind kind) {
+        List<IndexedMethod> methods = methodsByOwner.get(owner);
+        if (methods == null || methods.stream().anyMatch(IndexedMethod::isScanned)) {
+            return null;
+        }
+
+        return methods.stream()
+                .filter(method -> method.kind == kind)
+                .collect(toList());
+    }
+
+    private Set<Class<?>> classes(String basePackage, Predicate<IndexedMethod> filter) {
+        return methodsByOwner.entrySet().stream()
+                .filter(entry -> isInPackage(entry.getKey(), basePackage))
+                .filter(entry -> entry.getValue().stream().anyMatch(filter))
+                .map(Map.Entry::getKey)
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+    private static String packageOf(Class<?> type) {
+        String name = type.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot < 0 ? "" : name.substring(0, lastDot);
+    }
+
+    private static boolean isInPackage(Class<?> type, String basePackage) {
+        String name = type.getName();
+        return basePackage.isEmpty() || name.startsWith(basePackage + ".");
+    }
+}
@@ -0,0 +1,214 @@
+package org.dm.core;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * Metrics of <em>Command</em> executions, collected per concrete <em>Command</em> class
+ * (See {@link BusBuilder#enableMetrics()}).
+ *
+ * <p>Counters are striped ({@link java.util.concurrent.atomic.LongAdder}) and latency histograms
+ * have fixed size, so collecting doesn't lock or allocate. Counters are exact, but as reading clock
+ * is the most expensive part of measuring, latencies are recorded only for randomly sampled
+ * <em>Commands</em> (See {@link BusBuilder#enableMetrics(int)}). There are separate chains
+ * for sampled and not sampled execution, so the latter doesn't pay for measuring at all.
+ * Measuring code is composed into {@link Middleware} chain of each <em>Command</em> class,
+ * so there is no cost if metrics are not enabled.
+ * Batch executions (See {@link Bus#executeAll(java.util.Collection)}) are not measured.
+ */
+public final class BusMetrics {
+    private static final String DOMAIN = "org.dm.core";
+
+    private final Map<Class<?>, CommandMetrics> metrics = new ConcurrentHashMap<>();
+    private final ThreadLocal<Accumulator> accumulator = ThreadLocal.withInitial(Accumulator::new);
+    private final int samplingMask;
+    private volatile String mBeansBusName;
+
+    /**
+     * @param samplingInterval power of two
+     */
+    BusMetrics(int samplingInterval) {
+        this.samplingMask = samplingInterval - 1;
+    }
+
+    /**
+     * @return metrics of each <em>Command</em> class executed so far
+     */
+    public Map<Class<?>, CommandMetricsSnapshot> snapshot() {
+        Map<Class<?>, CommandMetricsSnapshot> snapshot = new LinkedHashMap<>();
+        metrics.forEach((type, commandMetrics) -> snapshot.put(type, commandMetrics.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * Registers {@link CommandMetricsMBean} for each <em>Command</em> class in platform MBean server,
+     * as {@code org.dm.core:type=CommandMetrics,bus=<busName>,command=<class name>}.
+     * MBeans of <em>Command</em> classes, executed for the first time later, are registered as well.
+     */
+    public synchronized void registerMBeans(String busName) {
+        if (mBeansBusName != null) {
+            throw new IllegalStateException(format("MBeans are already registered for bus %s", mBeansBusName));
+        }
+        mBeansBusName = busName;
+        metrics.values().forEach(this::registerMBean);
+    }
+
+    public synchronized void unregisterMBeans() {
+        if (mBeansBusName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (CommandMetrics commandMetrics : metrics.values()) {
+            try {
+                ObjectName name = objectName(mBeansBusName, commandMetrics);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                throw new IllegalStateException(format("Failed to unregister MBean of command %s", commandMetrics.getCommandType()), e);
+            }
+        }
+        mBeansBusName = null;
+    }
+
+    CommandMetrics forType(Class<?> commandType) {
+        return metrics.computeIfAbsent(commandType, type -> {
+            CommandMetrics commandMetrics = new CommandMetrics(type);
+            if (mBeansBusName != null) {
+                registerMBean(commandMetrics);
+            }
+            return commandMetrics;
+        });
+    }
+
+    /**
+     * Counts executions and passes sampled ones to measured chain.
+     */
+    Function<Object, Object> sampling(CommandMetrics commandMetrics, Function<Object, Object> chain, Function<Object, Object> measuredChain) {
+        return command -> {
+            commandMetrics.started.increment();
+            try {
+                return (ThreadLocalRandom.current().nextInt() & samplingMask) == 0
+                        ? measuredChain.apply(command)
+                        : chain.apply(command);
+            } catch (RuntimeException | Error e) {
+                commandMetrics.errors.increment();
+                throw e;
+            } finally {
+                commandMetrics.finished.increment();
+            }
+        };
+    }
+
+    /**
+     * The first step of measured {@link Middleware} chain.
+     */
+    Function<Object, Object> measuringTotal(CommandMetrics commandMetrics, Function<Object, Object> next) {
+        return command -> {
+            Accumulator current = accumulator.get();
+            long handlerNanos = current.handlerNanos;
+            long providerNanos = current.providerNanos;
+            long start = System.nanoTime();
+            try {
+                return next.apply(command);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                commandMetrics.totalTime.record(elapsed);
+                commandMetrics.middlewareTime.record(elapsed - (current.handlerNanos - handlerNanos));
+                // nested Command execution is accounted as part of outer CommandHandler time
+                current.handlerNanos = handlerNanos;
+                current.providerNanos = providerNanos;
+            }
+        };
+    }
+
+    /**
+     * The last step of measured {@link Middleware} chain.
+     */
+    Function<Object, Object> measuringHandler(CommandMetrics commandMetrics, Function<Object, Object> handling) {
+        return command -> {
+            Accumulator current = accumulator.get();
+            long providerNanos = current.providerNanos;
+            long start = System.nanoTime();
+            try {
+                return handling.apply(command);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                long provided = current.providerNanos - providerNanos;
+                commandMetrics.handlerTime.record(elapsed - provided);
+                commandMetrics.providerTime.record(provided);
+                current.handlerNanos += elapsed;
+            }
+        };
+    }
+
+    /**
+     * @return <em>ValueProvider</em> for <em>CommandHandlers</em> of measured chains
+     */
+    ValueProvider measuring(ValueProvider valueProvider) {
+        return new MeasuredValueProvider(valueProvider);
+    }
+
+    private void registerMBean(CommandMetrics commandMetrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(commandMetrics, objectName(mBeansBusName, commandMetrics));
+        } catch (JMException e) {
+            throw new IllegalStateException(format("Failed to register MBean of command %s", commandMetrics.getCommandType()), e);
+        }
+    }
+
+    private static ObjectName objectName(String busName, CommandMetrics commandMetrics) throws JMException {
+        return new ObjectName(format("%s:type=CommandMetrics,bus=%s,command=%s",
+                DOMAIN,
+                ObjectName.quote(busName),
+                ObjectName.quote(commandMetrics.getCommandType())));
+    }
+
+    /**
+     * Time spent by current thread in <em>CommandHandlers</em> and <em>ValueProviders</em>
+     * of sampled <em>Command</em> execution.
+     */
+    private static final class Accumulator {
+        long handlerNanos;
+        long providerNanos;
+    }
+
+    private final class MeasuredValueProvider extends ValueProvider {
+        private final ValueProvider delegate;
+
+        MeasuredValueProvider(ValueProvider delegate) {
+            super(delegate.invoker, delegate.providedValueDescription, delegate.dependencyDescriptions);
+            this.delegate = delegate;
+            this.dependencies = delegate.dependencies;
+        }
+
+        @Override
+        Provider.Scope scope() {
+            return delegate.scope();
+        }
+
+        @Override
+        Object invoke(DependencyValues dependencyValues) {
+            long start = System.nanoTime();
+            try {
+                return delegate.invoke(dependencyValues);
+            } finally {
+                accumulator.get().providerNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        ValueProviderStatistics statistics() {
+            return delegate.statistics();
+        }
+    }
+}
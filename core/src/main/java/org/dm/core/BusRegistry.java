@@ -0,0 +1,88 @@
+package org.dm.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Registers and unregisters <em>CommandHandlers</em> and {@link Middleware} of built {@link Bus}
+ * (See {@link Bus#registry()}).
+ *
+ * <p>Each change composes new routing snapshot from scratch, the same way {@link BusBuilder#build()} does,
+ * and swaps it atomically, so changes are serialized and relatively expensive, but <em>Command</em>
+ * execution takes just one volatile read of current snapshot. <em>Commands</em> in flight complete
+ * with the snapshot they started with. <em>ValueProviders</em> and other settings of the bus don't change.
+ */
+public final class BusRegistry {
+
+    private final Routing.Factory factory;
+    private volatile Routing routing;
+
+    BusRegistry(Routing.Factory factory, List<Candidate> commandHandlers, List<MiddlewareChains.Registration> middleware) {
+        this.factory = factory;
+        this.routing = factory.create(new ArrayList<>(commandHandlers), new ArrayList<>(middleware));
+    }
+
+    /**
+     * @throws IllegalStateException if <em>CommandHandler</em> for any of its <em>Commands</em> is already registered,
+     *                               then nothing is changed
+     */
+    public synchronized BusRegistry registerCommandHandler(Object commandHandler) {
+        List<Candidate> commandHandlers = new ArrayList<>(routing.commandHandlers);
+        commandHandlers.add(Candidate.of(Objects.requireNonNull(commandHandler)));
+        routing = factory.create(commandHandlers, new ArrayList<>(routing.middleware));
+        return this;
+    }
+
+    /**
+     * Unregisters <em>CommandHandler</em> instance registered with bus or with this registry.
+     *
+     * @return false if there is no such
+     */
+    public synchronized boolean unregisterCommandHandler(Object commandHandler) {
+        List<Candidate> commandHandlers = new ArrayList<>(routing.commandHandlers);
+        if (!commandHandlers.removeIf(candidate -> candidate.isOf(commandHandler))) {
+            return false;
+        }
+        routing = factory.create(commandHandlers, new ArrayList<>(routing.middleware));
+        return true;
+    }
+
+    /**
+     * Registered <em>Middleware</em> is executed after all registered before, as with {@link BusBuilder}.
+     */
+    public BusRegistry registerMiddleware(Middleware middleware) {
+        return registerMiddleware(middleware, commandType -> true);
+    }
+
+    public synchronized BusRegistry registerMiddleware(Middleware middleware, Predicate<Class<?>> appliesTo) {
+        List<MiddlewareChains.Registration> registrations = new ArrayList<>(routing.middleware);
+        registrations.add(0, new MiddlewareChains.Registration(Objects.requireNonNull(middleware), Objects.requireNonNull(appliesTo)));
+        routing = factory.create(new ArrayList<>(routing.commandHandlers), registrations);
+        return this;
+    }
+
+    /**
+     * @return false if <em>Middleware</em> is not registered
+     */
+    public synchronized boolean unregisterMiddleware(Middleware middleware) {
+        List<MiddlewareChains.Registration> registrations = new ArrayList<>(routing.middleware);
+        if (!registrations.removeIf(registration -> registration.middleware == middleware)) {
+            return false;
+        }
+        routing = factory.create(new ArrayList<>(routing.commandHandlers), registrations);
+        return true;
+    }
+
+    /**
+     * Executes <em>Command</em> with current routing, just one volatile read.
+     */
+    Object execute(Object command) {
+        return routing.chains.apply(command);
+    }
+
+    Routing routing() {
+        return routing;
+    }
+}
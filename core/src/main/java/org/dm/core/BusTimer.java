@@ -0,0 +1,24 @@
+package org.dm.core;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Single daemon thread shared by all buses, started on the first use. Runs timeouts of {@link Deadline}s
+ * and delays of asynchronous <em>Commands</em> waiting for {@link CommandLimit}, so no caller thread is blocked.
+ * Tasks should be short, they only complete futures.
+ */
+final class BusTimer {
+
+    static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "commandbus-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    private BusTimer() {
+    }
+}
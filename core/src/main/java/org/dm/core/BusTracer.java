@@ -0,0 +1,221 @@
+package org.dm.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Traces steps of <em>Command</em> execution - each {@link Middleware}, <em>CommandHandler</em>
+ * and <em>ValueProvider</em> (See {@link BusBuilder#enableTracing(int)}).
+ *
+ * <p>Traces of recent <em>Commands</em> are kept in fixed size ring buffer, which is written
+ * without locks - each trace claims the next slot with one atomic increment and overwrites the oldest trace,
+ * and could be dumped any time with {@link #dump()}. On Java 11+ each step is also emitted as
+ * {@code org.dm.core.Dispatch} Java Flight Recorder event, so it is seen in recordings together with GC, locks and IO.
+ *
+ * <p>Traced steps are composed into separate {@link Middleware} chain of each <em>Command</em> class,
+ * so until tracing is started with {@link #start()} <em>Command</em> execution costs just one more branch.
+ */
+public final class BusTracer {
+
+    private final AtomicReferenceArray<CommandTrace> traces;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadLocal<Recording> current = new ThreadLocal<>();
+    private final JfrEvents jfr;
+    private volatile boolean started;
+
+    /**
+     * @param capacity power of two
+     * @param jfr      null if events shouldn't be emitted
+     */
+    BusTracer(int capacity, JfrEvents jfr) {
+        this.traces = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.jfr = jfr;
+    }
+
+    public void start() {
+        started = true;
+    }
+
+    /**
+     * <em>Commands</em> in flight are still traced, recorded traces are kept.
+     */
+    public void stop() {
+        started = false;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return false if Java Flight Recorder isn't available (Java 8)
+     */
+    public boolean isEmittingFlightRecorderEvents() {
+        return jfr != null;
+    }
+
+    /**
+     * @return number of traces recorded so far, including overwritten ones
+     */
+    public long recordedCount() {
+        return sequence.get();
+    }
+
+    /**
+     * @return recent traces, the oldest first
+     */
+    public List<CommandTrace> dump() {
+        List<CommandTrace> dump = new ArrayList<>(traces.length());
+        for (int i = 0; i < traces.length(); i++) {
+            CommandTrace trace = traces.get(i);
+            if (trace != null) {
+                dump.add(trace);
+            }
+        }
+        dump.sort(Comparator.comparingLong(CommandTrace::getSequence));
+        return dump;
+    }
+
+    /**
+     * Passes <em>Commands</em> to traced chain while tracing is started.
+     */
+    Function<Object, Object> switching(Function<Object, Object> chain, Function<Object, Object> tracedChain) {
+        return command -> started ? tracedChain.apply(command) : chain.apply(command);
+    }
+
+    /**
+     * The first step of traced {@link Middleware} chain.
+     */
+    Function<Object, Object> tracingCommand(Class<?> commandClass, Function<Object, Object> next) {
+        return command -> {
+            Recording outer = current.get();
+            Recording recording = new Recording(commandClass);
+            current.set(recording);
+            Throwable failure = null;
+            try {
+                return next.apply(command);
+            } catch (RuntimeException | Error e) {
+                failure = e;
+                throw e;
+            } finally {
+                // nested Command execution is traced separately
+                current.set(outer);
+                record(recording, failure);
+            }
+        };
+    }
+
+    Function<Object, Object> tracingStep(CommandTrace.Stage stage, String name, Function<Object, Object> next) {
+        return command -> {
+            Recording recording = current.get();
+            Frame frame = recording.enter(stage, name);
+            try {
+                return next.apply(command);
+            } finally {
+                recording.exit(frame);
+            }
+        };
+    }
+
+    /**
+     * @return <em>ValueProvider</em> for <em>CommandHandlers</em> of traced chains
+     */
+    ValueProvider tracing(ValueProvider valueProvider) {
+        return new TracedValueProvider(valueProvider);
+    }
+
+    private void record(Recording recording, Throwable failure) {
+        long totalNanos = System.nanoTime() - recording.start;
+        List<CommandTrace.Span> spans = new ArrayList<>(recording.frames.size());
+        for (Frame frame : recording.frames) {
+            spans.add(new CommandTrace.Span(frame.stage, frame.name, frame.depth, frame.startNanos, frame.durationNanos));
+        }
+        long next = sequence.getAndIncrement();
+        traces.set((int) (next & mask), new CommandTrace(next, recording.commandType, Thread.currentThread().getName(), totalNanos, failure, spans));
+    }
+
+    /**
+     * Steps of <em>Command</em> execution traced by current thread so far.
+     */
+    private final class Recording {
+        final Class<?> commandType;
+        final long start = System.nanoTime();
+        final List<Frame> frames = new ArrayList<>();
+        int depth;
+
+        Recording(Class<?> commandType) {
+            this.commandType = commandType;
+        }
+
+        Frame enter(CommandTrace.Stage stage, String name) {
+            Frame frame = new Frame(stage, name, depth++, System.nanoTime() - start, jfr == null ? null : jfr.begin());
+            frames.add(frame);
+            return frame;
+        }
+
+        void exit(Frame frame) {
+            frame.durationNanos = System.nanoTime() - start - frame.startNanos;
+            depth--;
+            if (frame.event != null) {
+                jfr.commit(frame.event, commandType, frame.stage, frame.name);
+            }
+        }
+    }
+
+    private static final class Frame {
+        final CommandTrace.Stage stage;
+        final String name;
+        final int depth;
+        final long startNanos;
+        final Object event;
+        long durationNanos;
+
+        Frame(CommandTrace.Stage stage, String name, int depth, long startNanos, Object event) {
+            this.stage = stage;
+            this.name = name;
+            this.depth = depth;
+            this.startNanos = startNanos;
+            this.event = event;
+        }
+    }
+
+    private final class TracedValueProvider extends ValueProvider {
+        private final ValueProvider delegate;
+
+        TracedValueProvider(ValueProvider delegate) {
+            super(delegate.invoker, delegate.providedValueDescription, delegate.dependencyDescriptions);
+            this.delegate = delegate;
+            this.dependencies = delegate.dependencies;
+        }
+
+        @Override
+        Provider.Scope scope() {
+            return delegate.scope();
+        }
+
+        @Override
+        Object invoke(DependencyValues dependencyValues) {
+            Recording recording = current.get();
+            if (recording == null) {
+                return delegate.invoke(dependencyValues);
+            }
+            Frame frame = recording.enter(CommandTrace.Stage.PROVIDER, providedValueDescription.name);
+            try {
+                return delegate.invoke(dependencyValues);
+            } finally {
+                recording.exit(frame);
+            }
+        }
+
+        @Override
+        ValueProviderStatistics statistics() {
+            return delegate.statistics();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.dm.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.annotation.ElementType.TYPE;
+
+/**
+ * Marks <em>Command</em>, which result could be reused for equal <em>Commands</em>
+ * by {@link CachingMiddleware}, i.e. query or idempotent <em>Command</em>.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value = TYPE)
+public @interface Cacheable {
+
+    /**
+     * Time to live of cached result, 0 - default of {@link CachingMiddleware}
+     */
+    long ttl() default 0;
+
+    TimeUnit ttlUnit() default TimeUnit.SECONDS;
+}
@@ -0,0 +1,330 @@
+package org.dm.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import static java.lang.String.format;
+
+/**
+ * {@link Middleware}, which returns cached result for equal <em>Command</em>
+ * without passing it further, so neither other <em>Middleware</em> nor <em>CommandHandler</em> is executed.
+ *
+ * <p><em>Command</em> is cached if its class is annotated with {@link Cacheable}
+ * or matches predicate registered with {@link Builder#cache(Predicate)}.
+ * <em>Command</em> itself (its equals/hashCode) is the key of the result,
+ * unless key extractor is registered for its type with {@link Builder#key(Class, Function)}.
+ * Results are cached until their time to live is over or until they are evicted - cache is bounded
+ * by total weight of results (See {@link BoundedCache}). Exceptions are not cached, result, which is
+ * {@link CompletableFuture}, is not cached if it has failed and is removed when it fails later.
+ *
+ * <p>Cached results are invalidated, when <em>Command</em> registered with
+ * {@link Builder#invalidateOn(Class, Class[])} is executed successfully, so middleware
+ * should be applied to such <em>Commands</em> as well:
+ *
+ * <pre>{@code
+ * CachingMiddleware cache = CachingMiddleware.builder()
+ *         .ttl(30, TimeUnit.SECONDS)
+ *         .maxWeight(10_000)
+ *         .invalidateOn(UpdatePrice.class, GetPrice.class)
+ *         .build();
+ *
+ * new BusBuilder()
+ *         .registerMiddleware(cache, cache.commandTypes())
+ * }</pre>
+ */
+public final class CachingMiddleware implements Middleware {
+
+    private static final Object NULL = new Object();
+
+    private final BoundedCache cache;
+    private final long ttlNanos;
+    private final ToLongFunction<Object> weigher;
+    private final List<Predicate<Class<?>>> cached;
+    private final Map<Class<?>, Function<Object, ?>> keyExtractors;
+    private final Map<Class<?>, Set<Class<?>>> invalidations;
+    private final AtomicLong generation = new AtomicLong();
+    private final ClassValue<Policy> policies = new ClassValue<Policy>() {
+        @Override
+        protected Policy computeValue(Class<?> type) {
+            return policy(type);
+        }
+    };
+
+    private CachingMiddleware(Builder builder) {
+        this.cache = new BoundedCache(builder.maxWeight, builder.concurrency);
+        this.ttlNanos = builder.ttlNanos;
+        this.weigher = builder.weigher;
+        this.cached = new ArrayList<>(builder.cached);
+        this.keyExtractors = new LinkedHashMap<>(builder.keyExtractors);
+        this.invalidations = new LinkedHashMap<>(builder.invalidations);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public <R> R execute(Object command, Function<Object, R> next) {
+        Policy policy = policies.get(command.getClass());
+        if (policy == Policy.NONE) {
+            return next.apply(command);
+        }
+
+        R result = policy.ttlNanos > 0 ? cached(policy, command, next) : next.apply(command);
+        if (policy.invalidated != null) {
+            invalidate(policy.invalidated);
+        }
+        return result;
+    }
+
+    /**
+     * @return predicate matching <em>Command</em> types, which are cached or invalidate cached results,
+     * i.e. types this middleware should be applied to
+     */
+    public Predicate<Class<?>> commandTypes() {
+        return type -> policies.get(type) != Policy.NONE;
+    }
+
+    /**
+     * Removes cached result of <em>Command</em>.
+     */
+    public void invalidate(Object command) {
+        Policy policy = policies.get(command.getClass());
+        if (policy.ttlNanos > 0) {
+            generation.incrementAndGet();
+            cache.remove(policy.key(command));
+        }
+    }
+
+    /**
+     * Removes cached results of all <em>Commands</em> of given type and its subtypes.
+     */
+    public void invalidateAll(Class<?> commandType) {
+        generation.incrementAndGet();
+        cache.removeAll(commandType);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    public long hitCount() {
+        return cache.hitCount();
+    }
+
+    public long missCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * @return number of results evicted before their time to live is over
+     */
+    public long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long weight() {
+        return cache.weight();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R cached(Policy policy, Object command, Function<Object, R> next) {
+        Object key = policy.key(command);
+        long now = System.nanoTime();
+        Object value = cache.get(key, now);
+        if (value != null) {
+            return value == NULL ? null : (R) value;
+        }
+
+        long startGeneration = generation.get();
+        R result = next.apply(command);
+        if (result instanceof CompletableFuture && ((CompletableFuture<?>) result).isCompletedExceptionally()) {
+            return result;
+        }
+        if (generation.get() == startGeneration) {
+            cache.put(key, result == null ? NULL : result, command.getClass(), weigher.applyAsLong(result), now, policy.ttlNanos);
+            if (generation.get() != startGeneration) {
+                // Invalidated while result was being stored - it might be stale
+                cache.remove(key);
+            } else if (result instanceof CompletableFuture) {
+                ((CompletableFuture<?>) result).whenComplete((completed, e) -> {
+                    if (e != null) {
+                        cache.remove(key, result);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    private void invalidate(Set<Class<?>> types) {
+        if (types.contains(Object.class)) {
+            invalidateAll();
+            return;
+        }
+
+        generation.incrementAndGet();
+        types.forEach(cache::removeAll);
+    }
+
+    private Policy policy(Class<?> type) {
+        Cacheable cacheable = type.getAnnotation(Cacheable.class);
+        long ttl = 0;
+        if (cacheable != null || cached.stream().anyMatch(predicate -> predicate.test(type))) {
+            ttl = cacheable != null && cacheable.ttl() > 0 ? cacheable.ttlUnit().toNanos(cacheable.ttl()) : ttlNanos;
+        }
+
+        Function<Object, ?> keyExtractor = keyExtractors.entrySet().stream()
+                .filter(entry -> entry.getKey().isAssignableFrom(type))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+
+        Set<Class<?>> invalidated = null;
+        for (Map.Entry<Class<?>, Set<Class<?>>> invalidation : invalidations.entrySet()) {
+            if (invalidation.getKey().isAssignableFrom(type)) {
+                invalidated = invalidated == null ? new LinkedHashSet<>() : invalidated;
+                invalidated.addAll(invalidation.getValue());
+            }
+        }
+
+        if (ttl == 0 && invalidated == null) {
+            return Policy.NONE;
+        }
+        return new Policy(type, ttl, keyExtractor, invalidated);
+    }
+
+    /**
+     * How <em>Commands</em> of particular class are cached, resolved once per class.
+     */
+    private static final class Policy {
+        static final Policy NONE = new Policy(null, 0, null, null);
+
+        final Class<?> type;
+        final long ttlNanos;
+        final Function<Object, ?> keyExtractor;
+        /**
+         * Types, which results are invalidated by <em>Command</em>, {@code Object} - all results
+         */
+        final Set<Class<?>> invalidated;
+
+        Policy(Class<?> type, long ttlNanos, Function<Object, ?> keyExtractor, Set<Class<?>> invalidated) {
+            this.type = type;
+            this.ttlNanos = ttlNanos;
+            this.keyExtractor = keyExtractor;
+            this.invalidated = invalidated;
+        }
+
+        Object key(Object command) {
+            return keyExtractor == null ? command : new CommandKey(type, keyExtractor.apply(command));
+        }
+    }
+
+    public static final class Builder {
+        private long maxWeight = 10_000;
+        private int concurrency = 16;
+        private long ttlNanos = TimeUnit.MINUTES.toNanos(1);
+        private ToLongFunction<Object> weigher = result -> 1;
+        private final List<Predicate<Class<?>>> cached = new ArrayList<>();
+        private final Map<Class<?>, Function<Object, ?>> keyExtractors = new LinkedHashMap<>();
+        private final Map<Class<?>, Set<Class<?>>> invalidations = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Caches <em>Commands</em> matching predicate (See {@link CommandTypes})
+         * in addition to ones annotated with {@link Cacheable}.
+         */
+        public Builder cache(Predicate<Class<?>> commandTypes) {
+            cached.add(commandTypes);
+            return this;
+        }
+
+        /**
+         * @param keyExtractor extracts key of cached result from <em>Command</em> of given type or its subtype
+         */
+        @SuppressWarnings("unchecked")
+        public <C> Builder key(Class<C> commandType, Function<? super C, ?> keyExtractor) {
+            keyExtractors.put(commandType, (Function<Object, ?>) keyExtractor);
+            return this;
+        }
+
+        /**
+         * Default time to live of cached result, could be overridden with {@link Cacheable#ttl()}
+         */
+        public Builder ttl(long ttl, TimeUnit unit) {
+            if (ttl <= 0) {
+                throw new IllegalArgumentException(format("Time to live should be positive, but was %d", ttl));
+            }
+            this.ttlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * @param maxWeight max total weight of cached results (See {@link #weigher(ToLongFunction)})
+         */
+        public Builder maxWeight(long maxWeight) {
+            if (maxWeight <= 0) {
+                throw new IllegalArgumentException(format("Max weight should be positive, but was %d", maxWeight));
+            }
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        /**
+         * @param weigher weight of cached result (result could be null), by default each result weighs 1,
+         *                so max weight is max number of cached results
+         */
+        public Builder weigher(ToLongFunction<Object> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * @param concurrency number of independently locked cache segments
+         */
+        public Builder concurrency(int concurrency) {
+            if (concurrency <= 0) {
+                throw new IllegalArgumentException(format("Concurrency should be positive, but was %d", concurrency));
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Invalidates cached results of given <em>Command</em> types (or all results, if no types are given),
+         * when <em>Command</em> of write type or its subtype is executed successfully.
+         */
+        public Builder invalidateOn(Class<?> writeCommandType, Class<?>... cachedCommandTypes) {
+            Set<Class<?>> types = invalidations.computeIfAbsent(writeCommandType, k -> new LinkedHashSet<>());
+            if (cachedCommandTypes.length == 0) {
+                types.clear();
+                types.add(Object.class);
+            } else if (!types.contains(Object.class)) {
+                types.addAll(Arrays.asList(cachedCommandTypes));
+            }
+            return this;
+        }
+
+        public CachingMiddleware build() {
+            return new CachingMiddleware(this);
+        }
+    }
+}
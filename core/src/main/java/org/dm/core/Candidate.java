@@ -0,0 +1,151 @@
+package org.dm.core;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * Registered <em>CommandHandler</em>/<em>ValueProvider</em> - class its methods are taken from
+ * and instance {@link Invoker}s are bound to.
+ *
+ * <p>Instance of lazy candidate is obtained only when any of its methods is invoked
+ * for the first time (See {@link BusBuilder#registerCommandHandler(Class, Supplier)}).
+ * Until then its methods are invoked through {@link LazyInvoker}, which binds real invoker
+ * once and then just delegates to it.
+ */
+final class Candidate {
+
+    final Class<?> type;
+    private final Supplier<?> supplier;
+    private volatile Object instance;
+
+    private Candidate(Class<?> type, Supplier<?> supplier, Object instance) {
+        this.type = type;
+        this.supplier = supplier;
+        this.instance = instance;
+    }
+
+    static Candidate of(Object instance) {
+        return new Candidate(instance.getClass(), null, instance);
+    }
+
+    static Candidate lazy(Class<?> type, Supplier<?> supplier) {
+        return new Candidate(type, supplier, null);
+    }
+
+    /**
+     * @return true if candidate is registered with given instance
+     */
+    boolean isOf(Object target) {
+        return instance == target;
+    }
+
+    /**
+     * @param binding creates invoker bound to instance
+     */
+    Invoker bind(Function<Object, Invoker> binding) {
+        Object target = instance;
+        return target != null ? binding.apply(target) : new LazyInvoker(this, binding);
+    }
+
+    private Object instance() {
+        Object target = instance;
+        if (target != null) {
+            return target;
+        }
+
+        synchronized (this) {
+            if (instance == null) {
+                Object supplied;
+                try {
+                    supplied = supplier.get();
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException(format("Failed to get instance of %s", type.getName()), e);
+                }
+                if (!type.isInstance(supplied)) {
+                    throw new IllegalStateException(format("Instance of %s expected, but %s was supplied",
+                            type.getName(),
+                            supplied == null ? null : supplied.getClass().getName()));
+                }
+                instance = supplied;
+            }
+            return instance;
+        }
+    }
+
+    private static final class LazyInvoker implements Invoker {
+        private final Candidate candidate;
+        private final Function<Object, Invoker> binding;
+        private volatile Invoker delegate;
+
+        LazyInvoker(Candidate candidate, Function<Object, Invoker> binding) {
+            this.candidate = candidate;
+            this.binding = binding;
+        }
+
+        private Invoker delegate() {
+            Invoker invoker = delegate;
+            if (invoker == null) {
+                invoker = binding.apply(candidate.instance());
+                delegate = invoker;
+            }
+            return invoker;
+        }
+
+        @Override
+        public Object invoke(Object[] args) throws Throwable {
+            return delegate().invoke(args);
+        }
+
+        @Override
+        public Object call() throws Throwable {
+            return delegate().call();
+        }
+
+        @Override
+        public Object call(Object a1) throws Throwable {
+            return delegate().call(a1);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2) throws Throwable {
+            return delegate().call(a1, a2);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2, Object a3) throws Throwable {
+            return delegate().call(a1, a2, a3);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2, Object a3, Object a4) throws Throwable {
+            return delegate().call(a1, a2, a3, a4);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable {
+            return delegate().call(a1, a2, a3, a4, a5);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable {
+            return delegate().call(a1, a2, a3, a4, a5, a6);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable {
+            return delegate().call(a1, a2, a3, a4, a5, a6, a7);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable {
+            return delegate().call(a1, a2, a3, a4, a5, a6, a7, a8);
+        }
+
+        @Override
+        public Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable {
+            return delegate().call(a1, a2, a3, a4, a5, a6, a7, a8, a9);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.dm.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Single-flight execution of identical <em>Commands</em> (See {@link BusBuilder#registerCoalescing(Class, Function)}).
+ *
+ * <p>While <em>Command</em> is being executed, <em>Commands</em> with equal key are not executed,
+ * but get the result or exception of the one in flight. Nothing is kept after execution completes,
+ * so the next <em>Command</em> is executed again. Synchronous and asynchronous executions share
+ * in-flight <em>Commands</em>: synchronous <em>Command</em> waits for the result,
+ * asynchronous one gets dependent future and doesn't occupy any thread. Synchronous <em>Command</em>
+ * of the thread, which is executing the one in flight (e.g. handler re-entering bus), is executed directly,
+ * as waiting for its own result would never end.
+ *
+ * <p>There is no global lock, in-flight executions are kept in {@link ConcurrentHashMap}.
+ */
+final class CoalescedExecution {
+
+    private final CommandTypeLookup<Function<Object, Object>> keyExtractors;
+    private final ConcurrentHashMap<Object, Flight> inFlight = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<Flight>> leading = ThreadLocal.withInitial(ArrayList::new);
+
+    CoalescedExecution(Map<Class, Function<Object, Object>> keyExtractors) {
+        this.keyExtractors = new CommandTypeLookup<>(keyExtractors, CoalescedExecution::ambiguous);
+    }
+
+    Function<Object, Object> synchronous(Function<Object, Object> commandProcessor) {
+        return command -> {
+            Object key = key(command);
+            if (key == null) {
+                return commandProcessor.apply(command);
+            }
+
+            Flight execution = new Flight(command);
+            Flight leader = inFlight.putIfAbsent(key, execution);
+            if (leader != null) {
+                return leading.get().contains(leader) ? commandProcessor.apply(command) : AsyncExecution.join(leader);
+            }
+
+            Object result;
+            try {
+                result = lead(execution, commandProcessor, command);
+            } catch (Throwable e) {
+                inFlight.remove(key, execution);
+                execution.completeExceptionally(e);
+                throw e;
+            }
+            inFlight.remove(key, execution);
+            execution.complete(result);
+            return result;
+        };
+    }
+
+    /**
+     * Failure to extract coalescing key is returned as failed future,
+     * as any other failure of asynchronous execution.
+     */
+    Function<Object, CompletableFuture<Object>> asynchronous(Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        return command -> {
+            Object key;
+            try {
+                key = key(command);
+            } catch (Throwable e) {
+                return AsyncExecution.failed(e);
+            }
+            if (key == null) {
+                return asyncCommandProcessor.apply(command);
+            }
+
+            Flight execution = new Flight(command);
+            Flight leader = inFlight.putIfAbsent(key, execution);
+            if (leader != null) {
+                return dependent(leader);
+            }
+
+            CompletableFuture<Object> result;
+            try {
+                // executor may run the command on the caller thread
+                result = lead(execution, asyncCommandProcessor, command);
+            } catch (Throwable e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+            }
+            result.whenComplete((value, error) -> {
+                inFlight.remove(key, execution);
+                if (error != null) {
+                    execution.completeExceptionally(error);
+                } else {
+                    execution.complete(value);
+                }
+            });
+            // every caller gets its own future, so cancelling it doesn't affect others
+            return dependent(execution);
+        };
+    }
+
+    /**
+     * Marks thread executing asynchronous <em>Command</em> in flight as its leader,
+     * should wrap command processor submitted to executor.
+     */
+    Function<Object, Object> executing(Function<Object, Object> commandProcessor) {
+        return command -> {
+            Object key = key(command);
+            Flight execution = key == null ? null : inFlight.get(key);
+            return execution == null || execution.command != command
+                    ? commandProcessor.apply(command)
+                    : lead(execution, commandProcessor, command);
+        };
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private Object key(Object command) {
+        Function<Object, Object> keyExtractor = keyExtractors.get(command.getClass());
+        if (keyExtractor == null) {
+            return null;
+        }
+
+        Object key = keyExtractor.apply(command);
+        return key == null ? null : new CommandKey(command.getClass(), key);
+    }
+
+    private static CompletableFuture<Object> dependent(CompletableFuture<Object> execution) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        execution.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private <R> R lead(Flight execution, Function<Object, R> commandProcessor, Object command) {
+        List<Flight> executions = leading.get();
+        executions.add(execution);
+        try {
+            return commandProcessor.apply(command);
+        } finally {
+            executions.remove(executions.size() - 1);
+        }
+    }
+
+    /**
+     * Execution in flight of the <em>Command</em>.
+     */
+    private static final class Flight extends CompletableFuture<Object> {
+        private final Object command;
+
+        private Flight(Object command) {
+            this.command = command;
+        }
+    }
+
+    private static Function<Object, Object> ambiguous(Class<?> commandClass, List<Class<?>> candidates) {
+        throw new IllegalStateException(format("Command %s is ambiguous, coalescing keys are registered for %s.",
+                commandClass.getName(),
+                candidates.stream()
+                        .map(Class::getName)
+                        .collect(joining(", "))));
+    }
+}
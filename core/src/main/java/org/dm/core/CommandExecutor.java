@@ -0,0 +1,59 @@
+package org.dm.core;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Routes <em>Command</em> to its <em>CommandHandler</em>.
+ *
+ * <p><em>CommandHandler</em> registered for superclass or interface of <em>Command</em>
+ * is also used, resolution rules are described in {@link CommandTypeLookup}.
+ * If <em>Command</em> is ambiguous - exception is thrown on its execution.
+ */
+final class CommandExecutor {
+    private final Set<Class> registeredTypes;
+    private final CommandTypeLookup<CommandHandler> resolvedHandlers;
+
+    CommandExecutor(Map<Class, CommandHandler> commandHandlers) {
+        this.registeredTypes = commandHandlers.keySet();
+        this.resolvedHandlers = new CommandTypeLookup<>(commandHandlers, (commandClass, candidates) ->
+                CommandHandler.failing(format("Command %s is ambiguous, Command handlers are registered for %s.",
+                        commandClass.getName(),
+                        candidates.stream()
+                                .map(Class::getName)
+                                .collect(joining(", ")))));
+    }
+
+    /**
+     * @return the last step of {@link Middleware} chain for <em>Command</em> class,
+     * which invokes its <em>CommandHandler</em>
+     */
+    Function<Object, Object> handling(Class<?> commandClass) {
+        CommandHandler commandHandler = resolvedHandlers.get(commandClass);
+        if (commandHandler == null) {
+            return command -> {
+                throw new IllegalStateException(format("Command handler for command %s not found.", commandClass.getName()));
+            };
+        }
+
+        return commandHandler::invoke;
+    }
+
+    /**
+     * @return <em>CommandHandler</em> resolved for <em>Command</em> class or null if there is no such
+     */
+    CommandHandler handlerFor(Class<?> commandClass) {
+        return resolvedHandlers.get(commandClass);
+    }
+
+    /**
+     * @return <em>Command</em> classes <em>CommandHandlers</em> are registered for
+     */
+    Set<Class> registeredTypes() {
+        return registeredTypes;
+    }
+}
@@ -0,0 +1,493 @@
+package org.dm.core;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * <em>CommandHandler</em> - {@link Handler} method bound to its target
+ * together with <em>ValueProvider</em>s resolved for its additional params.
+ *
+ * <p>There is a separate implementation for each number of <em>ValueProvider</em>s,
+ * which passes provided values straight to {@link Invoker} fixed arity call,
+ * so no arguments array, stream or lambda is allocated on command execution.
+ * Provided values, which depend on other provided values or are resolved in parallel,
+ * are resolved by {@link ProviderResolution}.
+ *
+ * <p>If {@link Handler} method returns int, long or boolean and is bound to {@link PrimitiveInvoker},
+ * fixed arity implementations also return its result unboxed (See {@link PrimitiveChains}).
+ */
+abstract class CommandHandler {
+
+    final Invoker invoker;
+    /**
+     * int, long or boolean if result is returned unboxed by {@link #invokeInt(Object)} and others, otherwise null
+     */
+    final Class<?> primitiveResult;
+
+    CommandHandler(Invoker invoker) {
+        this.invoker = invoker;
+        if (invoker instanceof PrimitiveInvoker.OfInt) {
+            this.primitiveResult = int.class;
+        } else if (invoker instanceof PrimitiveInvoker.OfLong) {
+            this.primitiveResult = long.class;
+        } else if (invoker instanceof PrimitiveInvoker.OfBoolean) {
+            this.primitiveResult = boolean.class;
+        } else {
+            this.primitiveResult = null;
+        }
+    }
+
+    /**
+     * @param providerExecutor executor to resolve provided values in parallel or null
+     */
+    static CommandHandler create(Invoker invoker, List<ValueProvider> providers, Executor providerExecutor) {
+        if (ProviderResolution.isRequired(providers, providerExecutor)) {
+            return new Resolving(invoker, ProviderResolution.create(providers, providerExecutor));
+        }
+        return create(invoker, providers);
+    }
+
+    static CommandHandler create(Invoker invoker, List<ValueProvider> providers) {
+        ValueProvider[] p = providers.toArray(new ValueProvider[0]);
+        switch (p.length) {
+            case 0:
+                return new Arity0(invoker);
+            case 1:
+                return new Arity1(invoker, p[0]);
+            case 2:
+                return new Arity2(invoker, p[0], p[1]);
+            case 3:
+                return new Arity3(invoker, p[0], p[1], p[2]);
+            case 4:
+                return new Arity4(invoker, p[0], p[1], p[2], p[3]);
+            case 5:
+                return new Arity5(invoker, p[0], p[1], p[2], p[3], p[4]);
+            case 6:
+                return new Arity6(invoker, p[0], p[1], p[2], p[3], p[4], p[5]);
+            case 7:
+                return new Arity7(invoker, p[0], p[1], p[2], p[3], p[4], p[5], p[6]);
+            case 8:
+                return new Arity8(invoker, p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7]);
+            default:
+                return new ArityN(invoker, p);
+        }
+    }
+
+    static CommandHandler failing(String message) {
+        return new Failing(message);
+    }
+
+    Object invoke(Object cmd) {
+        try {
+            return dispatch(cmd);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    int invokeInt(Object cmd) {
+        try {
+            return dispatchInt(cmd);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    long invokeLong(Object cmd) {
+        try {
+            return dispatchLong(cmd);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    boolean invokeBoolean(Object cmd) {
+        try {
+            return dispatchBoolean(cmd);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    abstract Object dispatch(Object cmd) throws Throwable;
+
+    /**
+     * Called only if {@link #primitiveResult} is int. Boxed result is unboxed, unless overridden.
+     */
+    int dispatchInt(Object cmd) throws Throwable {
+        return (Integer) dispatch(cmd);
+    }
+
+    /**
+     * Called only if {@link #primitiveResult} is long. Boxed result is unboxed, unless overridden.
+     */
+    long dispatchLong(Object cmd) throws Throwable {
+        return (Long) dispatch(cmd);
+    }
+
+    /**
+     * Called only if {@link #primitiveResult} is boolean. Boxed result is unboxed, unless overridden.
+     */
+    boolean dispatchBoolean(Object cmd) throws Throwable {
+        return (Boolean) dispatch(cmd);
+    }
+
+    private static final class Failing extends CommandHandler {
+        private final String message;
+
+        Failing(String message) {
+            super(null);
+            this.message = message;
+        }
+
+        @Override
+        Object dispatch(Object cmd) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static final class Arity0 extends CommandHandler {
+        Arity0(Invoker invoker) {
+            super(invoker);
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd);
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall1) invoker).callInt(cmd);
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall1) invoker).callLong(cmd);
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall1) invoker).callBoolean(cmd);
+        }
+    }
+
+    private static final class Arity1 extends CommandHandler {
+        private final ValueProvider p1;
+
+        Arity1(Invoker invoker, ValueProvider p1) {
+            super(invoker);
+            this.p1 = p1;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall2) invoker).callInt(cmd, p1.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall2) invoker).callLong(cmd, p1.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall2) invoker).callBoolean(cmd, p1.invoke());
+        }
+    }
+
+    private static final class Arity2 extends CommandHandler {
+        private final ValueProvider p1, p2;
+
+        Arity2(Invoker invoker, ValueProvider p1, ValueProvider p2) {
+            super(invoker);
+            this.p1 = p1;
+            this.p2 = p2;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke(), p2.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall3) invoker).callInt(cmd, p1.invoke(), p2.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall3) invoker).callLong(cmd, p1.invoke(), p2.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall3) invoker).callBoolean(cmd, p1.invoke(), p2.invoke());
+        }
+    }
+
+    private static final class Arity3 extends CommandHandler {
+        private final ValueProvider p1, p2, p3;
+
+        Arity3(Invoker invoker, ValueProvider p1, ValueProvider p2, ValueProvider p3) {
+            super(invoker);
+            this.p1 = p1;
+            this.p2 = p2;
+            this.p3 = p3;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke(), p2.invoke(), p3.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall4) invoker).callInt(cmd, p1.invoke(), p2.invoke(), p3.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall4) invoker).callLong(cmd, p1.invoke(), p2.invoke(), p3.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall4) invoker).callBoolean(cmd, p1.invoke(), p2.invoke(), p3.invoke());
+        }
+    }
+
+    private static final class Arity4 extends CommandHandler {
+        private final ValueProvider p1, p2, p3, p4;
+
+        Arity4(Invoker invoker, ValueProvider p1, ValueProvider p2, ValueProvider p3,
+               ValueProvider p4) {
+            super(invoker);
+            this.p1 = p1;
+            this.p2 = p2;
+            this.p3 = p3;
+            this.p4 = p4;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall5) invoker).callInt(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall5) invoker).callLong(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall5) invoker).callBoolean(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke());
+        }
+    }
+
+    private static final class Arity5 extends CommandHandler {
+        private final ValueProvider p1, p2, p3, p4, p5;
+
+        Arity5(Invoker invoker, ValueProvider p1, ValueProvider p2, ValueProvider p3,
+               ValueProvider p4, ValueProvider p5) {
+            super(invoker);
+            this.p1 = p1;
+            this.p2 = p2;
+            this.p3 = p3;
+            this.p4 = p4;
+            this.p5 = p5;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall6) invoker).callInt(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall6) invoker).callLong(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall6) invoker).callBoolean(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke());
+        }
+    }
+
+    private static final class Arity6 extends CommandHandler {
+        private final ValueProvider p1, p2, p3, p4, p5, p6;
+
+        Arity6(Invoker invoker, ValueProvider p1, ValueProvider p2, ValueProvider p3,
+               ValueProvider p4, ValueProvider p5, ValueProvider p6) {
+            super(invoker);
+            this.p1 = p1;
+            this.p2 = p2;
+            this.p3 = p3;
+            this.p4 = p4;
+            this.p5 = p5;
+            this.p6 = p6;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall7) invoker).callInt(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall7) invoker).callLong(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall7) invoker).callBoolean(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke());
+        }
+    }
+
+    private static final class Arity7 extends CommandHandler {
+        private final ValueProvider p1, p2, p3, p4, p5, p6, p7;
+
+        Arity7(Invoker invoker, ValueProvider p1, ValueProvider p2, ValueProvider p3,
+               ValueProvider p4, ValueProvider p5, ValueProvider p6,
+               ValueProvider p7) {
+            super(invoker);
+            this.p1 = p1;
+            this.p2 = p2;
+            this.p3 = p3;
+            this.p4 = p4;
+            this.p5 = p5;
+            this.p6 = p6;
+            this.p7 = p7;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall8) invoker).callInt(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall8) invoker).callLong(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall8) invoker).callBoolean(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke());
+        }
+    }
+
+    private static final class Arity8 extends CommandHandler {
+        private final ValueProvider p1, p2, p3, p4, p5, p6, p7, p8;
+
+        Arity8(Invoker invoker, ValueProvider p1, ValueProvider p2, ValueProvider p3,
+               ValueProvider p4, ValueProvider p5, ValueProvider p6,
+               ValueProvider p7, ValueProvider p8) {
+            super(invoker);
+            this.p1 = p1;
+            this.p2 = p2;
+            this.p3 = p3;
+            this.p4 = p4;
+            this.p5 = p5;
+            this.p6 = p6;
+            this.p7 = p7;
+            this.p8 = p8;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.call(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke(), p8.invoke());
+        }
+
+        @Override
+        int dispatchInt(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.IntCall9) invoker).callInt(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke(), p8.invoke());
+        }
+
+        @Override
+        long dispatchLong(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.LongCall9) invoker).callLong(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke(), p8.invoke());
+        }
+
+        @Override
+        boolean dispatchBoolean(Object cmd) throws Throwable {
+            return ((PrimitiveInvoker.BooleanCall9) invoker).callBoolean(cmd, p1.invoke(), p2.invoke(), p3.invoke(), p4.invoke(), p5.invoke(), p6.invoke(),
+                    p7.invoke(), p8.invoke());
+        }
+    }
+
+    /**
+     * Provided values depend on each other or are resolved in parallel.
+     */
+    private static final class Resolving extends CommandHandler {
+        private final ProviderResolution resolution;
+
+        Resolving(Invoker invoker, ProviderResolution resolution) {
+            super(invoker);
+            this.resolution = resolution;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            return invoker.invoke(resolution.resolve(cmd));
+        }
+    }
+
+    private static final class ArityN extends CommandHandler {
+        private final ValueProvider[] providers;
+
+        ArityN(Invoker invoker, ValueProvider[] providers) {
+            super(invoker);
+            this.providers = providers;
+        }
+
+        @Override
+        Object dispatch(Object cmd) throws Throwable {
+            Object[] args = new Object[providers.length + 1];
+            args[0] = cmd;
+            for (int i = 0; i < providers.length; i++) {
+                args[i + 1] = providers[i].invoke();
+            }
+            return invoker.invoke(args);
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package org.dm.core;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
@@ -16,64 +21,117 @@ final class CommandHandlerFactory {
     private CommandHandlerFactory() {
     }
 
-    static List<Tuple<Class, BusBuilder.CommandHandler>> create(Object candidate, Map<Class, Map<String, BusBuilder.ValueProvider>> valueProvidersMapping) {
-        return extractCommandHandlingMethods(candidate).stream()
+    /**
+     * @param providerExecutor executor to resolve provided values in parallel or null
+     */
+    static List<Tuple<Class, CommandHandler>> create(Candidate candidate, Map<Class, Map<String, ValueProvider>> valueProvidersMapping,
+                                                     BusIndexes index, Executor providerExecutor) {
+        List<IndexedMethod> indexed = index.methodsOf(candidate.type, IndexedMethod.Kind.HANDLER);
+        if (indexed != null) {
+            return create(candidate, valueProvidersMapping, indexed, providerExecutor);
+        }
+
+        return create(candidate, valueProvidersMapping, extractCommandHandlingMethods(candidate.type, Handler.class), method -> method.getParameterTypes()[0], providerExecutor);
+    }
+
+    static List<Tuple<Class, CommandHandler>> createBatch(Candidate candidate, Map<Class, Map<String, ValueProvider>> valueProvidersMapping,
+                                                          BusIndexes index, Executor providerExecutor) {
+        List<IndexedMethod> indexed = index.methodsOf(candidate.type, IndexedMethod.Kind.BATCH_HANDLER);
+        if (indexed != null) {
+            return create(candidate, valueProvidersMapping, indexed, providerExecutor);
+        }
+
+        Set<Method> methods = extractCommandHandlingMethods(candidate.type, BatchHandler.class);
+        methods.forEach(method -> {
+            if (batchCommandType(method) == null) {
+                throw new IllegalStateException(format("Batch handle method %s of command handler %s should have List<Command> as first parameter",
+                        method.getName(),
+                        candidate.type.getName()));
+            }
+            if (method.getReturnType() != void.class && method.getReturnType() != List.class) {
+                throw new IllegalStateException(format("Batch handle method %s of command handler %s should return List or void",
+                        method.getName(),
+                        candidate.type.getName()));
+            }
+        });
+
+        return create(candidate, valueProvidersMapping, methods, CommandHandlerFactory::batchCommandType, providerExecutor);
+    }
+
+    private static List<Tuple<Class, CommandHandler>> create(Candidate candidate,
+                                                            Map<Class, Map<String, ValueProvider>> valueProvidersMapping,
+                                                            Set<Method> methods,
+                                                            Function<Method, Class> commandTypeExtractor,
+                                                            Executor providerExecutor) {
+        return methods.stream()
                 .map(method -> {
                     List<BusBuilder.TypeDescription> params = extractParams(method);
-                    return new Tuple<>(params.get(0).type, new BusBuilder.CommandHandler(
-                            candidate,
-                            method,
+                    return new Tuple<>(commandTypeExtractor.apply(method), CommandHandler.create(
+                            candidate.bind(target -> Invokers.create(target, method)),
                             getValueProvidersForParams(
-                                    candidate.getClass(),
+                                    candidate.type,
                                     valueProvidersMapping,
-                                    params)));
+                                    params),
+                            providerExecutor));
                 })
                 .collect(toList());
     }
 
+    private static List<Tuple<Class, CommandHandler>> create(Candidate candidate,
+                                                            Map<Class, Map<String, ValueProvider>> valueProvidersMapping,
+                                                            List<IndexedMethod> methods,
+                                                            Executor providerExecutor) {
+        return methods.stream()
+                .map(method -> new Tuple<Class, CommandHandler>(method.type, CommandHandler.create(
+                        candidate.bind(method.invokerFactory),
+                        getValueProvidersForParams(
+                                candidate.type,
+                                valueProvidersMapping,
+                                method.params),
+                        providerExecutor)))
+                .collect(toList());
+    }
+
     private static List<BusBuilder.TypeDescription> extractParams(Method m) {
         return Arrays.stream(m.getParameters())
                 .map(param -> new BusBuilder.TypeDescription(param.getType(), param.getName()))
                 .collect(toList());
     }
 
+    private static Class batchCommandType(Method method) {
+        if (method.getParameterTypes()[0] != List.class) {
+            return null;
+        }
+
+        Type listType = method.getGenericParameterTypes()[0];
+        if (!(listType instanceof ParameterizedType)) {
+            return null;
+        }
+
+        Type commandType = ((ParameterizedType) listType).getActualTypeArguments()[0];
+        if (commandType instanceof ParameterizedType) {
+            commandType = ((ParameterizedType) commandType).getRawType();
+        }
+
+        return commandType instanceof Class ? (Class) commandType : null;
+    }
+
     @SuppressWarnings("unchecked")
-    private static Set<Method> extractCommandHandlingMethods(Object commandHandler) {
-        Set<Method> handlingMethods = getAllMethods(commandHandler.getClass(), withAnnotation(Handler.class));
+    private static Set<Method> extractCommandHandlingMethods(Class<?> commandHandlerClass, Class<? extends Annotation> annotation) {
+        Set<Method> handlingMethods = getAllMethods(commandHandlerClass, withAnnotation(annotation));
         if (handlingMethods.stream()
                 .anyMatch(m -> m.getParameterCount() == 0)) {
 
-            throw new IllegalStateException(format("Handle method of command handler %s should have at least 1 parameter - command to handle", commandHandler.getClass().getName()));
+            throw new IllegalStateException(format("Handle method of command handler %s should have at least 1 parameter - command to handle", commandHandlerClass.getName()));
         }
 
         return handlingMethods;
     }
 
-    private static List<BusBuilder.ValueProvider> getValueProvidersForParams(Class commandHandlerClass, Map<Class, Map<String, BusBuilder.ValueProvider>> providersMapping, List<BusBuilder.TypeDescription> params) {
-
+    private static List<ValueProvider> getValueProvidersForParams(Class commandHandlerClass, Map<Class, Map<String, ValueProvider>> providersMapping, List<BusBuilder.TypeDescription> params) {
         return params.stream()
                 .skip(1)
-                .map(description -> {
-                    Map<String, BusBuilder.ValueProvider> possibleProviders = providersMapping.get(description.type);
-
-                    if (possibleProviders == null || possibleProviders.isEmpty()) {
-                        throw new IllegalStateException(format("Command handler %s required value of type %s. Value provider not found.", commandHandlerClass.getName(), description.type));
-                    }
-
-                    if (possibleProviders.size() == 1) {
-                        return possibleProviders.values().iterator().next();
-                    }
-
-                    BusBuilder.ValueProvider valueProvider = possibleProviders.get(description.name);
-                    if (valueProvider == null) {
-                        throw new IllegalStateException(format("Command handler %s required value of type %s with name %s. Value provider not found.",
-                                commandHandlerClass.getName(),
-                                description.type,
-                                description.name));
-                    }
-
-                    return valueProvider;
-                })
+                .map(description -> ValueProviderFactory.resolve("Command handler " + commandHandlerClass.getName(), providersMapping, description))
                 .collect(toList());
     }
 
@@ -0,0 +1,517 @@
+package org.dm.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+
+/**
+ * Durable journal of asynchronous <em>Commands</em> (See {@link BusBuilder#journal(CommandJournal)}),
+ * which gives them at-least-once execution across process restarts.
+ *
+ * <p><em>Command</em> is appended to the journal before it is executed and is marked completed
+ * when its execution completes, successfully or not. <em>Commands</em>, which were not completed
+ * when process exited, are replayed when the next {@link Bus} with the journal is built.
+ * So <em>CommandHandlers</em> of journaled <em>Commands</em> should be idempotent.
+ *
+ * <p>Journal is a directory of fixed size segment files, mapped to memory. Records are appended
+ * by the calling thread under short lock, so they survive process crash as soon as they are appended.
+ * How they are forced to the disk is defined by {@link FsyncPolicy}, with {@link FsyncPolicy#ALWAYS}
+ * execution waits until record is forced, forces are shared by all records appended meanwhile (group commit).
+ * Segments, all <em>Commands</em> of which and of older segments are completed, are deleted in background.
+ */
+public final class CommandJournal implements Closeable {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final long COMPACTION_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    public enum FsyncPolicy {
+        /**
+         * Records are written to the disk by operating system, they survive process crash,
+         * but not power loss.
+         */
+        NEVER,
+        /**
+         * Records are forced to the disk periodically (See {@link Builder#fsyncInterval(long, TimeUnit)}),
+         * <em>Commands</em> appended since the last force could be lost on power loss.
+         */
+        INTERVAL,
+        /**
+         * <em>Command</em> is executed only after its record is forced to the disk.
+         */
+        ALWAYS
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CommandSerializer serializer;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final ClassValue<Boolean> journaled;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private final CRC32 crc = new CRC32();
+    private long nextId;
+    private long nextSequence;
+    private volatile JournalSegment current;
+    private volatile long lastAppended = -1;
+
+    private final ConcurrentLinkedDeque<JournalSegment> segments = new ConcurrentLinkedDeque<>();
+    private final ConcurrentLinkedQueue<Entry> notForced = new ConcurrentLinkedQueue<>();
+    private final List<Entry> recovered = new ArrayList<>();
+    private final AtomicBoolean attached = new AtomicBoolean();
+    private final Thread flusher;
+    private volatile boolean flusherWaiting;
+    private volatile boolean closed;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+
+    private CommandJournal(Builder builder) {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.serializer = builder.serializer;
+        this.fsyncPolicy = builder.fsyncPolicy;
+        this.fsyncIntervalNanos = builder.fsyncIntervalNanos;
+        List<Predicate<Class<?>>> commandTypes = new ArrayList<>(builder.commandTypes);
+        this.journaled = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return commandTypes.isEmpty() || commandTypes.stream().anyMatch(predicate -> predicate.test(type));
+            }
+        };
+
+        recover();
+        compact();
+        this.flusher = new Thread(this::flushing, "command-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * @param directory directory of journal segments, created if it doesn't exist
+     */
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * Stops appending and forces appended records to the disk. <em>Commands</em>,
+     * which are still executing, are not marked completed, so they are replayed next time.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        force();
+        segments.forEach(JournalSegment::close);
+    }
+
+    /**
+     * @return number of <em>Commands</em> appended since journal is opened, replayed ones are not counted
+     */
+    public long appendedCount() {
+        return appended.sum();
+    }
+
+    public long completedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return number of <em>Commands</em>, which were not completed before, and are replayed by {@link Bus}
+     */
+    public long replayedCount() {
+        return replayed.sum();
+    }
+
+    /**
+     * @return number of <em>Commands</em> appended or recovered, but not completed yet
+     */
+    public int pendingCount() {
+        return segments.stream().mapToInt(segment -> segment.pending.get()).sum();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Appends journaled <em>Commands</em> before they are passed to next, and marks them completed after.
+     *
+     * @param executor passes <em>Commands</em> waiting for force to next, so the flusher thread only completes forces
+     */
+    Function<Object, CompletableFuture<Object>> asynchronous(Function<Object, CompletableFuture<Object>> next, Executor executor) {
+        if (!attached.compareAndSet(false, true)) {
+            throw new IllegalStateException(format("Journal %s is already used by another bus", directory));
+        }
+
+        return command -> {
+            if (!journaled.get(command.getClass())) {
+                return next.apply(command);
+            }
+
+            Entry entry;
+            try {
+                entry = append(command);
+            } catch (Throwable e) {
+                CompletableFuture<Object> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+            if (entry.forced == null) {
+                return execute(entry, command, next);
+            }
+            // Command waiting for force is passed on by executor, its deadline is bound there again
+            Deadline deadline = Deadline.bound();
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            entry.forced.thenRun(() -> {
+                try {
+                    executor.execute(() -> relay(entry, command, c -> Deadline.executeDeferred(deadline, c, next), result));
+                } catch (RejectedExecutionException e) {
+                    complete(entry);
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        };
+    }
+
+    private void relay(Entry entry, Object command, Function<Object, CompletableFuture<Object>> next, CompletableFuture<Object> result) {
+        CompletableFuture<Object> executed;
+        try {
+            executed = execute(entry, command, next);
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        executed.whenComplete((value, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    /**
+     * Executes <em>Commands</em> recovered on open, in the order they were appended.
+     *
+     * @throws IllegalStateException if any of them can't be deserialized, then none is executed
+     */
+    void replay(Function<Object, CompletableFuture<Object>> next) {
+        Map<Entry, Object> commands = new LinkedHashMap<>();
+        for (Entry entry : recovered) {
+            try {
+                commands.put(entry, serializer.deserialize(entry.payload));
+            } catch (RuntimeException e) {
+                throw new IllegalStateException(format("Can't replay command %d of journal %s", entry.id, directory), e);
+            }
+        }
+        recovered.clear();
+
+        commands.forEach((entry, command) -> {
+            replayed.increment();
+            execute(entry, command, next);
+        });
+    }
+
+    private CompletableFuture<Object> execute(Entry entry, Object command, Function<Object, CompletableFuture<Object>> next) {
+        CompletableFuture<Object> result;
+        try {
+            result = next.apply(command);
+        } catch (Throwable e) {
+            complete(entry);
+            throw e;
+        }
+        result.whenComplete((value, e) -> complete(entry));
+        return result;
+    }
+
+    private Entry append(Object command) {
+        byte[] payload = serializer.serialize(command);
+        if (JournalSegment.HEADER + payload.length > segmentSize) {
+            throw new IllegalStateException(format("Command %s of %d bytes doesn't fit into journal segment of %d bytes",
+                    command.getClass().getName(), payload.length, segmentSize));
+        }
+
+        Entry entry;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException(format("Journal %s is closed", directory));
+            }
+            JournalSegment segment = writable(payload.length);
+            long id = nextId++;
+            segment.append(JournalSegment.COMMAND, id, payload, crc);
+            segment.pending.incrementAndGet();
+            entry = new Entry(id, segment, null);
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                entry.forced = new CompletableFuture<>();
+                notForced.add(entry);
+            }
+            lastAppended = id;
+        } finally {
+            lock.unlock();
+        }
+
+        appended.increment();
+        if (entry.forced != null && flusherWaiting) {
+            LockSupport.unpark(flusher);
+        }
+        return entry;
+    }
+
+    /**
+     * <em>Commands</em> completed after journal is closed stay pending, as if process exited.
+     */
+    private void complete(Entry entry) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            writable(0).append(JournalSegment.COMPLETED, entry.id, EMPTY, crc);
+        } finally {
+            lock.unlock();
+        }
+
+        entry.segment.pending.decrementAndGet();
+        completed.increment();
+    }
+
+    /**
+     * Called under lock.
+     */
+    private JournalSegment writable(int length) {
+        JournalSegment segment = current;
+        if (segment != null && segment.fits(length)) {
+            return segment;
+        }
+
+        try {
+            segment = JournalSegment.create(directory, nextSequence++, segmentSize);
+        } catch (IOException e) {
+            throw new IllegalStateException(format("Can't create segment of journal %s", directory), e);
+        }
+        segments.add(segment);
+        current = segment;
+        return segment;
+    }
+
+    private void flushing() {
+        long parkNanos = fsyncPolicy == FsyncPolicy.INTERVAL ? Math.min(fsyncIntervalNanos, COMPACTION_INTERVAL) : COMPACTION_INTERVAL;
+        long nextForce = System.nanoTime() + fsyncIntervalNanos;
+        while (!closed) {
+            flusherWaiting = true;
+            if (notForced.isEmpty()) {
+                LockSupport.parkNanos(this, parkNanos);
+            }
+            flusherWaiting = false;
+
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                force();
+            } else if (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - nextForce >= 0) {
+                force();
+                nextForce = System.nanoTime() + fsyncIntervalNanos;
+            }
+            compact();
+        }
+    }
+
+    /**
+     * Forces all segments and completes waiting entries, which records were appended before.
+     */
+    private void force() {
+        long forcedUpTo = lastAppended;
+        for (JournalSegment segment : segments) {
+            segment.force();
+        }
+
+        Entry entry;
+        while ((entry = notForced.peek()) != null && entry.id <= forcedUpTo) {
+            notForced.poll();
+            entry.forced.complete(null);
+        }
+        if (closed) {
+            notForced.forEach(waiting -> waiting.forced.complete(null));
+            notForced.clear();
+        }
+    }
+
+    /**
+     * Deletes the oldest segments as long as all their <em>Commands</em> are completed. Completion records
+     * are always appended after <em>Command</em> records, so no newer segment is deleted before older one.
+     */
+    private void compact() {
+        JournalSegment oldest;
+        while ((oldest = segments.peekFirst()) != null && oldest != current && oldest.pending.get() == 0) {
+            segments.pollFirst();
+            try {
+                oldest.delete();
+            } catch (IOException e) {
+                // next journal would read it again, all its Commands are completed anyway
+            }
+        }
+    }
+
+    private void recover() {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path file : stream) {
+                    long sequence = JournalSegment.sequenceOf(file);
+                    if (sequence >= 0) {
+                        files.put(sequence, file);
+                    }
+                }
+            }
+
+            Map<Long, Entry> pending = new LinkedHashMap<>();
+            for (Map.Entry<Long, Path> file : files.entrySet()) {
+                JournalSegment segment = JournalSegment.open(file.getValue(), file.getKey());
+                segments.add(segment);
+                segment.read((type, id, payload) -> {
+                    if (type == JournalSegment.COMMAND) {
+                        pending.put(id, new Entry(id, segment, payload));
+                        segment.pending.incrementAndGet();
+                    } else {
+                        Entry entry = pending.remove(id);
+                        if (entry != null) {
+                            entry.segment.pending.decrementAndGet();
+                        }
+                    }
+                    nextId = Math.max(nextId, id + 1);
+                });
+            }
+            recovered.addAll(pending.values());
+        } catch (IOException e) {
+            segments.forEach(JournalSegment::close);
+            throw new IllegalStateException(format("Can't open journal %s", directory), e);
+        }
+        nextSequence = files.isEmpty() ? 0 : files.lastKey() + 1;
+    }
+
+    private static final class Entry {
+        final long id;
+        final JournalSegment segment;
+        /**
+         * Serialized <em>Command</em>, kept only for recovered entries until they are replayed
+         */
+        final byte[] payload;
+        CompletableFuture<Void> forced;
+
+        Entry(long id, JournalSegment segment, byte[] payload) {
+            this.id = id;
+            this.segment = segment;
+            this.payload = payload;
+        }
+    }
+
+    public static final class Builder {
+        private final Path directory;
+        private int segmentSize = 64 * 1024 * 1024;
+        private CommandSerializer serializer = CommandSerializer.java();
+        private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+        private long fsyncIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private final List<Predicate<Class<?>>> commandTypes = new ArrayList<>();
+
+        private Builder(Path directory) {
+            this.directory = Objects.requireNonNull(directory);
+        }
+
+        /**
+         * @param segmentSize size of segment file in bytes, by default 64MB
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize <= JournalSegment.HEADER) {
+                throw new IllegalArgumentException(format("Segment size should be greater than %d, but was %d", JournalSegment.HEADER, segmentSize));
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * By default {@link CommandSerializer#java()} is used.
+         */
+        public Builder serializer(CommandSerializer serializer) {
+            this.serializer = Objects.requireNonNull(serializer);
+            return this;
+        }
+
+        /**
+         * By default {@link FsyncPolicy#INTERVAL} is used.
+         */
+        public Builder fsync(FsyncPolicy fsyncPolicy) {
+            this.fsyncPolicy = Objects.requireNonNull(fsyncPolicy);
+            return this;
+        }
+
+        /**
+         * Interval of {@link FsyncPolicy#INTERVAL} policy, by default 1 second
+         */
+        public Builder fsyncInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException(format("Fsync interval should be positive, but was %d", interval));
+            }
+            this.fsyncIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Journals only <em>Commands</em> matching predicate (See {@link CommandTypes}), by default all are journaled.
+         */
+        public Builder journal(Predicate<Class<?>> commandTypes) {
+            this.commandTypes.add(Objects.requireNonNull(commandTypes));
+            return this;
+        }
+
+        /**
+         * Opens journal and recovers <em>Commands</em>, which were not completed.
+         *
+         * @throws IllegalStateException if journal can't be opened
+         */
+        public CommandJournal build() {
+            return new CommandJournal(this);
+        }
+    }
+}
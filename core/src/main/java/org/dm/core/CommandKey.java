@@ -0,0 +1,34 @@
+package org.dm.core;
+
+import java.util.Objects;
+
+/**
+ * Key extracted from <em>Command</em>, qualified with <em>Command</em> class,
+ * so equal keys of different <em>Command</em> types are not mixed up.
+ */
+final class CommandKey {
+    private final Class<?> type;
+    private final Object key;
+
+    CommandKey(Class<?> type, Object key) {
+        this.type = type;
+        this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CommandKey)) {
+            return false;
+        }
+        CommandKey other = (CommandKey) o;
+        return type == other.type && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + Objects.hashCode(key);
+    }
+}
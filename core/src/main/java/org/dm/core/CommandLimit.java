@@ -0,0 +1,49 @@
+package org.dm.core;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limit of <em>Command</em> executions, checked before <em>Command</em> enters
+ * {@link AsyncMiddleware}/{@link Middleware} chain (See {@link LimitedExecution}).
+ */
+abstract class CommandLimit {
+
+    /**
+     * Passed to {@link #release(long, Throwable)}, when <em>Command</em> was not executed,
+     * because it was rejected by another limit.
+     */
+    static final Throwable NOT_EXECUTED = new CommandRejectedException("Command is not executed");
+
+    /**
+     * Token of asynchronous <em>Command</em>, which got the limit without waiting.
+     */
+    static final CompletableFuture<Long> ACQUIRED = CompletableFuture.completedFuture(0L);
+
+    /**
+     * @return token, which is passed back to {@link #release(long, Throwable)}
+     * @throws CommandRejectedException if <em>Command</em> can't be executed now
+     */
+    abstract long acquire(Class<?> commandClass);
+
+    /**
+     * Acquires limit for asynchronous <em>Command</em> without blocking the caller:
+     * <em>Command</em>, which has to wait, is delayed with {@link BusTimer} instead.
+     *
+     * @return future of token, failed with {@link CommandRejectedException} if <em>Command</em> can't be executed
+     */
+    CompletableFuture<Long> acquireAsync(Class<?> commandClass) {
+        try {
+            return CompletableFuture.completedFuture(acquire(commandClass));
+        } catch (CommandRejectedException e) {
+            return AsyncExecution.failed(e);
+        }
+    }
+
+    /**
+     * Called when execution of acquired <em>Command</em> is completed.
+     *
+     * @param error exception <em>Command</em> failed with, {@link #NOT_EXECUTED} or null
+     */
+    void release(long token, Throwable error) {
+    }
+}
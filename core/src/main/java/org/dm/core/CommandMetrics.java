@@ -0,0 +1,96 @@
+package org.dm.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of single <em>Command</em> type.
+ */
+final class CommandMetrics implements CommandMetricsMBean {
+    final Class<?> commandType;
+
+    final LongAdder started = new LongAdder();
+    final LongAdder finished = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    final LatencyHistogram totalTime = new LatencyHistogram();
+    final LatencyHistogram middlewareTime = new LatencyHistogram();
+    final LatencyHistogram handlerTime = new LatencyHistogram();
+    final LatencyHistogram providerTime = new LatencyHistogram();
+
+    CommandMetrics(Class<?> commandType) {
+        this.commandType = commandType;
+    }
+
+    CommandMetricsSnapshot snapshot() {
+        long finishedCount = finished.sum();
+        return new CommandMetricsSnapshot(commandType,
+                finishedCount,
+                errors.sum(),
+                Math.max(0, started.sum() - finishedCount),
+                totalTime.snapshot(),
+                middlewareTime.snapshot(),
+                handlerTime.snapshot(),
+                providerTime.snapshot());
+    }
+
+    @Override
+    public String getCommandType() {
+        return commandType.getName();
+    }
+
+    @Override
+    public long getInvocations() {
+        return finished.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        long finishedCount = finished.sum();
+        return Math.max(0, started.sum() - finishedCount);
+    }
+
+    @Override
+    public long getTotalTimeP50() {
+        return totalTime.snapshot().getP50();
+    }
+
+    @Override
+    public long getTotalTimeP99() {
+        return totalTime.snapshot().getP99();
+    }
+
+    @Override
+    public long getMiddlewareTimeP50() {
+        return middlewareTime.snapshot().getP50();
+    }
+
+    @Override
+    public long getMiddlewareTimeP99() {
+        return middlewareTime.snapshot().getP99();
+    }
+
+    @Override
+    public long getHandlerTimeP50() {
+        return handlerTime.snapshot().getP50();
+    }
+
+    @Override
+    public long getHandlerTimeP99() {
+        return handlerTime.snapshot().getP99();
+    }
+
+    @Override
+    public long getProviderTimeP50() {
+        return providerTime.snapshot().getP50();
+    }
+
+    @Override
+    public long getProviderTimeP99() {
+        return providerTime.snapshot().getP99();
+    }
+}
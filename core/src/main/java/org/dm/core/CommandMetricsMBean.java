@@ -0,0 +1,32 @@
+package org.dm.core;
+
+/**
+ * JMX view of metrics of single <em>Command</em> type (See {@link BusMetrics#registerMBeans(String)}).
+ * Latencies are in nanoseconds.
+ */
+public interface CommandMetricsMBean {
+
+    String getCommandType();
+
+    long getInvocations();
+
+    long getErrors();
+
+    long getInFlight();
+
+    long getTotalTimeP50();
+
+    long getTotalTimeP99();
+
+    long getMiddlewareTimeP50();
+
+    long getMiddlewareTimeP99();
+
+    long getHandlerTimeP50();
+
+    long getHandlerTimeP99();
+
+    long getProviderTimeP50();
+
+    long getProviderTimeP99();
+}
@@ -0,0 +1,84 @@
+package org.dm.core;
+
+/**
+ * Snapshot of metrics of single <em>Command</em> type (See {@link BusMetrics#snapshot()}).
+ *
+ * <p>Total time of <em>Command</em> execution is split into:
+ * <ul>
+ * <li>middleware time - spent in {@link Middleware} chain, excluding <em>CommandHandler</em></li>
+ * <li>provider time - spent in <em>ValueProviders</em> resolving <em>CommandHandler</em> params</li>
+ * <li>handler time - spent in <em>CommandHandler</em> method</li>
+ * </ul>
+ */
+public final class CommandMetricsSnapshot {
+    private final Class<?> commandType;
+    private final long invocations;
+    private final long errors;
+    private final long inFlight;
+    private final LatencySnapshot totalTime;
+    private final LatencySnapshot middlewareTime;
+    private final LatencySnapshot handlerTime;
+    private final LatencySnapshot providerTime;
+
+    CommandMetricsSnapshot(Class<?> commandType, long invocations, long errors, long inFlight,
+                           LatencySnapshot totalTime, LatencySnapshot middlewareTime,
+                           LatencySnapshot handlerTime, LatencySnapshot providerTime) {
+        this.commandType = commandType;
+        this.invocations = invocations;
+        this.errors = errors;
+        this.inFlight = inFlight;
+        this.totalTime = totalTime;
+        this.middlewareTime = middlewareTime;
+        this.handlerTime = handlerTime;
+        this.providerTime = providerTime;
+    }
+
+    public Class<?> getCommandType() {
+        return commandType;
+    }
+
+    /**
+     * @return number of finished executions, including failed ones
+     */
+    public long getInvocations() {
+        return invocations;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    public LatencySnapshot getTotalTime() {
+        return totalTime;
+    }
+
+    public LatencySnapshot getMiddlewareTime() {
+        return middlewareTime;
+    }
+
+    public LatencySnapshot getHandlerTime() {
+        return handlerTime;
+    }
+
+    public LatencySnapshot getProviderTime() {
+        return providerTime;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandMetricsSnapshot{" +
+                "commandType=" + commandType.getName() +
+                ", invocations=" + invocations +
+                ", errors=" + errors +
+                ", inFlight=" + inFlight +
+                ", totalTime=" + totalTime +
+                ", middlewareTime=" + middlewareTime +
+                ", handlerTime=" + handlerTime +
+                ", providerTime=" + providerTime +
+                '}';
+    }
+}
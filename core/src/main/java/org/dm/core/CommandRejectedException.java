@@ -0,0 +1,16 @@
+package org.dm.core;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when <em>Command</em> is not executed because {@link Bus}
+ * has no capacity for it at the moment, i.e. dispatcher queue is full.
+ */
+public class CommandRejectedException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CommandRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,76 @@
+package org.dm.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Converts <em>Commands</em> to bytes and back, so they could be written to {@link CommandJournal}
+ * or sent with {@link RemoteRoute}.
+ */
+public interface CommandSerializer {
+
+    byte[] serialize(Object command);
+
+    Object deserialize(byte[] bytes);
+
+    /**
+     * @return serializer, which uses java serialization, so <em>Commands</em> should be {@link java.io.Serializable}
+     */
+    static CommandSerializer java() {
+        return new CommandSerializer() {
+            @Override
+            public byte[] serialize(Object command) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(command);
+                } catch (IOException e) {
+                    throw new IllegalStateException(format("Can't serialize command %s", command.getClass().getName()), e);
+                }
+                return bytes.toByteArray();
+            }
+
+            @Override
+            public Object deserialize(byte[] bytes) {
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return in.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException("Can't deserialize command", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Java serialization, which deserializes only classes of given types (and their subtypes),
+     * classes of {@code java.lang}, {@code java.math}, {@code java.time} and {@code java.util} packages,
+     * primitives and arrays of all of them. Any other class in serialized bytes, including dynamic proxies,
+     * is rejected before it is instantiated, so bytes from untrusted source can't run code of classes
+     * found on the classpath.
+     */
+    static CommandSerializer java(Class<?>... allowedTypes) {
+        List<Class<?>> allowed = Arrays.asList(allowedTypes.clone());
+        CommandSerializer java = java();
+        return new CommandSerializer() {
+            @Override
+            public byte[] serialize(Object command) {
+                return java.serialize(command);
+            }
+
+            @Override
+            public Object deserialize(byte[] bytes) {
+                try (ObjectInputStream in = new AllowingObjectInputStream(new ByteArrayInputStream(bytes), allowed)) {
+                    return in.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException(format("Can't deserialize command: %s", e.getMessage()), e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,135 @@
+package org.dm.core;
+
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Trace of single <em>Command</em> execution (See {@link BusTracer#dump()}).
+ *
+ * <p>Spans are in order they were entered, nested steps follow the step they are nested in
+ * and have greater depth, e.g. <em>ValueProviders</em> are nested in <em>CommandHandler</em>,
+ * which is nested in each {@link Middleware} applied to the <em>Command</em>.
+ */
+public final class CommandTrace {
+    private final long sequence;
+    private final Class<?> commandType;
+    private final String threadName;
+    private final long totalNanos;
+    private final Throwable failure;
+    private final List<Span> spans;
+
+    CommandTrace(long sequence, Class<?> commandType, String threadName, long totalNanos, Throwable failure, List<Span> spans) {
+        this.sequence = sequence;
+        this.commandType = commandType;
+        this.threadName = threadName;
+        this.totalNanos = totalNanos;
+        this.failure = failure;
+        this.spans = Collections.unmodifiableList(spans);
+    }
+
+    /**
+     * @return number of traces recorded by the bus before this one
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Class<?> getCommandType() {
+        return commandType;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return exception <em>Command</em> execution failed with or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public List<Span> getSpans() {
+        return spans;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder trace = new StringBuilder(format("#%d %s on %s: %d ns%s",
+                sequence, commandType.getName(), threadName, totalNanos, failure == null ? "" : " failed with " + failure));
+        for (Span span : spans) {
+            trace.append('\n');
+            for (int i = 0; i <= span.depth; i++) {
+                trace.append("  ");
+            }
+            trace.append(span);
+        }
+        return trace.toString();
+    }
+
+    public enum Stage {
+        MIDDLEWARE,
+        HANDLER,
+        PROVIDER
+    }
+
+    public static final class Span {
+        private final Stage stage;
+        private final String name;
+        private final int depth;
+        private final long startNanos;
+        private final long durationNanos;
+
+        Span(Stage stage, String name, int depth, long startNanos, long durationNanos) {
+            this.stage = stage;
+            this.name = name;
+            this.depth = depth;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        /**
+         * @return class name of <em>Middleware</em>, <em>Command</em> class name for <em>CommandHandler</em>
+         * or name of provided value
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return number of spans this one is nested in
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return nanoseconds since start of <em>Command</em> execution
+         */
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        /**
+         * @return nanoseconds including nested spans
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s %s: +%d ns, %d ns", stage, name, startNanos, durationNanos);
+        }
+    }
+}
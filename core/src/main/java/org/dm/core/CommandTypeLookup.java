@@ -0,0 +1,90 @@
+package org.dm.core;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Finds value (i.e. <em>CommandHandler</em>) registered for <em>Command</em> class.
+ *
+ * <p>Value is resolved once for each concrete <em>Command</em> class
+ * and then cached in {@link ClassValue}, so later lookups are constant time and lock free.
+ * Value registered for superclass or interface of <em>Command</em>
+ * is also used (i.e. for proxied or subclassed <em>Commands</em>), following such rules:
+ * <ul>
+ * <li>value registered for exact <em>Command</em> class wins</li>
+ * <li>otherwise the most specific registered supertypes are taken,
+ * i.e. value for superclass/interface is ignored, if there is value for its subtype</li>
+ * <li>if one of them is class, it wins over interfaces</li>
+ * <li>if there are several interfaces left - <em>Command</em> is ambiguous
+ * and value is created by ambiguity function from <em>Command</em> class and candidate types</li>
+ * </ul>
+ */
+final class CommandTypeLookup<V> extends ClassValue<V> {
+    private final Map<Class, V> registered;
+    private final BiFunction<Class<?>, List<Class<?>>, V> ambiguity;
+
+    CommandTypeLookup(Map<Class, V> registered, BiFunction<Class<?>, List<Class<?>>, V> ambiguity) {
+        this.registered = registered;
+        this.ambiguity = ambiguity;
+    }
+
+    /**
+     * @return value resolved for <em>Command</em> class or null if there is no such
+     */
+    @Override
+    protected V computeValue(Class<?> commandClass) {
+        V exact = registered.get(commandClass);
+        if (exact != null) {
+            return exact;
+        }
+
+        List<Class<?>> candidates = mostSpecific(supertypes(commandClass).stream()
+                .filter(registered::containsKey)
+                .collect(toList()));
+
+        Optional<Class<?>> candidateClass = candidates.stream()
+                .filter(candidate -> !candidate.isInterface())
+                .findFirst();
+        if (candidateClass.isPresent()) {
+            return registered.get(candidateClass.get());
+        }
+
+        if (candidates.size() == 1) {
+            return registered.get(candidates.get(0));
+        }
+
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        return ambiguity.apply(commandClass, candidates.stream()
+                .sorted(Comparator.comparing(Class::getName))
+                .collect(toList()));
+    }
+
+    private static Set<Class<?>> supertypes(Class<?> commandClass) {
+        Set<Class<?>> supertypes = new LinkedHashSet<>();
+        Deque<Class<?>> toVisit = new ArrayDeque<>();
+        toVisit.add(commandClass);
+        while (!toVisit.isEmpty()) {
+            Class<?> type = toVisit.poll();
+            if (supertypes.add(type)) {
+                if (type.getSuperclass() != null) {
+                    toVisit.add(type.getSuperclass());
+                }
+                toVisit.addAll(Arrays.asList(type.getInterfaces()));
+            }
+        }
+
+        return supertypes;
+    }
+
+    private static List<Class<?>> mostSpecific(List<Class<?>> types) {
+        return types.stream()
+                .filter(type -> types.stream()
+                        .noneMatch(other -> other != type && type.isAssignableFrom(other)))
+                .collect(toList());
+    }
+}
@@ -0,0 +1,34 @@
+package org.dm.core;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Predicates selecting <em>Command</em> types, {@link Middleware} is applied to
+ * (See {@link BusBuilder#registerMiddleware(Middleware, Predicate)}).
+ *
+ * <p>Predicate is tested against concrete <em>Command</em> class,
+ * for batch execution (See {@link BatchHandler}) - against class of <em>Commands</em> in batch.
+ */
+public final class CommandTypes {
+
+    private CommandTypes() {
+    }
+
+    /**
+     * @return predicate matching given types and their subtypes
+     */
+    public static Predicate<Class<?>> assignableTo(Class<?>... types) {
+        Class<?>[] copy = types.clone();
+        return commandType -> Arrays.stream(copy).anyMatch(type -> type.isAssignableFrom(commandType));
+    }
+
+    /**
+     * @return predicate matching types annotated with given annotation
+     * (inherited from superclass, if annotation is {@link java.lang.annotation.Inherited})
+     */
+    public static Predicate<Class<?>> annotatedWith(Class<? extends Annotation> annotation) {
+        return commandType -> commandType.isAnnotationPresent(annotation);
+    }
+}
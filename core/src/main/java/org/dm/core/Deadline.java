@@ -0,0 +1,212 @@
+package org.dm.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * Time budget and cancellation flag of <em>Command</em> execution
+ * (See {@link Bus#execute(Object, Deadline)} and {@link Bus#executeAsync(Object, Deadline)}).
+ *
+ * <p>Deadline is bound to the thread executing {@link Middleware} chain and <em>CommandHandler</em>,
+ * so they get it with {@link #current()}, and <em>CommandHandler</em> could also declare it as a parameter.
+ * Nested <em>Commands</em> executed by <em>CommandHandler</em> share its deadline,
+ * so they are rejected as well, once it is expired.
+ *
+ * <p>Expired or cancelled <em>Command</em> is rejected with {@link DeadlineExceededException}
+ * before any work is started - when it is executed and, for asynchronous execution,
+ * once more when it is taken by executor. Once started, <em>Command</em> is not interrupted,
+ * long running <em>CommandHandlers</em> should check {@link #isExpired()} themselves.
+ */
+public final class Deadline {
+
+    /**
+     * Deadline of <em>Command</em> executed without it - never expires and is never cancelled.
+     */
+    public static final Deadline NONE = new Deadline(false, 0);
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final boolean bounded;
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+
+    private Deadline(boolean bounded, long deadlineNanos) {
+        this.bounded = bounded;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @param timeout not positive timeout means deadline is already expired
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @return deadline, which never expires, but could be cancelled
+     */
+    public static Deadline cancellable() {
+        return new Deadline(false, 0);
+    }
+
+    /**
+     * @return deadline of <em>Command</em> executed by current thread or {@link #NONE}
+     */
+    public static Deadline current() {
+        Deadline current = CURRENT.get();
+        return current == null ? NONE : current;
+    }
+
+    /**
+     * Cooperative cancellation - <em>Command</em> is not started after that,
+     * started <em>Command</em> should check {@link #isExpired()}. {@link #NONE} can't be cancelled.
+     */
+    public void cancel() {
+        if (this != NONE) {
+            cancelled = true;
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if deadline is passed or cancelled
+     */
+    public boolean isExpired() {
+        return cancelled || bounded && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * @return time left, 0 if expired, {@link Long#MAX_VALUE} if deadline is not bounded in time
+     */
+    public long remaining(TimeUnit unit) {
+        if (cancelled) {
+            return 0;
+        }
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @throws DeadlineExceededException if deadline is expired
+     */
+    public void check() {
+        if (cancelled) {
+            throw new DeadlineExceededException("Command is cancelled");
+        }
+        if (bounded) {
+            long overdue = System.nanoTime() - deadlineNanos;
+            if (overdue >= 0) {
+                throw new DeadlineExceededException(format("Deadline of command is exceeded by %d ms", TimeUnit.NANOSECONDS.toMillis(overdue)));
+            }
+        }
+    }
+
+    /**
+     * Rejects nested <em>Command</em> executed synchronously by thread, which deadline is expired.
+     *
+     * @throws DeadlineExceededException if deadline bound to current thread is expired
+     */
+    static void checkBound() {
+        Deadline bound = CURRENT.get();
+        if (bound != null) {
+            bound.check();
+        }
+    }
+
+    /**
+     * @return deadline bound to current thread or null if there is no such
+     */
+    static Deadline bound() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Checks deadline and executes <em>Command</em> with deadline bound to current thread.
+     */
+    Object execute(Object command, Function<Object, Object> commandProcessor) {
+        check();
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return commandProcessor.apply(command);
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Executes <em>Command</em>, which was deferred to another thread, with deadline captured by {@link #bound()}
+     * when it was submitted. Expired deadline is returned as failed future.
+     *
+     * @param deadline null if <em>Command</em> was submitted without deadline
+     */
+    @SuppressWarnings("unchecked")
+    static CompletableFuture<Object> executeDeferred(Deadline deadline, Object command, Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        if (deadline == null) {
+            return asyncCommandProcessor.apply(command);
+        }
+        try {
+            return (CompletableFuture<Object>) deadline.execute(command, asyncCommandProcessor::apply);
+        } catch (DeadlineExceededException e) {
+            return AsyncExecution.failed(e);
+        }
+    }
+
+    /**
+     * Executes <em>Command</em> asynchronously with deadline bound to the thread submitting it.
+     * Returned future is completed with {@link DeadlineExceededException} and deadline is cancelled, when time is out.
+     * If returned future is cancelled, deadline is cancelled as well.
+     */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<Object> executeAsync(Object command, Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        CompletableFuture<Object> timed = new CompletableFuture<>();
+        CompletableFuture<Object> result;
+        try {
+            result = (CompletableFuture<Object>) execute(command, asyncCommandProcessor::apply);
+        } catch (Throwable e) {
+            timed.completeExceptionally(e);
+            return timed;
+        }
+
+        if (bounded) {
+            ScheduledFuture<?> timeout = BusTimer.SCHEDULER.schedule(() -> timeOut(timed), deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            timed.whenComplete((value, e) -> timeout.cancel(false));
+        }
+        timed.whenComplete((value, e) -> {
+            if (timed.isCancelled()) {
+                cancel();
+            }
+        });
+        result.whenComplete((value, e) -> {
+            if (bounded && isExpired()) {
+                // completed after deadline, but before the timer fired, e.g. handler gave up on isExpired()
+                timeOut(timed);
+            } else if (e != null) {
+                timed.completeExceptionally(e);
+            } else {
+                timed.complete(value);
+            }
+        });
+        return timed;
+    }
+
+    private void timeOut(CompletableFuture<Object> timed) {
+        // cancelled first, so whoever sees the timeout sees cancelled deadline as well
+        cancel();
+        timed.completeExceptionally(new DeadlineExceededException(format("Command is timed out after %d ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadlineNanos))));
+    }
+}
@@ -0,0 +1,14 @@
+package org.dm.core;
+
+/**
+ * Thrown when <em>Command</em> is not executed or its asynchronous execution is timed out,
+ * because its {@link Deadline} is expired or cancelled.
+ */
+public class DeadlineExceededException extends CommandRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
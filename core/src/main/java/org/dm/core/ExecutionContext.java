@@ -0,0 +1,82 @@
+package org.dm.core;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * State of single <em>Command</em> execution, bound to the thread
+ * executing {@link Middleware} chain and <em>CommandHandler</em>.
+ *
+ * <p>Nested <em>Command</em> execution (i.e. <em>CommandHandler</em> executing another <em>Command</em>)
+ * gets its own context, outer one is restored when nested execution is finished.
+ */
+final class ExecutionContext {
+
+    static final Object UNSET = new Object();
+
+    private static final ThreadLocal<ExecutionContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Values of {@link Provider.Scope#COMMAND} <em>ValueProviders</em>, indexed by their slot.
+     */
+    final Object[] values;
+
+    private ExecutionContext(int slots) {
+        this.values = new Object[slots];
+        Arrays.fill(values, UNSET);
+    }
+
+    /**
+     * @return context of <em>Command</em> executed by current thread or null if there is no such
+     */
+    static ExecutionContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Executes part of <em>Command</em> execution on another thread (See {@link ProviderResolution}) within its context.
+     */
+    static <T> T bound(ExecutionContext context, Supplier<T> action) {
+        ExecutionContext previous = CURRENT.get();
+        CURRENT.set(context);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Executes every <em>Command</em> passed to commandProcessor within new context.
+     */
+    static Function<Object, Object> scoped(int slots, Function<Object, Object> commandProcessor) {
+        return command -> {
+            ExecutionContext previous = enter(slots);
+            try {
+                return commandProcessor.apply(command);
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Binds new context to current thread, for executions, which can't be wrapped with {@link #scoped(int, Function)}.
+     *
+     * @return previous context to be restored with {@link #restore(ExecutionContext)}
+     */
+    static ExecutionContext enter(int slots) {
+        ExecutionContext previous = CURRENT.get();
+        CURRENT.set(new ExecutionContext(slots));
+        return previous;
+    }
+
+    static void restore(ExecutionContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.dm.core;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Executes <em>Command</em> registered with {@link BusBuilder#registerFanOut(Class, Function, Collector, int)}
+ * as sub-commands, executed in parallel on {@link ForkJoinPool}, and combines their results.
+ *
+ * <p>Sub-commands are split recursively in halves, so idle workers steal the larger halves.
+ * Splitting stops when there are as many parts as parallelism allows, sub-commands of a part
+ * are executed one by one. Each part accumulates results into its own container,
+ * containers are combined in order of sub-commands, when parts are joined.
+ * Once any sub-command fails, sub-commands which are not started yet are skipped,
+ * and the first failure is thrown.
+ */
+final class FanOutExecution {
+
+    private final Map<Class<?>, FanOut> fanOuts;
+    private final ForkJoinPool pool;
+    private final ClassValue<FanOut> resolvedFanOuts = new ClassValue<FanOut>() {
+        @Override
+        protected FanOut computeValue(Class<?> commandClass) {
+            return fanOuts.entrySet().stream()
+                    .filter(fanOut -> fanOut.getKey().isAssignableFrom(commandClass))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(null);
+        }
+    };
+    /**
+     * Executes sub-commands, is the resulting synchronous processor, so sub-commands could fan out as well
+     */
+    private Function<Object, Object> subCommandProcessor;
+
+    FanOutExecution(Map<Class<?>, FanOut> fanOuts, ForkJoinPool pool) {
+        this.fanOuts = new LinkedHashMap<>(fanOuts);
+        this.pool = pool;
+    }
+
+    Function<Object, Object> synchronous(Function<Object, Object> commandProcessor) {
+        subCommandProcessor = command -> {
+            FanOut fanOut = resolvedFanOuts.get(command.getClass());
+            return fanOut == null ? commandProcessor.apply(command) : execute(fanOut, command);
+        };
+        return subCommandProcessor;
+    }
+
+    Function<Object, CompletableFuture<Object>> asynchronous(Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        return command -> {
+            FanOut fanOut = resolvedFanOuts.get(command.getClass());
+            if (fanOut == null) {
+                return asyncCommandProcessor.apply(command);
+            }
+            // executed by worker of the pool, deadline is bound there again
+            Deadline deadline = Deadline.bound();
+            return CompletableFuture.supplyAsync(() -> deadline == null
+                    ? execute(fanOut, command)
+                    : deadline.execute(command, c -> execute(fanOut, c)), pool);
+        };
+    }
+
+    private Object execute(FanOut fanOut, Object command) {
+        List<?> subCommands = fanOut.splitter.apply(command);
+        Scatter scatter = new Scatter(subCommands, fanOut.reducer, Deadline.bound());
+        Part root = new Part(scatter, 0, subCommands.size(), fanOut.parallelism);
+
+        Thread thread = Thread.currentThread();
+        Object container;
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool) {
+            // nested fan out, forked parts are stolen by other workers of the pool
+            container = root.invoke();
+        } else {
+            container = pool.invoke(root);
+        }
+
+        Throwable failure = scatter.failure;
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+        return fanOut.reducer.finisher().apply(container);
+    }
+
+    static final class FanOut {
+        final Function<Object, ? extends List<?>> splitter;
+        final Collector<Object, Object, Object> reducer;
+        final int parallelism;
+
+        @SuppressWarnings("unchecked")
+        FanOut(Function<Object, ? extends List<?>> splitter, Collector<Object, ?, ?> reducer, int parallelism) {
+            this.splitter = splitter;
+            this.reducer = (Collector<Object, Object, Object>) reducer;
+            this.parallelism = parallelism;
+        }
+    }
+
+    /**
+     * State of one fan out, shared by its parts.
+     */
+    private final class Scatter {
+        final List<?> subCommands;
+        final Collector<Object, Object, Object> reducer;
+        /**
+         * Deadline of fanned out <em>Command</em>, bound again by workers executing sub-commands, null if there is no such
+         */
+        final Deadline deadline;
+        volatile Throwable failure;
+
+        Scatter(List<?> subCommands, Collector<Object, Object, Object> reducer, Deadline deadline) {
+            this.subCommands = subCommands;
+            this.reducer = reducer;
+            this.deadline = deadline;
+        }
+
+        Object execute(Object subCommand) {
+            return deadline == null ? subCommandProcessor.apply(subCommand) : deadline.execute(subCommand, subCommandProcessor);
+        }
+
+        synchronized void fail(Throwable e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    private final class Part extends RecursiveTask<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Scatter scatter;
+        private final int from;
+        private final int to;
+        private final int parallelism;
+
+        Part(Scatter scatter, int from, int to, int parallelism) {
+            this.scatter = scatter;
+            this.from = from;
+            this.to = to;
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        protected Object compute() {
+            if (parallelism <= 1 || to - from <= 1) {
+                return accumulate();
+            }
+
+            int middle = (from + to) >>> 1;
+            Part left = new Part(scatter, from, middle, parallelism / 2);
+            Part right = new Part(scatter, middle, to, parallelism - parallelism / 2);
+            left.fork();
+            Object rightContainer = right.compute();
+            if (scatter.failure != null && left.tryUnfork()) {
+                // not stolen by other worker, so never started
+                return null;
+            }
+            Object leftContainer = left.join();
+            if (scatter.failure != null) {
+                return null;
+            }
+            BinaryOperator<Object> combiner = scatter.reducer.combiner();
+            return combiner.apply(leftContainer, rightContainer);
+        }
+
+        private Object accumulate() {
+            Object container = scatter.reducer.supplier().get();
+            BiConsumer<Object, Object> accumulator = scatter.reducer.accumulator();
+            for (int i = from; i < to; i++) {
+                if (scatter.failure != null) {
+                    return null;
+                }
+                try {
+                    accumulator.accept(container, scatter.execute(scatter.subCommands.get(i)));
+                } catch (Throwable e) {
+                    scatter.fail(e);
+                    return null;
+                }
+            }
+            return container;
+        }
+    }
+}
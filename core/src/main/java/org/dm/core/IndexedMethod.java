@@ -0,0 +1,121 @@
+package org.dm.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * {@link Handler}, {@link BatchHandler} or {@link Provider} method of indexed class (See {@link BusIndex}).
+ *
+ * <p>Method is described by its owner - concrete class, instances of which are registered in {@link BusBuilder}
+ * (inherited methods are described for each subclass), parameters and factory creating
+ * {@link Invoker} bound to instance of owner.
+ *
+ * <p>Classes, which methods can't be called directly from generated index, are listed
+ * with {@link #scanned(Class, String, boolean)} and scanned with reflection.
+ */
+public final class IndexedMethod {
+
+    enum Kind {
+        HANDLER, BATCH_HANDLER, PROVIDER
+    }
+
+    final Kind kind;
+    final Class<?> owner;
+    final Class<?> type;
+    final List<BusBuilder.TypeDescription> params;
+    final Function<Object, Invoker> invokerFactory;
+    final String name;
+    final Provider.Scope scope;
+    final long ttl;
+    final TimeUnit ttlUnit;
+
+    private IndexedMethod(Kind kind, Class<?> owner, Class<?> type, List<BusBuilder.TypeDescription> params,
+                          Function<Object, Invoker> invokerFactory,
+                          String name, Provider.Scope scope, long ttl, TimeUnit ttlUnit) {
+        this.kind = kind;
+        this.owner = owner;
+        this.type = type;
+        this.params = params;
+        this.invokerFactory = invokerFactory;
+        this.name = name;
+        this.scope = scope;
+        this.ttl = ttl;
+        this.ttlUnit = ttlUnit;
+    }
+
+    /**
+     * @param commandType <em>Command</em> type, the first parameter
+     */
+    public static IndexedMethod handler(Class<?> owner, Class<?> commandType, Class<?>[] paramTypes, String[] paramNames,
+                                        Function<Object, Invoker> invokerFactory) {
+        return new IndexedMethod(Kind.HANDLER, owner, commandType, params(paramTypes, paramNames), invokerFactory,
+                null, null, 0, null);
+    }
+
+    /**
+     * @param commandType type of elements of <em>List</em> of <em>Commands</em>, the first parameter
+     */
+    public static IndexedMethod batchHandler(Class<?> owner, Class<?> commandType, Class<?>[] paramTypes, String[] paramNames,
+                                             Function<Object, Invoker> invokerFactory) {
+        return new IndexedMethod(Kind.BATCH_HANDLER, owner, commandType, params(paramTypes, paramNames), invokerFactory,
+                null, null, 0, null);
+    }
+
+    /**
+     * @param valueType provided value type, method return type
+     * @param name      method name
+     */
+    public static IndexedMethod provider(Class<?> owner, Class<?> valueType, String name,
+                                         Provider.Scope scope, long ttl, TimeUnit ttlUnit,
+                                         Function<Object, Invoker> invokerFactory) {
+        return provider(owner, valueType, name, scope, ttl, ttlUnit, new Class<?>[0], new String[0], invokerFactory);
+    }
+
+    /**
+     * @param paramTypes types of provided values the method depends on
+     */
+    public static IndexedMethod provider(Class<?> owner, Class<?> valueType, String name,
+                                         Provider.Scope scope, long ttl, TimeUnit ttlUnit,
+                                         Class<?>[] paramTypes, String[] paramNames,
+                                         Function<Object, Invoker> invokerFactory) {
+        return new IndexedMethod(Kind.PROVIDER, owner, valueType, params(paramTypes, paramNames), invokerFactory,
+                name, scope, ttl, ttlUnit);
+    }
+
+    /**
+     * Class, which has {@link Handler}/{@link BatchHandler} or {@link Provider} methods,
+     * but is not indexed, i.e. it is not accessible from generated index.
+     *
+     * @param index     generated index, its class loader is used to load the class
+     * @param className binary name of the class
+     * @param provider  true for {@link Provider} methods, otherwise for handle methods
+     */
+    public static IndexedMethod scanned(Class<? extends BusIndex> index, String className, boolean provider) {
+        Class<?> owner;
+        try {
+            owner = Class.forName(className, false, index.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(format("Class %s of bus index %s not found", className, index.getName()), e);
+        }
+        return new IndexedMethod(provider ? Kind.PROVIDER : Kind.HANDLER, owner, null, null, null,
+                null, null, 0, null);
+    }
+
+    boolean isScanned() {
+        return invokerFactory == null;
+    }
+
+    private static List<BusBuilder.TypeDescription> params(Class<?>[] paramTypes, String[] paramNames) {
+        if (paramTypes.length != paramNames.length) {
+            throw new IllegalArgumentException("Number of parameter types and names should be the same");
+        }
+        return IntStream.range(0, paramTypes.length)
+                .mapToObj(i -> new BusBuilder.TypeDescription(paramTypes[i], paramNames[i]))
+                .collect(toList());
+    }
+}
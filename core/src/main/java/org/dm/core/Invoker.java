@@ -0,0 +1,309 @@
+package org.dm.core;
+
+/**
+ * Strongly-typed invoker of {@link Handler}/{@link Provider} method,
+ * bound to its target once, when <em>Bus</em> is built (See {@link Invokers}).
+ *
+ * <p>Nested <em>CallN</em>/<em>RunN</em> interfaces are shapes, that
+ * are implemented by classes spun with {@link java.lang.invoke.LambdaMetafactory}:
+ * <em>CallN</em> for methods returning value and <em>RunN</em> for void methods,
+ * where N is number of method parameters.
+ *
+ * <p>Fixed arity {@code call} methods allow to invoke method without
+ * allocating arguments array. They are overridden by every shape,
+ * so array is only allocated for reflective invokers.
+ *
+ * <p>Invoker doesn't wrap exceptions - whatever is thrown by
+ * underlying method is thrown by invoker as is.
+ *
+ * <p>Shapes are also implemented by direct-call lambdas of generated {@link BusIndex},
+ * that's the only reason for Invoker to be public.
+ */
+public interface Invoker {
+
+    Object invoke(Object[] args) throws Throwable;
+
+    default Object call() throws Throwable {
+        return invoke(new Object[0]);
+    }
+
+    default Object call(Object a1) throws Throwable {
+        return invoke(new Object[]{a1});
+    }
+
+    default Object call(Object a1, Object a2) throws Throwable {
+        return invoke(new Object[]{a1, a2});
+    }
+
+    default Object call(Object a1, Object a2, Object a3) throws Throwable {
+        return invoke(new Object[]{a1, a2, a3});
+    }
+
+    default Object call(Object a1, Object a2, Object a3, Object a4) throws Throwable {
+        return invoke(new Object[]{a1, a2, a3, a4});
+    }
+
+    default Object call(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable {
+        return invoke(new Object[]{a1, a2, a3, a4, a5});
+    }
+
+    default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable {
+        return invoke(new Object[]{a1, a2, a3, a4, a5, a6});
+    }
+
+    default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable {
+        return invoke(new Object[]{a1, a2, a3, a4, a5, a6, a7});
+    }
+
+    default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable {
+        return invoke(new Object[]{a1, a2, a3, a4, a5, a6, a7, a8});
+    }
+
+    default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable {
+        return invoke(new Object[]{a1, a2, a3, a4, a5, a6, a7, a8, a9});
+    }
+
+    interface Call0 extends Invoker {
+        @Override
+        Object call() throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call();
+        }
+    }
+
+    interface Call1 extends Invoker {
+        @Override
+        Object call(Object a1) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0]);
+        }
+    }
+
+    interface Call2 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1]);
+        }
+    }
+
+    interface Call3 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2, Object a3) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1], args[2]);
+        }
+    }
+
+    interface Call4 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2, Object a3, Object a4) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1], args[2], args[3]);
+        }
+    }
+
+    interface Call5 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1], args[2], args[3], args[4]);
+        }
+    }
+
+    interface Call6 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1], args[2], args[3], args[4], args[5]);
+        }
+    }
+
+    interface Call7 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1], args[2], args[3], args[4], args[5], args[6]);
+        }
+    }
+
+    interface Call8 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7]);
+        }
+    }
+
+    interface Call9 extends Invoker {
+        @Override
+        Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable;
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return call(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7], args[8]);
+        }
+    }
+
+    interface Run1 extends Invoker {
+        void run(Object a1) throws Throwable;
+
+        @Override
+        default Object call(Object a1) throws Throwable {
+            run(a1);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0]);
+            return null;
+        }
+    }
+
+    interface Run2 extends Invoker {
+        void run(Object a1, Object a2) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2) throws Throwable {
+            run(a1, a2);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1]);
+            return null;
+        }
+    }
+
+    interface Run3 extends Invoker {
+        void run(Object a1, Object a2, Object a3) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3) throws Throwable {
+            run(a1, a2, a3);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1], args[2]);
+            return null;
+        }
+    }
+
+    interface Run4 extends Invoker {
+        void run(Object a1, Object a2, Object a3, Object a4) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4) throws Throwable {
+            run(a1, a2, a3, a4);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1], args[2], args[3]);
+            return null;
+        }
+    }
+
+    interface Run5 extends Invoker {
+        void run(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable {
+            run(a1, a2, a3, a4, a5);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1], args[2], args[3], args[4]);
+            return null;
+        }
+    }
+
+    interface Run6 extends Invoker {
+        void run(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable {
+            run(a1, a2, a3, a4, a5, a6);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1], args[2], args[3], args[4], args[5]);
+            return null;
+        }
+    }
+
+    interface Run7 extends Invoker {
+        void run(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable {
+            run(a1, a2, a3, a4, a5, a6, a7);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1], args[2], args[3], args[4], args[5], args[6]);
+            return null;
+        }
+    }
+
+    interface Run8 extends Invoker {
+        void run(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable {
+            run(a1, a2, a3, a4, a5, a6, a7, a8);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7]);
+            return null;
+        }
+    }
+
+    interface Run9 extends Invoker {
+        void run(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable {
+            run(a1, a2, a3, a4, a5, a6, a7, a8, a9);
+            return null;
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            run(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7], args[8]);
+            return null;
+        }
+    }
+}
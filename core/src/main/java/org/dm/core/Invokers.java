@@ -0,0 +1,155 @@
+package org.dm.core;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Creates {@link Invoker} for <em>CommandHandler</em>/<em>ValueProvider</em> method.
+ *
+ * <p>Method is bound with {@link LambdaMetafactory}, which spins a class
+ * calling the method directly, so JIT is able to inline it as any other call.
+ * If method can't be bound that way (i.e. method or its parameter/return types
+ * are not accessible from this package, or method has too many parameters)
+ * {@link Method#invoke(Object, Object...)} is used instead.
+ *
+ * <p>Method returning int, long or boolean is bound to {@link PrimitiveInvoker} shape,
+ * so its result could be taken unboxed.
+ */
+final class Invokers {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Class<?>[] CALL_SHAPES = {
+            Invoker.Call0.class, Invoker.Call1.class, Invoker.Call2.class, Invoker.Call3.class, Invoker.Call4.class,
+            Invoker.Call5.class, Invoker.Call6.class, Invoker.Call7.class, Invoker.Call8.class, Invoker.Call9.class};
+
+    private static final Class<?>[] RUN_SHAPES = {
+            null, Invoker.Run1.class, Invoker.Run2.class, Invoker.Run3.class, Invoker.Run4.class,
+            Invoker.Run5.class, Invoker.Run6.class, Invoker.Run7.class, Invoker.Run8.class, Invoker.Run9.class};
+
+    private static final Class<?>[] INT_SHAPES = {
+            null, PrimitiveInvoker.IntCall1.class, PrimitiveInvoker.IntCall2.class, PrimitiveInvoker.IntCall3.class,
+            PrimitiveInvoker.IntCall4.class, PrimitiveInvoker.IntCall5.class, PrimitiveInvoker.IntCall6.class,
+            PrimitiveInvoker.IntCall7.class, PrimitiveInvoker.IntCall8.class, PrimitiveInvoker.IntCall9.class};
+
+    private static final Class<?>[] LONG_SHAPES = {
+            null, PrimitiveInvoker.LongCall1.class, PrimitiveInvoker.LongCall2.class, PrimitiveInvoker.LongCall3.class,
+            PrimitiveInvoker.LongCall4.class, PrimitiveInvoker.LongCall5.class, PrimitiveInvoker.LongCall6.class,
+            PrimitiveInvoker.LongCall7.class, PrimitiveInvoker.LongCall8.class, PrimitiveInvoker.LongCall9.class};
+
+    private static final Class<?>[] BOOLEAN_SHAPES = {
+            null, PrimitiveInvoker.BooleanCall1.class, PrimitiveInvoker.BooleanCall2.class, PrimitiveInvoker.BooleanCall3.class,
+            PrimitiveInvoker.BooleanCall4.class, PrimitiveInvoker.BooleanCall5.class, PrimitiveInvoker.BooleanCall6.class,
+            PrimitiveInvoker.BooleanCall7.class, PrimitiveInvoker.BooleanCall8.class, PrimitiveInvoker.BooleanCall9.class};
+
+    private Invokers() {
+    }
+
+    static Invoker create(Object target, Method method) {
+        if (isBindable(method)) {
+            try {
+                return bind(target, method);
+            } catch (Throwable e) {
+                // Can't be spun for this method - falling back to reflection
+            }
+        }
+
+        return reflective(target, method);
+    }
+
+    static Invoker reflective(Object target, Method method) {
+        return new ReflectiveInvoker(target, method);
+    }
+
+    private static Invoker bind(Object target, Method method) throws Throwable {
+        int arity = method.getParameterCount();
+        Class<?> returnType = method.getReturnType();
+        boolean isVoid = returnType == void.class;
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        Class<?> shape = isVoid ? RUN_SHAPES[arity] : CALL_SHAPES[arity];
+        String name = isVoid ? "run" : "call";
+        if (arity > 0 && returnType == int.class) {
+            shape = INT_SHAPES[arity];
+            name = "callInt";
+        } else if (arity > 0 && returnType == long.class) {
+            shape = LONG_SHAPES[arity];
+            name = "callLong";
+        } else if (arity > 0 && returnType == boolean.class) {
+            shape = BOOLEAN_SHAPES[arity];
+            name = "callBoolean";
+        }
+
+        MethodType erasedType = MethodType.genericMethodType(arity);
+        MethodType instantiatedType = methodType(returnType, method.getParameterTypes()).wrap();
+        if (isVoid || PrimitiveInvoker.class.isAssignableFrom(shape)) {
+            erasedType = erasedType.changeReturnType(returnType);
+            instantiatedType = instantiatedType.changeReturnType(returnType);
+        }
+
+        MethodHandle factory = LambdaMetafactory.metafactory(
+                LOOKUP,
+                name,
+                isStatic ? methodType(shape) : methodType(shape, method.getDeclaringClass()),
+                erasedType,
+                LOOKUP.unreflect(method),
+                instantiatedType).getTarget();
+
+        return (Invoker) (isStatic ? factory.invoke() : factory.invoke(target));
+    }
+
+    private static boolean isBindable(Method method) {
+        return method.getParameterCount() < CALL_SHAPES.length
+                && Modifier.isPublic(method.getModifiers())
+                && isAccessible(method.getDeclaringClass())
+                && isAccessible(method.getReturnType())
+                && Arrays.stream(method.getParameterTypes()).allMatch(Invokers::isAccessible);
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+
+        for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+
+        try {
+            return Class.forName(type.getName(), false, Invokers.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static final class ReflectiveInvoker implements Invoker {
+        private Object target;
+        private Method method;
+
+        ReflectiveInvoker(Object target, Method method) {
+            this.target = target;
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
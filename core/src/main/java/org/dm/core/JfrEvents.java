@@ -0,0 +1,126 @@
+package org.dm.core;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Emits {@code org.dm.core.Dispatch} Java Flight Recorder events for traced steps of <em>Command</em> execution
+ * (See {@link BusTracer}).
+ *
+ * <p>Bus is built for Java 8, so event type is defined at runtime with {@code jdk.jfr.EventFactory}
+ * and events are created and committed with method handles. On JVM without it (Java 8)
+ * {@link #create()} returns null and tracing records only in-memory traces.
+ */
+final class JfrEvents {
+    static final String EVENT_NAME = "org.dm.core.Dispatch";
+
+    private static final int COMMAND_TYPE = 0;
+    private static final int STAGE = 1;
+    private static final int NAME = 2;
+
+    private final MethodHandle newEvent;
+    private final MethodHandle begin;
+    private final MethodHandle end;
+    private final MethodHandle shouldCommit;
+    private final MethodHandle commit;
+    private final MethodHandle set;
+
+    private JfrEvents(MethodHandle newEvent, MethodHandle begin, MethodHandle end,
+                      MethodHandle shouldCommit, MethodHandle commit, MethodHandle set) {
+        this.newEvent = newEvent;
+        this.begin = begin;
+        this.end = end;
+        this.shouldCommit = shouldCommit;
+        this.commit = commit;
+        this.set = set;
+    }
+
+    /**
+     * @return null if Java Flight Recorder API is not available
+     */
+    static JfrEvents create() {
+        try {
+            ClassLoader loader = ClassLoader.getSystemClassLoader();
+            Class<?> eventClass = Class.forName("jdk.jfr.Event", false, loader);
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory", false, loader);
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement", false, loader);
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor", false, loader);
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle annotation = lookup.findConstructor(annotationElementClass,
+                    MethodType.methodType(void.class, Class.class, Object.class));
+            MethodHandle field = lookup.findConstructor(valueDescriptorClass,
+                    MethodType.methodType(void.class, Class.class, String.class, List.class));
+
+            List<Object> annotations = Arrays.asList(
+                    annotation.invoke(annotationType("jdk.jfr.Name", loader), EVENT_NAME),
+                    annotation.invoke(annotationType("jdk.jfr.Label", loader), "Command Dispatch"),
+                    annotation.invoke(annotationType("jdk.jfr.Description", loader),
+                            "Middleware, value provider or command handler step of command execution"),
+                    annotation.invoke(annotationType("jdk.jfr.Category", loader), new String[]{"Commandbus"}));
+            // order of fields matches COMMAND_TYPE, STAGE and NAME indexes
+            List<Object> fields = Arrays.asList(
+                    field.invoke(String.class, "commandType", label(annotation, loader, "Command Type")),
+                    field.invoke(String.class, "stage", label(annotation, loader, "Stage")),
+                    field.invoke(String.class, "name", label(annotation, loader, "Name")));
+
+            Object factory = lookup.findStatic(eventFactoryClass, "create",
+                    MethodType.methodType(eventFactoryClass, List.class, List.class)).invoke(annotations, fields);
+
+            MethodType generic = MethodType.methodType(void.class, Object.class);
+            return new JfrEvents(
+                    lookup.findVirtual(eventFactoryClass, "newEvent", MethodType.methodType(eventClass))
+                            .bindTo(factory)
+                            .asType(MethodType.methodType(Object.class)),
+                    lookup.findVirtual(eventClass, "begin", MethodType.methodType(void.class)).asType(generic),
+                    lookup.findVirtual(eventClass, "end", MethodType.methodType(void.class)).asType(generic),
+                    lookup.findVirtual(eventClass, "shouldCommit", MethodType.methodType(boolean.class))
+                            .asType(MethodType.methodType(boolean.class, Object.class)),
+                    lookup.findVirtual(eventClass, "commit", MethodType.methodType(void.class)).asType(generic),
+                    lookup.findVirtual(eventClass, "set", MethodType.methodType(void.class, int.class, Object.class))
+                            .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class)));
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return started event
+     */
+    Object begin() {
+        try {
+            Object event = (Object) newEvent.invokeExact();
+            begin.invokeExact(event);
+            return event;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to begin flight recorder event", e);
+        }
+    }
+
+    void commit(Object event, Class<?> commandType, CommandTrace.Stage stage, String name) {
+        try {
+            end.invokeExact(event);
+            if ((boolean) shouldCommit.invokeExact(event)) {
+                set.invokeExact(event, COMMAND_TYPE, (Object) commandType.getName());
+                set.invokeExact(event, STAGE, (Object) stage.name());
+                set.invokeExact(event, NAME, (Object) name);
+                commit.invokeExact(event);
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to commit flight recorder event", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> annotationType(String name, ClassLoader loader) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName(name, false, loader);
+    }
+
+    private static List<Object> label(MethodHandle annotation, ClassLoader loader, String label) throws Throwable {
+        return Arrays.asList(annotation.invoke(annotationType("jdk.jfr.Label", loader), label));
+    }
+}
@@ -0,0 +1,166 @@
+package org.dm.core;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+
+/**
+ * Fixed size file of {@link CommandJournal}, mapped to memory and appended record by record.
+ *
+ * <p>Record is {@code [type:1][id:8][length:4][crc:4][payload:length]}, where crc covers
+ * type, id and payload. Newly created file is filled with zeros, so zero type marks the end of records.
+ * Record, which doesn't match its crc (torn by power loss), is treated as the end as well.
+ */
+final class JournalSegment {
+
+    static final byte COMMAND = 1;
+    static final byte COMPLETED = 2;
+    static final int HEADER = 1 + 8 + 4 + 4;
+
+    final long sequence;
+    final Path file;
+    /**
+     * Number of <em>Commands</em> of this segment, which are not completed yet
+     */
+    final AtomicInteger pending = new AtomicInteger();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int written;
+    // flusher only
+    private int flushed;
+
+    private JournalSegment(long sequence, Path file, FileChannel channel, MappedByteBuffer buffer) {
+        this.sequence = sequence;
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path directory, long sequence, int size) throws IOException {
+        Path file = directory.resolve(fileName(sequence));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new JournalSegment(sequence, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    static JournalSegment open(Path file, long sequence) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new JournalSegment(sequence, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+
+    static String fileName(long sequence) {
+        return format("journal-%019d.log", sequence);
+    }
+
+    /**
+     * @return sequence of segment file or -1 if it is not a segment file
+     */
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith("journal-") || !name.endsWith(".log")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    boolean fits(int length) {
+        return written + HEADER + length <= buffer.capacity();
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Should be called by one thread at a time, record should {@link #fits(int) fit}.
+     */
+    void append(byte type, long id, byte[] payload, CRC32 crc) {
+        crc.reset();
+        crc.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (id >>> shift));
+        }
+        crc.update(payload, 0, payload.length);
+
+        buffer.position(written);
+        buffer.put(type)
+                .putLong(id)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload);
+        written = buffer.position();
+    }
+
+    /**
+     * Reads records written before, stops at the first broken one, so next append overwrites it.
+     */
+    void read(RecordVisitor visitor) {
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + HEADER <= buffer.capacity()) {
+            byte type = buffer.get(position);
+            long id = buffer.getLong(position + 1);
+            int length = buffer.getInt(position + 9);
+            int checksum = buffer.getInt(position + 13);
+            if ((type != COMMAND && type != COMPLETED) || length < 0 || length > buffer.capacity() - position - HEADER) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            buffer.position(position + HEADER);
+            buffer.get(payload);
+            crc.reset();
+            crc.update(type);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                crc.update((int) (id >>> shift));
+            }
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            visitor.visit(type, id, payload);
+            position += HEADER + length;
+        }
+        written = position;
+    }
+
+    /**
+     * Forces records written so far to the disk, called by flusher only.
+     */
+    void force() {
+        int position = written;
+        if (flushed < position) {
+            buffer.force();
+            flushed = position;
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing to lose, mapping stays valid until it is garbage collected
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    interface RecordVisitor {
+        void visit(byte type, long id, byte[] payload);
+    }
+}
@@ -0,0 +1,230 @@
+package org.dm.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Applies {@link Bulkhead}s, {@link RateLimiter}s and {@link AdaptiveLimiter}s registered for <em>Command</em> type and its supertypes,
+ * before <em>Command</em> enters {@link AsyncMiddleware}/{@link Middleware} chain.
+ *
+ * <p>Asynchronous <em>Command</em> is limited before it is submitted to executor,
+ * so rejected <em>Command</em> doesn't take place in executor queue,
+ * and permits are released when its future is completed. The caller is never blocked:
+ * <em>Command</em>, which has to wait for a limit, is submitted later by the thread releasing
+ * a permit or by {@link BusTimer}.
+ */
+final class LimitedExecution {
+    private static final CommandLimit[] NO_LIMITS = new CommandLimit[0];
+
+    private final Map<Class<?>, List<CommandLimit>> limits;
+    private final ClassValue<CommandLimit[]> resolvedLimits = new ClassValue<CommandLimit[]>() {
+        @Override
+        protected CommandLimit[] computeValue(Class<?> commandClass) {
+            List<CommandLimit> resolved = new ArrayList<>();
+            limits.forEach((type, typeLimits) -> {
+                if (type.isAssignableFrom(commandClass)) {
+                    resolved.addAll(typeLimits);
+                }
+            });
+            return resolved.isEmpty() ? NO_LIMITS : resolved.toArray(new CommandLimit[0]);
+        }
+    };
+
+    LimitedExecution(Map<Class<?>, List<CommandLimit>> limits) {
+        this.limits = new LinkedHashMap<>(limits);
+    }
+
+    Function<Object, Object> synchronous(Function<Object, Object> commandProcessor) {
+        return command -> {
+            CommandLimit[] commandLimits = resolvedLimits.get(command.getClass());
+            if (commandLimits.length == 0) {
+                return commandProcessor.apply(command);
+            }
+
+            long[] tokens = acquire(commandLimits, command.getClass());
+            Object result;
+            try {
+                result = commandProcessor.apply(command);
+            } catch (Throwable e) {
+                release(commandLimits, tokens, commandLimits.length, e);
+                throw e;
+            }
+            release(commandLimits, tokens, commandLimits.length, null);
+            return result;
+        };
+    }
+
+    /**
+     * Takes permits of every limit for each <em>Command</em> of the batch (See {@link BatchExecution}),
+     * all of them or none, before the batch enters {@link Middleware} chain.
+     */
+    Function<Object, Object> batch(Function<Object, Object> batchProcessor) {
+        return batch -> {
+            List<?> commands = (List<?>) batch;
+            CommandLimit[] commandLimits = commands.isEmpty() ? NO_LIMITS : resolvedLimits.get(commands.get(0).getClass());
+            if (commandLimits.length == 0) {
+                return batchProcessor.apply(batch);
+            }
+
+            long[][] tokens = new long[commands.size()][];
+            int acquired = 0;
+            try {
+                for (; acquired < tokens.length; acquired++) {
+                    tokens[acquired] = acquire(commandLimits, commands.get(acquired).getClass());
+                }
+            } catch (RuntimeException e) {
+                release(commandLimits, tokens, acquired, CommandLimit.NOT_EXECUTED);
+                throw e;
+            }
+
+            Object result;
+            try {
+                result = batchProcessor.apply(batch);
+            } catch (Throwable e) {
+                release(commandLimits, tokens, tokens.length, e);
+                throw e;
+            }
+            release(commandLimits, tokens, tokens.length, null);
+            return result;
+        };
+    }
+
+    Function<Object, CompletableFuture<Object>> asynchronous(Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        return command -> {
+            CommandLimit[] commandLimits = resolvedLimits.get(command.getClass());
+            if (commandLimits.length == 0) {
+                return asyncCommandProcessor.apply(command);
+            }
+
+            CompletableFuture<long[]> tokens = acquireAsync(commandLimits, new long[commandLimits.length], 0, command.getClass());
+            if (tokens.isDone() && !tokens.isCompletedExceptionally()) {
+                return submit(command, commandLimits, tokens.getNow(null), asyncCommandProcessor);
+            }
+
+            // Command waiting for limit is submitted by another thread, its deadline is bound there again
+            Deadline deadline = Deadline.bound();
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            tokens.whenComplete((acquired, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                    return;
+                }
+
+                CompletableFuture<Object> submitted;
+                try {
+                    submitted = deadline == null
+                            ? submit(command, commandLimits, acquired, asyncCommandProcessor)
+                            : submit(deadline, command, commandLimits, acquired, asyncCommandProcessor);
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                submitted.whenComplete((value, e) -> {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            });
+            return result;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompletableFuture<Object> submit(Deadline deadline, Object command, CommandLimit[] commandLimits, long[] tokens,
+                                                    Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        boolean[] submitted = new boolean[1];
+        try {
+            return (CompletableFuture<Object>) deadline.execute(command, c -> {
+                submitted[0] = true;
+                return submit(c, commandLimits, tokens, asyncCommandProcessor);
+            });
+        } catch (DeadlineExceededException e) {
+            if (!submitted[0]) {
+                release(commandLimits, tokens, commandLimits.length, CommandLimit.NOT_EXECUTED);
+            }
+            throw e;
+        }
+    }
+
+    private static CompletableFuture<Object> submit(Object command, CommandLimit[] commandLimits, long[] tokens,
+                                                    Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        CompletableFuture<Object> result;
+        try {
+            result = asyncCommandProcessor.apply(command);
+        } catch (Throwable e) {
+            release(commandLimits, tokens, commandLimits.length, e);
+            throw e;
+        }
+        return result.whenComplete((value, error) -> release(commandLimits, tokens, commandLimits.length, error));
+    }
+
+    /**
+     * Acquires limits from given one on without blocking the caller, all of them or none.
+     */
+    private static CompletableFuture<long[]> acquireAsync(CommandLimit[] commandLimits, long[] tokens, int from, Class<?> commandClass) {
+        if (from == commandLimits.length) {
+            return CompletableFuture.completedFuture(tokens);
+        }
+
+        CompletableFuture<Long> token = commandLimits[from].acquireAsync(commandClass);
+        if (token.isDone() && !token.isCompletedExceptionally()) {
+            tokens[from] = token.getNow(null);
+            return acquireAsync(commandLimits, tokens, from + 1, commandClass);
+        }
+
+        CompletableFuture<long[]> acquired = new CompletableFuture<>();
+        token.whenComplete((value, error) -> {
+            if (error != null) {
+                release(commandLimits, tokens, from, CommandLimit.NOT_EXECUTED);
+                acquired.completeExceptionally(error);
+                return;
+            }
+
+            tokens[from] = value;
+            acquireAsync(commandLimits, tokens, from + 1, commandClass).whenComplete((all, e) -> {
+                if (e != null) {
+                    // limit, which has rejected Command, has released all the previous ones
+                    acquired.completeExceptionally(e);
+                } else {
+                    acquired.complete(all);
+                }
+            });
+        });
+        return acquired;
+    }
+
+    /**
+     * Acquires all limits or none of them.
+     */
+    private static long[] acquire(CommandLimit[] commandLimits, Class<?> commandClass) {
+        long[] tokens = new long[commandLimits.length];
+        int acquired = 0;
+        try {
+            for (; acquired < commandLimits.length; acquired++) {
+                tokens[acquired] = commandLimits[acquired].acquire(commandClass);
+            }
+        } catch (RuntimeException e) {
+            release(commandLimits, tokens, acquired, CommandLimit.NOT_EXECUTED);
+            throw e;
+        }
+        return tokens;
+    }
+
+    private static void release(CommandLimit[] commandLimits, long[][] tokens, int count, Throwable error) {
+        for (int i = 0; i < count; i++) {
+            release(commandLimits, tokens[i], commandLimits.length, error);
+        }
+    }
+
+    private static void release(CommandLimit[] commandLimits, long[] tokens, int count, Throwable error) {
+        for (int i = 0; i < count; i++) {
+            commandLimits[i].release(tokens[i], error);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.dm.core;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Routes <em>Command</em> through {@link Middleware} chain composed for its class.
+ *
+ * <p>Chain is composed once for each concrete <em>Command</em> class, only from <em>Middleware</em>
+ * applicable to that class, and ends with <em>CommandHandler</em> resolved for it.
+ * <em>Command</em> with no applicable <em>Middleware</em> is passed straight to its <em>CommandHandler</em>.
+ * If <em>Middleware</em> passes another <em>Command</em> to the next step, i.e. transforms it,
+ * the last step routes it to <em>CommandHandler</em> of its own class.
+ */
+final class MiddlewareChains implements Function<Object, Object> {
+    private final ClassValue<Function<Object, Object>> chains;
+
+    /**
+     * Chains of batch <em>CommandHandlers</em>, which get <em>List</em> of <em>Commands</em> of the same class.
+     */
+    static MiddlewareChains batch(List<Registration> registrations, Function<Class<?>, Function<Object, Object>> last) {
+        return new MiddlewareChains(registrations, last, null, null, null, null, batch -> {
+            List<?> commands = (List<?>) batch;
+            return commands.isEmpty() ? null : commands.get(0).getClass();
+        });
+    }
+
+    /**
+     * @param registrations <em>Middleware</em> in reverse order of execution
+     * @param last          creates the last step of chain for <em>Command</em> class
+     */
+    MiddlewareChains(List<Registration> registrations, Function<Class<?>, Function<Object, Object>> last) {
+        this(registrations, last, null, null, null, null);
+    }
+
+    /**
+     * Each <em>Command</em> class gets two chains - one with measured steps for sampled executions
+     * and one without them.
+     *
+     * @param measuredLast creates the last step of measured chain for <em>Command</em> class
+     */
+    MiddlewareChains(List<Registration> registrations, Function<Class<?>, Function<Object, Object>> last,
+                     BusMetrics metrics, Function<Class<?>, Function<Object, Object>> measuredLast) {
+        this(registrations, last, metrics, measuredLast, null, null);
+    }
+
+    /**
+     * If tracer is given, <em>Command</em> class gets one more chain with traced steps,
+     * used while tracing is started. Traced executions are counted, but their latencies are not sampled.
+     *
+     * @param metrics    null if metrics are not enabled
+     * @param tracer     null if tracing is not enabled
+     * @param tracedLast creates the last step of traced chain for <em>Command</em> class
+     */
+    MiddlewareChains(List<Registration> registrations, Function<Class<?>, Function<Object, Object>> last,
+                     BusMetrics metrics, Function<Class<?>, Function<Object, Object>> measuredLast,
+                     BusTracer tracer, Function<Class<?>, Function<Object, Object>> tracedLast) {
+        this(registrations, last, metrics, measuredLast, tracer, tracedLast, Object::getClass);
+    }
+
+    /**
+     * @param commandClassOf class of <em>Command</em> passed to the last step, null if it can't be rerouted
+     */
+    private MiddlewareChains(List<Registration> registrations, Function<Class<?>, Function<Object, Object>> last,
+                             BusMetrics metrics, Function<Class<?>, Function<Object, Object>> measuredLast,
+                             BusTracer tracer, Function<Class<?>, Function<Object, Object>> tracedLast,
+                             Function<Object, Class<?>> commandClassOf) {
+        ClassValue<Function<Object, Object>> lastSteps = lastSteps(last);
+        ClassValue<Function<Object, Object>> measuredLastSteps = metrics == null ? null : lastSteps(measuredLast);
+        ClassValue<Function<Object, Object>> tracedLastSteps = tracer == null ? null : lastSteps(tracedLast);
+        this.chains = new ClassValue<Function<Object, Object>>() {
+            @Override
+            protected Function<Object, Object> computeValue(Class<?> commandClass) {
+                // without Middleware nothing can pass another Command to the last step
+                boolean rerouting = registrations.stream().anyMatch(registration -> registration.appliesTo.test(commandClass));
+                Function<Object, Object> chain = compose(registrations, commandClass,
+                        lastStep(lastSteps, commandClass, rerouting, commandClassOf));
+                CommandMetrics commandMetrics = null;
+                if (metrics != null) {
+                    commandMetrics = metrics.forType(commandClass);
+                    Function<Object, Object> measuredChain = metrics.measuringTotal(commandMetrics,
+                            compose(registrations, commandClass, metrics.measuringHandler(commandMetrics,
+                                    lastStep(measuredLastSteps, commandClass, rerouting, commandClassOf))));
+                    chain = metrics.sampling(commandMetrics, chain, measuredChain);
+                }
+                if (tracer != null) {
+                    Function<Object, Object> tracedChain = tracer.tracingCommand(commandClass, composeTraced(registrations, commandClass,
+                            tracer.tracingStep(CommandTrace.Stage.HANDLER, commandClass.getName(),
+                                    lastStep(tracedLastSteps, commandClass, rerouting, commandClassOf)), tracer));
+                    if (commandMetrics != null) {
+                        tracedChain = metrics.sampling(commandMetrics, tracedChain, tracedChain);
+                    }
+                    chain = tracer.switching(chain, tracedChain);
+                }
+                return chain;
+            }
+        };
+    }
+
+    @Override
+    public Object apply(Object command) {
+        return chains.get(command.getClass()).apply(command);
+    }
+
+    Function<Object, Object> chainFor(Class<?> commandClass) {
+        return chains.get(commandClass);
+    }
+
+    private static ClassValue<Function<Object, Object>> lastSteps(Function<Class<?>, Function<Object, Object>> last) {
+        return new ClassValue<Function<Object, Object>>() {
+            @Override
+            protected Function<Object, Object> computeValue(Class<?> commandClass) {
+                return last.apply(commandClass);
+            }
+        };
+    }
+
+    /**
+     * @param rerouting true if <em>Middleware</em> could pass <em>Command</em> of another class to the last step
+     */
+    private static Function<Object, Object> lastStep(ClassValue<Function<Object, Object>> lastSteps, Class<?> commandClass,
+                                                     boolean rerouting, Function<Object, Class<?>> commandClassOf) {
+        Function<Object, Object> lastStep = lastSteps.get(commandClass);
+        if (!rerouting) {
+            return lastStep;
+        }
+
+        return command -> {
+            Class<?> actualClass = commandClassOf.apply(command);
+            return actualClass == commandClass || actualClass == null
+                    ? lastStep.apply(command)
+                    : lastSteps.get(actualClass).apply(command);
+        };
+    }
+
+    private static Function<Object, Object> compose(List<Registration> registrations, Class<?> commandClass, Function<Object, Object> last) {
+        Function<Object, Object> chain = last;
+        for (Registration registration : registrations) {
+            if (registration.appliesTo.test(commandClass)) {
+                chain = link(registration.middleware, chain);
+            }
+        }
+        return chain;
+    }
+
+    private static Function<Object, Object> composeTraced(List<Registration> registrations, Class<?> commandClass,
+                                                          Function<Object, Object> last, BusTracer tracer) {
+        Function<Object, Object> chain = last;
+        for (Registration registration : registrations) {
+            if (registration.appliesTo.test(commandClass)) {
+                chain = tracer.tracingStep(CommandTrace.Stage.MIDDLEWARE, registration.middleware.getClass().getName(),
+                        link(registration.middleware, chain));
+            }
+        }
+        return chain;
+    }
+
+    private static Function<Object, Object> link(Middleware middleware, Function<Object, Object> next) {
+        return command -> middleware.execute(command, next);
+    }
+
+    static final class Registration {
+        final Middleware middleware;
+        final Predicate<Class<?>> appliesTo;
+
+        Registration(Middleware middleware, Predicate<Class<?>> appliesTo) {
+            this.middleware = middleware;
+            this.appliesTo = appliesTo;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.dm.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Keyed ordered asynchronous execution (See {@link BusBuilder#registerOrderingKey(Class, Function)}).
+ *
+ * <p><em>Commands</em> with the same ordering key are put into the same serial lane
+ * and executed strictly one after another, while lanes of different keys are executed in parallel
+ * on the same {@link Bus} executor. Lane is just a tail of futures chain, there is no thread
+ * per key. Lane is created on first <em>Command</em> for the key and removed
+ * as soon as there are no pending <em>Commands</em> left.
+ *
+ * <p>There is no global lock, lanes are updated with {@link ConcurrentHashMap#compute}
+ * which locks only the bin of the key.
+ */
+final class OrderedExecution implements Function<Object, CompletableFuture<Object>> {
+    private static final CompletableFuture<Void> IDLE = CompletableFuture.completedFuture(null);
+
+    private final CommandTypeLookup<Function<Object, Object>> keyExtractors;
+    private final Function<Object, CompletableFuture<Object>> asyncCommandProcessor;
+    private final ConcurrentHashMap<Object, Lane> lanes = new ConcurrentHashMap<>();
+
+    OrderedExecution(Map<Class, Function<Object, Object>> keyExtractors, Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        this.keyExtractors = new CommandTypeLookup<>(keyExtractors, OrderedExecution::ambiguous);
+        this.asyncCommandProcessor = asyncCommandProcessor;
+    }
+
+    /**
+     * Failure to extract ordering key, i.e. ambiguous <em>Command</em>, is returned as failed future,
+     * as any other failure of asynchronous execution.
+     */
+    @Override
+    public CompletableFuture<Object> apply(Object command) {
+        Object key;
+        try {
+            Function<Object, Object> keyExtractor = keyExtractors.get(command.getClass());
+            key = keyExtractor == null ? null : keyExtractor.apply(command);
+        } catch (Throwable e) {
+            return AsyncExecution.failed(e);
+        }
+        if (key == null) {
+            return asyncCommandProcessor.apply(command);
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<?>[] previous = new CompletableFuture<?>[1];
+        lanes.compute(key, (k, lane) -> {
+            Lane l = lane == null ? new Lane() : lane;
+            previous[0] = l.tail;
+            l.tail = done;
+            l.pending++;
+            return l;
+        });
+
+        // Command is submitted by completion of the previous one, its deadline is bound there again
+        Deadline deadline = Deadline.bound();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        previous[0].whenComplete((ignored, previousError) -> Deadline.executeDeferred(deadline, command, asyncCommandProcessor)
+                .whenComplete((value, error) -> {
+                    done.complete(null);
+                    lanes.computeIfPresent(key, (k, lane) -> --lane.pending == 0 ? null : lane);
+
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                }));
+
+        return result;
+    }
+
+    int activeLanes() {
+        return lanes.size();
+    }
+
+    private static Function<Object, Object> ambiguous(Class<?> commandClass, List<Class<?>> candidates) {
+        throw new IllegalStateException(format("Command %s is ambiguous, ordering keys are registered for %s.",
+                commandClass.getName(),
+                candidates.stream()
+                        .map(Class::getName)
+                        .collect(joining(", "))));
+    }
+
+    /**
+     * State of lane is only accessed inside of {@link ConcurrentHashMap#compute},
+     * so it is guarded by the lock of its bin.
+     */
+    private static final class Lane {
+        private CompletableFuture<?> tail = IDLE;
+        private int pending;
+    }
+}
@@ -0,0 +1,46 @@
+package org.dm.core;
+
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link Middleware}, which is able to pass int, long or boolean result of <em>CommandHandler</em> unboxed
+ * (See {@link Bus#executeInt(Object)}, {@link Bus#executeLong(Object)} and {@link Bus#executeBoolean(Object)}).
+ *
+ * <p>Primitive result is kept unboxed only if every <em>Middleware</em> applicable to <em>Command</em>
+ * is <em>PrimitiveAwareMiddleware</em>, otherwise the whole chain is executed with {@link #execute(Object, java.util.function.Function)}.
+ * By default primitive variants delegate to {@link #execute(Object, java.util.function.Function)} boxing the result,
+ * so <em>Middleware</em> changing the result stays correct - override them to avoid boxing.
+ *
+ * @implSpec <pre> {@code
+ *   public int executeInt(Object command, ToIntFunction<Object> next) {
+ *       Timer.start();
+ *       int result = next.applyAsInt(command);
+ *       Timer.stop();
+ *       return result;
+ *   }}</pre>
+ */
+public interface PrimitiveAwareMiddleware extends Middleware {
+
+    /**
+     * @throws IllegalStateException if {@link #execute(Object, java.util.function.Function)} result is not int
+     */
+    default int executeInt(Object command, ToIntFunction<Object> next) {
+        return PrimitiveExecution.intResult(command, this.<Object>execute(command, next::applyAsInt));
+    }
+
+    /**
+     * @throws IllegalStateException if {@link #execute(Object, java.util.function.Function)} result is not long
+     */
+    default long executeLong(Object command, ToLongFunction<Object> next) {
+        return PrimitiveExecution.longResult(command, this.<Object>execute(command, next::applyAsLong));
+    }
+
+    /**
+     * @throws IllegalStateException if {@link #execute(Object, java.util.function.Function)} result is not boolean
+     */
+    default boolean executeBoolean(Object command, Predicate<Object> next) {
+        return PrimitiveExecution.booleanResult(command, this.<Object>execute(command, next::test));
+    }
+}
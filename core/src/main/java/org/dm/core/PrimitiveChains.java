@@ -0,0 +1,156 @@
+package org.dm.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Routes <em>Command</em> through {@link PrimitiveAwareMiddleware} chain, which ends with
+ * <em>CommandHandler</em> returning int, long or boolean, without boxing the result (See {@link PrimitiveExecution}).
+ *
+ * <p>Chain is composed once for each concrete <em>Command</em> class, the same way {@link MiddlewareChains} does,
+ * but only if its <em>CommandHandler</em> result could be taken unboxed (See {@link PrimitiveInvoker})
+ * and every <em>Middleware</em> applicable to that class is <em>PrimitiveAwareMiddleware</em>.
+ */
+final class PrimitiveChains {
+    private final ClassValue<Chain> chains;
+
+    /**
+     * @param registrations <em>Middleware</em> in reverse order of execution
+     */
+    PrimitiveChains(List<MiddlewareChains.Registration> registrations, CommandExecutor commandExecutor) {
+        this.chains = new ClassValue<Chain>() {
+            @Override
+            protected Chain computeValue(Class<?> commandClass) {
+                CommandHandler commandHandler = commandExecutor.handlerFor(commandClass);
+                if (commandHandler == null || commandHandler.primitiveResult == null) {
+                    return Chain.NONE;
+                }
+
+                List<PrimitiveAwareMiddleware> middleware = new ArrayList<>();
+                for (MiddlewareChains.Registration registration : registrations) {
+                    if (registration.appliesTo.test(commandClass)) {
+                        if (!(registration.middleware instanceof PrimitiveAwareMiddleware)) {
+                            return Chain.NONE;
+                        }
+                        middleware.add((PrimitiveAwareMiddleware) registration.middleware);
+                    }
+                }
+
+                // without Middleware nothing can pass another Command to the last step
+                boolean rerouting = !middleware.isEmpty();
+                if (commandHandler.primitiveResult == int.class) {
+                    ToIntFunction<Object> last = commandHandler::invokeInt;
+                    return Chain.ofInt(composeInt(middleware, rerouting ? reroutingInt(commandClass, last, commandExecutor) : last));
+                }
+                if (commandHandler.primitiveResult == long.class) {
+                    ToLongFunction<Object> last = commandHandler::invokeLong;
+                    return Chain.ofLong(composeLong(middleware, rerouting ? reroutingLong(commandClass, last, commandExecutor) : last));
+                }
+                Predicate<Object> last = commandHandler::invokeBoolean;
+                return Chain.ofBoolean(composeBoolean(middleware, rerouting ? reroutingBoolean(commandClass, last, commandExecutor) : last));
+            }
+        };
+    }
+
+    /**
+     * @return chain for <em>Command</em> class or null if its result can't be taken as unboxed int
+     */
+    ToIntFunction<Object> intChain(Class<?> commandClass) {
+        return chains.get(commandClass).ints;
+    }
+
+    /**
+     * @return chain for <em>Command</em> class or null if its result can't be taken as unboxed long
+     */
+    ToLongFunction<Object> longChain(Class<?> commandClass) {
+        return chains.get(commandClass).longs;
+    }
+
+    /**
+     * @return chain for <em>Command</em> class or null if its result can't be taken as unboxed boolean
+     */
+    Predicate<Object> booleanChain(Class<?> commandClass) {
+        return chains.get(commandClass).booleans;
+    }
+
+    /**
+     * Last step for <em>Command</em> class, which executes <em>Command</em> passed on by <em>Middleware</em> instead of it
+     * with <em>CommandHandler</em> of its own class, the same way {@link MiddlewareChains} does, and unboxes its result.
+     */
+    private static ToIntFunction<Object> reroutingInt(Class<?> commandClass, ToIntFunction<Object> last, CommandExecutor commandExecutor) {
+        return command -> command.getClass() == commandClass
+                ? last.applyAsInt(command)
+                : PrimitiveExecution.intResult(command, commandExecutor.handling(command.getClass()).apply(command));
+    }
+
+    private static ToLongFunction<Object> reroutingLong(Class<?> commandClass, ToLongFunction<Object> last, CommandExecutor commandExecutor) {
+        return command -> command.getClass() == commandClass
+                ? last.applyAsLong(command)
+                : PrimitiveExecution.longResult(command, commandExecutor.handling(command.getClass()).apply(command));
+    }
+
+    private static Predicate<Object> reroutingBoolean(Class<?> commandClass, Predicate<Object> last, CommandExecutor commandExecutor) {
+        return command -> command.getClass() == commandClass
+                ? last.test(command)
+                : PrimitiveExecution.booleanResult(command, commandExecutor.handling(command.getClass()).apply(command));
+    }
+
+    private static ToIntFunction<Object> composeInt(List<PrimitiveAwareMiddleware> middleware, ToIntFunction<Object> last) {
+        ToIntFunction<Object> chain = last;
+        for (PrimitiveAwareMiddleware m : middleware) {
+            ToIntFunction<Object> next = chain;
+            chain = command -> m.executeInt(command, next);
+        }
+        return chain;
+    }
+
+    private static ToLongFunction<Object> composeLong(List<PrimitiveAwareMiddleware> middleware, ToLongFunction<Object> last) {
+        ToLongFunction<Object> chain = last;
+        for (PrimitiveAwareMiddleware m : middleware) {
+            ToLongFunction<Object> next = chain;
+            chain = command -> m.executeLong(command, next);
+        }
+        return chain;
+    }
+
+    private static Predicate<Object> composeBoolean(List<PrimitiveAwareMiddleware> middleware, Predicate<Object> last) {
+        Predicate<Object> chain = last;
+        for (PrimitiveAwareMiddleware m : middleware) {
+            Predicate<Object> next = chain;
+            chain = command -> m.executeBoolean(command, next);
+        }
+        return chain;
+    }
+
+    /**
+     * At most one of chains is set - the one matching <em>CommandHandler</em> result.
+     */
+    private static final class Chain {
+        static final Chain NONE = new Chain(null, null, null);
+
+        final ToIntFunction<Object> ints;
+        final ToLongFunction<Object> longs;
+        final Predicate<Object> booleans;
+
+        private Chain(ToIntFunction<Object> ints, ToLongFunction<Object> longs, Predicate<Object> booleans) {
+            this.ints = ints;
+            this.longs = longs;
+            this.booleans = booleans;
+        }
+
+        static Chain ofInt(ToIntFunction<Object> chain) {
+            return new Chain(chain, null, null);
+        }
+
+        static Chain ofLong(ToLongFunction<Object> chain) {
+            return new Chain(null, chain, null);
+        }
+
+        static Chain ofBoolean(Predicate<Object> chain) {
+            return new Chain(null, null, chain);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.dm.core;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import static java.lang.String.format;
+
+/**
+ * Executes <em>Command</em> taking int, long or boolean result of its <em>CommandHandler</em>
+ * (See {@link Bus#executeInt(Object)}).
+ *
+ * <p>If there is nothing but {@link Middleware} chain between bus and <em>CommandHandlers</em>,
+ * <em>Command</em> goes through {@link PrimitiveChains} of current routing, so its result is not boxed.
+ * Otherwise, or if there is no primitive chain for <em>Command</em>, it is executed as usual
+ * and its result is unboxed.
+ */
+final class PrimitiveExecution {
+    private final Function<Object, Object> commandProcessor;
+    private final BusRegistry registry;
+    private final int commandSlots;
+
+    /**
+     * @param commandProcessor executes <em>Command</em> as {@link Bus#execute(Object)} does
+     * @param registry         null if <em>Commands</em> can't bypass commandProcessor,
+     *                         i.e. there are {@link AsyncMiddleware}, remote routes, limits or metrics
+     * @param commandSlots     number of {@link Provider.Scope#COMMAND} <em>ValueProviders</em>
+     */
+    PrimitiveExecution(Function<Object, Object> commandProcessor, BusRegistry registry, int commandSlots) {
+        this.commandProcessor = commandProcessor;
+        this.registry = registry;
+        this.commandSlots = commandSlots;
+    }
+
+    int executeInt(Object command) {
+        ToIntFunction<Object> chain = registry == null ? null : registry.routing().primitiveChains.intChain(command.getClass());
+        if (chain == null) {
+            return intResult(command, commandProcessor.apply(command));
+        }
+        if (commandSlots == 0) {
+            return chain.applyAsInt(command);
+        }
+
+        ExecutionContext previous = ExecutionContext.enter(commandSlots);
+        try {
+            return chain.applyAsInt(command);
+        } finally {
+            ExecutionContext.restore(previous);
+        }
+    }
+
+    long executeLong(Object command) {
+        ToLongFunction<Object> chain = registry == null ? null : registry.routing().primitiveChains.longChain(command.getClass());
+        if (chain == null) {
+            return longResult(command, commandProcessor.apply(command));
+        }
+        if (commandSlots == 0) {
+            return chain.applyAsLong(command);
+        }
+
+        ExecutionContext previous = ExecutionContext.enter(commandSlots);
+        try {
+            return chain.applyAsLong(command);
+        } finally {
+            ExecutionContext.restore(previous);
+        }
+    }
+
+    boolean executeBoolean(Object command) {
+        Predicate<Object> chain = registry == null ? null : registry.routing().primitiveChains.booleanChain(command.getClass());
+        if (chain == null) {
+            return booleanResult(command, commandProcessor.apply(command));
+        }
+        if (commandSlots == 0) {
+            return chain.test(command);
+        }
+
+        ExecutionContext previous = ExecutionContext.enter(commandSlots);
+        try {
+            return chain.test(command);
+        } finally {
+            ExecutionContext.restore(previous);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if result of <em>Command</em> is not int
+     */
+    static int intResult(Object command, Object result) {
+        if (!(result instanceof Integer)) {
+            throw unexpected(command, result, int.class);
+        }
+        return (Integer) result;
+    }
+
+    /**
+     * @throws IllegalStateException if result of <em>Command</em> is not long
+     */
+    static long longResult(Object command, Object result) {
+        if (!(result instanceof Long)) {
+            throw unexpected(command, result, long.class);
+        }
+        return (Long) result;
+    }
+
+    /**
+     * @throws IllegalStateException if result of <em>Command</em> is not boolean
+     */
+    static boolean booleanResult(Object command, Object result) {
+        if (!(result instanceof Boolean)) {
+            throw unexpected(command, result, boolean.class);
+        }
+        return (Boolean) result;
+    }
+
+    private static IllegalStateException unexpected(Object command, Object result, Class<?> expected) {
+        return new IllegalStateException(format("Result of command %s is %s, but %s is expected",
+                command.getClass().getName(),
+                result == null ? "null" : result.getClass().getName(),
+                expected.getName()));
+    }
+}
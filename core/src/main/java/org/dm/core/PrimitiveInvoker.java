@@ -0,0 +1,400 @@
+package org.dm.core;
+
+/**
+ * {@link Invoker} of {@link Handler} method returning int, long or boolean,
+ * which keeps result unboxed (See {@link Bus#executeInt(Object)}).
+ *
+ * <p>Nested <em>IntCallN</em>/<em>LongCallN</em>/<em>BooleanCallN</em> interfaces are shapes
+ * spun with {@link java.lang.invoke.LambdaMetafactory} the same way as {@link Invoker.Call1} and others,
+ * where N is number of method parameters. They are regular <em>Invokers</em> as well,
+ * boxing the result when invoked with {@code call} or {@code invoke}.
+ */
+public interface PrimitiveInvoker extends Invoker {
+
+    interface OfInt extends PrimitiveInvoker {
+    }
+
+    interface OfLong extends PrimitiveInvoker {
+    }
+
+    interface OfBoolean extends PrimitiveInvoker {
+    }
+
+    interface IntCall1 extends OfInt {
+        int callInt(Object a1) throws Throwable;
+
+        @Override
+        default Object call(Object a1) throws Throwable {
+            return callInt(a1);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0]);
+        }
+    }
+
+    interface IntCall2 extends OfInt {
+        int callInt(Object a1, Object a2) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2) throws Throwable {
+            return callInt(a1, a2);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1]);
+        }
+    }
+
+    interface IntCall3 extends OfInt {
+        int callInt(Object a1, Object a2, Object a3) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3) throws Throwable {
+            return callInt(a1, a2, a3);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1], args[2]);
+        }
+    }
+
+    interface IntCall4 extends OfInt {
+        int callInt(Object a1, Object a2, Object a3, Object a4) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4) throws Throwable {
+            return callInt(a1, a2, a3, a4);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1], args[2], args[3]);
+        }
+    }
+
+    interface IntCall5 extends OfInt {
+        int callInt(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable {
+            return callInt(a1, a2, a3, a4, a5);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1], args[2], args[3], args[4]);
+        }
+    }
+
+    interface IntCall6 extends OfInt {
+        int callInt(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable {
+            return callInt(a1, a2, a3, a4, a5, a6);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1], args[2], args[3], args[4], args[5]);
+        }
+    }
+
+    interface IntCall7 extends OfInt {
+        int callInt(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable {
+            return callInt(a1, a2, a3, a4, a5, a6, a7);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1], args[2], args[3], args[4], args[5], args[6]);
+        }
+    }
+
+    interface IntCall8 extends OfInt {
+        int callInt(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable {
+            return callInt(a1, a2, a3, a4, a5, a6, a7, a8);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7]);
+        }
+    }
+
+    interface IntCall9 extends OfInt {
+        int callInt(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable {
+            return callInt(a1, a2, a3, a4, a5, a6, a7, a8, a9);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callInt(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7], args[8]);
+        }
+    }
+
+    interface LongCall1 extends OfLong {
+        long callLong(Object a1) throws Throwable;
+
+        @Override
+        default Object call(Object a1) throws Throwable {
+            return callLong(a1);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0]);
+        }
+    }
+
+    interface LongCall2 extends OfLong {
+        long callLong(Object a1, Object a2) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2) throws Throwable {
+            return callLong(a1, a2);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1]);
+        }
+    }
+
+    interface LongCall3 extends OfLong {
+        long callLong(Object a1, Object a2, Object a3) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3) throws Throwable {
+            return callLong(a1, a2, a3);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1], args[2]);
+        }
+    }
+
+    interface LongCall4 extends OfLong {
+        long callLong(Object a1, Object a2, Object a3, Object a4) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4) throws Throwable {
+            return callLong(a1, a2, a3, a4);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1], args[2], args[3]);
+        }
+    }
+
+    interface LongCall5 extends OfLong {
+        long callLong(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable {
+            return callLong(a1, a2, a3, a4, a5);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1], args[2], args[3], args[4]);
+        }
+    }
+
+    interface LongCall6 extends OfLong {
+        long callLong(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable {
+            return callLong(a1, a2, a3, a4, a5, a6);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1], args[2], args[3], args[4], args[5]);
+        }
+    }
+
+    interface LongCall7 extends OfLong {
+        long callLong(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable {
+            return callLong(a1, a2, a3, a4, a5, a6, a7);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1], args[2], args[3], args[4], args[5], args[6]);
+        }
+    }
+
+    interface LongCall8 extends OfLong {
+        long callLong(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable {
+            return callLong(a1, a2, a3, a4, a5, a6, a7, a8);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7]);
+        }
+    }
+
+    interface LongCall9 extends OfLong {
+        long callLong(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable {
+            return callLong(a1, a2, a3, a4, a5, a6, a7, a8, a9);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callLong(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7], args[8]);
+        }
+    }
+
+    interface BooleanCall1 extends OfBoolean {
+        boolean callBoolean(Object a1) throws Throwable;
+
+        @Override
+        default Object call(Object a1) throws Throwable {
+            return callBoolean(a1);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0]);
+        }
+    }
+
+    interface BooleanCall2 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2) throws Throwable {
+            return callBoolean(a1, a2);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1]);
+        }
+    }
+
+    interface BooleanCall3 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2, Object a3) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3) throws Throwable {
+            return callBoolean(a1, a2, a3);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1], args[2]);
+        }
+    }
+
+    interface BooleanCall4 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2, Object a3, Object a4) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4) throws Throwable {
+            return callBoolean(a1, a2, a3, a4);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1], args[2], args[3]);
+        }
+    }
+
+    interface BooleanCall5 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5) throws Throwable {
+            return callBoolean(a1, a2, a3, a4, a5);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1], args[2], args[3], args[4]);
+        }
+    }
+
+    interface BooleanCall6 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Throwable {
+            return callBoolean(a1, a2, a3, a4, a5, a6);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1], args[2], args[3], args[4], args[5]);
+        }
+    }
+
+    interface BooleanCall7 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7) throws Throwable {
+            return callBoolean(a1, a2, a3, a4, a5, a6, a7);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1], args[2], args[3], args[4], args[5], args[6]);
+        }
+    }
+
+    interface BooleanCall8 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8) throws Throwable {
+            return callBoolean(a1, a2, a3, a4, a5, a6, a7, a8);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7]);
+        }
+    }
+
+    interface BooleanCall9 extends OfBoolean {
+        boolean callBoolean(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable;
+
+        @Override
+        default Object call(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6, Object a7, Object a8, Object a9) throws Throwable {
+            return callBoolean(a1, a2, a3, a4, a5, a6, a7, a8, a9);
+        }
+
+        @Override
+        default Object invoke(Object[] args) throws Throwable {
+            return callBoolean(args[0], args[1], args[2], args[3], args[4], args[5], args[6], args[7], args[8]);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.annotation.ElementType.METHOD;
 
@@ -11,8 +12,10 @@ import static java.lang.annotation.ElementType.METHOD;
  * Is used to mark method as <em>ValueProvider</em>
  * which then can be registered in BusBuilder with {@link BusBuilder#registerValueProvider(Object)}
  *
- * <p> Each method annotated with {@link Provider}
- * <b>should have exactly zero parameters</b>.
+ * <p> Parameters of method annotated with {@link Provider} are resolved
+ * the same way as additional params of <em>CommandHandler</em> - they are values
+ * provided by other <em>ValueProviders</em>. Cyclic dependencies, as well as cached value depending on value
+ * of narrower {@link #scope()}, are rejected on {@link BusBuilder#build()}.
  * Return type and method name makes combination
  * that is used to find out, which <em>ValueProvider</em>
  * should be called to resolve <em>CommandHandler</em> params.
@@ -20,6 +23,11 @@ import static java.lang.annotation.ElementType.METHOD;
  * <p>It is possible for a class to have more than one method
  * annotated with {@link Handler}. But the combination of
  * method return type and method name should be unique.
+ *
+ * <p>By default <em>ValueProvider</em> method is called on every <em>CommandHandler</em> invocation.
+ * Provided value could be cached with {@link #scope()}, i.e.
+ * {@code @Provider(scope = Provider.Scope.TIMED, ttl = 30)}.
+ * Cache hits and misses are available with {@link Bus#valueProviderStatistics()}.
  */
 @Documented
 @Retention(RetentionPolicy.RUNTIME)
@@ -28,4 +36,33 @@ public @interface Provider {
 
     String name() default "value";
 
+    Scope scope() default Scope.NONE;
+
+    /**
+     * Time to live of cached value, required for {@link Scope#TIMED}
+     */
+    long ttl() default 0;
+
+    TimeUnit ttlUnit() default TimeUnit.SECONDS;
+
+    enum Scope {
+        /**
+         * Value is not cached.
+         */
+        NONE,
+        /**
+         * Value is computed at most once per <em>Command</em> execution,
+         * nested <em>Command</em> execution computes its own value.
+         */
+        COMMAND,
+        /**
+         * Value is computed once per thread and kept while thread is alive.
+         */
+        THREAD,
+        /**
+         * Value is shared by all threads and recomputed when {@link #ttl()} is expired.
+         */
+        TIMED
+    }
+
 }
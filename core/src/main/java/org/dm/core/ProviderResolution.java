@@ -0,0 +1,158 @@
+package org.dm.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Resolves values of <em>CommandHandler</em> params together with values they depend on
+ * (See {@link BusBuilder#providerExecutor(Executor)}).
+ *
+ * <p>Graph of <em>ValueProviders</em> is sorted once, when <em>CommandHandler</em> is created,
+ * each of them is invoked at most once per <em>CommandHandler</em> invocation, even if several others depend on it.
+ * Without executor values are resolved lazily by the invoking thread, so dependencies of cached values are not computed.
+ * With executor each value is computed on executor as soon as its dependencies are resolved,
+ * so independent values are computed in parallel and invoking thread just waits for params.
+ * {@link Provider.Scope#COMMAND} values and {@link Deadline} of <em>Command</em> are visible to executor threads.
+ */
+final class ProviderResolution {
+
+    /**
+     * <em>ValueProviders</em> in topological order - each one follows all its dependencies.
+     */
+    private final ValueProvider[] nodes;
+    private final int[][] dependencies;
+    private final int[] params;
+    private final Executor executor;
+
+    private ProviderResolution(ValueProvider[] nodes, int[][] dependencies, int[] params, Executor executor) {
+        this.nodes = nodes;
+        this.dependencies = dependencies;
+        this.params = params;
+        this.executor = executor;
+    }
+
+    /**
+     * @return true if params can't be just provided one by one
+     */
+    static boolean isRequired(List<ValueProvider> params, Executor executor) {
+        return executor != null && params.size() > 1
+                || params.stream().anyMatch(provider -> provider.dependencies.length > 0);
+    }
+
+    /**
+     * @param executor null to resolve values by invoking thread
+     */
+    static ProviderResolution create(List<ValueProvider> params, Executor executor) {
+        Map<ValueProvider, Integer> indexes = new IdentityHashMap<>();
+        List<ValueProvider> nodes = new ArrayList<>();
+        params.forEach(provider -> sort(provider, indexes, nodes));
+
+        int[][] dependencies = new int[nodes.size()][];
+        for (int i = 0; i < nodes.size(); i++) {
+            ValueProvider[] nodeDependencies = nodes.get(i).dependencies;
+            dependencies[i] = new int[nodeDependencies.length];
+            for (int d = 0; d < nodeDependencies.length; d++) {
+                dependencies[i][d] = indexes.get(nodeDependencies[d]);
+            }
+        }
+        return new ProviderResolution(nodes.toArray(new ValueProvider[0]),
+                dependencies,
+                params.stream().mapToInt(indexes::get).toArray(),
+                executor);
+    }
+
+    /**
+     * Dependencies are already checked for cycles (See {@link ValueProviderFactory#resolveDependencies(Map)}).
+     */
+    private static void sort(ValueProvider provider, Map<ValueProvider, Integer> indexes, List<ValueProvider> nodes) {
+        if (indexes.containsKey(provider)) {
+            return;
+        }
+        for (ValueProvider dependency : provider.dependencies) {
+            sort(dependency, indexes, nodes);
+        }
+        indexes.put(provider, nodes.size());
+        nodes.add(provider);
+    }
+
+    /**
+     * @return args of <em>CommandHandler</em> method - <em>Command</em> followed by provided values
+     */
+    Object[] resolve(Object command) {
+        Object[] args = new Object[params.length + 1];
+        args[0] = command;
+        if (executor == null) {
+            Invocation invocation = new Invocation();
+            for (int i = 0; i < params.length; i++) {
+                args[i + 1] = invocation.value(params[i]);
+            }
+        } else {
+            CompletableFuture<Object>[] futures = submit();
+            for (int i = 0; i < params.length; i++) {
+                args[i + 1] = AsyncExecution.join(futures[params[i]]);
+            }
+        }
+        return args;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object>[] submit() {
+        ExecutionContext context = ExecutionContext.current();
+        Deadline deadline = Deadline.bound();
+        CompletableFuture<Object>[] futures = new CompletableFuture[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            ValueProvider node = nodes[i];
+            int[] nodeDependencies = dependencies[i];
+            if (nodeDependencies.length == 0) {
+                futures[i] = CompletableFuture.supplyAsync(() -> bound(context, deadline, () -> node.invoke(null)), executor);
+                continue;
+            }
+
+            CompletableFuture<?>[] dependencyFutures = new CompletableFuture[nodeDependencies.length];
+            for (int d = 0; d < nodeDependencies.length; d++) {
+                dependencyFutures[d] = futures[nodeDependencies[d]];
+            }
+            futures[i] = CompletableFuture.allOf(dependencyFutures).thenApplyAsync(ignored -> bound(context, deadline, () -> node.invoke(() -> {
+                Object[] values = new Object[dependencyFutures.length];
+                for (int d = 0; d < values.length; d++) {
+                    values[d] = dependencyFutures[d].join();
+                }
+                return values;
+            })), executor);
+        }
+        return futures;
+    }
+
+    private static Object bound(ExecutionContext context, Deadline deadline, Supplier<Object> computation) {
+        Supplier<Object> withContext = context == null ? computation : () -> ExecutionContext.bound(context, computation);
+        return deadline == null ? withContext.get() : deadline.execute(null, ignored -> withContext.get());
+    }
+
+    /**
+     * Values resolved so far by single <em>CommandHandler</em> invocation.
+     */
+    private final class Invocation {
+        private final Object[] values = new Object[nodes.length];
+        private final boolean[] resolved = new boolean[nodes.length];
+
+        Object value(int node) {
+            if (!resolved[node]) {
+                int[] nodeDependencies = dependencies[node];
+                values[node] = nodes[node].invoke(nodeDependencies.length == 0 ? null : () -> {
+                    Object[] dependencyValues = new Object[nodeDependencies.length];
+                    for (int d = 0; d < nodeDependencies.length; d++) {
+                        dependencyValues[d] = value(nodeDependencies[d]);
+                    }
+                    return dependencyValues;
+                });
+                resolved[node] = true;
+            }
+            return values[node];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.dm.core;
+
+/**
+ * Thrown when <em>Command</em> is rejected, because its {@link RateLimiter} limit is exceeded.
+ */
+public class RateLimitExceededException extends CommandRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
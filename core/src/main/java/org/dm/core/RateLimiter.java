@@ -0,0 +1,160 @@
+package org.dm.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.String.format;
+
+/**
+ * Token bucket limiting rate of <em>Command</em> executions
+ * (See {@link BusBuilder#registerRateLimiter(Class, RateLimiter)}).
+ *
+ * <p>Bucket is implemented with generic cell rate algorithm: the only state is
+ * theoretical arrival time of the next <em>Command</em>, which is advanced with CAS,
+ * so there are no locks and no refilling thread. Up to burst <em>Commands</em> could be
+ * executed at once, after that - one per emission interval.
+ *
+ * <p>If <em>Command</em> is over the limit, it waits for its turn at most max wait time
+ * or is rejected with {@link RateLimitExceededException}. Synchronous <em>Command</em> waits
+ * in the caller thread (and is rejected, if the thread is interrupted), asynchronous one is
+ * submitted by timer, when its turn comes.
+ */
+public final class RateLimiter extends CommandLimit {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final long maxWaitNanos;
+    private final AtomicLong theoreticalArrival;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private RateLimiter(double permitsPerSecond, int burst, long maxWaitNanos) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException(format("Permits per second should be positive, but was %s", permitsPerSecond));
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException(format("Burst should be positive, but was %d", burst));
+        }
+        if (maxWaitNanos < 0) {
+            throw new IllegalArgumentException(format("Max wait should not be negative, but was %d", maxWaitNanos));
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * burst;
+        this.maxWaitNanos = maxWaitNanos;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * @return rate limiter, which rejects <em>Command</em> over the limit at once
+     */
+    public static RateLimiter of(double permitsPerSecond, int burst) {
+        return new RateLimiter(permitsPerSecond, burst, 0);
+    }
+
+    /**
+     * @return rate limiter, which lets <em>Command</em> over the limit wait for its turn at most max wait time
+     */
+    public static RateLimiter of(double permitsPerSecond, int burst, long maxWait, TimeUnit unit) {
+        return new RateLimiter(permitsPerSecond, burst, unit.toNanos(maxWait));
+    }
+
+    @Override
+    long acquire(Class<?> commandClass) {
+        long wait = reserve(commandClass);
+        if (wait > 0 && !sleep(System.nanoTime() + wait)) {
+            rejected.increment();
+            throw new RateLimitExceededException(format("Command %s is rejected, thread is interrupted while waiting for rate limit",
+                    commandClass.getName()));
+        }
+        accepted.increment();
+        return 0;
+    }
+
+    @Override
+    CompletableFuture<Long> acquireAsync(Class<?> commandClass) {
+        long wait;
+        try {
+            wait = reserve(commandClass);
+        } catch (RateLimitExceededException e) {
+            return AsyncExecution.failed(e);
+        }
+        accepted.increment();
+        if (wait <= 0) {
+            return ACQUIRED;
+        }
+
+        CompletableFuture<Long> acquired = new CompletableFuture<>();
+        BusTimer.SCHEDULER.schedule(() -> acquired.complete(0L), wait, TimeUnit.NANOSECONDS);
+        return acquired;
+    }
+
+    /**
+     * Gives the turn back, if <em>Command</em> is not executed, because another limit has rejected it,
+     * so <em>Commands</em> limited together (i.e. a batch) take their turns all or none.
+     */
+    @Override
+    void release(long token, Throwable error) {
+        if (error == NOT_EXECUTED) {
+            theoreticalArrival.addAndGet(-intervalNanos);
+        }
+    }
+
+    /**
+     * Takes the turn of <em>Command</em>.
+     *
+     * @return nanos to wait for the turn
+     */
+    private long reserve(Class<?> commandClass) {
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            long wait = next - toleranceNanos - now;
+            if (wait > maxWaitNanos) {
+                rejected.increment();
+                throw new RateLimitExceededException(format("Rate limit of command %s is exceeded, %.1f executions per second are allowed",
+                        commandClass.getName(),
+                        (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos));
+            }
+
+            if (theoreticalArrival.compareAndSet(arrival, next)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * @return number of <em>Commands</em>, which could be executed right now without waiting
+     */
+    public long availablePermits() {
+        long now = System.nanoTime();
+        long used = Math.max(theoreticalArrival.get(), now) - now;
+        return Math.max(0, (toleranceNanos - used) / intervalNanos);
+    }
+
+    public long acceptedCount() {
+        return accepted.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return false if thread is interrupted, interrupt status is kept
+     */
+    private static boolean sleep(long until) {
+        long remaining;
+        while ((remaining = until - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
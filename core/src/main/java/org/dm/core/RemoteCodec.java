@@ -0,0 +1,57 @@
+package org.dm.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary frames exchanged by {@link RemoteRoute} and {@link RemoteServer}.
+ *
+ * <p>Frame is {@code [length:4][kind:1][id:8][payload]}, where length covers everything after itself.
+ * Request payload is serialized <em>Command</em>, response payload is serialized result (empty for null),
+ * failure payload is UTF-8 {@code exceptionClass\nmessage}. Responses are matched to requests by id,
+ * so requests are pipelined and responses come in any order.
+ */
+final class RemoteCodec {
+
+    static final byte REQUEST = 1;
+    static final byte RESPONSE = 2;
+    static final byte FAILURE = 3;
+    static final int LENGTH = 4;
+    static final int HEADER = 1 + 8;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private RemoteCodec() {
+    }
+
+    static ByteBuffer frame(byte kind, long id, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH + HEADER + payload.length);
+        frame.putInt(HEADER + payload.length)
+                .put(kind)
+                .putLong(id)
+                .put(payload)
+                .flip();
+        return frame;
+    }
+
+    static ByteBuffer response(long id, Object result, CommandSerializer serializer) {
+        return frame(RESPONSE, id, result == null ? EMPTY : serializer.serialize(result));
+    }
+
+    static Object result(byte[] payload, CommandSerializer serializer) {
+        return payload.length == 0 ? null : serializer.deserialize(payload);
+    }
+
+    static ByteBuffer failure(long id, Throwable error) {
+        String message = error.getMessage() == null ? "" : error.getMessage();
+        return frame(FAILURE, id, (error.getClass().getName() + '\n' + message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static RemoteCommandException exception(byte[] payload) {
+        String failure = new String(payload, StandardCharsets.UTF_8);
+        int separator = failure.indexOf('\n');
+        return separator < 0
+                ? new RemoteCommandException(failure, "")
+                : new RemoteCommandException(failure.substring(0, separator), failure.substring(separator + 1));
+    }
+}
@@ -0,0 +1,24 @@
+package org.dm.core;
+
+/**
+ * Thrown when <em>Command</em> sent with {@link RemoteRoute} fails on the remote side.
+ * Remote exception itself is not transferred, only its class name and message.
+ */
+public class RemoteCommandException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String remoteType;
+
+    public RemoteCommandException(String remoteType, String message) {
+        super(remoteType + ": " + message);
+        this.remoteType = remoteType;
+    }
+
+    /**
+     * @return class name of the exception thrown on the remote side
+     */
+    public String getRemoteType() {
+        return remoteType;
+    }
+}
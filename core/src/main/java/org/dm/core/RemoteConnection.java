@@ -0,0 +1,230 @@
+package org.dm.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.String.format;
+
+/**
+ * Non blocking socket, exchanging {@link RemoteCodec} frames.
+ *
+ * <p>Frames are sent from any thread: they are queued, and the first sender since the last flush
+ * schedules flush on the loop thread, so frames sent meanwhile are written together with one gathering write.
+ * Received frames are passed to listener on the loop thread.
+ */
+final class RemoteConnection implements RemoteLoop.Handler {
+
+    private static final int MAX_GATHERED = 64;
+
+    private final SocketChannel channel;
+    private final RemoteLoop loop;
+    private final int maxFrameSize;
+    private final Listener listener;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> outgoing = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // loop thread only
+    private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+    private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED];
+    private ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+    private SelectionKey key;
+    private boolean connecting;
+
+    RemoteConnection(SocketChannel channel, RemoteLoop loop, int maxFrameSize, Listener listener) {
+        this.channel = channel;
+        this.loop = loop;
+        this.maxFrameSize = maxFrameSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts exchanging frames over connected channel.
+     */
+    void open() throws IOException {
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        loop.register(channel, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Connects channel on the loop thread without blocking, frames sent meanwhile are written once it is connected.
+     * Connection fails, if it is not connected within timeout.
+     */
+    void connect(InetSocketAddress address, long timeoutNanos) {
+        loop.execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                connecting = !channel.connect(address);
+                loop.register(channel, connecting ? SelectionKey.OP_CONNECT : SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                failed(e);
+                return;
+            }
+            if (connecting) {
+                BusTimer.SCHEDULER.schedule(() -> loop.execute(() -> {
+                    if (connecting) {
+                        failed(new IOException(format("Connection to %s is not established in %d ms",
+                                address, TimeUnit.NANOSECONDS.toMillis(timeoutNanos))));
+                    }
+                }), timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * @return false if connection is closed and frame is not sent
+     */
+    boolean send(ByteBuffer frame) {
+        if (closed.get()) {
+            return false;
+        }
+        outgoing.add(frame);
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+        return true;
+    }
+
+    void close() {
+        loop.execute(() -> failed(new IOException("Connection is closed")));
+    }
+
+    @Override
+    public void registered(SelectionKey key) {
+        this.key = key;
+        if (!connecting && !outgoing.isEmpty()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void ready(SelectionKey key) throws IOException {
+        if (connecting && key.isConnectable()) {
+            if (!channel.finishConnect()) {
+                return;
+            }
+            connecting = false;
+            key.interestOps(SelectionKey.OP_READ);
+            flush();
+            return;
+        }
+        if (key.isReadable()) {
+            read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void failed(IOException e) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already broken
+        }
+        connecting = false;
+        outgoing.clear();
+        writing.clear();
+        listener.closed(this, e);
+    }
+
+    private void flush() {
+        if (key == null || connecting || closed.get()) {
+            // not registered or connected yet, flushed once it is
+            return;
+        }
+
+        try {
+            while (true) {
+                ByteBuffer frame;
+                while (writing.size() < MAX_GATHERED && (frame = outgoing.poll()) != null) {
+                    writing.add(frame);
+                }
+                if (writing.isEmpty()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    flushScheduled.set(false);
+                    if (outgoing.isEmpty() || !flushScheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                int count = writing.size();
+                writing.toArray(gathered);
+                channel.write(gathered, 0, count);
+                while (!writing.isEmpty() && !writing.peek().hasRemaining()) {
+                    writing.poll();
+                }
+                if (!writing.isEmpty()) {
+                    // socket buffer is full, continue when it is writable
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void read() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            throw new IOException("Connection is closed by peer");
+        }
+
+        readBuffer.flip();
+        while (readBuffer.remaining() >= RemoteCodec.LENGTH) {
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length < RemoteCodec.HEADER || length > maxFrameSize) {
+                throw new IOException(format("Frame of %d bytes is received, max frame size is %d", length, maxFrameSize));
+            }
+            if (readBuffer.remaining() < RemoteCodec.LENGTH + length) {
+                if (readBuffer.capacity() < RemoteCodec.LENGTH + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(RemoteCodec.LENGTH + length);
+                    larger.put(readBuffer);
+                    readBuffer = larger;
+                    return;
+                }
+                break;
+            }
+
+            readBuffer.getInt();
+            byte kind = readBuffer.get();
+            long id = readBuffer.getLong();
+            byte[] payload = new byte[length - RemoteCodec.HEADER];
+            readBuffer.get(payload);
+            listener.received(this, kind, id, payload);
+        }
+        readBuffer.compact();
+    }
+
+    interface Listener {
+        /**
+         * Called on the loop thread
+         */
+        void received(RemoteConnection connection, byte kind, long id, byte[] payload);
+
+        /**
+         * Called once, on the loop thread
+         */
+        void closed(RemoteConnection connection, IOException cause);
+    }
+}
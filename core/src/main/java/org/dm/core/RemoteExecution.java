@@ -0,0 +1,43 @@
+package org.dm.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Sends <em>Commands</em> of types registered with {@link RemoteRoute} to remote {@link Bus},
+ * instead of local {@link AsyncMiddleware}/{@link Middleware} chain and <em>CommandHandler</em>.
+ */
+final class RemoteExecution {
+
+    private final Map<Class<?>, RemoteRoute> routes;
+    private final ClassValue<RemoteRoute> resolvedRoutes = new ClassValue<RemoteRoute>() {
+        @Override
+        protected RemoteRoute computeValue(Class<?> commandClass) {
+            return routes.entrySet().stream()
+                    .filter(route -> route.getKey().isAssignableFrom(commandClass))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(null);
+        }
+    };
+
+    RemoteExecution(Map<Class<?>, RemoteRoute> routes) {
+        this.routes = new LinkedHashMap<>(routes);
+    }
+
+    Function<Object, Object> synchronous(Function<Object, Object> commandProcessor) {
+        return command -> {
+            RemoteRoute route = resolvedRoutes.get(command.getClass());
+            return route == null ? commandProcessor.apply(command) : AsyncExecution.join(route.send(command));
+        };
+    }
+
+    Function<Object, CompletableFuture<Object>> asynchronous(Function<Object, CompletableFuture<Object>> asyncCommandProcessor) {
+        return command -> {
+            RemoteRoute route = resolvedRoutes.get(command.getClass());
+            return route == null ? asyncCommandProcessor.apply(command) : route.send(command);
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package org.dm.core;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.lang.String.format;
+
+/**
+ * Single I/O thread of {@link RemoteRoute} or {@link RemoteServer}, which owns the selector.
+ * All channel operations are executed on it, other threads pass them with {@link #execute(Runnable)}.
+ */
+final class RemoteLoop {
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    RemoteLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException(format("Can't open selector of %s", name), e);
+        }
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Registers channel on the loop thread, handler is the attachment of its key.
+     */
+    void register(SelectableChannel channel, int interestOps, Handler handler) {
+        execute(() -> {
+            try {
+                handler.registered(channel.register(selector, interestOps, handler));
+            } catch (IOException e) {
+                handler.failed(e);
+            }
+        });
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void close() {
+        closed = true;
+        selector.wakeup();
+        if (!inLoop()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Handler handler = (Handler) key.attachment();
+                    try {
+                        handler.ready(key);
+                    } catch (IOException e) {
+                        handler.failed(e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // selector is broken, channels are closed below
+        } finally {
+            // pending registrations, i.e. of just accepted connections, are run, so their channels are closed as well
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // loop is closing anyway
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((Handler) key.attachment()).failed(new IOException("Connection is closed"));
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    interface Handler {
+
+        default void registered(SelectionKey key) {
+        }
+
+        void ready(SelectionKey key) throws IOException;
+
+        /**
+         * Closes channel, called once channel fails or loop is closed.
+         */
+        void failed(IOException e);
+    }
+}
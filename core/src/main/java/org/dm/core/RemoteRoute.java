@@ -0,0 +1,367 @@
+package org.dm.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Sends <em>Commands</em> to {@link RemoteServer} in another JVM
+ * (See {@link BusBuilder#registerRemoteRoute(Class, RemoteRoute)}).
+ *
+ * <p><em>Commands</em> are spread round robin over a pool of non blocking connections,
+ * served by one I/O thread. Requests are pipelined - they are sent without waiting for responses
+ * of previous ones, and responses are matched by request id. Futures are completed on the I/O thread,
+ * so their dependent stages should not block. Broken connection fails its requests in flight
+ * and is reconnected on the next send, without blocking the sender: requests sent meanwhile
+ * are written once the connection is established (or fail, if it is not established in connect timeout).
+ * Request, which is not responded in request timeout, fails with {@link TimeoutException}.
+ *
+ * <p>Unless another serializer is configured, nothing but result types registered with
+ * {@link Builder#acceptResults(Class[])} and JDK value classes is deserialized from responses
+ * (See {@link CommandSerializer#java(Class[])}), other results fail with {@link IllegalStateException}.
+ */
+public final class RemoteRoute implements Closeable {
+
+    private final InetSocketAddress address;
+    private final CommandSerializer serializer;
+    private final int maxFrameSize;
+    private final long connectTimeoutNanos;
+    private final long requestTimeoutNanos;
+    private final RemoteLoop loop;
+    private final ScheduledFuture<?> expiration;
+    private final Client[] clients;
+    private final AtomicInteger nextClient = new AtomicInteger();
+    private final AtomicLong ids = new AtomicLong();
+    private volatile boolean closed;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram roundTrips = new LatencyHistogram();
+
+    private RemoteRoute(Builder builder) {
+        this.address = builder.address;
+        this.serializer = builder.serializer != null ? builder.serializer : CommandSerializer.java(builder.resultTypes.toArray(new Class<?>[0]));
+        this.maxFrameSize = builder.maxFrameSize;
+        this.connectTimeoutNanos = builder.connectTimeoutNanos;
+        this.requestTimeoutNanos = builder.requestTimeoutNanos;
+        this.loop = new RemoteLoop(format("remote-route-%s", address));
+        this.clients = new Client[builder.connections];
+        try {
+            for (int i = 0; i < clients.length; i++) {
+                clients[i] = connect();
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        long checkInterval = Math.max(TimeUnit.MILLISECONDS.toNanos(1), requestTimeoutNanos / 2);
+        this.expiration = BusTimer.SCHEDULER.scheduleWithFixedDelay(this::expire, checkInterval, checkInterval, TimeUnit.NANOSECONDS);
+    }
+
+    public static Builder builder(InetSocketAddress address) {
+        return new Builder(address);
+    }
+
+    /**
+     * Fails requests in flight and closes connections.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (expiration != null) {
+            expiration.cancel(false);
+        }
+        for (Client client : clients) {
+            if (client != null) {
+                client.connection.close();
+            }
+        }
+        loop.close();
+    }
+
+    /**
+     * @return number of <em>Commands</em> sent, but not responded yet
+     */
+    public int inFlightCount() {
+        return inFlight.get();
+    }
+
+    public long sentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * @return number of <em>Commands</em> failed on remote side or because connection was broken
+     */
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return latencies from sending <em>Command</em> to receiving its response
+     */
+    public LatencySnapshot roundTripLatency() {
+        return roundTrips.snapshot();
+    }
+
+    CompletableFuture<Object> send(Object command) {
+        long id = ids.incrementAndGet();
+        ByteBuffer frame;
+        Client client;
+        try {
+            frame = RemoteCodec.frame(RemoteCodec.REQUEST, id, serializer.serialize(command));
+            if (closed) {
+                throw new IllegalStateException(format("Route to %s is closed", address));
+            }
+            client = client();
+        } catch (RuntimeException e) {
+            failed.increment();
+            CompletableFuture<Object> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
+
+        Call call = new Call(System.nanoTime());
+        inFlight.incrementAndGet();
+        sent.increment();
+        client.calls.put(id, call);
+        if (!client.connection.send(frame) || client.connection.isClosed()) {
+            // connection is closed meanwhile, its calls might be failed already
+            if (client.calls.remove(id) != null) {
+                fail(call, new IllegalStateException(format("Connection to %s is closed", address)));
+            }
+        }
+        return call;
+    }
+
+    private Client client() {
+        int index = (nextClient.getAndIncrement() & Integer.MAX_VALUE) % clients.length;
+        Client client = clients[index];
+        if (!client.connection.isClosed()) {
+            return client;
+        }
+
+        synchronized (clients) {
+            client = clients[index];
+            if (client.connection.isClosed() && !closed) {
+                client = reconnect();
+                clients[index] = client;
+            }
+            return client;
+        }
+    }
+
+    /**
+     * Connects in the caller thread, waiting at most connect timeout.
+     */
+    private Client connect() {
+        Client client = new Client();
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.socket().connect(address, (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(connectTimeoutNanos)));
+            client.connection = new RemoteConnection(channel, loop, maxFrameSize, client);
+            client.connection.open();
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new IllegalStateException(format("Can't connect to %s", address), e);
+        }
+        return client;
+    }
+
+    /**
+     * Connects on the loop thread, so the caller doesn't wait.
+     */
+    private Client reconnect() {
+        Client client = new Client();
+        try {
+            client.connection = new RemoteConnection(SocketChannel.open(), loop, maxFrameSize, client);
+        } catch (IOException e) {
+            throw new IllegalStateException(format("Can't connect to %s", address), e);
+        }
+        client.connection.connect(address, connectTimeoutNanos);
+        return client;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // not connected anyway
+        }
+    }
+
+    /**
+     * Fails requests, which are not responded in request timeout.
+     */
+    private void expire() {
+        long now = System.nanoTime();
+        for (Client client : clients) {
+            client.calls.forEach((id, call) -> {
+                if (now - call.sentAt >= requestTimeoutNanos && client.calls.remove(id, call)) {
+                    fail(call, new TimeoutException(format("Command is not responded by %s in %d ms",
+                            address, TimeUnit.NANOSECONDS.toMillis(requestTimeoutNanos))));
+                }
+            });
+        }
+    }
+
+    private void fail(Call call, Throwable cause) {
+        inFlight.decrementAndGet();
+        failed.increment();
+        call.completeExceptionally(cause);
+    }
+
+    private static final class Call extends CompletableFuture<Object> {
+        final long sentAt;
+
+        Call(long sentAt) {
+            this.sentAt = sentAt;
+        }
+    }
+
+    /**
+     * Connection of the pool with its requests in flight.
+     */
+    private final class Client implements RemoteConnection.Listener {
+        final ConcurrentHashMap<Long, Call> calls = new ConcurrentHashMap<>();
+        RemoteConnection connection;
+
+        @Override
+        public void received(RemoteConnection connection, byte kind, long id, byte[] payload) {
+            Call call = calls.remove(id);
+            if (call == null) {
+                return;
+            }
+            roundTrips.record(System.nanoTime() - call.sentAt);
+
+            if (kind == RemoteCodec.FAILURE) {
+                fail(call, RemoteCodec.exception(payload));
+                return;
+            }
+            try {
+                Object result = RemoteCodec.result(payload, serializer);
+                inFlight.decrementAndGet();
+                call.complete(result);
+            } catch (RuntimeException e) {
+                fail(call, e);
+            }
+        }
+
+        @Override
+        public void closed(RemoteConnection connection, IOException cause) {
+            IllegalStateException error = new IllegalStateException(format("Connection to %s is closed", address), cause);
+            calls.keySet().forEach(id -> {
+                Call call = calls.remove(id);
+                if (call != null) {
+                    fail(call, error);
+                }
+            });
+        }
+    }
+
+    public static final class Builder {
+        private final InetSocketAddress address;
+        private int connections = 2;
+        private final List<Class<?>> resultTypes = new ArrayList<>();
+        private CommandSerializer serializer;
+        private int maxFrameSize = 16 * 1024 * 1024;
+        private long connectTimeoutNanos = TimeUnit.SECONDS.toNanos(5);
+        private long requestTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+
+        private Builder(InetSocketAddress address) {
+            this.address = Objects.requireNonNull(address);
+        }
+
+        /**
+         * @param connections number of connections in the pool, by default 2
+         */
+        public Builder connections(int connections) {
+            if (connections <= 0) {
+                throw new IllegalArgumentException(format("Number of connections should be positive, but was %d", connections));
+            }
+            this.connections = connections;
+            return this;
+        }
+
+        /**
+         * Accepts results of given types and their subtypes, results of JDK value classes are always accepted.
+         */
+        public Builder acceptResults(Class<?>... resultTypes) {
+            this.resultTypes.addAll(Arrays.asList(resultTypes));
+            return this;
+        }
+
+        /**
+         * Serializer of <em>Commands</em> and their results, should match serializer of {@link RemoteServer}
+         * and should not deserialize classes, which are not expected from the network.
+         * By default {@link CommandSerializer#java(Class[])} of accepted result types is used.
+         */
+        public Builder serializer(CommandSerializer serializer) {
+            this.serializer = Objects.requireNonNull(serializer);
+            return this;
+        }
+
+        /**
+         * @param maxFrameSize max size of received response in bytes, by default 16MB
+         */
+        public Builder maxFrameSize(int maxFrameSize) {
+            if (maxFrameSize <= RemoteCodec.HEADER) {
+                throw new IllegalArgumentException(format("Max frame size should be greater than %d, but was %d", RemoteCodec.HEADER, maxFrameSize));
+            }
+            this.maxFrameSize = maxFrameSize;
+            return this;
+        }
+
+        /**
+         * Max time to establish connection, by default 5 seconds.
+         */
+        public Builder connectTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException(format("Connect timeout should be positive, but was %d", timeout));
+            }
+            this.connectTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Max time to wait for response, by default 30 seconds. Request is failed at most half of the timeout later.
+         */
+        public Builder requestTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException(format("Request timeout should be positive, but was %d", timeout));
+            }
+            this.requestTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Connects to the server.
+         *
+         * @throws IllegalStateException if server is not reachable
+         */
+        public RemoteRoute build() {
+            return new RemoteRoute(this);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package org.dm.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Receives <em>Commands</em> sent with {@link RemoteRoute} and executes them with local {@link Bus}
+ * ({@link Bus#executeAsync(Object)}), so they go through its middleware and executor.
+ *
+ * <p>Only <em>Commands</em> of types registered with {@link Builder#accept(Class[])} are executed,
+ * others are rejected with {@link CommandRejectedException}. Unless another serializer is configured,
+ * nothing but accepted types and JDK value classes is deserialized (See {@link CommandSerializer#java(Class[])}).
+ *
+ * <p>One I/O thread accepts connections, reads requests and writes responses,
+ * requests are deserialized and passed to the bus on executor (See {@link Builder#executor(Executor)}).
+ * Responses are written as soon as <em>Commands</em> complete, in any order.
+ */
+public final class RemoteServer implements Closeable {
+
+    private final Bus bus;
+    private final CommandSerializer serializer;
+    private final List<Class<?>> commandTypes;
+    private final ClassValue<Boolean> accepted = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> commandClass) {
+            return commandTypes.stream().anyMatch(type -> type.isAssignableFrom(commandClass));
+        }
+    };
+    private final Executor executor;
+    private final int maxFrameSize;
+    private final ServerSocketChannel serverChannel;
+    private final RemoteLoop loop;
+    private final Set<RemoteConnection> connections = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder received = new LongAdder();
+
+    private RemoteServer(Builder builder) {
+        this.bus = builder.bus;
+        this.commandTypes = new ArrayList<>(builder.commandTypes);
+        this.serializer = builder.serializer != null ? builder.serializer : CommandSerializer.java(commandTypes.toArray(new Class<?>[0]));
+        this.executor = builder.executor;
+        this.maxFrameSize = builder.maxFrameSize;
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(builder.address);
+            serverChannel.configureBlocking(false);
+        } catch (IOException e) {
+            throw new IllegalStateException(format("Can't bind to %s", builder.address), e);
+        }
+        this.loop = new RemoteLoop(format("remote-server-%s", address()));
+        loop.register(serverChannel, SelectionKey.OP_ACCEPT, new Acceptor());
+    }
+
+    /**
+     * @param address address to listen on, port 0 - any free port (See {@link #address()})
+     */
+    public static Builder builder(Bus bus, InetSocketAddress address) {
+        return new Builder(bus, address);
+    }
+
+    /**
+     * @return address the server listens on
+     */
+    public InetSocketAddress address() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new IllegalStateException("Server is closed", e);
+        }
+    }
+
+    /**
+     * Stops accepting and closes connections, responses of <em>Commands</em> in flight are not sent.
+     */
+    @Override
+    public void close() {
+        // stop listening first, so connections waiting to be accepted are refused
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+        loop.close();
+    }
+
+    /**
+     * @return number of <em>Commands</em> received, but not completed yet
+     */
+    public int inFlightCount() {
+        return inFlight.get();
+    }
+
+    public long receivedCount() {
+        return received.sum();
+    }
+
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    private void receive(RemoteConnection connection, long id, byte[] payload) {
+        received.increment();
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> execute(connection, id, payload));
+        } catch (RejectedExecutionException e) {
+            respond(connection, id, null, e);
+        }
+    }
+
+    private void execute(RemoteConnection connection, long id, byte[] payload) {
+        CompletableFuture<Object> result;
+        try {
+            Object command = serializer.deserialize(payload);
+            if (!accepted.get(command.getClass())) {
+                throw new CommandRejectedException(format("Command %s is not accepted by remote server", command.getClass().getName()));
+            }
+            result = bus.executeAsync(command);
+        } catch (Throwable e) {
+            respond(connection, id, null, e);
+            return;
+        }
+        result.whenComplete((value, e) -> respond(connection, id, value, e));
+    }
+
+    private void respond(RemoteConnection connection, long id, Object value, Throwable error) {
+        inFlight.decrementAndGet();
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error == null) {
+            try {
+                connection.send(RemoteCodec.response(id, value, serializer));
+                return;
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+        connection.send(RemoteCodec.failure(id, error));
+    }
+
+    private final class Acceptor implements RemoteLoop.Handler, RemoteConnection.Listener {
+
+        @Override
+        public void ready(SelectionKey key) throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                RemoteConnection connection = new RemoteConnection(channel, loop, maxFrameSize, this);
+                connections.add(connection);
+                try {
+                    connection.open();
+                } catch (IOException e) {
+                    connection.failed(e);
+                }
+            }
+        }
+
+        @Override
+        public void failed(IOException e) {
+            try {
+                serverChannel.close();
+            } catch (IOException ignored) {
+                // already broken
+            }
+        }
+
+        @Override
+        public void received(RemoteConnection connection, byte kind, long id, byte[] payload) {
+            if (kind == RemoteCodec.REQUEST) {
+                receive(connection, id, payload);
+            }
+        }
+
+        @Override
+        public void closed(RemoteConnection connection, IOException cause) {
+            connections.remove(connection);
+        }
+    }
+
+    public static final class Builder {
+        private final Bus bus;
+        private final InetSocketAddress address;
+        private final List<Class<?>> commandTypes = new ArrayList<>();
+        private CommandSerializer serializer;
+        private Executor executor = ForkJoinPool.commonPool();
+        private int maxFrameSize = 16 * 1024 * 1024;
+
+        private Builder(Bus bus, InetSocketAddress address) {
+            this.bus = Objects.requireNonNull(bus);
+            this.address = Objects.requireNonNull(address);
+        }
+
+        /**
+         * Accepts <em>Commands</em> of given types and their subtypes, at least one type should be accepted.
+         */
+        public Builder accept(Class<?>... commandTypes) {
+            this.commandTypes.addAll(Arrays.asList(commandTypes));
+            return this;
+        }
+
+        /**
+         * Serializer of <em>Commands</em> and their results, should match serializer of {@link RemoteRoute}
+         * and should not deserialize classes, which are not expected from the network.
+         * By default {@link CommandSerializer#java(Class[])} of accepted types is used.
+         */
+        public Builder serializer(CommandSerializer serializer) {
+            this.serializer = Objects.requireNonNull(serializer);
+            return this;
+        }
+
+        /**
+         * Executor, which deserializes received <em>Commands</em> and passes them to the bus,
+         * by default {@link ForkJoinPool#commonPool()}.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * @param maxFrameSize max size of received <em>Command</em> in bytes, by default 16MB
+         */
+        public Builder maxFrameSize(int maxFrameSize) {
+            if (maxFrameSize <= RemoteCodec.HEADER) {
+                throw new IllegalArgumentException(format("Max frame size should be greater than %d, but was %d", RemoteCodec.HEADER, maxFrameSize));
+            }
+            this.maxFrameSize = maxFrameSize;
+            return this;
+        }
+
+        /**
+         * Binds and starts accepting connections.
+         *
+         * @throws IllegalStateException if no <em>Command</em> type is accepted or address can't be bound
+         */
+        public RemoteServer build() {
+            if (commandTypes.isEmpty()) {
+                throw new IllegalStateException("Remote server should accept at least one command type");
+            }
+            return new RemoteServer(this);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package org.dm.core;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.String.format;
+
+/**
+ * Bounded, low latency executor for asynchronous <em>Command</em> execution
+ * (See {@link BusBuilder#executor(Executor)}).
+ *
+ * <p>Tasks are handed off to consumer threads through pre-allocated lock-free ring buffer
+ * (multi producer/multi consumer), so heap doesn't grow under burst load.
+ * Each consumer takes up to {@link Builder#batchSize(int)} tasks at once.
+ * When there is nothing to execute, consumer waits according to {@link WaitStrategy}.
+ * When ring buffer is full, {@link OverflowPolicy} is applied.
+ *
+ * <pre>{@code
+ * RingBufferDispatcher dispatcher = RingBufferDispatcher.builder()
+ *         .capacity(4096)
+ *         .consumers(4)
+ *         .waitStrategy(RingBufferDispatcher.WaitStrategy.PARK)
+ *         .overflowPolicy(RingBufferDispatcher.OverflowPolicy.FAIL_FAST)
+ *         .build();
+ * }</pre>
+ */
+public final class RingBufferDispatcher implements Executor, AutoCloseable {
+
+    /**
+     * What consumer does, when ring buffer is empty.
+     */
+    public enum WaitStrategy {
+        /**
+         * Keeps spinning - the lowest latency, but consumer always occupies CPU core.
+         */
+        BUSY_SPIN,
+        /**
+         * Yields to other threads between attempts.
+         */
+        YIELD,
+        /**
+         * Parks consumer until new task is published - the lowest CPU usage, but higher latency.
+         */
+        PARK
+    }
+
+    /**
+     * What is done with new task, when ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Caller waits until there is free slot.
+         */
+        BLOCK,
+        /**
+         * Task is rejected with {@link CommandRejectedException}.
+         */
+        FAIL_FAST,
+        /**
+         * The oldest queued task is dropped (its <em>Command</em> is completed exceptionally
+         * with {@link CommandRejectedException}) to free the slot.
+         * Task, which is not a <em>Command</em> execution, can't be completed that way,
+         * so it is executed by caller instead of being dropped.
+         */
+        DROP_OLDEST,
+        /**
+         * Task is executed by caller thread.
+         */
+        CALLER_RUNS
+    }
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Runnable[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer[] consumers;
+    private volatile boolean running = true;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+
+    private RingBufferDispatcher(Builder builder) {
+        this.buffer = new Runnable[builder.capacity];
+        this.sequences = new AtomicLongArray(builder.capacity);
+        for (int i = 0; i < builder.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = builder.capacity - 1;
+        this.batchSize = builder.batchSize;
+        this.waitStrategy = builder.waitStrategy;
+        this.overflowPolicy = builder.overflowPolicy;
+
+        this.consumers = new Consumer[builder.consumers];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Consumer();
+            consumers[i].thread = builder.threadFactory.newThread(consumers[i]);
+        }
+        for (Consumer consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!running) {
+            reject(task, "Dispatcher is closed");
+            return;
+        }
+
+        while (!offer(task)) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    if (!running) {
+                        reject(task, "Dispatcher is closed");
+                        return;
+                    }
+                    LockSupport.parkNanos(this, 1);
+                    break;
+                case FAIL_FAST:
+                    rejected.increment();
+                    throw new CommandRejectedException(format("Dispatcher queue is full, capacity %d", buffer.length));
+                case DROP_OLDEST:
+                    Runnable oldest = poll();
+                    if (oldest != null) {
+                        discard(oldest, "Dropped from full dispatcher queue");
+                    }
+                    break;
+                case CALLER_RUNS:
+                    callerRuns.increment();
+                    task.run();
+                    return;
+            }
+        }
+
+        if (!running && isStopped()) {
+            // closed while task was offered, after consumers took the last tasks
+            discardRemaining();
+            return;
+        }
+        signal();
+    }
+
+    /**
+     * Stops accepting new tasks and waits until already queued tasks are executed.
+     * Tasks, which are offered concurrently with close, after consumers are stopped, are discarded
+     * the same way as with {@link OverflowPolicy#DROP_OLDEST}.
+     * If waiting thread is interrupted, consumers are left to finish queued tasks on their own.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Consumer consumer : consumers) {
+            LockSupport.unpark(consumer.thread);
+        }
+        try {
+            for (Consumer consumer : consumers) {
+                consumer.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        discardRemaining();
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return approximate number of tasks waiting in ring buffer
+     */
+    public int queueDepth() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * @return number of tasks rejected with {@link OverflowPolicy#FAIL_FAST}
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of <em>Command</em> executions dropped with {@link OverflowPolicy#DROP_OLDEST} or on close
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of tasks executed by caller with {@link OverflowPolicy#CALLER_RUNS},
+     * or because they couldn't be dropped
+     */
+    public long callerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    private boolean offer(Runnable task) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = task;
+                    // volatile write, not lazySet - either close() sees the task or execute() sees it is closed
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private Runnable poll() {
+        Runnable[] one = new Runnable[1];
+        return drain(one, 1) == 0 ? null : one[0];
+    }
+
+    /**
+     * Claims up to max consecutive published tasks with single CAS.
+     */
+    private int drain(Runnable[] batch, int max) {
+        long position = head.get();
+        while (true) {
+            int available = 0;
+            while (available < max && sequences.get((int) (position + available) & mask) == position + available + 1) {
+                available++;
+            }
+
+            if (available == 0) {
+                if (sequences.get((int) position & mask) <= position) {
+                    return 0;
+                }
+                position = head.get();
+                continue;
+            }
+
+            if (head.compareAndSet(position, position + available)) {
+                for (int i = 0; i < available; i++) {
+                    int index = (int) (position + i) & mask;
+                    batch[i] = buffer[index];
+                    buffer[index] = null;
+                    sequences.lazySet(index, position + i + buffer.length);
+                }
+                return available;
+            }
+            position = head.get();
+        }
+    }
+
+    private void signal() {
+        if (waitStrategy != WaitStrategy.PARK) {
+            return;
+        }
+
+        for (Consumer consumer : consumers) {
+            if (consumer.parked) {
+                LockSupport.unpark(consumer.thread);
+                return;
+            }
+        }
+    }
+
+    private boolean isStopped() {
+        for (Consumer consumer : consumers) {
+            if (consumer.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void discardRemaining() {
+        Runnable task;
+        while ((task = poll()) != null) {
+            discard(task, "Dispatcher is closed");
+        }
+    }
+
+    /**
+     * Rejects <em>Command</em> execution task taken from ring buffer. Any other task can't be rejected
+     * without throwing at the thread, which didn't submit it, so it is executed by current thread.
+     */
+    private void discard(Runnable task, String message) {
+        if (task instanceof AsyncExecution.Task) {
+            dropped.increment();
+            ((AsyncExecution.Task) task).reject(new CommandRejectedException(message));
+            return;
+        }
+
+        callerRuns.increment();
+        try {
+            task.run();
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private static void reject(Runnable task, String message) {
+        CommandRejectedException exception = new CommandRejectedException(message);
+        if (task instanceof AsyncExecution.Task) {
+            ((AsyncExecution.Task) task).reject(exception);
+        } else {
+            throw exception;
+        }
+    }
+
+    private final class Consumer implements Runnable {
+        private Thread thread;
+        private volatile boolean parked;
+
+        @Override
+        public void run() {
+            Runnable[] batch = new Runnable[batchSize];
+            while (true) {
+                int count = drain(batch, batchSize);
+                if (count == 0) {
+                    if (!running) {
+                        return;
+                    }
+                    idle();
+                    continue;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    try {
+                        batch[i].run();
+                    } catch (Throwable e) {
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                    batch[i] = null;
+                }
+            }
+        }
+
+        private void idle() {
+            switch (waitStrategy) {
+                case BUSY_SPIN:
+                    break;
+                case YIELD:
+                    Thread.yield();
+                    break;
+                case PARK:
+                    parked = true;
+                    if (queueDepth() == 0 && running) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    parked = false;
+                    break;
+            }
+        }
+    }
+
+    public static final class Builder {
+        private int capacity = 1024;
+        private int consumers = Runtime.getRuntime().availableProcessors();
+        private int batchSize = 16;
+        private WaitStrategy waitStrategy = WaitStrategy.PARK;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private ThreadFactory threadFactory = BusExecutors.daemonThreadFactory("commandbus-dispatcher-");
+
+        private Builder() {
+        }
+
+        /**
+         * @param capacity ring buffer size, should be power of two
+         */
+        public Builder capacity(int capacity) {
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException(format("Capacity should be positive power of two, but was %d", capacity));
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder consumers(int consumers) {
+            if (consumers <= 0) {
+                throw new IllegalArgumentException(format("Number of consumers should be positive, but was %d", consumers));
+            }
+            this.consumers = consumers;
+            return this;
+        }
+
+        /**
+         * @param batchSize max number of tasks consumer takes from ring buffer at once
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException(format("Batch size should be positive, but was %d", batchSize));
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        public RingBufferDispatcher build() {
+            return new RingBufferDispatcher(this);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.dm.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of <em>CommandHandlers</em> and {@link Middleware} chains composed for them
+ * (See {@link BusRegistry}).
+ */
+final class Routing {
+    final List<Candidate> commandHandlers;
+    /**
+     * In reverse order of execution
+     */
+    final List<MiddlewareChains.Registration> middleware;
+    final MiddlewareChains chains;
+    /**
+     * null if metrics or tracing are enabled - every <em>Command</em> has to go through {@link #chains}
+     */
+    final PrimitiveChains primitiveChains;
+    final MiddlewareChains batchChains;
+    final CommandExecutor batchExecutor;
+
+    Routing(List<Candidate> commandHandlers,
+            List<MiddlewareChains.Registration> middleware,
+            MiddlewareChains chains,
+            PrimitiveChains primitiveChains,
+            MiddlewareChains batchChains,
+            CommandExecutor batchExecutor) {
+        this.commandHandlers = Collections.unmodifiableList(commandHandlers);
+        this.middleware = Collections.unmodifiableList(middleware);
+        this.chains = chains;
+        this.primitiveChains = primitiveChains;
+        this.batchChains = batchChains;
+        this.batchExecutor = batchExecutor;
+    }
+
+    interface Factory {
+        /**
+         * @throws IllegalStateException if <em>CommandHandlers</em> conflict
+         */
+        Routing create(List<Candidate> commandHandlers, List<MiddlewareChains.Registration> middleware);
+    }
+}
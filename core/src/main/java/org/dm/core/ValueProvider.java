@@ -0,0 +1,226 @@
+package org.dm.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * <em>ValueProvider</em> - {@link Provider} method bound to its target.
+ *
+ * <p>There is a separate implementation for each {@link Provider.Scope}.
+ * Cached implementations count hits and misses (See {@link ValueProviderStatistics}).
+ *
+ * <p>Parameters of {@link Provider} method are values provided by other <em>ValueProviders</em> - its dependencies,
+ * which are resolved on {@link BusBuilder#build()}. Their values are either passed by caller, which resolves
+ * the whole graph of dependencies (See {@link ProviderResolution}), or computed right before the method is called.
+ */
+class ValueProvider {
+
+    static final ValueProvider[] NO_DEPENDENCIES = new ValueProvider[0];
+
+    final Invoker invoker;
+    final BusBuilder.TypeDescription providedValueDescription;
+    /**
+     * Params of {@link Provider} method
+     */
+    final List<BusBuilder.TypeDescription> dependencyDescriptions;
+    /**
+     * <em>ValueProviders</em> of params, assigned on {@link BusBuilder#build()}.
+     */
+    ValueProvider[] dependencies = NO_DEPENDENCIES;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+
+    ValueProvider(Invoker invoker, BusBuilder.TypeDescription providedValueDescription) {
+        this(invoker, providedValueDescription, Collections.emptyList());
+    }
+
+    ValueProvider(Invoker invoker, BusBuilder.TypeDescription providedValueDescription, List<BusBuilder.TypeDescription> dependencyDescriptions) {
+        this.invoker = invoker;
+        this.providedValueDescription = providedValueDescription;
+        this.dependencyDescriptions = dependencyDescriptions;
+    }
+
+    static ValueProvider create(Invoker invoker, BusBuilder.TypeDescription providedValueDescription,
+                                List<BusBuilder.TypeDescription> dependencyDescriptions, Provider provider) {
+        return create(invoker, providedValueDescription, dependencyDescriptions, provider.scope(), provider.ttl(), provider.ttlUnit());
+    }
+
+    static ValueProvider create(Invoker invoker, BusBuilder.TypeDescription providedValueDescription,
+                                List<BusBuilder.TypeDescription> dependencyDescriptions,
+                                Provider.Scope scope, long ttl, TimeUnit ttlUnit) {
+        switch (scope) {
+            case COMMAND:
+                return new CommandScoped(invoker, providedValueDescription, dependencyDescriptions);
+            case THREAD:
+                return new ThreadScoped(invoker, providedValueDescription, dependencyDescriptions);
+            case TIMED:
+                if (ttl <= 0) {
+                    throw new IllegalStateException(format("Value provider %s has %s scope, but its ttl is not positive",
+                            providedValueDescription.name,
+                            Provider.Scope.TIMED));
+                }
+                return new Timed(invoker, providedValueDescription, dependencyDescriptions, ttlUnit.toNanos(ttl));
+            default:
+                return new ValueProvider(invoker, providedValueDescription, dependencyDescriptions);
+        }
+    }
+
+    Provider.Scope scope() {
+        return Provider.Scope.NONE;
+    }
+
+    final Object invoke() {
+        return invoke(null);
+    }
+
+    /**
+     * @param dependencyValues values of dependencies resolved by caller or null to compute them here,
+     *                         they are requested only if the value is not cached
+     */
+    Object invoke(DependencyValues dependencyValues) {
+        return compute(dependencyValues);
+    }
+
+    final Object compute(DependencyValues dependencyValues) {
+        ValueProvider[] dependencies = this.dependencies;
+        Object[] args = dependencyValues == null ? null : dependencyValues.get();
+        if (args == null && dependencies.length > 0) {
+            args = new Object[dependencies.length];
+            for (int i = 0; i < dependencies.length; i++) {
+                args[i] = dependencies[i].invoke();
+            }
+        }
+        try {
+            return args == null ? invoker.call() : invoker.invoke(args);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to execute value provider", e);
+        }
+    }
+
+    ValueProviderStatistics statistics() {
+        return new ValueProviderStatistics(providedValueDescription.type,
+                providedValueDescription.name,
+                scope(),
+                hits.sum(),
+                misses.sum());
+    }
+
+    static final class CommandScoped extends ValueProvider {
+        /**
+         * Index in {@link ExecutionContext#values}, assigned on {@link BusBuilder#build()}.
+         */
+        int slot;
+
+        CommandScoped(Invoker invoker, BusBuilder.TypeDescription providedValueDescription, List<BusBuilder.TypeDescription> dependencyDescriptions) {
+            super(invoker, providedValueDescription, dependencyDescriptions);
+        }
+
+        @Override
+        Provider.Scope scope() {
+            return Provider.Scope.COMMAND;
+        }
+
+        @Override
+        Object invoke(DependencyValues dependencyValues) {
+            ExecutionContext context = ExecutionContext.current();
+            if (context == null) {
+                misses.increment();
+                return compute(dependencyValues);
+            }
+
+            Object value = context.values[slot];
+            if (value != ExecutionContext.UNSET) {
+                hits.increment();
+                return value;
+            }
+
+            misses.increment();
+            value = compute(dependencyValues);
+            context.values[slot] = value;
+            return value;
+        }
+    }
+
+    private static final class ThreadScoped extends ValueProvider {
+        private final ThreadLocal<Object> value = ThreadLocal.withInitial(() -> ExecutionContext.UNSET);
+
+        ThreadScoped(Invoker invoker, BusBuilder.TypeDescription providedValueDescription, List<BusBuilder.TypeDescription> dependencyDescriptions) {
+            super(invoker, providedValueDescription, dependencyDescriptions);
+        }
+
+        @Override
+        Provider.Scope scope() {
+            return Provider.Scope.THREAD;
+        }
+
+        @Override
+        Object invoke(DependencyValues dependencyValues) {
+            Object cached = value.get();
+            if (cached != ExecutionContext.UNSET) {
+                hits.increment();
+                return cached;
+            }
+
+            misses.increment();
+            Object computed = compute(dependencyValues);
+            value.set(computed);
+            return computed;
+        }
+    }
+
+    private static final class Timed extends ValueProvider {
+        private final long ttlNanos;
+        private volatile Entry entry;
+
+        Timed(Invoker invoker, BusBuilder.TypeDescription providedValueDescription, List<BusBuilder.TypeDescription> dependencyDescriptions, long ttlNanos) {
+            super(invoker, providedValueDescription, dependencyDescriptions);
+            this.ttlNanos = ttlNanos;
+        }
+
+        @Override
+        Provider.Scope scope() {
+            return Provider.Scope.TIMED;
+        }
+
+        /**
+         * Value could be computed concurrently by several threads right after it is expired,
+         * the last computed one is cached.
+         */
+        @Override
+        Object invoke(DependencyValues dependencyValues) {
+            long now = System.nanoTime();
+            Entry cached = entry;
+            if (cached != null && now - cached.expiresAt < 0) {
+                hits.increment();
+                return cached.value;
+            }
+
+            misses.increment();
+            Object computed = compute(dependencyValues);
+            entry = new Entry(computed, now + ttlNanos);
+            return computed;
+        }
+
+        private static final class Entry {
+            final Object value;
+            final long expiresAt;
+
+            Entry(Object value, long expiresAt) {
+                this.value = value;
+                this.expiresAt = expiresAt;
+            }
+        }
+    }
+
+    interface DependencyValues {
+        /**
+         * @return values in order of {@link #dependencies}
+         */
+        Object[] get();
+    }
+}
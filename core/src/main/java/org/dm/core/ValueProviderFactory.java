@@ -1,10 +1,18 @@
 package org.dm.core;
 
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.reflections.ReflectionUtils.getAllMethods;
 import static org.reflections.ReflectionUtils.withAnnotation;
@@ -14,25 +22,142 @@ final class ValueProviderFactory {
     private ValueProviderFactory() {
     }
 
-    static List<BusBuilder.ValueProvider> create(Object candidate) {
-        return extractValueProviderMethods(candidate).stream()
-                .map(method -> new BusBuilder.ValueProvider(candidate, method, extractProvidedValueDescription(method)))
+    static List<ValueProvider> create(Candidate candidate, BusIndexes index) {
+        List<IndexedMethod> indexed = index.methodsOf(candidate.type, IndexedMethod.Kind.PROVIDER);
+        if (indexed != null) {
+            return indexed.stream()
+                    .map(method -> ValueProvider.create(candidate.bind(method.invokerFactory),
+                            new BusBuilder.TypeDescription(method.type, method.name),
+                            method.params,
+                            method.scope,
+                            method.ttl,
+                            method.ttlUnit))
+                    .collect(toList());
+        }
+
+        return extractValueProviderMethods(candidate.type).stream()
+                .map(method -> ValueProvider.create(candidate.bind(target -> Invokers.create(target, method)),
+                        extractProvidedValueDescription(method),
+                        extractDependencyDescriptions(method),
+                        method.getAnnotation(Provider.class)))
                 .collect(toList());
     }
 
-    private static BusBuilder.TypeDescription extractProvidedValueDescription(Method m) {
-        return new BusBuilder.TypeDescription(m.getReturnType(), m.getName());
+    /**
+     * @param requiredBy description of method, which requires the value, for error messages
+     */
+    static ValueProvider resolve(String requiredBy, Map<Class, Map<String, ValueProvider>> providersMapping, BusBuilder.TypeDescription description) {
+        Map<String, ValueProvider> possibleProviders = providersMapping.get(description.type);
+
+        if (possibleProviders == null || possibleProviders.isEmpty()) {
+            throw new IllegalStateException(format("%s required value of type %s. Value provider not found.", requiredBy, description.type));
+        }
+
+        if (possibleProviders.size() == 1) {
+            return possibleProviders.values().iterator().next();
+        }
+
+        ValueProvider valueProvider = possibleProviders.get(description.name);
+        if (valueProvider == null) {
+            throw new IllegalStateException(format("%s required value of type %s with name %s. Value provider not found.",
+                    requiredBy,
+                    description.type,
+                    description.name));
+        }
+
+        return valueProvider;
     }
 
-    @SuppressWarnings("unchecked")
-    private static Set<Method> extractValueProviderMethods(Object valueProvider) {
-        Set<Method> handlingMethods = getAllMethods(valueProvider.getClass(), withAnnotation(Provider.class));
-        if (handlingMethods.stream()
-                .anyMatch(m -> m.getParameterCount() > 0)) {
+    /**
+     * Assigns {@link ValueProvider#dependencies} of each <em>ValueProvider</em>.
+     *
+     * @throws IllegalStateException if dependency is not found, dependencies are cyclic
+     *                               or cached value depends on value of narrower scope
+     */
+    static void resolveDependencies(Map<Class, Map<String, ValueProvider>> providersMapping) {
+        List<ValueProvider> providers = providersMapping.values().stream()
+                .flatMap(providersByName -> providersByName.values().stream())
+                .collect(toList());
+        for (ValueProvider provider : providers) {
+            provider.dependencies = provider.dependencyDescriptions.stream()
+                    .map(description -> resolve("Value provider " + describe(provider), providersMapping, description))
+                    .toArray(ValueProvider[]::new);
+        }
 
-            throw new IllegalStateException(format("Provider method of value provider %s should have 0 parameters", valueProvider.getClass().getName()));
+        Set<ValueProvider> checked = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ValueProvider provider : providers) {
+            checkCycles(provider, new ArrayDeque<>(), checked);
         }
+        providers.forEach(ValueProviderFactory::checkScopes);
+    }
+
+    /**
+     * Cached value computed from value of narrower scope would keep the first computed value of it,
+     * so {@link Provider.Scope#TIMED} may depend only on {@link Provider.Scope#TIMED},
+     * {@link Provider.Scope#THREAD} also on {@link Provider.Scope#THREAD} and so on.
+     * Checking direct dependencies of every provider covers transitive ones as well,
+     * since value of {@link Provider.Scope#NONE} is not allowed as a dependency of cached value.
+     */
+    private static void checkScopes(ValueProvider provider) {
+        Provider.Scope scope = provider.scope();
+        if (scope == Provider.Scope.NONE) {
+            return;
+        }
+        for (ValueProvider dependency : provider.dependencies) {
+            if (isNarrower(dependency.scope(), scope)) {
+                throw new IllegalStateException(format("Value provider %s has %s scope, but depends on %s of narrower %s scope",
+                        describe(provider),
+                        scope,
+                        describe(dependency),
+                        dependency.scope()));
+            }
+        }
+    }
 
-        return handlingMethods;
+    /**
+     * Scopes are ordered from the narrowest: NONE, COMMAND, THREAD, TIMED.
+     */
+    private static boolean isNarrower(Provider.Scope scope, Provider.Scope than) {
+        return scope.ordinal() < than.ordinal();
+    }
+
+    private static void checkCycles(ValueProvider provider, Deque<ValueProvider> path, Set<ValueProvider> checked) {
+        if (checked.contains(provider)) {
+            return;
+        }
+        if (path.contains(provider)) {
+            List<ValueProvider> cycle = new ArrayList<>(path);
+            Collections.reverse(cycle);
+            cycle = new ArrayList<>(cycle.subList(cycle.indexOf(provider), cycle.size()));
+            cycle.add(provider);
+            throw new IllegalStateException(format("Value providers have cyclic dependency: %s",
+                    cycle.stream().map(ValueProviderFactory::describe).collect(joining(" -> "))));
+        }
+
+        path.push(provider);
+        for (ValueProvider dependency : provider.dependencies) {
+            checkCycles(dependency, path, checked);
+        }
+        path.pop();
+        checked.add(provider);
+    }
+
+    private static String describe(ValueProvider provider) {
+        return format("%s %s", provider.providedValueDescription.type.getName(), provider.providedValueDescription.name);
+    }
+
+    private static BusBuilder.TypeDescription extractProvidedValueDescription(Method m) {
+        return new BusBuilder.TypeDescription(m.getReturnType(), m.getName());
+    }
+
+    private static List<BusBuilder.TypeDescription> extractDependencyDescriptions(Method m) {
+        return Arrays.stream(m.getParameters())
+                .map(param -> new BusBuilder.TypeDescription(param.getType(), param.getName()))
+                .collect(toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Method> extractValueProviderMethods(Class<?> valueProviderClass) {
+        return getAllMethods(valueProviderClass, withAnnotation(Provider.class));
     }
 }
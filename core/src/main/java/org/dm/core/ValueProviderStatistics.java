@@ -0,0 +1,64 @@
+package org.dm.core;
+
+/**
+ * Cache statistics of <em>ValueProvider</em> with {@link Provider.Scope} other than {@link Provider.Scope#NONE}.
+ * Snapshot is taken on {@link Bus#valueProviderStatistics()} call.
+ */
+public final class ValueProviderStatistics {
+    private final Class<?> type;
+    private final String name;
+    private final Provider.Scope scope;
+    private final long hits;
+    private final long misses;
+
+    ValueProviderStatistics(Class<?> type, String name, Provider.Scope scope, long hits, long misses) {
+        this.type = type;
+        this.name = name;
+        this.scope = scope;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * @return type of provided value
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return name of provided value
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Provider.Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * @return number of times cached value was used
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of times value was computed
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return "ValueProviderStatistics{" +
+                "type=" + type.getName() +
+                ", name='" + name + '\'' +
+                ", scope=" + scope +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                '}';
+    }
+}
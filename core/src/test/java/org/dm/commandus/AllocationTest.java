@@ -0,0 +1,151 @@
+package org.dm.commandus;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.dm.core.Handler;
+import org.dm.core.PrimitiveAwareMiddleware;
+import org.dm.core.Provider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static java.lang.String.format;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class AllocationTest {
+
+    private static final int WARM_UP = 100_000;
+    private static final int ITERATIONS = 1_000_000;
+    private static final long ALLOWED_BYTES = 1024;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void handlerWithoutProvidersDoesNotAllocate() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new NoProviderHandler())
+                .build();
+
+        assertAllocationFree(bus);
+    }
+
+    @Test
+    public void handlerWithProvidersDoesNotAllocate() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new TwoProvidersHandler())
+                .registerValueProvider(new ValueProviders())
+                .build();
+
+        assertAllocationFree(bus);
+    }
+
+    @Test
+    public void primitiveResultIsNotBoxed() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new PrimitiveHandler())
+                .registerValueProvider(new ValueProviders())
+                .registerMiddleware(new PassingMiddleware())
+                .build();
+        Command command = new Command();
+
+        for (int i = 0; i < WARM_UP; i++) {
+            bus.executeInt(command);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        int result = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = bus.executeInt(command);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(result, equalTo(100_005));
+        assertTrue(format("%d bytes allocated for %d commands", allocated, ITERATIONS), allocated < ALLOWED_BYTES);
+    }
+
+    private void assertAllocationFree(Bus bus) {
+        long allocated = allocatedBytes(bus, new Command());
+        assertTrue(format("%d bytes allocated for %d commands", allocated, ITERATIONS), allocated < ALLOWED_BYTES);
+    }
+
+    private long allocatedBytes(Bus bus, Command command) {
+        for (int i = 0; i < WARM_UP; i++) {
+            bus.execute(command);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        Object result = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            result = bus.execute(command);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(result, equalTo(5));
+        return allocated;
+    }
+
+    public static final class Command {
+    }
+
+    public static final class NoProviderHandler {
+        @Handler
+        public Integer handle(Command command) {
+            return 5;
+        }
+    }
+
+    public static final class TwoProvidersHandler {
+        @Handler
+        public Integer handle(Command command, Integer a, Integer b) {
+            return a + b;
+        }
+    }
+
+    public static final class PrimitiveHandler {
+        @Handler
+        public int handle(Command command, Integer a, Integer b) {
+            // out of Integer cache, so boxed result would be allocated
+            return 100_000 + a + b;
+        }
+    }
+
+    public static final class PassingMiddleware implements PrimitiveAwareMiddleware {
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            return next.apply(command);
+        }
+
+        @Override
+        public int executeInt(Object command, ToIntFunction<Object> next) {
+            return next.applyAsInt(command);
+        }
+    }
+
+    public static final class ValueProviders {
+        @Provider
+        public Integer a() {
+            return 2;
+        }
+
+        @Provider
+        public Integer b() {
+            return 3;
+        }
+    }
+}
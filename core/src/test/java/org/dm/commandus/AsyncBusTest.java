@@ -0,0 +1,177 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AsyncBusTest {
+
+    @Test
+    public void commandIsExecutedOnConfiguredExecutor() throws Exception {
+        ExecutorService executor = BusExecutors.fixedThreadPool(2);
+        try {
+            String threadName = new BusBuilder()
+                    .registerCommandHandler(new ThreadNameHandler())
+                    .executor(executor)
+                    .build()
+                    .<String>executeAsync(new Command())
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(threadName, startsWith("commandbus-"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void futureIsCompletedExceptionallyWithOriginalException() throws Exception {
+        CompletableFuture<Object> future = new BusBuilder()
+                .registerCommandHandler(new FailingHandler())
+                .build()
+                .executeAsync(new Command());
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(UnsupportedOperationException.class));
+            return;
+        }
+        throw new AssertionError("Exception expected");
+    }
+
+    @Test
+    public void completionStageReturnedByHandlerIsFlattened() throws Exception {
+        assertThat(5, equalTo(new BusBuilder()
+                .registerCommandHandler(new FutureHandler())
+                .build()
+                .executeAsync(new Command())
+                .get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void asyncMiddlewareIsExecutedBeforeMiddleware() throws Exception {
+        StringBuilder trace = new StringBuilder();
+
+        Object result = new BusBuilder()
+                .registerMiddleware(new TracingMiddleware(trace))
+                .registerAsyncMiddleware(new TracingAsyncMiddleware(trace, "a"))
+                .registerAsyncMiddleware(new TracingAsyncMiddleware(trace, "b"))
+                .registerCommandHandler(new ThreadNameHandler())
+                .build()
+                .executeAsync(new Command())
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(result, instanceOf(String.class));
+        assertThat(trace.toString(), equalTo("abmMBA"));
+    }
+
+    @Test
+    public void asyncMiddlewareIsExecutedOnSynchronousExecution() {
+        StringBuilder trace = new StringBuilder();
+
+        new BusBuilder()
+                .registerAsyncMiddleware(new TracingAsyncMiddleware(trace, "a"))
+                .registerCommandHandler(new ThreadNameHandler())
+                .build()
+                .execute(new Command());
+
+        assertThat(trace.toString(), equalTo("aA"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void synchronousExecutionRethrowsOriginalExceptionThroughAsyncMiddleware() {
+        new BusBuilder()
+                .registerAsyncMiddleware(new TracingAsyncMiddleware(new StringBuilder(), "a"))
+                .registerCommandHandler(new FailingHandler())
+                .build()
+                .execute(new Command());
+    }
+
+    @Test
+    public void virtualThreadPerCommandExecutor() throws Exception {
+        ExecutorService executor;
+        try {
+            executor = BusExecutors.virtualThreadPerCommand();
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+
+        try {
+            assertThat(new BusBuilder()
+                    .registerCommandHandler(new ThreadNameHandler())
+                    .executor(executor)
+                    .build()
+                    .executeAsync(new Command())
+                    .get(5, TimeUnit.SECONDS), instanceOf(String.class));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static final class Command {
+    }
+
+    public static final class ThreadNameHandler {
+        @Handler
+        public String handle(Command c) {
+            return Thread.currentThread().getName();
+        }
+    }
+
+    public static final class FailingHandler {
+        @Handler
+        public String handle(Command c) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static final class FutureHandler {
+        @Handler
+        public CompletableFuture<Integer> handle(Command c) {
+            return CompletableFuture.supplyAsync(() -> 5);
+        }
+    }
+
+    public static final class TracingMiddleware implements Middleware {
+        private final StringBuilder trace;
+
+        TracingMiddleware(StringBuilder trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            trace.append("m");
+            R result = next.apply(command);
+            trace.append("M");
+            return result;
+        }
+    }
+
+    public static final class TracingAsyncMiddleware implements AsyncMiddleware {
+        private final StringBuilder trace;
+        private final String name;
+
+        TracingAsyncMiddleware(StringBuilder trace, String name) {
+            this.trace = trace;
+            this.name = name;
+        }
+
+        @Override
+        public <R> CompletableFuture<R> executeAsync(Object command, Function<Object, CompletableFuture<R>> next) {
+            trace.append(name);
+            return next.apply(command)
+                    .whenComplete((result, error) -> trace.append(name.toUpperCase()));
+        }
+    }
+}
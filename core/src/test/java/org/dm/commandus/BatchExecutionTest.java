@@ -0,0 +1,132 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BatchExecutionTest {
+
+    @Test
+    public void resultsAreInInputOrder() {
+        BatchCommandHandler handler = new BatchCommandHandler();
+        List<Object> results = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerValueProvider(new IntegerValueProvider())
+                .build()
+                .executeAll(Arrays.asList(new Row(1), new Ping(), new Row(2), new Ping(), new Row(3)));
+
+        assertThat(results, equalTo(Arrays.<Object>asList(11, "pong", 12, "pong", 13)));
+        assertThat(handler.batches, equalTo(1));
+    }
+
+    @Test
+    public void middlewareIsExecutedOncePerBatch() {
+        CountingMiddleware middleware = new CountingMiddleware();
+        new BusBuilder()
+                .registerCommandHandler(new BatchCommandHandler())
+                .registerValueProvider(new IntegerValueProvider())
+                .registerMiddleware(middleware)
+                .build()
+                .executeAll(Arrays.asList(new Row(1), new Row(2), new Ping(), new Ping(), new Row(3)));
+
+        assertThat(middleware.commands, equalTo(Arrays.<Object>asList(List.class, Ping.class, Ping.class)));
+    }
+
+    @Test
+    public void voidBatchHandlerGivesNullResults() {
+        List<Object> results = new BusBuilder()
+                .registerCommandHandler(new VoidBatchCommandHandler())
+                .build()
+                .executeAll(Arrays.asList(new Row(1), new Row(2)));
+
+        assertThat(results, equalTo(Arrays.asList(null, null)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void errorIfBatchHandlerReturnsWrongNumberOfResults() {
+        new BusBuilder()
+                .registerCommandHandler(new WrongSizeBatchCommandHandler())
+                .build()
+                .executeAll(Arrays.asList(new Row(1), new Row(2)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void errorIfBatchHandlerDoesNotAcceptList() {
+        new BusBuilder()
+                .registerCommandHandler(new InvalidBatchCommandHandler())
+                .build();
+    }
+
+    public static final class Row {
+        final int id;
+
+        Row(int id) {
+            this.id = id;
+        }
+    }
+
+    public static final class Ping {
+    }
+
+    public static final class BatchCommandHandler {
+        int batches;
+
+        @BatchHandler
+        public List<Integer> handle(List<Row> rows, Integer offset) {
+            batches++;
+            return rows.stream()
+                    .map(row -> row.id + offset)
+                    .collect(toList());
+        }
+
+        @Handler
+        public String handle(Ping ping) {
+            return "pong";
+        }
+    }
+
+    public static final class VoidBatchCommandHandler {
+        @BatchHandler
+        public void handle(List<Row> rows) {
+        }
+    }
+
+    public static final class WrongSizeBatchCommandHandler {
+        @BatchHandler
+        public List<Integer> handle(List<Row> rows) {
+            return new ArrayList<>();
+        }
+    }
+
+    public static final class InvalidBatchCommandHandler {
+        @BatchHandler
+        public List<Integer> handle(Row row) {
+            return new ArrayList<>();
+        }
+    }
+
+    public static final class IntegerValueProvider {
+        @Provider
+        public Integer offset() {
+            return 10;
+        }
+    }
+
+    public static final class CountingMiddleware implements Middleware {
+        final List<Object> commands = new ArrayList<>();
+
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            commands.add(command instanceof List ? List.class : command.getClass());
+            return next.apply(command);
+        }
+    }
+}
@@ -5,10 +5,17 @@ import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 public class BusBuilderTest {
 
@@ -95,6 +102,159 @@ public class BusBuilderTest {
                 .execute(new Command());
     }
 
+    @Test
+    public void publicHandlerIsBound() {
+        PublicCommandHandler handler = new PublicCommandHandler();
+        assertThat(7, equalTo(new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerValueProvider(new IIntegerValueProvider())
+                .build()
+                .execute(new PublicCommand())));
+        // bound handler is called directly, reflective fallback would be called by Method.invoke
+        for (StackTraceElement frame : handler.stackTrace) {
+            if (frame.getClassName().equals(BusBuilderTest.class.getName())) {
+                break;
+            }
+            assertThat(frame.toString(), frame.getClassName(), not(equalTo(Method.class.getName())));
+        }
+    }
+
+    @Test
+    public void voidHandlerReturnsNull() {
+        Object result = new BusBuilder()
+                .registerCommandHandler(new VoidCommandHandler())
+                .build()
+                .execute(new PublicCommand());
+        assertThat(null, equalTo(result));
+    }
+
+    @Test
+    public void staticHandlerWithPrimitiveParams() {
+        assertThat(3L, equalTo(new BusBuilder()
+                .registerCommandHandler(new StaticCommandHandler())
+                .registerValueProvider(new PrimitiveValueProvider())
+                .build()
+                .execute(new PublicCommand())));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void runtimeExceptionIsRethrownAsIs() {
+        new BusBuilder()
+                .registerCommandHandler(new ThrowingCommandHandler())
+                .build()
+                .execute(new PublicCommand());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void checkedExceptionIsWrapped() {
+        new BusBuilder()
+                .registerCommandHandler(new ThrowingCommandHandler())
+                .build()
+                .execute(new Command());
+    }
+
+    @Test
+    public void subclassedCommandIsHandledBySuperclassHandler() {
+        assertThat(1, equalTo(new BusBuilder()
+                .registerCommandHandler(new HierarchyCommandHandler())
+                .build()
+                .execute(new BaseCommand() {
+                })));
+    }
+
+    @Test
+    public void mostSpecificHandlerWins() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new HierarchyCommandHandler())
+                .build();
+        assertThat(2, equalTo(bus.execute(new SubCommand())));
+        assertThat(3, equalTo(bus.execute(new MarkedCommand())));
+    }
+
+    @Test
+    public void superclassHandlerWinsOverInterfaceHandler() {
+        assertThat(1, equalTo(new BusBuilder()
+                .registerCommandHandler(new HierarchyCommandHandler())
+                .build()
+                .execute(new MarkedSubCommand())));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void errorIfCommandIsAmbiguous() {
+        new BusBuilder()
+                .registerCommandHandler(new HierarchyCommandHandler())
+                .build()
+                .execute(new AmbiguousCommand());
+    }
+
+    @Test
+    public void lazyCommandHandlerIsSuppliedOnFirstExecution() {
+        AtomicInteger supplied = new AtomicInteger();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(CommandHandlerWithOneParam.class, () -> {
+                    supplied.incrementAndGet();
+                    return new CommandHandlerWithOneParam();
+                })
+                .registerValueProvider(IIntegerValueProvider.class, () -> {
+                    supplied.incrementAndGet();
+                    return new IIntegerValueProvider();
+                })
+                .build();
+
+        assertThat(supplied.get(), equalTo(0));
+        assertThat(bus.execute(new Command()), equalTo(6));
+        assertThat(bus.execute(new Command()), equalTo(6));
+        assertThat(supplied.get(), equalTo(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void errorIfLazyCommandHandlerSupplierFails() {
+        new BusBuilder()
+                .registerCommandHandler(CommandHandler.class, () -> {
+                    throw new IllegalArgumentException("no bean");
+                })
+                .build()
+                .execute(new Command());
+    }
+
+    @Test
+    public void batchIsRejectedOnceLimitIsUsedUp() {
+        BatchRowHandler handler = new BatchRowHandler();
+        RateLimiter rateLimiter = RateLimiter.of(0.01, 3);
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerRateLimiter(Row.class, rateLimiter)
+                .build();
+
+        try {
+            bus.executeAll(Arrays.asList(new Row(), new Row(), new Row(), new Row()));
+            fail("Batch larger than limit should be rejected");
+        } catch (RateLimitExceededException e) {
+            assertThat(handler.rows, equalTo(0));
+        }
+
+        assertThat(bus.executeAll(Arrays.asList(new Row(), new Row())), equalTo(Arrays.<Object>asList(1, 1)));
+        try {
+            bus.executeAll(Arrays.asList(new Row(), new Row()));
+            fail("Batch should be rejected once limit is used up");
+        } catch (RateLimitExceededException e) {
+            assertThat(handler.rows, equalTo(2));
+        }
+    }
+
+    public static final class Row {
+    }
+
+    public static final class BatchRowHandler {
+        int rows;
+
+        @BatchHandler
+        public List<Integer> handle(List<Row> batch) {
+            rows += batch.size();
+            return batch.stream().map(row -> 1).collect(Collectors.toList());
+        }
+    }
+
     public static final class CommandHandler {
         @Handler
         public Integer handle(Command c) {
@@ -147,6 +307,94 @@ public class BusBuilderTest {
         }
     }
 
+    public static final class PublicCommandHandler {
+        StackTraceElement[] stackTrace;
+
+        @Handler
+        public int handle(PublicCommand c, Integer i) {
+            stackTrace = new Throwable().getStackTrace();
+            return 6 + i;
+        }
+    }
+
+    public static final class VoidCommandHandler {
+        @Handler
+        public void handle(PublicCommand c) {
+        }
+    }
+
+    public static final class StaticCommandHandler {
+        @Handler
+        public static long handle(PublicCommand c, int i) {
+            return 2L + i;
+        }
+    }
+
+    public static final class ThrowingCommandHandler {
+        @Handler
+        public Integer handle(PublicCommand c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Handler
+        public Integer handle(Command c) throws Exception {
+            throw new Exception();
+        }
+    }
+
+    public static final class PrimitiveValueProvider {
+        @Provider
+        public int i() {
+            return 1;
+        }
+    }
+
+    public static final class HierarchyCommandHandler {
+        @Handler
+        public Integer handle(BaseCommand c) {
+            return 1;
+        }
+
+        @Handler
+        public Integer handle(SubCommand c) {
+            return 2;
+        }
+
+        @Handler
+        public Integer handle(Marker c) {
+            return 3;
+        }
+
+        @Handler
+        public Integer handle(OtherMarker c) {
+            return 4;
+        }
+    }
+
+    public interface Marker {
+    }
+
+    public interface OtherMarker {
+    }
+
+    public static class BaseCommand {
+    }
+
+    public static class SubCommand extends BaseCommand {
+    }
+
+    public static final class MarkedCommand implements Marker {
+    }
+
+    public static final class MarkedSubCommand extends BaseCommand implements Marker {
+    }
+
+    public static final class AmbiguousCommand implements Marker, OtherMarker {
+    }
+
+    public static final class PublicCommand {
+    }
+
     private static final class Command {
     }
 
@@ -0,0 +1,130 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BusRegistryTest {
+
+    @Test
+    public void handlerIsRegisteredAndUnregisteredAtRuntime() {
+        Bus bus = new BusBuilder().build();
+        GreetingHandler handler = new GreetingHandler("Hello");
+
+        bus.registry().registerCommandHandler(handler);
+        assertThat(bus.execute(new Greet("Bob")), equalTo("Hello Bob"));
+
+        assertTrue(bus.registry().unregisterCommandHandler(handler));
+        assertTrue(!bus.registry().unregisterCommandHandler(handler));
+        try {
+            bus.execute(new Greet("Bob"));
+            fail("Command handler should be unregistered");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("not found"));
+        }
+    }
+
+    @Test
+    public void conflictingHandlerIsRejected() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new GreetingHandler("Hello"))
+                .build();
+
+        try {
+            bus.registry().registerCommandHandler(new GreetingHandler("Hi"));
+            fail("Conflicting command handler should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("already registered"));
+        }
+        assertThat(bus.execute(new Greet("Bob")), equalTo("Hello Bob"));
+    }
+
+    @Test
+    public void middlewareIsRegisteredAndUnregisteredAtRuntime() throws Exception {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new GreetingHandler("Hello"))
+                .registerMiddleware(new Suffix("!"))
+                .build();
+        Suffix question = new Suffix("?");
+
+        bus.registry().registerMiddleware(question);
+        assertThat(bus.execute(new Greet("Bob")), equalTo("Hello Bob?!"));
+        assertThat(bus.<String>executeAsync(new Greet("Bob")).get(5, TimeUnit.SECONDS), equalTo("Hello Bob?!"));
+
+        assertTrue(bus.registry().unregisterMiddleware(question));
+        assertThat(bus.execute(new Greet("Bob")), equalTo("Hello Bob!"));
+    }
+
+    @Test
+    public void commandInFlightCompletesWithItsRouting() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .build();
+
+        CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> bus.execute(new Greet("Bob")));
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        assertTrue(bus.registry().unregisterCommandHandler(handler));
+        bus.registry().registerCommandHandler(new GreetingHandler("Hi"));
+        handler.released.countDown();
+
+        assertThat(result.get(5, TimeUnit.SECONDS), equalTo("Blocked Bob"));
+        assertThat(bus.execute(new Greet("Bob")), equalTo("Hi Bob"));
+    }
+
+    public static class Greet {
+        final String name;
+
+        Greet(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class GreetingHandler {
+        private final String greeting;
+
+        GreetingHandler(String greeting) {
+            this.greeting = greeting;
+        }
+
+        @Handler
+        public String handle(Greet command) {
+            return greeting + " " + command.name;
+        }
+    }
+
+    public static class BlockingHandler {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        @Handler
+        public String handle(Greet command) throws InterruptedException {
+            started.countDown();
+            released.await();
+            return "Blocked " + command.name;
+        }
+    }
+
+    static class Suffix implements Middleware {
+        private final String suffix;
+
+        Suffix(String suffix) {
+            this.suffix = suffix;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> R execute(Object command, Function<Object, R> next) {
+            return (R) (next.apply(command) + suffix);
+        }
+    }
+}
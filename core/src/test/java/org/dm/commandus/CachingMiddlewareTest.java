@@ -0,0 +1,231 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CachingMiddlewareTest {
+
+    @Test
+    public void equalCacheableCommandIsNotHandledTwice() {
+        PriceHandler handler = new PriceHandler();
+        CachingMiddleware cache = CachingMiddleware.builder().build();
+        Bus bus = bus(handler, cache);
+
+        assertThat(bus.execute(new GetPrice("a")), equalTo(1));
+        assertThat(bus.execute(new GetPrice("a")), equalTo(1));
+        assertThat(bus.execute(new GetPrice("b")), equalTo(2));
+
+        assertThat(handler.executions.get(), equalTo(2));
+        assertThat(cache.hitCount(), equalTo(1L));
+        assertThat(cache.missCount(), equalTo(2L));
+    }
+
+    @Test
+    public void commandIsCachedByPredicateAndExtractedKey() {
+        PriceHandler handler = new PriceHandler();
+        CachingMiddleware cache = CachingMiddleware.builder()
+                .cache(CommandTypes.assignableTo(GetStock.class))
+                .key(GetStock.class, command -> command.product)
+                .build();
+        Bus bus = bus(handler, cache);
+
+        bus.execute(new GetStock("a"));
+        bus.execute(new GetStock("a"));
+
+        assertThat(handler.executions.get(), equalTo(1));
+    }
+
+    @Test
+    public void writeCommandInvalidatesCachedResults() {
+        PriceHandler handler = new PriceHandler();
+        CachingMiddleware cache = CachingMiddleware.builder()
+                .invalidateOn(UpdatePrice.class, GetPrice.class)
+                .build();
+        Bus bus = bus(handler, cache);
+
+        bus.execute(new GetPrice("a"));
+        bus.execute(new UpdatePrice());
+        assertThat(cache.size(), equalTo(0));
+
+        assertThat(bus.execute(new GetPrice("a")), equalTo(2));
+        assertThat(handler.executions.get(), equalTo(2));
+    }
+
+    @Test
+    public void resultExpires() throws InterruptedException {
+        PriceHandler handler = new PriceHandler();
+        Bus bus = bus(handler, CachingMiddleware.builder()
+                .ttl(20, TimeUnit.MILLISECONDS)
+                .build());
+
+        bus.execute(new GetPrice("a"));
+        Thread.sleep(40);
+        bus.execute(new GetPrice("a"));
+
+        assertThat(handler.executions.get(), equalTo(2));
+    }
+
+    @Test
+    public void exceptionIsNotCached() {
+        FailingHandler handler = new FailingHandler();
+        Bus bus = new BusBuilder()
+                .registerMiddleware(CachingMiddleware.builder().build())
+                .registerCommandHandler(handler)
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                bus.execute(new GetPrice("a"));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        assertThat(handler.executions.get(), equalTo(2));
+    }
+
+    @Test
+    public void maxWeightBoundsWholeCache() {
+        PriceHandler handler = new PriceHandler();
+        CachingMiddleware cache = CachingMiddleware.builder()
+                .maxWeight(5)
+                .concurrency(16)
+                .build();
+        Bus bus = bus(handler, cache);
+
+        for (int i = 0; i < 20; i++) {
+            bus.execute(new GetPrice(String.valueOf(i)));
+        }
+
+        assertThat(cache.size(), equalTo(5));
+        assertThat(cache.weight(), equalTo(5L));
+        assertThat(cache.evictionCount(), equalTo(15L));
+    }
+
+    @Test
+    public void resultHeavierThanSegmentShareIsCached() {
+        PriceHandler handler = new PriceHandler();
+        Bus bus = bus(handler, CachingMiddleware.builder()
+                .maxWeight(100)
+                .concurrency(16)
+                .weigher(result -> 10)
+                .build());
+
+        bus.execute(new GetPrice("a"));
+        bus.execute(new GetPrice("a"));
+
+        assertThat(handler.executions.get(), equalTo(1));
+    }
+
+    @Test
+    public void failedFutureIsNotCached() {
+        FutureHandler handler = new FutureHandler();
+        CachingMiddleware cache = CachingMiddleware.builder().build();
+        Bus bus = new BusBuilder()
+                .registerMiddleware(cache, cache.commandTypes())
+                .registerCommandHandler(handler)
+                .build();
+
+        CompletableFuture<Integer> pending = bus.execute(new GetPrice("a"));
+        assertThat(bus.execute(new GetPrice("a")), sameInstance(pending));
+        pending.completeExceptionally(new IllegalArgumentException());
+        assertThat(cache.size(), equalTo(0));
+
+        handler.failed = true;
+        bus.execute(new GetPrice("a"));
+        handler.failed = false;
+        bus.execute(new GetPrice("a"));
+        bus.execute(new GetPrice("a"));
+
+        assertThat(handler.executions.get(), equalTo(3));
+    }
+
+    private static Bus bus(PriceHandler handler, CachingMiddleware cache) {
+        return new BusBuilder()
+                .registerMiddleware(cache, cache.commandTypes())
+                .registerCommandHandler(handler)
+                .build();
+    }
+
+    @Cacheable
+    public static final class GetPrice {
+        final String product;
+
+        GetPrice(String product) {
+            this.product = product;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GetPrice && ((GetPrice) o).product.equals(product);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(product);
+        }
+    }
+
+    public static final class GetStock {
+        final String product;
+
+        GetStock(String product) {
+            this.product = product;
+        }
+    }
+
+    public static final class UpdatePrice {
+    }
+
+    public static final class PriceHandler {
+        final AtomicInteger executions = new AtomicInteger();
+
+        @Handler
+        public Integer handle(GetPrice command) {
+            return executions.incrementAndGet();
+        }
+
+        @Handler
+        public Integer handle(GetStock command) {
+            return executions.incrementAndGet();
+        }
+
+        @Handler
+        public void handle(UpdatePrice command) {
+        }
+    }
+
+    public static final class FutureHandler {
+        final AtomicInteger executions = new AtomicInteger();
+        volatile boolean failed;
+
+        @Handler
+        public CompletableFuture<Integer> handle(GetPrice command) {
+            executions.incrementAndGet();
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            if (failed) {
+                future.completeExceptionally(new IllegalArgumentException());
+            }
+            return future;
+        }
+    }
+
+    public static final class FailingHandler {
+        final AtomicInteger executions = new AtomicInteger();
+
+        @Handler
+        public Integer handle(GetPrice command) {
+            executions.incrementAndGet();
+            throw new IllegalArgumentException();
+        }
+    }
+}
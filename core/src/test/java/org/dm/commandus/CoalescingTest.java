@@ -0,0 +1,203 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CoalescingTest {
+
+    @Test
+    public void concurrentIdenticalCommandsAreExecutedOnce() throws Exception {
+        ReportHandler handler = new ReportHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCoalescing(Report.class, report -> report.id)
+                .build();
+
+        List<Thread> threads = new ArrayList<>();
+        List<Object> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                Object result = bus.execute(new Report(1));
+                synchronized (results) {
+                    results.add(result);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        awaitWaiting(threads);
+
+        handler.release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertThat(handler.executions.get(), equalTo(1));
+        assertThat(results.size(), equalTo(8));
+        assertTrue("All callers should get the same result", results.stream().allMatch(result -> result.equals(1)));
+    }
+
+    @Test
+    public void asynchronousCommandAttachesToCommandInFlight() throws Exception {
+        ReportHandler handler = new ReportHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCoalescing(Report.class, report -> report.id)
+                .build();
+
+        CompletableFuture<Integer> first = bus.executeAsync(new Report(1));
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> second = bus.executeAsync(new Report(1));
+        handler.release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS), equalTo(1));
+        assertThat(second.get(5, TimeUnit.SECONDS), equalTo(1));
+        assertThat(handler.executions.get(), equalTo(1));
+
+        assertThat(bus.executeAsync(new Report(1)).get(5, TimeUnit.SECONDS), equalTo(2));
+    }
+
+    @Test
+    public void exceptionIsSharedByCoalescedCommands() throws Exception {
+        ReportHandler handler = new ReportHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCoalescing(Report.class, report -> report.id)
+                .build();
+
+        CompletableFuture<Integer> first = bus.executeAsync(new Report(-1));
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> second = bus.executeAsync(new Report(-1));
+        handler.release.countDown();
+
+        assertFailed(first);
+        assertFailed(second);
+        assertThat(handler.executions.get(), equalTo(1));
+    }
+
+    @Test
+    public void failureToExtractKeyIsReturnedAsFailedFuture() throws Exception {
+        ReportHandler handler = new ReportHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCoalescing(Report.class, report -> {
+                    throw new IllegalArgumentException("Report has no key");
+                })
+                .build();
+
+        CompletableFuture<Integer> result = bus.executeAsync(new Report(1));
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Command without key should fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+        assertThat(handler.executions.get(), equalTo(0));
+    }
+
+    @Test
+    public void commandsWithDifferentKeysAreNotCoalesced() {
+        ReportHandler handler = new ReportHandler();
+        handler.release.countDown();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCoalescing(Report.class)
+                .build();
+
+        bus.execute(new Report(1));
+        bus.execute(new Report(2));
+
+        assertThat(handler.executions.get(), equalTo(2));
+    }
+
+    @Test
+    public void commandReenteringBusWithEqualKeyIsExecutedDirectly() throws Exception {
+        NestedHandler handler = new NestedHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCoalescing(Nested.class, nested -> nested.id)
+                .build();
+        handler.bus = bus;
+
+        assertThat(CompletableFuture.supplyAsync(() -> bus.execute(new Nested(1, 2))).get(5, TimeUnit.SECONDS), equalTo(3));
+        assertThat(bus.executeAsync(new Nested(1, 2)).get(5, TimeUnit.SECONDS), equalTo(3));
+    }
+
+    private static void awaitWaiting(List<Thread> threads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+            assertTrue("Threads should wait for the command in flight", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void assertFailed(CompletableFuture<Integer> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+            return;
+        }
+        throw new AssertionError("Command should fail");
+    }
+
+    public static final class Report {
+        final int id;
+
+        Report(int id) {
+            this.id = id;
+        }
+    }
+
+    public static final class Nested {
+        final int id;
+        final int depth;
+
+        Nested(int id, int depth) {
+            this.id = id;
+            this.depth = depth;
+        }
+    }
+
+    public static final class NestedHandler {
+        Bus bus;
+
+        @Handler
+        public Integer handle(Nested nested) {
+            return nested.depth == 0 ? 1 : 1 + bus.<Integer>execute(new Nested(nested.id, nested.depth - 1));
+        }
+    }
+
+    public static final class ReportHandler {
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Handler
+        public Integer handle(Report report) throws InterruptedException {
+            int execution = executions.incrementAndGet();
+            started.countDown();
+            release.await();
+            if (report.id < 0) {
+                throw new IllegalArgumentException("Report not found");
+            }
+            return execution;
+        }
+    }
+}
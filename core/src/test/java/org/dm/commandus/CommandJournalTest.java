@@ -0,0 +1,208 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void commandInterruptedByRestartIsReplayed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        PaymentHandler handler = new PaymentHandler();
+        CommandJournal journal = CommandJournal.builder(directory).build();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .journal(journal)
+                .build();
+
+        assertThat(bus.<Integer>executeAsync(new Pay(1)).get(5, TimeUnit.SECONDS), equalTo(1));
+        handler.blocked = new CountDownLatch(1);
+        bus.executeAsync(new Pay(2));
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        journal.close();
+        handler.blocked.countDown();
+
+        PaymentHandler restarted = new PaymentHandler();
+        try (CommandJournal reopened = CommandJournal.builder(directory).build()) {
+            new BusBuilder()
+                    .registerCommandHandler(restarted)
+                    .journal(reopened)
+                    .build();
+
+            assertTrue(restarted.executed.await(5, TimeUnit.SECONDS));
+            assertThat(restarted.payments, equalTo(listOf(2)));
+            assertThat(reopened.replayedCount(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void completedSegmentsAreDeleted() throws Exception {
+        try (CommandJournal journal = CommandJournal.builder(folder.getRoot().toPath())
+                .segmentSize(4096)
+                .fsync(CommandJournal.FsyncPolicy.NEVER)
+                .build()) {
+            Bus bus = new BusBuilder()
+                    .registerCommandHandler(new PaymentHandler())
+                    .journal(journal)
+                    .build();
+
+            List<CompletableFuture<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                results.add(bus.executeAsync(new Pay(i)));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (journal.segmentCount() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(journal.appendedCount(), equalTo(1000L));
+            assertThat(journal.pendingCount(), equalTo(0));
+            assertTrue("Completed segments should be deleted, but there are " + journal.segmentCount(), journal.segmentCount() <= 1);
+        }
+    }
+
+    @Test
+    public void alwaysForcedCommandsAreExecutedAfterGroupCommit() throws Exception {
+        try (CommandJournal journal = CommandJournal.builder(folder.getRoot().toPath())
+                .fsync(CommandJournal.FsyncPolicy.ALWAYS)
+                .build()) {
+            Bus bus = new BusBuilder()
+                    .registerCommandHandler(new PaymentHandler())
+                    .journal(journal)
+                    .build();
+
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(bus.executeAsync(new Pay(i)));
+            }
+            for (int i = 0; i < 200; i++) {
+                assertThat(results.get(i).get(5, TimeUnit.SECONDS), equalTo(i));
+            }
+            assertThat(journal.appendedCount(), equalTo(200L));
+        }
+    }
+
+    @Test
+    public void forcedCommandsArePassedOnFromBusExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2, task -> new Thread(task, "bus-executor"));
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        try (CommandJournal journal = CommandJournal.builder(folder.getRoot().toPath())
+                .fsync(CommandJournal.FsyncPolicy.ALWAYS)
+                .build()) {
+            Bus bus = new BusBuilder()
+                    .registerCommandHandler(new PaymentHandler())
+                    .registerAsyncMiddleware(new AsyncMiddleware() {
+                        @Override
+                        public <R> CompletableFuture<R> executeAsync(Object command, Function<Object, CompletableFuture<R>> next) {
+                            threads.add(Thread.currentThread().getName());
+                            return next.apply(command);
+                        }
+                    })
+                    .executor(executor)
+                    .journal(journal)
+                    .build();
+
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                results.add(bus.executeAsync(new Pay(i)));
+            }
+            for (int i = 0; i < 50; i++) {
+                assertThat(results.get(i).get(5, TimeUnit.SECONDS), equalTo(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertFalse("Flusher should only complete forces", threads.contains("command-journal-flusher"));
+    }
+
+    @Test
+    public void onlyMatchingCommandsAreJournaled() throws Exception {
+        try (CommandJournal journal = CommandJournal.builder(folder.getRoot().toPath())
+                .journal(CommandTypes.assignableTo(Pay.class))
+                .build()) {
+            Bus bus = new BusBuilder()
+                    .registerCommandHandler(new PaymentHandler())
+                    .journal(journal)
+                    .build();
+
+            bus.executeAsync(new Pay(1)).get(5, TimeUnit.SECONDS);
+            bus.executeAsync(new Refund(1)).get(5, TimeUnit.SECONDS);
+            bus.execute(new Pay(2));
+
+            assertThat(journal.appendedCount(), equalTo(1L));
+        }
+    }
+
+    private static List<Integer> listOf(Integer... values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    public static class Pay implements Serializable {
+        final int id;
+
+        Pay(int id) {
+            this.id = id;
+        }
+    }
+
+    public static class Refund implements Serializable {
+        final int id;
+
+        Refund(int id) {
+            this.id = id;
+        }
+    }
+
+    public static class PaymentHandler {
+        final List<Integer> payments = new CopyOnWriteArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch executed = new CountDownLatch(1);
+        volatile CountDownLatch blocked;
+
+        @Handler
+        public int handle(Pay pay) throws InterruptedException {
+            CountDownLatch blocked = this.blocked;
+            if (blocked != null) {
+                started.countDown();
+                blocked.await();
+            }
+            payments.add(pay.id);
+            executed.countDown();
+            return pay.id;
+        }
+
+        @Handler
+        public int handle(Refund refund) {
+            return -refund.id;
+        }
+    }
+}
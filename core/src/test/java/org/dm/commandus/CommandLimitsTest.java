@@ -0,0 +1,245 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandLimitsTest {
+
+    @Test
+    public void bulkheadRejectsCommandWhenFull() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        Bulkhead bulkhead = Bulkhead.of(1);
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerBulkhead(Slow.class, bulkhead)
+                .build();
+
+        CompletableFuture<Object> first = bus.executeAsync(new Slow());
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        assertThat(bulkhead.availablePermits(), equalTo(0));
+
+        assertRejected(bus.executeAsync(new Slow()), BulkheadFullException.class);
+        try {
+            bus.execute(new Slow());
+            throw new AssertionError("Command should be rejected");
+        } catch (BulkheadFullException e) {
+            // expected
+        }
+
+        handler.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(bulkhead.availablePermits(), equalTo(1));
+        assertThat(bulkhead.acceptedCount(), equalTo(1L));
+        assertThat(bulkhead.rejectedCount(), equalTo(2L));
+    }
+
+    @Test
+    public void bulkheadLetsCommandWaitForPermit() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerBulkhead(Slow.class, Bulkhead.of(1, 5, TimeUnit.SECONDS))
+                .build();
+
+        CompletableFuture<Object> first = bus.executeAsync(new Slow());
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        new Thread(() -> {
+            sleep(20);
+            handler.release.countDown();
+        }).start();
+
+        assertThat(bus.execute(new Slow()), equalTo("done"));
+        assertThat(first.get(5, TimeUnit.SECONDS), equalTo("done"));
+    }
+
+    @Test
+    public void permitIsReleasedWhenCommandFails() {
+        Bulkhead bulkhead = Bulkhead.of(1);
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new FailingHandler())
+                .registerBulkhead(Object.class, bulkhead)
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                bus.execute(new Fail());
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        assertThat(bulkhead.availablePermits(), equalTo(1));
+        assertThat(bulkhead.rejectedCount(), equalTo(0L));
+    }
+
+    @Test
+    public void rateLimiterAllowsBurstAndRejectsTheRest() throws Exception {
+        RateLimiter rateLimiter = RateLimiter.of(0.1, 2);
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new FailingHandler())
+                .registerRateLimiter(Fast.class, rateLimiter)
+                .build();
+
+        assertThat(bus.execute(new Fast()), equalTo("fast"));
+        assertThat(bus.execute(new Fast()), equalTo("fast"));
+        assertRejected(bus.executeAsync(new Fast()), RateLimitExceededException.class);
+        assertThat(rateLimiter.acceptedCount(), equalTo(2L));
+        assertThat(rateLimiter.rejectedCount(), equalTo(1L));
+        assertThat(rateLimiter.availablePermits(), equalTo(0L));
+    }
+
+    @Test
+    public void rateLimiterLetsCommandWaitForItsTurn() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new FailingHandler())
+                .registerRateLimiter(Fast.class, RateLimiter.of(200, 1, 1, TimeUnit.SECONDS))
+                .build();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            bus.execute(new Fast());
+        }
+
+        assertTrue("Commands should be spread over at least 4 intervals",
+                System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(19));
+    }
+
+    @Test
+    public void asynchronousCommandWaitsForPermitWithoutBlockingCaller() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        Bulkhead bulkhead = Bulkhead.of(1, 5, TimeUnit.SECONDS);
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerBulkhead(Slow.class, bulkhead)
+                .build();
+
+        CompletableFuture<Object> first = bus.executeAsync(new Slow());
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        CompletableFuture<Object> second = bus.executeAsync(new Slow());
+        assertTrue("Caller should not wait for permit", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertFalse(second.isDone());
+
+        handler.release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS), equalTo("done"));
+        assertThat(second.get(5, TimeUnit.SECONDS), equalTo("done"));
+        assertThat(bulkhead.availablePermits(), equalTo(1));
+        assertThat(bulkhead.acceptedCount(), equalTo(2L));
+    }
+
+    @Test
+    public void asynchronousCommandIsRejectedWhenWaitIsOver() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        Bulkhead bulkhead = Bulkhead.of(1, 20, TimeUnit.MILLISECONDS);
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerBulkhead(Slow.class, bulkhead)
+                .build();
+
+        CompletableFuture<Object> first = bus.executeAsync(new Slow());
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        assertRejected(bus.executeAsync(new Slow()), BulkheadFullException.class);
+
+        handler.release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(bulkhead.availablePermits(), equalTo(1));
+        assertThat(bulkhead.rejectedCount(), equalTo(1L));
+    }
+
+    @Test
+    public void asynchronousCommandWaitsForItsTurnWithoutBlockingCaller() throws Exception {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new FailingHandler())
+                .registerRateLimiter(Fast.class, RateLimiter.of(2, 1, 5, TimeUnit.SECONDS))
+                .build();
+
+        assertThat(bus.execute(new Fast()), equalTo("fast"));
+        long start = System.nanoTime();
+        CompletableFuture<Object> next = bus.executeAsync(new Fast());
+        assertTrue("Caller should not wait for its turn", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+
+        assertThat(next.get(5, TimeUnit.SECONDS), equalTo("fast"));
+        assertTrue("Command should wait for its turn", System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(400));
+    }
+
+    @Test
+    public void interruptedWaitForTurnIsRejected() {
+        RateLimiter rateLimiter = RateLimiter.of(0.1, 1, 1, TimeUnit.MINUTES);
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new FailingHandler())
+                .registerRateLimiter(Fast.class, rateLimiter)
+                .build();
+
+        bus.execute(new Fast());
+        Thread.currentThread().interrupt();
+        try {
+            bus.execute(new Fast());
+            throw new AssertionError("Command should be rejected");
+        } catch (RateLimitExceededException e) {
+            assertTrue(Thread.interrupted());
+        }
+        assertThat(rateLimiter.rejectedCount(), equalTo(1L));
+    }
+
+    private static void assertRejected(CompletableFuture<Object> future, Class<? extends CommandRejectedException> type) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(type));
+            return;
+        }
+        throw new AssertionError("Command should be rejected");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static final class Slow {
+    }
+
+    public static final class Fast {
+    }
+
+    public static final class Fail {
+    }
+
+    public static final class BlockingHandler {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Handler
+        public String handle(Slow slow) throws InterruptedException {
+            started.countDown();
+            release.await();
+            return "done";
+        }
+    }
+
+    public static final class FailingHandler {
+        @Handler
+        public String handle(Fail fail) {
+            throw new IllegalArgumentException();
+        }
+
+        @Handler
+        public String handle(Fast fast) {
+            return "fast";
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTest {
+
+    private final ExecutorService executor = BusExecutors.fixedThreadPool(1);
+    private final ReportHandler handler = new ReportHandler();
+    private final CountingMiddleware middleware = new CountingMiddleware();
+    private final Bus bus = new BusBuilder()
+            .registerCommandHandler(handler)
+            .registerMiddleware(middleware)
+            .executor(executor)
+            .build();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void expiredCommandIsRejectedBeforeMiddleware() {
+        try {
+            bus.execute(new Report(0), Deadline.after(0, TimeUnit.MILLISECONDS));
+            fail("Expired command should be rejected");
+        } catch (DeadlineExceededException e) {
+            assertThat(middleware.executions.get(), equalTo(0));
+        }
+
+        Deadline cancelled = Deadline.cancellable();
+        cancelled.cancel();
+        try {
+            bus.execute(new Report(0), cancelled);
+            fail("Cancelled command should be rejected");
+        } catch (DeadlineExceededException e) {
+            assertThat(middleware.executions.get(), equalTo(0));
+        }
+    }
+
+    @Test
+    public void deadlineIsPassedToMiddlewareAndHandler() {
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+
+        assertThat(bus.execute(new Report(0), deadline), sameInstance((Object) deadline));
+        assertThat(middleware.deadline, sameInstance(deadline));
+        assertThat(Deadline.current(), sameInstance(Deadline.NONE));
+
+        assertThat(bus.execute(new Report(0)), sameInstance((Object) Deadline.NONE));
+    }
+
+    @Test
+    public void asynchronousExecutionIsTimedOutAndCancelled() throws Exception {
+        Deadline deadline = Deadline.after(50, TimeUnit.MILLISECONDS);
+        CompletableFuture<Object> result = bus.executeAsync(new Report(Long.MAX_VALUE), deadline);
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Execution should be timed out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(DeadlineExceededException.class));
+        }
+        assertTrue(deadline.isCancelled());
+        assertTrue("Handler should stop, once deadline is cancelled", handler.stopped.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queuedCommandIsRejectedWhenExecutorTakesIt() throws Exception {
+        CompletableFuture<Object> blocking = bus.executeAsync(new Report(200));
+        CompletableFuture<Object> late = bus.executeAsync(new Report(0), Deadline.after(20, TimeUnit.MILLISECONDS));
+
+        blocking.get(5, TimeUnit.SECONDS);
+        try {
+            late.get(5, TimeUnit.SECONDS);
+            fail("Queued command should be rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(DeadlineExceededException.class));
+        }
+        // executor is single threaded, so late command is taken before this one
+        bus.executeAsync(new Report(0)).get(5, TimeUnit.SECONDS);
+        assertThat(handler.executions.get(), equalTo(2));
+    }
+
+    @Test
+    public void cancellingFutureCancelsDeadline() throws Exception {
+        Deadline deadline = Deadline.cancellable();
+        CompletableFuture<Object> result = bus.executeAsync(new Report(Long.MAX_VALUE), deadline);
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+
+        result.cancel(true);
+
+        assertTrue(deadline.isCancelled());
+        assertTrue("Handler should stop, once deadline is cancelled", handler.stopped.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void deadlineIsBoundAgainForCommandQueuedInOrderedLane() throws Exception {
+        Bus ordered = new BusBuilder()
+                .registerCommandHandler(new ReportHandler())
+                .registerOrderingKey(Report.class, report -> "lane")
+                .executor(executor)
+                .build();
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+
+        CompletableFuture<Object> blocking = ordered.executeAsync(new Report(50));
+        CompletableFuture<Object> queued = ordered.executeAsync(new Report(0), deadline);
+
+        assertThat(blocking.get(5, TimeUnit.SECONDS), sameInstance((Object) Deadline.NONE));
+        assertThat(queued.get(5, TimeUnit.SECONDS), sameInstance((Object) deadline));
+    }
+
+    @Test
+    public void expiredCommandQueuedInOrderedLaneIsRejected() throws Exception {
+        ReportHandler laneHandler = new ReportHandler();
+        Bus ordered = new BusBuilder()
+                .registerCommandHandler(laneHandler)
+                .registerOrderingKey(Report.class, report -> "lane")
+                .executor(executor)
+                .build();
+
+        CompletableFuture<Object> blocking = ordered.executeAsync(new Report(200));
+        CompletableFuture<Object> late = ordered.executeAsync(new Report(0), Deadline.after(20, TimeUnit.MILLISECONDS));
+
+        blocking.get(5, TimeUnit.SECONDS);
+        try {
+            late.get(5, TimeUnit.SECONDS);
+            fail("Queued command should be rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(DeadlineExceededException.class));
+        }
+        assertThat(laneHandler.executions.get(), equalTo(1));
+    }
+
+    @Test
+    public void deadlineIsBoundForFanOutSubCommands() throws Exception {
+        Bus fanOut = new BusBuilder()
+                .registerCommandHandler(new ReportHandler())
+                .registerFanOut(Reports.class, Reports::split, Collectors.toList(), 4)
+                .executor(executor)
+                .build();
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+
+        List<Object> results = fanOut.execute(new Reports(16), deadline);
+        assertThat(results.size(), equalTo(16));
+        results.forEach(result -> assertThat(result, sameInstance((Object) deadline)));
+
+        List<Object> asyncResults = fanOut.<List<Object>>executeAsync(new Reports(16), deadline).get(5, TimeUnit.SECONDS);
+        asyncResults.forEach(result -> assertThat(result, sameInstance((Object) deadline)));
+    }
+
+    @Test
+    public void nestedCommandIsRejectedAfterDeadlineIsExpired() {
+        NestingHandler nesting = new NestingHandler();
+        Bus nestingBus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCommandHandler(nesting)
+                .build();
+        nesting.bus = nestingBus;
+
+        try {
+            nestingBus.execute(new Nested(50), Deadline.after(20, TimeUnit.MILLISECONDS));
+            fail("Nested command should be rejected");
+        } catch (DeadlineExceededException e) {
+            assertThat(handler.executions.get(), equalTo(0));
+        }
+
+        assertThat(nestingBus.execute(new Nested(0), Deadline.after(1, TimeUnit.MINUTES)), instanceOf(Deadline.class));
+        assertThat(handler.executions.get(), equalTo(1));
+    }
+
+    public static class Nested {
+        final long delayMillis;
+
+        Nested(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+    }
+
+    public static class NestingHandler {
+        volatile Bus bus;
+
+        @Handler
+        public Object handle(Nested nested) throws InterruptedException {
+            Thread.sleep(nested.delayMillis);
+            return bus.execute(new Report(0));
+        }
+    }
+
+    public static class Reports {
+        final int count;
+
+        Reports(int count) {
+            this.count = count;
+        }
+
+        List<Report> split() {
+            return IntStream.range(0, count).mapToObj(i -> new Report(0)).collect(Collectors.toList());
+        }
+    }
+
+    public static class Report {
+        final long millis;
+
+        Report(long millis) {
+            this.millis = millis;
+        }
+    }
+
+    public static class ReportHandler {
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Handler
+        public Deadline handle(Report report, Deadline deadline) throws InterruptedException {
+            executions.incrementAndGet();
+            started.countDown();
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(report.millis, TimeUnit.DAYS.toMillis(1)));
+            while (System.nanoTime() - end < 0) {
+                if (deadline.isExpired()) {
+                    stopped.countDown();
+                    break;
+                }
+                Thread.sleep(1);
+            }
+            return deadline;
+        }
+    }
+
+    public static class CountingMiddleware implements Middleware {
+        final AtomicInteger executions = new AtomicInteger();
+        volatile Deadline deadline;
+
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            executions.incrementAndGet();
+            deadline = Deadline.current();
+            return next.apply(command);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FanOutTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void subCommandResultsAreCombinedInOrder() {
+        PriceHandler handler = new PriceHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerFanOut(RecomputePrices.class, RecomputePrices::perProduct, Collectors.toList())
+                .fanOutPool(pool)
+                .build();
+
+        List<Integer> prices = bus.execute(new RecomputePrices(1000));
+
+        assertThat(prices, equalTo(IntStream.range(0, 1000).map(id -> id * 2).boxed().collect(Collectors.toList())));
+        assertTrue("Sub-commands should be executed by several workers, but were by " + handler.threads,
+                handler.threads.size() > 1);
+    }
+
+    @Test
+    public void parallelismIsCapped() {
+        PriceHandler handler = new PriceHandler();
+        handler.sleepMillis = 1;
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerFanOut(RecomputePrices.class, RecomputePrices::perProduct, Collectors.summingInt(price -> (Integer) price), 2)
+                .fanOutPool(pool)
+                .build();
+
+        int total = bus.execute(new RecomputePrices(50));
+
+        assertThat(total, equalTo(IntStream.range(0, 50).map(id -> id * 2).sum()));
+        assertTrue("At most 2 sub-commands should run at once, but were " + handler.maxConcurrency.get(),
+                handler.maxConcurrency.get() <= 2);
+    }
+
+    @Test
+    public void remainingSubCommandsAreSkippedOnFirstFailure() {
+        PriceHandler handler = new PriceHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerFanOut(RecomputePrices.class, RecomputePrices::perProduct, Collectors.toList(), 1)
+                .fanOutPool(pool)
+                .build();
+
+        try {
+            bus.execute(new RecomputePrices(1000, 10));
+            fail("Failure of sub-command should be thrown");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), equalTo("No price of product 10"));
+        }
+        assertThat(handler.executions.get(), equalTo(11));
+    }
+
+    @Test
+    public void asynchronousFanOutCompletesWithCombinedResult() throws Exception {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new PriceHandler())
+                .registerFanOut(RecomputePrices.class, RecomputePrices::perProduct, Collectors.counting())
+                .fanOutPool(pool)
+                .build();
+
+        assertThat(bus.<Long>executeAsync(new RecomputePrices(100)).get(5, TimeUnit.SECONDS), equalTo(100L));
+        assertThat(bus.<Long>executeAsync(new RecomputePrices(0)).get(5, TimeUnit.SECONDS), equalTo(0L));
+    }
+
+    public static class RecomputePrices {
+        final int products;
+        final int failingProduct;
+
+        RecomputePrices(int products) {
+            this(products, -1);
+        }
+
+        RecomputePrices(int products, int failingProduct) {
+            this.products = products;
+            this.failingProduct = failingProduct;
+        }
+
+        List<RecomputePrice> perProduct() {
+            List<RecomputePrice> subCommands = new ArrayList<>();
+            for (int id = 0; id < products; id++) {
+                subCommands.add(new RecomputePrice(id, id == failingProduct));
+            }
+            return subCommands;
+        }
+    }
+
+    public static class RecomputePrice {
+        final int productId;
+        final boolean fails;
+
+        RecomputePrice(int productId, boolean fails) {
+            this.productId = productId;
+            this.fails = fails;
+        }
+    }
+
+    public static class PriceHandler {
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger executions = new AtomicInteger();
+        final AtomicInteger concurrency = new AtomicInteger();
+        final AtomicInteger maxConcurrency = new AtomicInteger();
+        volatile long sleepMillis;
+
+        @Handler
+        public int handle(RecomputePrice command) throws InterruptedException {
+            int current = concurrency.incrementAndGet();
+            maxConcurrency.accumulateAndGet(current, Math::max);
+            try {
+                executions.incrementAndGet();
+                threads.add(Thread.currentThread().getName());
+                if (sleepMillis > 0) {
+                    Thread.sleep(sleepMillis);
+                } else {
+                    // some CPU work, so other workers get chance to steal
+                    long spin = System.nanoTime() + 20_000;
+                    while (System.nanoTime() < spin) {
+                        threads.size();
+                    }
+                }
+                if (command.fails) {
+                    throw new IllegalArgumentException("No price of product " + command.productId);
+                }
+                return command.productId * 2;
+            } finally {
+                concurrency.decrementAndGet();
+            }
+        }
+    }
+}
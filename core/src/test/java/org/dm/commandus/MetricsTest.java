@@ -0,0 +1,136 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void executionTimeIsSplitBetweenMiddlewareProviderAndHandler() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new SleepingHandler())
+                .registerValueProvider(new SleepingValueProvider())
+                .registerMiddleware(new SleepingMiddleware())
+                .enableMetrics(1)
+                .build();
+
+        bus.execute(new Command());
+        bus.execute(new Command());
+
+        CommandMetricsSnapshot snapshot = bus.metrics().snapshot().get(Command.class);
+        assertThat(snapshot.getInvocations(), equalTo(2L));
+        assertThat(snapshot.getErrors(), equalTo(0L));
+        assertThat(snapshot.getInFlight(), equalTo(0L));
+        assertAtLeast("handler", snapshot.getHandlerTime(), 20 * MILLIS);
+        assertAtLeast("provider", snapshot.getProviderTime(), 10 * MILLIS);
+        assertAtLeast("middleware", snapshot.getMiddlewareTime(), 10 * MILLIS);
+        assertAtLeast("total", snapshot.getTotalTime(), 40 * MILLIS);
+        assertTrue(snapshot.toString(), snapshot.getProviderTime().getMax() < snapshot.getHandlerTime().getP50());
+    }
+
+    @Test
+    public void errorsAreCounted() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new FailingHandler())
+                .enableMetrics(1)
+                .build();
+
+        try {
+            bus.execute(new Command());
+        } catch (UnsupportedOperationException e) {
+            CommandMetricsSnapshot snapshot = bus.metrics().snapshot().get(Command.class);
+            assertThat(snapshot.getInvocations(), equalTo(1L));
+            assertThat(snapshot.getErrors(), equalTo(1L));
+            return;
+        }
+        throw new AssertionError("Exception expected");
+    }
+
+    @Test
+    public void metricsAreExposedAsMBeans() throws Exception {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new SleepingHandler())
+                .registerValueProvider(new SleepingValueProvider())
+                .enableMetrics(1)
+                .build();
+        bus.metrics().registerMBeans("test");
+        try {
+            bus.execute(new Command());
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(format("org.dm.core:type=CommandMetrics,bus=%s,command=%s",
+                    ObjectName.quote("test"),
+                    ObjectName.quote(Command.class.getName())));
+            assertThat(server.getAttribute(name, "Invocations"), equalTo(1L));
+            assertTrue((Long) server.getAttribute(name, "HandlerTimeP99") >= 10 * MILLIS);
+        } finally {
+            bus.metrics().unregisterMBeans();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void errorIfMetricsAreNotEnabled() {
+        new BusBuilder()
+                .build()
+                .metrics();
+    }
+
+    private static void assertAtLeast(String name, LatencySnapshot latency, long nanos) {
+        assertTrue(format("%s time %s, expected at least %d", name, latency, nanos), latency.getP50() >= nanos);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Command {
+    }
+
+    public static final class SleepingHandler {
+        @Handler
+        public String handle(Command command, Integer slow) {
+            sleep(20);
+            return "done";
+        }
+    }
+
+    public static final class FailingHandler {
+        @Handler
+        public String handle(Command command) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static final class SleepingValueProvider {
+        @Provider
+        public Integer slow() {
+            sleep(10);
+            return 1;
+        }
+    }
+
+    public static final class SleepingMiddleware implements Middleware {
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            sleep(10);
+            return next.apply(command);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.dm.commandus;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.dm.core.BusExecutors;
+import org.dm.core.Handler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OrderedExecutionTest {
+
+    private static final int ACCOUNTS = 4;
+    private static final int COMMANDS_PER_ACCOUNT = 200;
+
+    @Test
+    public void commandsWithSameKeyAreExecutedInOrder() throws Exception {
+        ExecutorService executor = BusExecutors.fixedThreadPool(8);
+        AccountHandler handler = new AccountHandler();
+        try {
+            Bus bus = new BusBuilder()
+                    .registerCommandHandler(handler)
+                    .registerOrderingKey(AccountCommand.class, command -> command.account)
+                    .executor(executor)
+                    .build();
+
+            List<CompletableFuture<Object>> futures = new ArrayList<>();
+            for (int sequence = 0; sequence < COMMANDS_PER_ACCOUNT; sequence++) {
+                for (int account = 0; account < ACCOUNTS; account++) {
+                    futures.add(bus.executeAsync(new AccountCommand(account, sequence)));
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Integer> expected = range(0, COMMANDS_PER_ACCOUNT).boxed().collect(toList());
+        for (int account = 0; account < ACCOUNTS; account++) {
+            assertThat(handler.executed.get(account), equalTo(expected));
+        }
+        assertTrue("Different accounts should be executed in parallel", handler.maxConcurrency.get() > 1);
+    }
+
+    @Test
+    public void failingKeyExtractorFailsFuture() throws Exception {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new AccountHandler())
+                .registerOrderingKey(AccountCommand.class, command -> {
+                    throw new IllegalArgumentException("no account");
+                })
+                .build();
+
+        CompletableFuture<Object> result = bus.executeAsync(new AccountCommand(1, 0));
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Execution should fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    public static final class AccountCommand {
+        final int account;
+        final int sequence;
+
+        AccountCommand(int account, int sequence) {
+            this.account = account;
+            this.sequence = sequence;
+        }
+    }
+
+    public static final class AccountHandler {
+        final Map<Integer, List<Integer>> executed = new ConcurrentHashMap<>();
+        final AtomicInteger concurrency = new AtomicInteger();
+        final AtomicInteger maxConcurrency = new AtomicInteger();
+
+        @Handler
+        public void handle(AccountCommand command) throws InterruptedException {
+            int current = concurrency.incrementAndGet();
+            maxConcurrency.accumulateAndGet(current, Math::max);
+            List<Integer> sequences = executed.computeIfAbsent(command.account, k -> new ArrayList<>());
+            sequences.add(command.sequence);
+            TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(200));
+            concurrency.decrementAndGet();
+        }
+    }
+}
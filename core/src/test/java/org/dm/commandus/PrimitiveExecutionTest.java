@@ -0,0 +1,216 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PrimitiveExecutionTest {
+
+    @Test
+    public void primitiveResultsAreReturned() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CounterHandler())
+                .registerValueProvider(new CounterProviders())
+                .build();
+
+        assertThat(bus.executeInt(new Count(2)), equalTo(1002));
+        assertThat(bus.executeLong(new NextId()), equalTo(1L << 40));
+        assertTrue(bus.executeBoolean(new Validate("valid")));
+        assertFalse(bus.executeBoolean(new Validate("")));
+        assertThat(bus.execute(new Count(2)), equalTo((Object) 1002));
+    }
+
+    @Test
+    public void primitiveAwareMiddlewareGetsUnboxedResult() {
+        CountingMiddleware middleware = new CountingMiddleware();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CounterHandler())
+                .registerValueProvider(new CounterProviders())
+                .registerMiddleware(middleware)
+                .build();
+
+        assertThat(bus.executeInt(new Count(2)), equalTo(1002));
+        assertThat(middleware.primitiveExecutions, equalTo(1));
+        assertThat(middleware.boxedExecutions, equalTo(0));
+
+        assertThat(bus.execute(new Count(2)), equalTo((Object) 1002));
+        assertThat(middleware.boxedExecutions, equalTo(1));
+    }
+
+    @Test
+    public void resultChangedByMiddlewareIsReturned() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CounterHandler())
+                .registerValueProvider(new CounterProviders())
+                .registerMiddleware(new CountingMiddleware())
+                .registerMiddleware(new Middleware() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <R> R execute(Object command, Function<Object, R> next) {
+                        return (R) (Integer) ((Integer) next.apply(command) + 1);
+                    }
+                })
+                .build();
+
+        assertThat(bus.executeInt(new Count(2)), equalTo(1003));
+    }
+
+    @Test
+    public void primitiveResultIsReturnedWithMetrics() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CounterHandler())
+                .registerValueProvider(new CounterProviders())
+                .enableMetrics(1)
+                .build();
+
+        assertThat(bus.executeInt(new Count(2)), equalTo(1002));
+        assertThat(bus.metrics().snapshot().get(Count.class).getInvocations(), equalTo(1L));
+    }
+
+    @Test
+    public void unexpectedResultIsRejected() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CounterHandler())
+                .registerValueProvider(new CounterProviders())
+                .build();
+
+        try {
+            bus.executeLong(new Count(2));
+            fail("int result should be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("Result of command " + Count.class.getName() + " is java.lang.Integer, but long is expected"));
+        }
+    }
+
+    @Test
+    public void commandPassedOnByMiddlewareIsHandledByItsOwnHandler() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CounterHandler())
+                .registerValueProvider(new CounterProviders())
+                .registerMiddleware(new UpgradingMiddleware())
+                .build();
+
+        assertThat(bus.executeInt(new LegacyCount(2)), equalTo(1002));
+        assertThat(bus.executeInt(new Count(2)), equalTo(1002));
+    }
+
+    @Test
+    public void unexpectedResultOfPrimitiveAwareMiddlewareIsRejected() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CounterHandler())
+                .registerValueProvider(new CounterProviders())
+                .registerMiddleware(new PrimitiveAwareMiddleware() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <R> R execute(Object command, Function<Object, R> next) {
+                        next.apply(command);
+                        return (R) "changed";
+                    }
+                })
+                .build();
+
+        try {
+            bus.executeInt(new Count(2));
+            fail("String result should be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("Result of command " + Count.class.getName() + " is java.lang.String, but int is expected"));
+        }
+    }
+
+    public static class LegacyCount {
+        final int by;
+
+        LegacyCount(int by) {
+            this.by = by;
+        }
+    }
+
+    public static class Count {
+        final int by;
+
+        Count(int by) {
+            this.by = by;
+        }
+    }
+
+    public static class NextId {
+    }
+
+    public static class Validate {
+        final String value;
+
+        Validate(String value) {
+            this.value = value;
+        }
+    }
+
+    public static class CounterHandler {
+        @Handler
+        public int handle(Count count, Integer base) {
+            return base + count.by;
+        }
+
+        @Handler
+        public int handle(LegacyCount count) {
+            throw new IllegalStateException("Legacy count should be upgraded by middleware");
+        }
+
+        @Handler
+        public long handle(NextId nextId) {
+            return 1L << 40;
+        }
+
+        @Handler
+        public boolean handle(Validate validate) {
+            return !validate.value.isEmpty();
+        }
+    }
+
+    public static class CounterProviders {
+        @Provider
+        public Integer base() {
+            return 1000;
+        }
+    }
+
+    public static class CountingMiddleware implements PrimitiveAwareMiddleware {
+        int primitiveExecutions;
+        int boxedExecutions;
+
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            boxedExecutions++;
+            return next.apply(command);
+        }
+
+        @Override
+        public int executeInt(Object command, ToIntFunction<Object> next) {
+            primitiveExecutions++;
+            return next.applyAsInt(command);
+        }
+    }
+
+    public static class UpgradingMiddleware implements PrimitiveAwareMiddleware {
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            return next.apply(upgrade(command));
+        }
+
+        @Override
+        public int executeInt(Object command, ToIntFunction<Object> next) {
+            return next.applyAsInt(upgrade(command));
+        }
+
+        private static Object upgrade(Object command) {
+            return command instanceof LegacyCount ? new Count(((LegacyCount) command).by) : command;
+        }
+    }
+}
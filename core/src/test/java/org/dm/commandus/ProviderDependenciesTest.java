@@ -0,0 +1,331 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProviderDependenciesTest {
+
+    private final ExecutorService providerExecutor = BusExecutors.fixedThreadPool(3);
+
+    @After
+    public void tearDown() {
+        providerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void sharedDependencyIsComputedOncePerCommand() {
+        PricingProviders providers = new PricingProviders();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new PricingHandler())
+                .registerValueProvider(providers)
+                .build();
+
+        assertThat(bus.execute(new Price()), equalTo("EUR 21"));
+        assertThat(bus.execute(new Price()), equalTo("EUR 21"));
+        assertThat(providers.rateLookups.get(), equalTo(2));
+    }
+
+    @Test
+    public void sharedDependencyIsComputedOncePerCommandInParallel() {
+        PricingProviders providers = new PricingProviders();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new PricingHandler())
+                .registerValueProvider(providers)
+                .providerExecutor(providerExecutor)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(bus.execute(new Price()), equalTo("EUR 21"));
+        }
+        assertThat(providers.rateLookups.get(), equalTo(100));
+    }
+
+    @Test
+    public void independentValuesAreProvidedInParallel() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new ProfileHandler())
+                .registerValueProvider(new LookupProviders(new CyclicBarrier(3)))
+                .providerExecutor(providerExecutor)
+                .build();
+
+        // each lookup waits for the other two, so they complete only if they run at the same time
+        assertThat(bus.execute(new LoadProfile()), equalTo("config:user:true"));
+    }
+
+    @Test
+    public void dependenciesOfCachedValueAreNotComputed() throws InterruptedException {
+        PricingProviders providers = new PricingProviders();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CachedRateHandler())
+                .registerValueProvider(providers)
+                .build();
+
+        bus.execute(new Price());
+        Thread.sleep(5);
+        bus.execute(new Price());
+
+        // published rate is expired by then, but is not asked for
+        assertThat(providers.publishedRateLookups.get(), equalTo(1));
+    }
+
+    @Test
+    public void cachedValueDependingOnVaryingValueIsRejected() {
+        try {
+            new BusBuilder()
+                    .registerCommandHandler(new CachedRateHandler())
+                    .registerValueProvider(new VaryingRateProviders())
+                    .build();
+            fail("Cached value depending on not cached one should be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("Value provider java.lang.Double cachedRate has TIMED scope, "
+                    + "but depends on java.lang.Long rate of narrower NONE scope"));
+        }
+    }
+
+    @Test
+    public void cachedValueDependingOnNarrowerScopeIsRejected() {
+        try {
+            new BusBuilder()
+                    .registerCommandHandler(new PricingHandler())
+                    .registerValueProvider(new NarrowerScopeProviders())
+                    .build();
+            fail("Thread scoped value depending on command scoped one should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("narrower COMMAND scope"));
+        }
+    }
+
+    @Test
+    public void cachedValueDependingOnDeadlineIsRejected() {
+        try {
+            new BusBuilder()
+                    .registerCommandHandler(new PricingHandler())
+                    .registerValueProvider(new DeadlineProviders())
+                    .build();
+            fail("Command scoped value depending on deadline should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("org.dm.core.Deadline deadline of narrower NONE scope"));
+        }
+    }
+
+    @Test
+    public void valueMayDependOnWiderScope() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new PricingHandler())
+                .registerValueProvider(new WiderScopeProviders())
+                .build();
+
+        assertThat(bus.execute(new Price()), equalTo("EUR 21"));
+    }
+
+    @Test
+    public void cyclicDependencyIsRejected() {
+        try {
+            new BusBuilder()
+                    .registerCommandHandler(new PricingHandler())
+                    .registerValueProvider(new CyclicProviders())
+                    .build();
+            fail("Cyclic dependency should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("cyclic dependency"));
+        }
+    }
+
+    @Test
+    public void missingDependencyIsRejected() {
+        try {
+            new BusBuilder()
+                    .registerValueProvider(new MissingDependencyProviders())
+                    .build();
+            fail("Missing dependency should be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Value provider java.lang.Integer"));
+        }
+    }
+
+    public static class Price {
+    }
+
+    public static class LoadProfile {
+    }
+
+    public static class PricingHandler {
+        @Handler
+        public String handle(Price price, Integer amount, String currency) {
+            return currency + " " + amount;
+        }
+    }
+
+    public static class CachedRateHandler {
+        @Handler
+        public String handle(Price price, Double cachedRate) {
+            return String.valueOf(cachedRate);
+        }
+    }
+
+    public static class ProfileHandler {
+        @Handler
+        public String handle(LoadProfile command, String config, StringBuilder user, Boolean flag) {
+            return config + ":" + user + ":" + flag;
+        }
+    }
+
+    public static class PricingProviders {
+        final AtomicInteger rateLookups = new AtomicInteger();
+        final AtomicInteger publishedRateLookups = new AtomicInteger();
+
+        @Provider
+        public Long rate() {
+            rateLookups.incrementAndGet();
+            return 7L;
+        }
+
+        @Provider
+        public Integer amount(Long rate) {
+            return (int) (rate * 3);
+        }
+
+        @Provider
+        public String currency(Long rate) {
+            return rate == 7L ? "EUR" : "USD";
+        }
+
+        @Provider(scope = Provider.Scope.TIMED, ttl = 1, ttlUnit = TimeUnit.MILLISECONDS)
+        public Short publishedRate() {
+            publishedRateLookups.incrementAndGet();
+            return 7;
+        }
+
+        @Provider(scope = Provider.Scope.TIMED, ttl = 1, ttlUnit = TimeUnit.HOURS)
+        public Double cachedRate(Short publishedRate) {
+            return publishedRate / 2.0;
+        }
+    }
+
+    public static class VaryingRateProviders {
+        @Provider
+        public Long rate() {
+            return System.nanoTime();
+        }
+
+        @Provider(scope = Provider.Scope.TIMED, ttl = 1, ttlUnit = TimeUnit.HOURS)
+        public Double cachedRate(Long rate) {
+            return rate / 2.0;
+        }
+    }
+
+    public static class NarrowerScopeProviders {
+        @Provider(scope = Provider.Scope.COMMAND)
+        public Long rate() {
+            return 7L;
+        }
+
+        @Provider
+        public Integer amount() {
+            return 21;
+        }
+
+        @Provider(scope = Provider.Scope.THREAD)
+        public String currency(Long rate) {
+            return rate == 7L ? "EUR" : "USD";
+        }
+    }
+
+    public static class DeadlineProviders {
+        @Provider
+        public Integer amount() {
+            return 21;
+        }
+
+        @Provider(scope = Provider.Scope.COMMAND)
+        public String currency(Deadline deadline) {
+            return deadline.isExpired() ? "USD" : "EUR";
+        }
+    }
+
+    public static class WiderScopeProviders {
+        @Provider(scope = Provider.Scope.TIMED, ttl = 1, ttlUnit = TimeUnit.HOURS)
+        public Long rate() {
+            return 7L;
+        }
+
+        @Provider(scope = Provider.Scope.THREAD)
+        public Integer amount(Long rate) {
+            return (int) (rate * 3);
+        }
+
+        @Provider(scope = Provider.Scope.COMMAND)
+        public String currency(Long rate, Integer amount) {
+            return "EUR";
+        }
+    }
+
+    public static class LookupProviders {
+        private final CyclicBarrier lookups;
+
+        LookupProviders(CyclicBarrier lookups) {
+            this.lookups = lookups;
+        }
+
+        @Provider
+        public String config() {
+            return await("config");
+        }
+
+        @Provider
+        public StringBuilder user() {
+            return new StringBuilder(await("user"));
+        }
+
+        @Provider
+        public Boolean flag() {
+            return Boolean.valueOf(await("true"));
+        }
+
+        private String await(String value) {
+            try {
+                lookups.await(5, TimeUnit.SECONDS);
+                return value;
+            } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                throw new IllegalStateException("Lookups are not executed in parallel", e);
+            }
+        }
+    }
+
+    public static class CyclicProviders {
+        @Provider
+        public Integer amount(String currency) {
+            return 1;
+        }
+
+        @Provider
+        public String currency(Long rate) {
+            return "EUR";
+        }
+
+        @Provider
+        public Long rate(Integer amount) {
+            return 1L;
+        }
+    }
+
+    public static class MissingDependencyProviders {
+        @Provider
+        public Integer amount(Long rate) {
+            return 1;
+        }
+    }
+}
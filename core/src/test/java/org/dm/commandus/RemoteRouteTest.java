@@ -0,0 +1,307 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RemoteRouteTest {
+
+    private QuoteHandler handler;
+    private RemoteServer server;
+    private RemoteRoute route;
+    private Bus bus;
+
+    @Before
+    public void setUp() {
+        handler = new QuoteHandler();
+        Bus remoteBus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .build();
+        server = RemoteServer.builder(remoteBus, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .accept(Quote.class)
+                .build();
+        route = RemoteRoute.builder(server.address()).build();
+        bus = new BusBuilder()
+                .registerRemoteRoute(Quote.class, route)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        route.close();
+        server.close();
+    }
+
+    @Test
+    public void commandIsExecutedByRemoteBus() throws Exception {
+        assertThat(bus.execute(new Quote("EUR", 1)), equalTo("EUR:1"));
+        assertThat(bus.<String>executeAsync(new Quote("USD", 2)).get(5, TimeUnit.SECONDS), equalTo("USD:2"));
+        assertThat(bus.execute(new Quote(null, 0)), nullValue());
+
+        assertThat(server.receivedCount(), equalTo(3L));
+        assertThat(route.sentCount(), equalTo(3L));
+        assertThat(route.inFlightCount(), equalTo(0));
+        assertThat(route.roundTripLatency().getCount(), equalTo(3L));
+    }
+
+    @Test
+    public void orderedCommandsAreExecutedByRemoteBusInOrder() throws Exception {
+        // remote commands are executed in parallel, whatever parallelism of common pool is
+        ExecutorService executor = BusExecutors.fixedThreadPool(2);
+        RemoteServer parallelServer = RemoteServer.builder(new BusBuilder()
+                        .registerCommandHandler(handler)
+                        .executor(executor)
+                        .build(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .accept(Quote.class)
+                .executor(executor)
+                .build();
+        RemoteRoute parallelRoute = RemoteRoute.builder(parallelServer.address()).build();
+        try {
+            Bus orderedBus = new BusBuilder()
+                    .registerRemoteRoute(Quote.class, parallelRoute)
+                    .registerOrderingKey(Quote.class, quote -> quote.currency)
+                    .build();
+
+            CompletableFuture<Object> slow = orderedBus.executeAsync(new Quote("LANE", 100));
+            CompletableFuture<Object> fast = orderedBus.executeAsync(new Quote("LANE", 0));
+            fast.get(5, TimeUnit.SECONDS);
+            slow.get(5, TimeUnit.SECONDS);
+
+            assertThat(handler.lane, equalTo(Arrays.asList(100, 0)));
+        } finally {
+            parallelRoute.close();
+            parallelServer.close();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void remoteFailureIsRethrown() {
+        try {
+            bus.execute(new Quote("XXX", 1));
+            fail("Remote failure should be rethrown");
+        } catch (RemoteCommandException e) {
+            assertThat(e.getRemoteType(), equalTo(IllegalArgumentException.class.getName()));
+            assertTrue(e.getMessage(), e.getMessage().contains("Unknown currency XXX"));
+        }
+        assertThat(route.failedCount(), equalTo(1L));
+    }
+
+    @Test
+    public void pipelinedCommandsGetTheirOwnResults() throws Exception {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            results.add(bus.executeAsync(new Quote("EUR", i)));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS), equalTo("EUR:" + i));
+        }
+        assertThat(server.receivedCount(), equalTo(10_000L));
+        assertThat(route.inFlightCount(), equalTo(0));
+    }
+
+    @Test
+    public void frameLargerThanReadBufferIsReceived() {
+        char[] large = new char[300_000];
+        Arrays.fill(large, 'a');
+        String currency = new String(large);
+
+        assertThat(bus.execute(new Quote(currency, 1)), equalTo(currency + ":1"));
+    }
+
+    @Test
+    public void commandsInFlightFailWhenConnectionIsClosed() throws Exception {
+        handler.blocked = new CountDownLatch(1);
+        CompletableFuture<String> result = bus.executeAsync(new Quote("EUR", 1));
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        assertThat(route.inFlightCount(), equalTo(1));
+
+        server.close();
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Command in flight should fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        } finally {
+            handler.blocked.countDown();
+        }
+        assertThat(route.inFlightCount(), equalTo(0));
+    }
+
+    @Test
+    public void commandOfNotAcceptedTypeIsNotDeserialized() {
+        assertRemoteFailure(server, new Other(), IllegalStateException.class);
+        assertRemoteFailure(server, new Quote("EUR", 1, new Other()), IllegalStateException.class);
+        assertThat(server.inFlightCount(), equalTo(0));
+    }
+
+    @Test
+    public void commandOfNotAcceptedTypeIsRejected() {
+        RemoteServer javaServer = RemoteServer.builder(new BusBuilder().build(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .accept(Quote.class)
+                .serializer(CommandSerializer.java())
+                .build();
+        try {
+            assertRemoteFailure(javaServer, new Other(), CommandRejectedException.class);
+        } finally {
+            javaServer.close();
+        }
+    }
+
+    @Test
+    public void resultOfNotAcceptedTypeIsNotDeserialized() {
+        try {
+            bus.execute(new Quote("OTHER", 1));
+            fail("Result of not accepted type should fail");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(Other.class.getName()));
+        }
+        assertThat(route.inFlightCount(), equalTo(0));
+
+        RemoteRoute acceptingRoute = RemoteRoute.builder(server.address())
+                .acceptResults(Other.class)
+                .build();
+        try {
+            Object result = new BusBuilder()
+                    .registerRemoteRoute(Quote.class, acceptingRoute)
+                    .build()
+                    .execute(new Quote("OTHER", 1));
+            assertThat(result, instanceOf(Other.class));
+        } finally {
+            acceptingRoute.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void serverShouldAcceptSomeCommandTypes() {
+        RemoteServer.builder(new BusBuilder().build(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).build();
+    }
+
+    @Test
+    public void notRespondedCommandFailsAfterRequestTimeout() throws Exception {
+        RemoteRoute timedRoute = RemoteRoute.builder(server.address())
+                .requestTimeout(50, TimeUnit.MILLISECONDS)
+                .build();
+        handler.blocked = new CountDownLatch(1);
+        try {
+            Bus timedBus = new BusBuilder()
+                    .registerRemoteRoute(Quote.class, timedRoute)
+                    .build();
+            timedBus.executeAsync(new Quote("EUR", 1)).get(5, TimeUnit.SECONDS);
+            fail("Command should time out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+            assertThat(timedRoute.inFlightCount(), equalTo(0));
+        } finally {
+            handler.blocked.countDown();
+            timedRoute.close();
+        }
+    }
+
+    @Test
+    public void reconnectDoesNotBlockSender() throws Exception {
+        server.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            long start = System.nanoTime();
+            CompletableFuture<String> result = bus.executeAsync(new Quote("EUR", 1));
+            assertTrue("Sender should not wait for connection", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("Command sent to closed server should fail");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            }
+            if (route.failedCount() >= 2 || System.nanoTime() > deadline) {
+                break;
+            }
+        }
+        assertThat(route.inFlightCount(), equalTo(0));
+    }
+
+    private static void assertRemoteFailure(RemoteServer server, Object command, Class<? extends Exception> remoteType) {
+        RemoteRoute otherRoute = RemoteRoute.builder(server.address()).build();
+        try {
+            new BusBuilder()
+                    .registerRemoteRoute(Object.class, otherRoute)
+                    .build()
+                    .execute(command);
+            fail("Not accepted command should fail");
+        } catch (RemoteCommandException e) {
+            assertThat(e.getRemoteType(), equalTo(remoteType.getName()));
+            assertTrue(e.getMessage(), e.getMessage().contains(Other.class.getName()));
+        } finally {
+            otherRoute.close();
+        }
+    }
+
+    public static class Other implements Serializable {
+    }
+
+    public static class Quote implements Serializable {
+        final String currency;
+        final int amount;
+        final Object note;
+
+        Quote(String currency, int amount) {
+            this(currency, amount, null);
+        }
+
+        Quote(String currency, int amount, Object note) {
+            this.currency = currency;
+            this.amount = amount;
+            this.note = note;
+        }
+    }
+
+    public static class QuoteHandler {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile CountDownLatch blocked;
+        final List<Integer> lane = Collections.synchronizedList(new ArrayList<>());
+
+        @Handler
+        public Object handle(Quote quote) throws InterruptedException {
+            CountDownLatch blocked = this.blocked;
+            if (blocked != null) {
+                started.countDown();
+                blocked.await();
+            }
+            if (quote.currency == null) {
+                return null;
+            }
+            if (quote.currency.equals("LANE")) {
+                Thread.sleep(quote.amount);
+                lane.add(quote.amount);
+            }
+            if (quote.currency.equals("OTHER")) {
+                return new Other();
+            }
+            if (quote.currency.equals("XXX")) {
+                throw new IllegalArgumentException("Unknown currency XXX");
+            }
+            return quote.currency + ":" + quote.amount;
+        }
+    }
+}
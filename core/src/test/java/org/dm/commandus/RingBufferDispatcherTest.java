@@ -0,0 +1,181 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferDispatcherTest {
+
+    @Test
+    public void allCommandsAreExecuted() throws Exception {
+        for (RingBufferDispatcher.WaitStrategy waitStrategy : RingBufferDispatcher.WaitStrategy.values()) {
+            try (RingBufferDispatcher dispatcher = RingBufferDispatcher.builder()
+                    .capacity(64)
+                    .consumers(2)
+                    .batchSize(8)
+                    .waitStrategy(waitStrategy)
+                    .build()) {
+                Bus bus = new BusBuilder()
+                        .registerCommandHandler(new EchoHandler())
+                        .executor(dispatcher)
+                        .build();
+
+                List<CompletableFuture<Integer>> futures = new ArrayList<>();
+                for (int i = 0; i < 10_000; i++) {
+                    futures.add(bus.executeAsync(new Echo(i)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    assertThat(futures.get(i).get(10, TimeUnit.SECONDS), equalTo(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void failFastRejectsCommandWhenFull() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        try (RingBufferDispatcher dispatcher = blockedDispatcher(RingBufferDispatcher.OverflowPolicy.FAIL_FAST, handler)) {
+            Bus bus = bus(handler, dispatcher);
+
+            CompletableFuture<Object> rejected = bus.executeAsync(new Block());
+
+            assertRejected(rejected);
+            assertThat(dispatcher.rejectedCount(), equalTo(1L));
+            assertThat(dispatcher.queueDepth(), equalTo(2));
+            handler.release.countDown();
+        }
+    }
+
+    @Test
+    public void dropOldestCompletesDroppedCommandExceptionally() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        try (RingBufferDispatcher dispatcher = blockedDispatcher(RingBufferDispatcher.OverflowPolicy.DROP_OLDEST, handler)) {
+            Bus bus = bus(handler, dispatcher);
+
+            CompletableFuture<Object> accepted = bus.executeAsync(new Block());
+            handler.release.countDown();
+
+            assertRejected(handler.queued.get(0));
+            assertThat(accepted.get(5, TimeUnit.SECONDS), equalTo("done"));
+            assertThat(dispatcher.droppedCount(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void dropOldestDoesNotDropForeignTask() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        try (RingBufferDispatcher dispatcher = RingBufferDispatcher.builder()
+                .capacity(2)
+                .consumers(1)
+                .overflowPolicy(RingBufferDispatcher.OverflowPolicy.DROP_OLDEST)
+                .build()) {
+            Bus bus = bus(handler, dispatcher);
+            bus.executeAsync(new Block());
+            assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> foreign = CompletableFuture.supplyAsync(() -> "foreign", dispatcher);
+            CompletableFuture<Object> queued = bus.executeAsync(new Echo(1));
+
+            CompletableFuture<Object> accepted = bus.executeAsync(new Echo(2));
+
+            assertThat(foreign.get(5, TimeUnit.SECONDS), equalTo("foreign"));
+            assertThat(dispatcher.droppedCount(), equalTo(0L));
+            handler.release.countDown();
+            assertThat(queued.get(5, TimeUnit.SECONDS), equalTo(1));
+            assertThat(accepted.get(5, TimeUnit.SECONDS), equalTo(2));
+        }
+    }
+
+    @Test
+    public void callerRunsCommandWhenFull() throws Exception {
+        BlockingHandler handler = new BlockingHandler();
+        try (RingBufferDispatcher dispatcher = blockedDispatcher(RingBufferDispatcher.OverflowPolicy.CALLER_RUNS, handler)) {
+            Bus bus = bus(handler, dispatcher);
+
+            CompletableFuture<Object> callerRun = bus.executeAsync(new Echo(7));
+
+            assertTrue(callerRun.isDone());
+            assertThat(callerRun.get(), equalTo(7));
+            assertThat(dispatcher.callerRunsCount(), equalTo(1L));
+            handler.release.countDown();
+        }
+    }
+
+    /**
+     * Single consumer is blocked by the first command and ring buffer of capacity 2 is full.
+     */
+    private static RingBufferDispatcher blockedDispatcher(RingBufferDispatcher.OverflowPolicy overflowPolicy, BlockingHandler handler) throws InterruptedException {
+        RingBufferDispatcher dispatcher = RingBufferDispatcher.builder()
+                .capacity(2)
+                .consumers(1)
+                .overflowPolicy(overflowPolicy)
+                .build();
+        Bus bus = bus(handler, dispatcher);
+
+        bus.executeAsync(new Block());
+        assertTrue(handler.started.await(5, TimeUnit.SECONDS));
+        handler.queued.add(bus.executeAsync(new Block()));
+        handler.queued.add(bus.executeAsync(new Block()));
+
+        return dispatcher;
+    }
+
+    private static Bus bus(BlockingHandler handler, RingBufferDispatcher dispatcher) {
+        return new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerCommandHandler(new EchoHandler())
+                .executor(dispatcher)
+                .build();
+    }
+
+    private static void assertRejected(CompletableFuture<Object> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(CommandRejectedException.class));
+            return;
+        }
+        throw new AssertionError("Command should be rejected");
+    }
+
+    public static final class Echo {
+        final int value;
+
+        Echo(int value) {
+            this.value = value;
+        }
+    }
+
+    public static final class Block {
+    }
+
+    public static final class EchoHandler {
+        @Handler
+        public Integer handle(Echo echo) {
+            return echo.value;
+        }
+    }
+
+    public static final class BlockingHandler {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<CompletableFuture<Object>> queued = new ArrayList<>();
+
+        @Handler
+        public String handle(Block block) throws InterruptedException {
+            started.countDown();
+            release.await();
+            return "done";
+        }
+    }
+}
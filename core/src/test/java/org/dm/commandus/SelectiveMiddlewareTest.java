@@ -0,0 +1,146 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SelectiveMiddlewareTest {
+
+    @Test
+    public void middlewareIsExecutedOnlyForMatchingCommands() {
+        List<String> trace = new ArrayList<>();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new CommandHandlers())
+                .registerMiddleware(new TracingMiddleware(trace, "all"))
+                .registerMiddleware(new TracingMiddleware(trace, "write"), CommandTypes.annotatedWith(Write.class))
+                .registerMiddleware(new TracingMiddleware(trace, "read"), CommandTypes.assignableTo(Read.class))
+                .build();
+
+        bus.execute(new Read());
+        bus.execute(new Update());
+        bus.execute(new Read() {
+        });
+
+        assertThat(trace, equalTo(Arrays.asList("all", "read", "all", "write", "all", "read")));
+    }
+
+    @Test
+    public void commandWithoutMiddlewareGoesStraightToHandler() {
+        CommandHandlers handler = new CommandHandlers();
+        new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerMiddleware(new TracingMiddleware(new ArrayList<>(), "write"), CommandTypes.annotatedWith(Write.class))
+                .build()
+                .execute(new Read());
+
+        assertTrue(Arrays.toString(handler.readStackTrace), Arrays.stream(handler.readStackTrace)
+                .noneMatch(frame -> frame.getMethodName().startsWith("lambda$")));
+    }
+
+    @Test
+    public void matchingMiddlewareIsExecutedBeforeHandlerNotFound() {
+        List<String> trace = new ArrayList<>();
+        try {
+            new BusBuilder()
+                    .registerMiddleware(new TracingMiddleware(trace, "write"), CommandTypes.annotatedWith(Write.class))
+                    .registerMiddleware(new TracingMiddleware(trace, "read"), CommandTypes.assignableTo(Read.class))
+                    .build()
+                    .execute(new Update());
+        } catch (IllegalStateException e) {
+            assertThat(trace, equalTo(Arrays.asList("write")));
+            return;
+        }
+        throw new AssertionError("Exception expected");
+    }
+
+    @Test
+    public void transformedCommandGoesToItsOwnHandler() {
+        for (boolean metrics : new boolean[]{false, true}) {
+            BusBuilder builder = new BusBuilder()
+                    .registerCommandHandler(new CommandHandlers())
+                    .registerMiddleware(new UpgradingMiddleware(), CommandTypes.assignableTo(Legacy.class));
+            if (metrics) {
+                builder.enableMetrics(1);
+            }
+            Bus bus = builder.build();
+
+            assertThat(bus.execute(new Legacy()), equalTo("modern"));
+            assertThat(bus.executeAll(Arrays.asList(new Legacy(), new Legacy())), equalTo(Arrays.<Object>asList("modern", "modern")));
+        }
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Write {
+    }
+
+    public static class Read {
+    }
+
+    @Write
+    public static final class Update {
+    }
+
+    public static final class Legacy {
+    }
+
+    public static final class Modern {
+    }
+
+    public static final class CommandHandlers {
+        StackTraceElement[] readStackTrace;
+
+        @Handler
+        public String handle(Read read) {
+            readStackTrace = new Throwable().getStackTrace();
+            return "read";
+        }
+
+        @Handler
+        public String handle(Update update) {
+            return "update";
+        }
+
+        @Handler
+        public String handle(Legacy legacy) {
+            return "legacy";
+        }
+
+        @Handler
+        public String handle(Modern modern) {
+            return "modern";
+        }
+    }
+
+    public static final class UpgradingMiddleware implements Middleware {
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            return next.apply(new Modern());
+        }
+    }
+
+    public static final class TracingMiddleware implements Middleware {
+        private final List<String> trace;
+        private final String name;
+
+        TracingMiddleware(List<String> trace, String name) {
+            this.trace = trace;
+            this.name = name;
+        }
+
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            trace.add(name);
+            return next.apply(command);
+        }
+    }
+}
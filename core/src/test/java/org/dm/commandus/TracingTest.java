@@ -0,0 +1,222 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TracingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stepsAreTracedOnlyWhileTracingIsStarted() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new SlowHandler())
+                .registerValueProvider(new SlowValueProvider())
+                .registerMiddleware(new SlowMiddleware())
+                .enableTracing()
+                .build();
+
+        bus.execute(new Order(1));
+        assertThat(bus.tracer().dump().size(), equalTo(0));
+
+        bus.tracer().start();
+        bus.execute(new Order(2));
+        bus.tracer().stop();
+        bus.execute(new Order(3));
+
+        List<CommandTrace> traces = bus.tracer().dump();
+        assertThat(traces.size(), equalTo(1));
+        CommandTrace trace = traces.get(0);
+        assertThat(trace.getCommandType(), equalTo(Order.class));
+        assertThat(trace.getThreadName(), equalTo(Thread.currentThread().getName()));
+        assertThat(trace.getFailure(), nullValue());
+        assertThat(trace.getSpans().stream().map(CommandTrace.Span::getStage).collect(Collectors.toList()),
+                equalTo(Arrays.asList(CommandTrace.Stage.MIDDLEWARE, CommandTrace.Stage.HANDLER, CommandTrace.Stage.PROVIDER)));
+        assertThat(trace.getSpans().stream().map(CommandTrace.Span::getDepth).collect(Collectors.toList()),
+                equalTo(Arrays.asList(0, 1, 2)));
+        assertThat(trace.getSpans().get(0).getName(), equalTo(SlowMiddleware.class.getName()));
+
+        long millis = TimeUnit.MILLISECONDS.toNanos(1);
+        CommandTrace.Span provider = trace.getSpans().get(2);
+        CommandTrace.Span handler = trace.getSpans().get(1);
+        assertTrue(trace.toString(), provider.getDurationNanos() >= 5 * millis);
+        assertTrue(trace.toString(), handler.getDurationNanos() >= provider.getDurationNanos() + 5 * millis);
+        assertTrue(trace.toString(), trace.getTotalNanos() >= handler.getDurationNanos() + 5 * millis);
+    }
+
+    @Test
+    public void onlyRecentTracesAreKept() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new FastHandler())
+                .enableTracing(4)
+                .build();
+        bus.tracer().start();
+
+        for (int i = 0; i < 10; i++) {
+            bus.execute(new Quote());
+        }
+
+        assertThat(bus.tracer().recordedCount(), equalTo(10L));
+        assertThat(bus.tracer().dump().stream().map(CommandTrace::getSequence).collect(Collectors.toList()),
+                equalTo(Arrays.asList(6L, 7L, 8L, 9L)));
+    }
+
+    @Test
+    public void nestedAndFailedCommandsAreTracedSeparately() {
+        BusHolder holder = new BusHolder();
+        holder.bus = new BusBuilder()
+                .registerCommandHandler(new NestingHandler(holder))
+                .enableTracing()
+                .build();
+        holder.bus.tracer().start();
+
+        try {
+            holder.bus.execute(new Order(-1));
+            fail("Nested command should fail");
+        } catch (IllegalArgumentException e) {
+            List<CommandTrace> traces = holder.bus.tracer().dump();
+            assertThat(traces.size(), equalTo(2));
+            assertThat(traces.get(0).getCommandType(), equalTo(Quote.class));
+            assertThat(traces.get(0).getFailure(), instanceOf(IllegalArgumentException.class));
+            assertThat(traces.get(1).getCommandType(), equalTo(Order.class));
+            assertThat(traces.get(1).getFailure(), equalTo((Throwable) e));
+            assertThat(traces.get(1).getSpans().size(), equalTo(1));
+        }
+    }
+
+    @Test
+    public void stepsAreEmittedAsFlightRecorderEvents() throws Exception {
+        Class<?> recordingClass;
+        try {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new SlowHandler())
+                .registerValueProvider(new SlowValueProvider())
+                .registerMiddleware(new SlowMiddleware())
+                .enableTracing()
+                .build();
+        assertTrue(bus.tracer().isEmittingFlightRecorderEvents());
+
+        Object recording = recordingClass.getConstructor().newInstance();
+        recordingClass.getMethod("enable", String.class).invoke(recording, "org.dm.core.Dispatch");
+        recordingClass.getMethod("start").invoke(recording);
+        bus.tracer().start();
+        bus.execute(new Order(1));
+        recordingClass.getMethod("stop").invoke(recording);
+        Path file = folder.newFile("dispatch.jfr").toPath();
+        recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+        recordingClass.getMethod("close").invoke(recording);
+
+        List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", Path.class)
+                .invoke(null, file);
+        List<String> stages = events.stream()
+                .map(event -> (String) invoke(event, "getString", "stage"))
+                .sorted()
+                .collect(Collectors.toList());
+        assertThat(stages, equalTo(Arrays.asList("HANDLER", "MIDDLEWARE", "PROVIDER")));
+        assertThat(invoke(events.get(0), "getString", "commandType"), equalTo((Object) Order.class.getName()));
+    }
+
+    private static Object invoke(Object target, String method, String argument) {
+        try {
+            return target.getClass().getMethod(method, String.class).invoke(target, argument);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Order {
+        final int amount;
+
+        Order(int amount) {
+            this.amount = amount;
+        }
+    }
+
+    public static final class Quote {
+    }
+
+    static final class BusHolder {
+        Bus bus;
+    }
+
+    public static final class SlowHandler {
+        @Handler
+        public String handle(Order order, Integer price) {
+            sleep(5);
+            return "ordered " + order.amount * price;
+        }
+    }
+
+    public static final class FastHandler {
+        @Handler
+        public int handle(Quote quote) {
+            return 1;
+        }
+    }
+
+    public static final class NestingHandler {
+        private final BusHolder holder;
+
+        NestingHandler(BusHolder holder) {
+            this.holder = holder;
+        }
+
+        @Handler
+        public int handle(Order order) {
+            return holder.bus.<Integer>execute(new Quote()) * order.amount;
+        }
+
+        @Handler
+        public int handle(Quote quote) {
+            throw new IllegalArgumentException("No quote");
+        }
+    }
+
+    public static final class SlowValueProvider {
+        @Provider
+        public Integer price() {
+            sleep(5);
+            return 10;
+        }
+    }
+
+    public static final class SlowMiddleware implements Middleware {
+        @Override
+        public <R> R execute(Object command, Function<Object, R> next) {
+            sleep(5);
+            return next.apply(command);
+        }
+    }
+}
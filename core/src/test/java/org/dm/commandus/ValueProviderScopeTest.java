@@ -0,0 +1,143 @@
+package org.dm.commandus;
+
+import org.dm.core.*;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ValueProviderScopeTest {
+
+    @Test
+    public void commandScopedValueIsComputedOncePerCommand() {
+        ScopedValueProvider provider = new ScopedValueProvider();
+        NestingCommandHandler handler = new NestingCommandHandler();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerValueProvider(provider)
+                .build();
+        handler.bus = bus;
+
+        assertThat(bus.execute(new Outer()), equalTo("1:2"));
+        assertThat(bus.execute(new Outer()), equalTo("3:4"));
+        assertThat(provider.command.get(), equalTo(4));
+        assertStatistics(bus, Provider.Scope.COMMAND, 0, 4);
+    }
+
+    @Test
+    public void threadScopedValueIsComputedOncePerThread() throws Exception {
+        ScopedValueProvider provider = new ScopedValueProvider();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new ThreadScopedCommandHandler())
+                .registerValueProvider(provider)
+                .build();
+
+        assertThat(bus.execute(new Command()), equalTo(1));
+        assertThat(bus.execute(new Command()), equalTo(1));
+        Thread thread = new Thread(() -> bus.execute(new Command()));
+        thread.start();
+        thread.join();
+
+        assertThat(provider.thread.get(), equalTo(2));
+        assertStatistics(bus, Provider.Scope.THREAD, 1, 2);
+    }
+
+    @Test
+    public void timedValueIsSharedUntilExpired() throws Exception {
+        ScopedValueProvider provider = new ScopedValueProvider();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new TimedCommandHandler())
+                .registerValueProvider(provider)
+                .build();
+
+        assertThat(bus.execute(new Command()), equalTo(1));
+        assertThat(bus.execute(new Command()), equalTo(1));
+        Thread.sleep(250);
+        assertThat(bus.execute(new Command()), equalTo(2));
+
+        assertStatistics(bus, Provider.Scope.TIMED, 1, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void errorIfTimedValueProviderHasNoTtl() {
+        new BusBuilder()
+                .registerValueProvider(new NoTtlValueProvider())
+                .build();
+    }
+
+    private static void assertStatistics(Bus bus, Provider.Scope scope, long hits, long misses) {
+        ValueProviderStatistics statistics = bus.valueProviderStatistics().stream()
+                .filter(s -> s.getScope() == scope)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertThat(statistics.getHits(), equalTo(hits));
+        assertThat(statistics.getMisses(), equalTo(misses));
+    }
+
+    public static final class Command {
+    }
+
+    public static final class Outer {
+    }
+
+    public static final class Inner {
+    }
+
+    public static final class ScopedValueProvider {
+        final AtomicInteger command = new AtomicInteger();
+        final AtomicInteger thread = new AtomicInteger();
+        final AtomicInteger timed = new AtomicInteger();
+
+        @Provider(scope = Provider.Scope.COMMAND)
+        public Integer command() {
+            return command.incrementAndGet();
+        }
+
+        @Provider(scope = Provider.Scope.THREAD)
+        public Integer thread() {
+            return thread.incrementAndGet();
+        }
+
+        @Provider(scope = Provider.Scope.TIMED, ttl = 200, ttlUnit = java.util.concurrent.TimeUnit.MILLISECONDS)
+        public Integer timed() {
+            return timed.incrementAndGet();
+        }
+    }
+
+    public static final class NestingCommandHandler {
+        Bus bus;
+
+        @Handler
+        public String handle(Outer outer, Integer command) {
+            return command + ":" + bus.execute(new Inner());
+        }
+
+        @Handler
+        public Integer handle(Inner inner, Integer command) {
+            return command;
+        }
+    }
+
+    public static final class ThreadScopedCommandHandler {
+        @Handler
+        public Integer handle(Command c, Integer thread) {
+            return thread;
+        }
+    }
+
+    public static final class TimedCommandHandler {
+        @Handler
+        public Integer handle(Command c, Integer timed) {
+            return timed;
+        }
+    }
+
+    public static final class NoTtlValueProvider {
+        @Provider(scope = Provider.Scope.TIMED)
+        public Integer timed() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.dm.core;
+
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link AdaptiveLimiter} in virtual time against synthetic handler,
+ * which serves {@link #CAPACITY} <em>Commands</em> in {@link #BASE_LATENCY}, and gets proportionally slower
+ * above that concurrency. {@link #CLIENTS} clients send <em>Commands</em> one after another
+ * and retry rejected ones after short pause, so without limit handler would be flooded.
+ */
+public class AdaptiveLimiterSimulationTest {
+
+    private static final long BASE_LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long RETRY_PAUSE = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final int CAPACITY = 20;
+    private static final int CLIENTS = 100;
+
+    @Test
+    public void limitConvergesToHandlerCapacity() {
+        Simulation simulation = new Simulation(CAPACITY);
+        simulation.run(TimeUnit.SECONDS.toNanos(20));
+
+        Stats stats = simulation.measure(TimeUnit.SECONDS.toNanos(5));
+        assertTrue(format("Limit %d should settle near capacity %d", simulation.limiter.limit(), CAPACITY),
+                simulation.limiter.limit() >= CAPACITY && simulation.limiter.limit() <= 2 * CAPACITY);
+        assertTrue(format("Mean latency %.1f ms should stay close to latency without load", stats.meanLatencyMillis()),
+                stats.meanLatencyMillis() < 2 * 10);
+        assertTrue(format("Throughput %.0f per second should be close to capacity", stats.throughput()),
+                stats.throughput() > 0.8 * CAPACITY * 100);
+    }
+
+    @Test
+    public void limitFollowsDegradedHandler() {
+        Simulation simulation = new Simulation(CAPACITY);
+        simulation.run(TimeUnit.SECONDS.toNanos(10));
+
+        simulation.capacity = CAPACITY / 4;
+        simulation.run(TimeUnit.SECONDS.toNanos(10));
+
+        Stats stats = simulation.measure(TimeUnit.SECONDS.toNanos(5));
+        assertTrue(format("Limit %d should settle near degraded capacity %d", simulation.limiter.limit(), CAPACITY / 4),
+                simulation.limiter.limit() >= CAPACITY / 4 && simulation.limiter.limit() <= CAPACITY);
+        assertTrue(format("Mean latency %.1f ms should stay bounded", stats.meanLatencyMillis()),
+                stats.meanLatencyMillis() < 4 * 10);
+    }
+
+    @Test
+    public void wrappedDownstreamRejectionLowersLimit() {
+        Simulation simulation = new Simulation(CAPACITY);
+        for (Throwable failure : new Throwable[]{
+                new CompletionException(new BulkheadFullException("Downstream is full")),
+                new ExecutionException(new BulkheadFullException("Downstream is full"))}) {
+            simulation.failure = null;
+            simulation.run(TimeUnit.SECONDS.toNanos(10));
+            int settled = simulation.limiter.limit();
+
+            simulation.failure = failure;
+            simulation.run(TimeUnit.SECONDS.toNanos(1));
+            assertTrue(format("Limit %d should drop below %d on downstream rejections wrapped into %s",
+                    simulation.limiter.limit(), settled, failure.getClass().getSimpleName()),
+                    simulation.limiter.limit() < settled);
+        }
+    }
+
+    private static final class Simulation {
+        private final PriorityQueue<Event> events = new PriorityQueue<>();
+        private final AdaptiveLimiter limiter;
+        private int capacity;
+        private Throwable failure;
+        private long now;
+        private int inFlight;
+
+        private long measuredSince;
+        private long completed;
+        private long latencySum;
+
+        Simulation(int capacity) {
+            this.capacity = capacity;
+            this.limiter = AdaptiveLimiter.builder()
+                    .initialLimit(5)
+                    .maxLimit(CLIENTS)
+                    .clock(() -> now)
+                    .build();
+            for (int client = 0; client < CLIENTS; client++) {
+                events.add(new Event(client * 1000L, false, 0));
+            }
+        }
+
+        void run(long duration) {
+            long end = now + duration;
+            while (events.peek().time <= end) {
+                Event event = events.poll();
+                now = event.time;
+                if (event.completion) {
+                    complete(event);
+                } else {
+                    send();
+                }
+            }
+            now = end;
+        }
+
+        Stats measure(long duration) {
+            measuredSince = now;
+            completed = 0;
+            latencySum = 0;
+            run(duration);
+            return new Stats(completed, latencySum, duration);
+        }
+
+        private void send() {
+            long token;
+            try {
+                token = limiter.acquire(Object.class);
+            } catch (BulkheadFullException e) {
+                events.add(new Event(now + RETRY_PAUSE, false, 0));
+                return;
+            }
+
+            inFlight++;
+            long latency = BASE_LATENCY * Math.max(capacity, inFlight) / capacity;
+            events.add(new Event(now + latency, true, token));
+        }
+
+        private void complete(Event event) {
+            inFlight--;
+            limiter.release(event.token, failure);
+            if (event.token >= measuredSince && measuredSince > 0) {
+                completed++;
+                latencySum += now - event.token;
+            }
+            events.add(new Event(now, false, 0));
+        }
+    }
+
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final boolean completion;
+        final long token;
+
+        Event(long time, boolean completion, long token) {
+            this.time = time;
+            this.completion = completion;
+            this.token = token;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return Long.compare(time, other.time);
+        }
+    }
+
+    private static final class Stats {
+        final long completed;
+        final long latencySum;
+        final long duration;
+
+        Stats(long completed, long latencySum, long duration) {
+            this.completed = completed;
+            this.latencySum = latencySum;
+            this.duration = duration;
+        }
+
+        double meanLatencyMillis() {
+            return completed == 0 ? Double.MAX_VALUE : latencySum / (double) completed / 1_000_000;
+        }
+
+        double throughput() {
+            return completed / (duration / 1e9);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.dm.core;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        BoundedCache cache = new BoundedCache(3, 1);
+        cache.put("a", 1, String.class, 1, 0, 100);
+        cache.put("b", 2, String.class, 1, 0, 100);
+        cache.put("c", 3, String.class, 1, 0, 100);
+        cache.get("a", 0);
+
+        cache.put("d", 4, String.class, 1, 0, 100);
+
+        assertThat(cache.get("b", 0), nullValue());
+        assertThat(cache.get("a", 0), equalTo(1));
+        assertThat(cache.get("d", 0), equalTo(4));
+        assertThat(cache.evictionCount(), equalTo(1L));
+    }
+
+    @Test
+    public void cacheIsBoundedByWeight() {
+        BoundedCache cache = new BoundedCache(10, 1);
+        cache.put("a", 1, String.class, 4, 0, 100);
+        cache.put("b", 2, String.class, 4, 0, 100);
+        cache.put("c", 3, String.class, 4, 0, 100);
+        cache.put("too heavy", 4, String.class, 11, 0, 100);
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.weight(), equalTo(8L));
+        assertThat(cache.get("too heavy", 0), nullValue());
+    }
+
+    @Test
+    public void expiredEntryIsNotReturned() {
+        BoundedCache cache = new BoundedCache(10, 4);
+        cache.put("a", 1, String.class, 1, 0, 100);
+
+        assertThat(cache.get("a", 99), equalTo(1));
+        assertThat(cache.get("a", 100), nullValue());
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.hitCount(), equalTo(1L));
+        assertThat(cache.missCount(), equalTo(1L));
+    }
+
+    @Test
+    public void entriesAreRemovedByType() {
+        BoundedCache cache = new BoundedCache(10, 4);
+        cache.put("a", 1, String.class, 1, 0, 100);
+        cache.put(1, 2, Integer.class, 1, 0, 100);
+
+        cache.removeAll(Number.class);
+
+        assertThat(cache.get("a", 0), equalTo(1));
+        assertThat(cache.get(1, 0), nullValue());
+        assertThat(cache.weight(), equalTo(1L));
+    }
+}
@@ -0,0 +1,71 @@
+package org.dm.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class JournalSegmentTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsAreReadBackInOrder() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        JournalSegment segment = JournalSegment.create(directory, 7, 1024);
+        CRC32 crc = new CRC32();
+        segment.append(JournalSegment.COMMAND, 1, new byte[]{1, 2, 3}, crc);
+        segment.append(JournalSegment.COMMAND, 2, new byte[]{4}, crc);
+        segment.append(JournalSegment.COMPLETED, 1, new byte[0], crc);
+        segment.close();
+
+        JournalSegment reopened = JournalSegment.open(segment.file, JournalSegment.sequenceOf(segment.file));
+        assertThat(reopened.sequence, equalTo(7L));
+        assertThat(read(reopened), equalTo(listOf("1:1:3", "1:2:1", "2:1:0")));
+        reopened.close();
+    }
+
+    @Test
+    public void readingStopsAtTornRecord() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        JournalSegment segment = JournalSegment.create(directory, 0, 1024);
+        CRC32 crc = new CRC32();
+        segment.append(JournalSegment.COMMAND, 1, new byte[]{1, 2, 3}, crc);
+        segment.append(JournalSegment.COMMAND, 2, new byte[]{4, 5, 6}, crc);
+        segment.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(segment.file.toFile(), "rw")) {
+            int secondPayload = 2 * JournalSegment.HEADER + 3;
+            file.seek(secondPayload);
+            file.write(9);
+        }
+
+        JournalSegment reopened = JournalSegment.open(segment.file, 0);
+        assertThat(read(reopened), equalTo(listOf("1:1:3")));
+        assertThat(reopened.fits(1024 - 2 * JournalSegment.HEADER - 3), equalTo(true));
+        reopened.close();
+    }
+
+    private static List<String> read(JournalSegment segment) {
+        List<String> records = new ArrayList<>();
+        segment.read((type, id, payload) -> records.add(type + ":" + id + ":" + payload.length));
+        return records;
+    }
+
+    private static List<String> listOf(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
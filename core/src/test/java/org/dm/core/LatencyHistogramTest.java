@@ -0,0 +1,48 @@
+package org.dm.core;
+
+import org.junit.Test;
+
+import static java.lang.String.format;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 10);
+        }
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), equalTo(100_000L));
+        assertClose(snapshot.getP50(), 500_000);
+        assertClose(snapshot.getP99(), 990_000);
+        assertClose(snapshot.getMax(), 1_000_000);
+        assertClose((long) snapshot.getMean(), 500_005);
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(format("value %d, bucket %d", value, index), value <= LatencyHistogram.highestValue(index));
+            assertTrue(format("value %d, bucket %d", value, index), index == 0 || value > LatencyHistogram.highestValue(index - 1));
+        }
+        assertThat(LatencyHistogram.highestValue(LatencyHistogram.index(Long.MAX_VALUE)), equalTo(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencySnapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertThat(snapshot.getP99(), equalTo(0L));
+        assertThat(snapshot.getMax(), equalTo(0L));
+    }
+
+    private static void assertClose(long actual, long expected) {
+        assertTrue(format("%d is not close to %d", actual, expected), Math.abs(actual - expected) <= expected / 8);
+    }
+}
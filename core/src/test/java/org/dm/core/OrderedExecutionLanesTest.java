@@ -0,0 +1,56 @@
+package org.dm.core;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OrderedExecutionLanesTest {
+
+    @Test
+    public void idleLaneIsReclaimed() {
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        CompletableFuture<Object> second = new CompletableFuture<>();
+        OrderedExecution execution = new OrderedExecution(
+                Collections.<Class, Function<Object, Object>>singletonMap(String.class, command -> "key"),
+                command -> "first".equals(command) ? first : second);
+
+        CompletableFuture<Object> firstResult = execution.apply("first");
+        CompletableFuture<Object> secondResult = execution.apply("second");
+        assertThat(execution.activeLanes(), equalTo(1));
+
+        first.complete(1);
+        assertThat(firstResult.join(), equalTo(1));
+        assertThat(execution.activeLanes(), equalTo(1));
+
+        second.complete(2);
+        assertThat(secondResult.join(), equalTo(2));
+        assertThat(execution.activeLanes(), equalTo(0));
+    }
+
+    @Test
+    public void nextCommandStartsOnlyAfterPreviousCompletes() {
+        CompletableFuture<Object> first = new CompletableFuture<>();
+        boolean[] secondStarted = {false};
+        OrderedExecution execution = new OrderedExecution(
+                Collections.<Class, Function<Object, Object>>singletonMap(String.class, command -> "key"),
+                command -> {
+                    if ("first".equals(command)) {
+                        return first;
+                    }
+                    secondStarted[0] = true;
+                    return CompletableFuture.completedFuture(2);
+                });
+
+        execution.apply("first");
+        CompletableFuture<Object> secondResult = execution.apply("second");
+        assertThat(secondStarted[0], equalTo(false));
+
+        first.completeExceptionally(new IllegalStateException());
+        assertThat(secondResult.join(), equalTo(2));
+    }
+}
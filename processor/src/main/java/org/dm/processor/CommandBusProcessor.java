@@ -0,0 +1,390 @@
+package org.dm.processor;
+
+import org.dm.core.BatchHandler;
+import org.dm.core.BusIndex;
+import org.dm.core.Handler;
+import org.dm.core.Provider;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import static java.lang.String.format;
+
+/**
+ * Generates {@link BusIndex} named {@value #INDEX_NAME} for each package with classes
+ * having {@link Handler}, {@link BatchHandler} or {@link Provider} methods (declared or inherited)
+ * and registers them in {@code META-INF/services}.
+ *
+ * <p>Class is indexed only if all its methods could be called directly from generated index
+ * (class, methods and their parameter types are accessible from the package, methods have at most 9 parameters).
+ * Otherwise it is only listed in index with a note and is scanned with reflection at runtime.
+ *
+ * <p>Indexes are written at the end of each round, so they are compiled as usual. Package with classes
+ * found in later rounds (i.e. generated by other processors) gets another index for them, named
+ * {@value #INDEX_NAME}2, {@value #INDEX_NAME}3 and so on. Only {@code META-INF/services} is written when
+ * processing is over. Index lists only classes compiled together with it, so it is rebuilt from scratch
+ * on every compilation: incremental compilation of part of a package would drop the other classes
+ * of the package from its index, such package needs full rebuild.
+ */
+@SupportedAnnotationTypes("*")
+public final class CommandBusProcessor extends AbstractProcessor {
+
+    static final String INDEX_NAME = "CommandBusIndex";
+
+    private static final String SERVICE_FILE = "META-INF/services/" + BusIndex.class.getName();
+    private static final int MAX_PARAMS = 9;
+
+    private final Set<String> indexes = new TreeSet<>();
+    private final Map<String, Integer> indexCountByPackage = new HashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+
+        Map<String, List<String>> entriesByPackage = new TreeMap<>();
+        Map<String, List<Element>> originsByPackage = new TreeMap<>();
+        for (TypeElement owner : candidates(ElementFilter.typesIn(roundEnv.getRootElements()))) {
+            List<ExecutableElement> methods = annotatedMethods(owner);
+            if (methods.isEmpty()) {
+                continue;
+            }
+
+            PackageElement pkg = processingEnv.getElementUtils().getPackageOf(owner);
+            if (pkg.isUnnamed()) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        format("%s is not indexed, class is in unnamed package", owner.getQualifiedName()), owner);
+                continue;
+            }
+
+            String pkgName = pkg.getQualifiedName().toString();
+            List<String> entries = entriesByPackage.computeIfAbsent(pkgName, k -> new ArrayList<>());
+            originsByPackage.computeIfAbsent(pkgName, k -> new ArrayList<>()).add(owner);
+            String problem = problem(owner, pkg, methods);
+            if (problem == null) {
+                methods.forEach(method -> entries.add(entry(owner, method)));
+                continue;
+            }
+
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    format("%s is scanned at runtime, %s", owner.getQualifiedName(), problem), owner);
+            String binaryName = processingEnv.getElementUtils().getBinaryName(owner).toString();
+            String indexName = indexName(pkgName);
+            if (methods.stream().anyMatch(method -> method.getAnnotation(Provider.class) == null)) {
+                entries.add(format("org.dm.core.IndexedMethod.scanned(%s.class, \"%s\", false)", indexName, binaryName));
+            }
+            if (methods.stream().anyMatch(method -> method.getAnnotation(Provider.class) != null)) {
+                entries.add(format("org.dm.core.IndexedMethod.scanned(%s.class, \"%s\", true)", indexName, binaryName));
+            }
+        }
+
+        entriesByPackage.forEach((pkg, entries) -> writeIndex(pkg, entries, originsByPackage.get(pkg)));
+        return false;
+    }
+
+    /**
+     * @return simple name of index, which is written for package at the end of current round
+     */
+    private String indexName(String pkg) {
+        int count = indexCountByPackage.getOrDefault(pkg, 0);
+        return count == 0 ? INDEX_NAME : INDEX_NAME + (count + 1);
+    }
+
+    /**
+     * @return concrete classes, including nested ones
+     */
+    private static List<TypeElement> candidates(Collection<TypeElement> types) {
+        List<TypeElement> candidates = new ArrayList<>();
+        for (TypeElement type : types) {
+            if (type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT)) {
+                candidates.add(type);
+            }
+            candidates.addAll(candidates(ElementFilter.typesIn(type.getEnclosedElements())));
+        }
+        return candidates;
+    }
+
+    /**
+     * @return annotated methods of class and its supertypes, except overridden ones
+     */
+    private List<ExecutableElement> annotatedMethods(TypeElement owner) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        Deque<TypeElement> hierarchy = new ArrayDeque<>();
+        Set<TypeElement> visited = new HashSet<>();
+        hierarchy.add(owner);
+        while (!hierarchy.isEmpty()) {
+            TypeElement type = hierarchy.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (isAnnotated(method) && methods.stream().noneMatch(m -> processingEnv.getElementUtils().overrides(m, method, owner))) {
+                    methods.add(method);
+                }
+            }
+            for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type.asType())) {
+                hierarchy.add((TypeElement) processingEnv.getTypeUtils().asElement(supertype));
+            }
+        }
+        return methods;
+    }
+
+    private static boolean isAnnotated(ExecutableElement method) {
+        return method.getAnnotation(Handler.class) != null
+                || method.getAnnotation(BatchHandler.class) != null
+                || method.getAnnotation(Provider.class) != null;
+    }
+
+    /**
+     * @return why class can't be indexed or null if it can
+     */
+    private String problem(TypeElement owner, PackageElement pkg, List<ExecutableElement> methods) {
+        if (!isAccessible(owner, pkg)) {
+            return "class is not accessible";
+        }
+
+        for (ExecutableElement method : methods) {
+            String name = method.getSimpleName().toString();
+            TypeElement declaringType = (TypeElement) method.getEnclosingElement();
+            if (!isAccessible(method, pkg) || (isStatic(method) && !isAccessible(declaringType, pkg))) {
+                return format("method %s is not accessible", name);
+            }
+            if (method.getParameters().size() > MAX_PARAMS) {
+                return format("method %s has more than %d parameters", name, MAX_PARAMS);
+            }
+            for (VariableElement param : method.getParameters()) {
+                if (!isAccessible(param.asType(), pkg)) {
+                    return format("parameter %s of method %s is not accessible", param.getSimpleName(), name);
+                }
+            }
+
+            if (method.getAnnotation(Provider.class) != null) {
+                if (!isAccessible(method.getReturnType(), pkg)) {
+                    return format("provider method %s should have accessible return type", name);
+                }
+            } else if (method.getParameters().isEmpty()) {
+                return format("handle method %s has no parameters", name);
+            } else if (method.getAnnotation(BatchHandler.class) != null) {
+                TypeMirror commandType = batchCommandType(method);
+                if (commandType == null || !isAccessible(commandType, pkg) || !isBatchResult(method.getReturnType())) {
+                    return format("batch handle method %s should accept List<Command> and return List or void", name);
+                }
+            }
+        }
+        return null;
+    }
+
+    private String entry(TypeElement owner, ExecutableElement method) {
+        String ownerName = erasure(owner.asType());
+        StringJoiner paramTypes = new StringJoiner(", ", "new Class<?>[]{", "}");
+        StringJoiner paramNames = new StringJoiner(", ", "new String[]{", "}");
+        for (VariableElement param : method.getParameters()) {
+            paramTypes.add(erasure(param.asType()) + ".class");
+            paramNames.add("\"" + param.getSimpleName() + "\"");
+        }
+
+        if (method.getAnnotation(Provider.class) != null) {
+            Provider provider = method.getAnnotation(Provider.class);
+            return format("org.dm.core.IndexedMethod.provider(%s.class, %s.class, \"%s\",%n" +
+                            "                        org.dm.core.Provider.Scope.%s, %dL, java.util.concurrent.TimeUnit.%s,%n" +
+                            "                        %s,%n" +
+                            "                        %s,%n" +
+                            "                        %s)",
+                    ownerName,
+                    erasure(method.getReturnType()),
+                    method.getSimpleName(),
+                    provider.scope().name(),
+                    provider.ttl(),
+                    provider.ttlUnit().name(),
+                    paramTypes,
+                    paramNames,
+                    invokerFactory(owner, method));
+        }
+
+        boolean batch = method.getAnnotation(BatchHandler.class) != null;
+        TypeMirror commandType = batch ? batchCommandType(method) : method.getParameters().get(0).asType();
+
+        return format("org.dm.core.IndexedMethod.%s(%s.class, %s.class,%n" +
+                        "                        %s,%n" +
+                        "                        %s,%n" +
+                        "                        %s)",
+                batch ? "batchHandler" : "handler",
+                ownerName,
+                erasure(commandType),
+                paramTypes,
+                paramNames,
+                invokerFactory(owner, method));
+    }
+
+    /**
+     * @return lambda creating {@link org.dm.core.Invoker} shape, calling method of target directly
+     */
+    private String invokerFactory(TypeElement owner, ExecutableElement method) {
+        int arity = method.getParameters().size();
+
+        StringJoiner lambdaParams = new StringJoiner(", ", "(", ")");
+        StringJoiner args = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < arity; i++) {
+            lambdaParams.add("a" + (i + 1));
+            args.add(format("(%s) a%d", boxed(method.getParameters().get(i).asType()), i + 1));
+        }
+
+        String receiver = isStatic(method)
+                ? erasure(method.getEnclosingElement().asType())
+                : format("((%s) target)", erasure(owner.asType()));
+
+        return format("target -> (org.dm.core.%s%d) %s -> %s.%s%s",
+                shape(method.getReturnType().getKind(), arity),
+                arity,
+                lambdaParams,
+                receiver,
+                method.getSimpleName(),
+                args);
+    }
+
+    /**
+     * @return shape of {@link org.dm.core.Invoker} the same as spun for method by bus (See {@link org.dm.core.PrimitiveInvoker})
+     */
+    private String shape(TypeKind returnKind, int arity) {
+        if (arity > 0 && returnKind == TypeKind.INT) {
+            return "PrimitiveInvoker.IntCall";
+        }
+        if (arity > 0 && returnKind == TypeKind.LONG) {
+            return "PrimitiveInvoker.LongCall";
+        }
+        if (arity > 0 && returnKind == TypeKind.BOOLEAN) {
+            return "PrimitiveInvoker.BooleanCall";
+        }
+        return returnKind == TypeKind.VOID ? "Invoker.Run" : "Invoker.Call";
+    }
+
+    private TypeMirror batchCommandType(ExecutableElement method) {
+        TypeMirror listType = method.getParameters().get(0).asType();
+        if (listType.getKind() != TypeKind.DECLARED || !erasure(listType).equals(List.class.getName())) {
+            return null;
+        }
+
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) listType).getTypeArguments();
+        if (typeArguments.size() != 1 || typeArguments.get(0).getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return typeArguments.get(0);
+    }
+
+    private boolean isBatchResult(TypeMirror returnType) {
+        return returnType.getKind() == TypeKind.VOID || erasure(returnType).equals(List.class.getName());
+    }
+
+    private boolean isAccessible(TypeMirror type, PackageElement pkg) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return isAccessible(processingEnv.getTypeUtils().erasure(type), pkg)
+                        && isAccessible(((ArrayType) type).getComponentType(), pkg);
+            case DECLARED:
+                return isAccessible((TypeElement) ((DeclaredType) type).asElement(), pkg);
+            case TYPEVAR:
+                return isAccessible(processingEnv.getTypeUtils().erasure(type), pkg);
+            default:
+                return type.getKind().isPrimitive();
+        }
+    }
+
+    /**
+     * Class is accessible if it and all its enclosing classes are public or package-private in the package.
+     */
+    private boolean isAccessible(TypeElement type, PackageElement pkg) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (!isAccessible(element, pkg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAccessible(Element element, PackageElement pkg) {
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return processingEnv.getElementUtils().getPackageOf(element).equals(pkg);
+    }
+
+    private static boolean isStatic(ExecutableElement method) {
+        return method.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return erasure(type);
+    }
+
+    private void writeIndex(String pkg, List<String> entries, List<Element> origins) {
+        String simpleName = indexName(pkg);
+        String name = pkg + "." + simpleName;
+        indexCountByPackage.merge(pkg, 1, Integer::sum);
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(name, origins.toArray(new Element[0]));
+            try (Writer writer = file.openWriter()) {
+                writer.write(format("package %s;%n%n", pkg));
+                writer.write(format("/**%n * Generated by %s.%n */%n", CommandBusProcessor.class.getName()));
+                writer.write(format("@SuppressWarnings({\"unchecked\", \"rawtypes\"})%n"));
+                writer.write(format("public final class %s implements org.dm.core.BusIndex {%n%n", simpleName));
+                writer.write(format("    @Override%n"));
+                writer.write(format("    public java.util.List<org.dm.core.IndexedMethod> methods() {%n"));
+                writer.write(format("        return java.util.Arrays.asList(%n"));
+                writer.write(format("                %s);%n", String.join(format(",%n                "), entries)));
+                writer.write(format("    }%n}%n"));
+            }
+            indexes.add(name);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, format("Failed to write %s: %s", name, e.getMessage()));
+        }
+    }
+
+    private void writeServiceFile() {
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        try (Writer writer = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE).openWriter()) {
+            for (String index : indexes) {
+                writer.write(index);
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, format("Failed to write %s: %s", SERVICE_FILE, e.getMessage()));
+        }
+    }
+}
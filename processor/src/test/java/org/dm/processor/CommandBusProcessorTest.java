@@ -0,0 +1,76 @@
+package org.dm.processor;
+
+import org.dm.core.Bus;
+import org.dm.core.BusBuilder;
+import org.dm.core.BusIndexes;
+import org.dm.core.Provider;
+import org.dm.core.ValueProviderStatistics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandBusProcessorTest {
+
+    @Test
+    public void indexIsGeneratedAndRegistered() throws Exception {
+        Class.forName("org.dm.processor." + CommandBusProcessor.INDEX_NAME);
+
+        BusIndexes indexes = BusIndexes.load();
+        assertTrue(indexes.commandHandlerClasses("org.dm.processor").contains(IndexedHandlers.InheritingHandler.class));
+        assertTrue(indexes.valueProviderClasses("org.dm").contains(IndexedHandlers.ValueProviders.class));
+        assertTrue(indexes.commandHandlerClasses("org.dm.processor").contains(IndexedHandlers.NotIndexedHandler.class));
+        assertFalse(indexes.valueProviderClasses("org.dm.processor").contains(IndexedHandlers.NotIndexedHandler.class));
+        assertTrue(indexes.commandHandlerClasses("org.dm.other").isEmpty());
+        assertTrue(indexes.isIndexed("org.dm.processor"));
+        assertFalse(indexes.isIndexed("org.dm"));
+        assertFalse(indexes.isIndexed("org.dm.other"));
+    }
+
+    @Test
+    public void indexedMethodsAreInvokedDirectly() {
+        IndexedHandlers.InheritingHandler handler = new IndexedHandlers.InheritingHandler();
+        IndexedHandlers.ValueProviders providers = new IndexedHandlers.ValueProviders();
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(handler)
+                .registerValueProvider(providers)
+                .build();
+
+        assertThat(bus.execute(new IndexedHandlers.Ping(1)), equalTo("pong11"));
+        assertThat(bus.execute(new IndexedHandlers.Sum(1, 2)), equalTo(4));
+        assertThat(bus.executeInt(new IndexedHandlers.Sum(1, 2)), equalTo(4));
+        bus.execute(new IndexedHandlers.Log());
+        assertThat(handler.log.toString(), equalTo("logged"));
+
+        List<Object> results = bus.executeAll(Arrays.asList(new IndexedHandlers.Ping(1), new IndexedHandlers.Ping(2)));
+        assertThat(results, equalTo(Arrays.<Object>asList("batch11", "batch12")));
+    }
+
+    @Test
+    public void providerScopeIsIndexed() {
+        Bus bus = new BusBuilder()
+                .registerCommandHandler(new IndexedHandlers.InheritingHandler())
+                .registerValueProvider(new IndexedHandlers.ValueProviders())
+                .build();
+
+        bus.execute(new IndexedHandlers.Ping(1));
+
+        List<ValueProviderStatistics> statistics = bus.valueProviderStatistics();
+        assertThat(statistics.size(), equalTo(1));
+        assertThat(statistics.get(0).getScope(), equalTo(Provider.Scope.COMMAND));
+        assertThat(statistics.get(0).getMisses(), equalTo(1L));
+    }
+
+    @Test
+    public void notIndexedClassIsScannedWithReflection() {
+        assertThat(new BusBuilder()
+                .registerCommandHandler(new IndexedHandlers.NotIndexedHandler())
+                .build()
+                .execute(IndexedHandlers.NotIndexedHandler.secret()), equalTo("secret"));
+    }
+}
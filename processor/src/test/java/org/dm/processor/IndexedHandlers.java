@@ -0,0 +1,105 @@
+package org.dm.processor;
+
+import org.dm.core.BatchHandler;
+import org.dm.core.Handler;
+import org.dm.core.Provider;
+
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Package-private <em>CommandHandlers</em>, which can't be invoked with reflection from core,
+ * so they work only when taken from generated index.
+ */
+final class IndexedHandlers {
+
+    private IndexedHandlers() {
+    }
+
+    static final class Ping {
+        final int id;
+
+        Ping(int id) {
+            this.id = id;
+        }
+    }
+
+    static final class Log {
+    }
+
+    static final class Sum {
+        final int a;
+        final int b;
+
+        Sum(int a, int b) {
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    static class BaseHandler {
+        @Handler
+        String handle(Ping ping, Integer offset, String prefix) {
+            return prefix + (ping.id + offset);
+        }
+
+        @BatchHandler
+        List<String> handle(List<Ping> pings, Integer offset) {
+            return pings.stream()
+                    .map(ping -> "batch" + (ping.id + offset))
+                    .collect(toList());
+        }
+    }
+
+    static final class InheritingHandler extends BaseHandler {
+        final StringBuilder log = new StringBuilder();
+
+        @Handler
+        void handle(Log command) {
+            log.append("logged");
+        }
+
+        @Handler
+        static int handle(Sum sum, int offset) {
+            return sum.a + sum.b + offset;
+        }
+    }
+
+    static final class ValueProviders {
+        int computed;
+
+        @Provider(scope = Provider.Scope.COMMAND)
+        Integer offset() {
+            computed++;
+            return 10;
+        }
+
+        @Provider
+        int primitiveOffset() {
+            return 1;
+        }
+
+        @Provider
+        String prefix(Integer offset) {
+            return offset == 10 ? "pong" : "ping";
+        }
+    }
+
+    /**
+     * Not indexed - its parameter type is private.
+     */
+    public static final class NotIndexedHandler {
+        @Handler
+        public String handle(Secret secret) {
+            return "secret";
+        }
+
+        static Object secret() {
+            return new Secret();
+        }
+
+        private static final class Secret {
+        }
+    }
+}
@@ -3,31 +3,65 @@ package org.dm.spring;
 import org.dm.core.*;
 import org.reflections.Reflections;
 import org.reflections.scanners.MethodAnnotationsScanner;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 import org.springframework.context.ApplicationContext;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.util.List;
-import java.util.Objects;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toList;
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toCollection;
 
+/**
+ * Builds <em>Bus</em> of Spring beans.
+ *
+ * <p>Base packages are only collected by {@link #registerCommandHandlers(String)} and
+ * {@link #registerValueProviders(String)}. On {@link #build()} classes with {@link Handler}/{@link BatchHandler}
+ * and {@link Provider} methods are taken from compile-time index (See {@link BusIndex}) for packages
+ * having generated index, all other packages under base packages (including subpackages of indexed ones)
+ * are scanned at once in parallel, skipping classes of indexed packages.
+ *
+ * <p>Beans are resolved by name on {@link #build()}, but are not created: each bean is obtained from
+ * <em>ApplicationContext</em> only when its method is invoked for the first time.
+ * Every class without a bean is reported in single exception.
+ */
 public class SpringBusBuilder {
 
     private BusBuilder busBuilder = new BusBuilder();
     private ApplicationContext applicationContext;
+    private BusIndexes busIndexes;
+    private Set<String> commandHandlerPackages = new LinkedHashSet<>();
+    private Set<String> valueProviderPackages = new LinkedHashSet<>();
 
     public SpringBusBuilder(ApplicationContext context) {
         this.applicationContext = context;
+        this.busIndexes = BusIndexes.load(context.getClassLoader());
+        this.busBuilder.busIndexes(busIndexes);
     }
 
+    /**
+     * Registers beans of classes with {@link Handler}/{@link BatchHandler} methods from base package.
+     */
     public SpringBusBuilder registerCommandHandlers(String basePackage) {
-        find(basePackage, Handler.class).forEach(busBuilder::registerCommandHandler);
+        commandHandlerPackages.add(basePackage);
         return this;
     }
 
+    /**
+     * Registers beans of classes with {@link Provider} methods from base package.
+     */
     public SpringBusBuilder registerValueProviders(String basePackage) {
-        find(basePackage, Provider.class).forEach(busBuilder::registerValueProvider);
+        valueProviderPackages.add(basePackage);
         return this;
     }
 
@@ -37,25 +71,92 @@ public class SpringBusBuilder {
     }
 
     public Bus build() {
+        Reflections reflections = scan(commandHandlerPackages, valueProviderPackages, busIndexes);
+        Set<Class<?>> commandHandlerClasses = declaringClasses(reflections, commandHandlerPackages, Handler.class, BatchHandler.class);
+        Set<Class<?>> valueProviderClasses = declaringClasses(reflections, valueProviderPackages, Provider.class);
+        commandHandlerPackages.forEach(basePackage -> commandHandlerClasses.addAll(busIndexes.commandHandlerClasses(basePackage)));
+        valueProviderPackages.forEach(basePackage -> valueProviderClasses.addAll(busIndexes.valueProviderClasses(basePackage)));
+
+        List<String> problems = new ArrayList<>();
+        register(commandHandlerClasses, "Command handler", problems, busBuilder::registerCommandHandler);
+        register(valueProviderClasses, "Value provider", problems, busBuilder::registerValueProvider);
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException(format("Failed to register Spring beans in Bus:%n%s",
+                    problems.stream().collect(joining(format("%n")))));
+        }
+
         return busBuilder.build();
     }
 
-    private List<Object> find(String basePackage, Class<? extends Annotation> annotationClass) {
-        return new Reflections(basePackage, new MethodAnnotationsScanner())
-                .getMethodsAnnotatedWith(annotationClass).stream()
-                .map(Method::getDeclaringClass)
+    /**
+     * Scans all given packages at once, with thread per processor. Classes of packages with generated index
+     * are not read, classes of their subpackages are.
+     */
+    private static Reflections scan(Set<String> commandHandlerPackages, Set<String> valueProviderPackages, BusIndexes busIndexes) {
+        String[] packages = Stream.concat(commandHandlerPackages.stream(), valueProviderPackages.stream())
                 .distinct()
-                .map(this::findBean)
-                .filter(Objects::nonNull)
-                .collect(toList());
-    }
+                .toArray(String[]::new);
+        if (packages.length == 0) {
+            return null;
+        }
 
-    private Object findBean(Class beanClass) {
+        FilterBuilder filter = new FilterBuilder().includePackage(packages);
+        Arrays.stream(packages)
+                .flatMap(basePackage -> busIndexes.indexedPackages(basePackage).stream())
+                .distinct()
+                .forEach(indexedPackage -> filter.add(new FilterBuilder.Exclude(Pattern.quote(indexedPackage + ".") + "[^.]+\\.class")));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "commandbus-scanner");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
+            return new Reflections(new ConfigurationBuilder()
+                    .forPackages(packages)
+                    .filterInputsBy(filter)
+                    .setScanners(new MethodAnnotationsScanner())
+                    .setExecutorService(executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @SafeVarargs
+    private static Set<Class<?>> declaringClasses(Reflections reflections, Set<String> packages, Class<? extends Annotation>... annotationClasses) {
+        if (reflections == null) {
+            return new HashSet<>();
+        }
+
+        return Arrays.stream(annotationClasses)
+                .flatMap(annotationClass -> reflections.getMethodsAnnotatedWith(annotationClass).stream())
+                .map(Method::getDeclaringClass)
+                .filter(declaringClass -> packages.stream().anyMatch(basePackage -> declaringClass.getName().startsWith(basePackage + ".")))
+                .collect(toCollection(HashSet::new));
+    }
+
+    /**
+     * Registers beans of given classes lazily. Abstract classes and interfaces are registered
+     * through their implementation beans, concrete class without a bean is a problem.
+     */
+    private void register(Set<Class<?>> classes, String role, List<String> problems, BiConsumer<Class<Object>, Supplier<Object>> registration) {
+        Set<String> beanNames = new LinkedHashSet<>();
+        for (Class<?> beanClass : classes) {
+            String[] names = applicationContext.getBeanNamesForType(beanClass, true, false);
+            if (names.length == 0 && !beanClass.isInterface() && !Modifier.isAbstract(beanClass.getModifiers())) {
+                problems.add(format("%s %s is not a Spring bean", role, beanClass.getName()));
+            }
+            beanNames.addAll(Arrays.asList(names));
+        }
+
+        for (String beanName : beanNames) {
+            Class<?> beanType = applicationContext.getType(beanName);
+            if (beanType == null) {
+                problems.add(format("%s bean %s has unknown type", role, beanName));
+                continue;
+            }
             //noinspection unchecked
-            return applicationContext.getBean(beanClass);
-        } catch (Exception e) {
-            return null;
+            registration.accept((Class<Object>) beanType, () -> applicationContext.getBean(beanName));
         }
     }
 }
@@ -0,0 +1,92 @@
+package org.dm.spring;
+
+import org.dm.core.Bus;
+import org.dm.spring.indexed.IndexedBeans;
+import org.dm.spring.missing.MissingBeans;
+import org.dm.spring.mixed.indexed.IndexedPart;
+import org.dm.spring.mixed.scanned.ScannedPart;
+import org.dm.spring.scanned.ScannedBeans;
+import org.junit.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SpringBusBuilderTest {
+
+    @Test
+    public void beansAreCreatedOnFirstInvocation() {
+        GenericApplicationContext context = context(ScannedBeans.GreetHandler.class, ScannedBeans.GreetingProvider.class);
+        int created = ScannedBeans.CREATED.get();
+
+        Bus bus = new SpringBusBuilder(context)
+                .registerCommandHandlers("org.dm.spring.scanned")
+                .registerValueProviders("org.dm.spring.scanned")
+                .build();
+        assertThat(ScannedBeans.CREATED.get(), equalTo(created));
+
+        assertThat(bus.execute(new ScannedBeans.Greet("bus")), equalTo("hello bus"));
+        assertThat(bus.execute(new ScannedBeans.Greet("bus")), equalTo("hello bus"));
+        assertThat(ScannedBeans.CREATED.get(), equalTo(created + 2));
+    }
+
+    @Test
+    public void indexedPackageIsNotScannedAndOtherPackagesAre() {
+        GenericApplicationContext context = context(IndexedBeans.PingHandler.class,
+                ScannedBeans.GreetHandler.class, ScannedBeans.GreetingProvider.class);
+
+        Bus bus = new SpringBusBuilder(context)
+                .registerCommandHandlers("org.dm.spring.indexed")
+                .registerCommandHandlers("org.dm.spring.scanned")
+                .registerValueProviders("org.dm.spring.scanned")
+                .build();
+
+        assertThat(bus.execute(new IndexedBeans.Ping()), equalTo("pong"));
+        assertThat(bus.execute(new ScannedBeans.Greet("index")), equalTo("hello index"));
+    }
+
+    @Test
+    public void unindexedSubpackageOfBasePackageIsScanned() {
+        GenericApplicationContext context = context(IndexedPart.TickHandler.class, ScannedPart.EchoHandler.class);
+
+        Bus bus = new SpringBusBuilder(context)
+                .registerCommandHandlers("org.dm.spring.mixed")
+                .build();
+
+        assertThat(bus.execute(new IndexedPart.Tick()), equalTo("tock"));
+        assertThat(bus.execute(new ScannedPart.Echo("scanned")), equalTo("scanned"));
+    }
+
+    @Test
+    public void allMissingBeansAreReportedTogether() {
+        try {
+            new SpringBusBuilder(context())
+                    .registerCommandHandlers("org.dm.spring.missing")
+                    .registerValueProviders("org.dm.spring.missing")
+                    .build();
+            throw new AssertionError("Bus should not be built");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("Failed to register Spring beans in Bus"));
+            assertThat(e.getMessage(), containsString(
+                    "Command handler " + MissingBeans.CommandHandler.class.getName() + " is not a Spring bean"));
+            assertThat(e.getMessage(), containsString(
+                    "Value provider " + MissingBeans.ValueProvider.class.getName() + " is not a Spring bean"));
+        }
+    }
+
+    /**
+     * @return refreshed context with lazy singleton bean of each class
+     */
+    private static GenericApplicationContext context(Class<?>... beanClasses) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        for (Class<?> beanClass : beanClasses) {
+            RootBeanDefinition definition = new RootBeanDefinition(beanClass);
+            definition.setLazyInit(true);
+            context.registerBeanDefinition(beanClass.getSimpleName(), definition);
+        }
+        context.refresh();
+        return context;
+    }
+}
@@ -0,0 +1,29 @@
+package org.dm.spring.indexed;
+
+import org.dm.core.Handler;
+
+public final class IndexedBeans {
+
+    private IndexedBeans() {
+    }
+
+    public static final class Ping {
+    }
+
+    public static final class PingHandler {
+        @Handler
+        public String handle(Ping ping) {
+            return "pong";
+        }
+    }
+
+    /**
+     * Not listed in {@link TestBusIndex} and is not a bean, so the package must not be scanned.
+     */
+    public static final class UnlistedHandler {
+        @Handler
+        public String handle(Ping ping) {
+            return "unlisted";
+        }
+    }
+}
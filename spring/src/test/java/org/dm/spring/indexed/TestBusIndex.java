@@ -0,0 +1,18 @@
+package org.dm.spring.indexed;
+
+import org.dm.core.BusIndex;
+import org.dm.core.IndexedMethod;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stands for index generated by {@code commandbus processor} for this package.
+ */
+public final class TestBusIndex implements BusIndex {
+
+    @Override
+    public List<IndexedMethod> methods() {
+        return Collections.singletonList(IndexedMethod.scanned(TestBusIndex.class, IndexedBeans.PingHandler.class.getName(), false));
+    }
+}
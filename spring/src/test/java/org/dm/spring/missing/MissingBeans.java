@@ -0,0 +1,27 @@
+package org.dm.spring.missing;
+
+import org.dm.core.Handler;
+import org.dm.core.Provider;
+
+public final class MissingBeans {
+
+    private MissingBeans() {
+    }
+
+    public static final class Command {
+    }
+
+    public static final class CommandHandler {
+        @Handler
+        public String handle(Command command) {
+            return "handled";
+        }
+    }
+
+    public static final class ValueProvider {
+        @Provider
+        public String value() {
+            return "value";
+        }
+    }
+}
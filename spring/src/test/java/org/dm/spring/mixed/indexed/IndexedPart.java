@@ -0,0 +1,29 @@
+package org.dm.spring.mixed.indexed;
+
+import org.dm.core.Handler;
+
+public final class IndexedPart {
+
+    private IndexedPart() {
+    }
+
+    public static final class Tick {
+    }
+
+    public static final class TickHandler {
+        @Handler
+        public String handle(Tick tick) {
+            return "tock";
+        }
+    }
+
+    /**
+     * Not listed in {@link MixedBusIndex} and is not a bean, so the package must not be scanned.
+     */
+    public static final class UnlistedHandler {
+        @Handler
+        public String handle(Tick tick) {
+            return "unlisted";
+        }
+    }
+}
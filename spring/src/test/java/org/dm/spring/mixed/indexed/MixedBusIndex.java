@@ -0,0 +1,19 @@
+package org.dm.spring.mixed.indexed;
+
+import org.dm.core.BusIndex;
+import org.dm.core.IndexedMethod;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stands for index generated by {@code commandbus processor} for this package, but not for its sibling
+ * {@code org.dm.spring.mixed.scanned}.
+ */
+public final class MixedBusIndex implements BusIndex {
+
+    @Override
+    public List<IndexedMethod> methods() {
+        return Collections.singletonList(IndexedMethod.scanned(MixedBusIndex.class, IndexedPart.TickHandler.class.getName(), false));
+    }
+}
@@ -0,0 +1,24 @@
+package org.dm.spring.mixed.scanned;
+
+import org.dm.core.Handler;
+
+public final class ScannedPart {
+
+    private ScannedPart() {
+    }
+
+    public static final class Echo {
+        final String text;
+
+        public Echo(String text) {
+            this.text = text;
+        }
+    }
+
+    public static final class EchoHandler {
+        @Handler
+        public String handle(Echo echo) {
+            return echo.text;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.dm.spring.scanned;
+
+import org.dm.core.Handler;
+import org.dm.core.Provider;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class ScannedBeans {
+
+    public static final AtomicInteger CREATED = new AtomicInteger();
+
+    private ScannedBeans() {
+    }
+
+    public static final class Greet {
+        final String name;
+
+        public Greet(String name) {
+            this.name = name;
+        }
+    }
+
+    public static final class GreetHandler {
+        public GreetHandler() {
+            CREATED.incrementAndGet();
+        }
+
+        @Handler
+        public String handle(Greet greet, String greeting) {
+            return greeting + " " + greet.name;
+        }
+    }
+
+    public static final class GreetingProvider {
+        public GreetingProvider() {
+            CREATED.incrementAndGet();
+        }
+
+        @Provider
+        public String greeting() {
+            return "hello";
+        }
+    }
+}